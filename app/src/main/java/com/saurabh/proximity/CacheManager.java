@@ -0,0 +1,152 @@
+package com.saurabh.proximity;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Keeps the app's caches -- osmdroid map tiles, point tiles and reverse
+// geocodes, each with a memory and a disk tier -- within their byte budgets,
+// and gives memory back when the system asks for it.
+//
+// Every tier is registered with a budget and a priority. enforceBudgets()
+// trims each tier back to its own budget; it runs after the caches grow and
+// when the app goes to the background. Tiers that enforce their own budget,
+// like osmdroid's bitmap cache, are skipped there. onTrimMemory() shrinks the memory
+// tiers as a group to a share of their combined budget that depends on how
+// hard the system is pressing (see memoryShare), taking from the lowest
+// priority tier first: map tile bitmaps are cheap to decode again from disk,
+// a reverse geocode costs a rate-limited Nominatim request.
+//
+// Trimming may do I/O and rebuild indexes, so every method must be called off
+// the main thread; calls are serialized.
+class CacheManager {
+    static final int PRIORITY_MAP_TILES = 0;
+    static final int PRIORITY_POINT_TILES = 10;
+    static final int PRIORITY_GEOCODES = 20;
+
+    enum Storage { MEMORY, DISK }
+
+    private final LookupMetrics metrics;
+    private final List<Registration> tiers = new ArrayList<>();
+
+    private static final class Registration {
+        final String name;
+        final Storage storage;
+        final int priority;
+        final CacheTier tier;
+        long budgetBytes;
+
+        Registration(String name, Storage storage, int priority, long budgetBytes, CacheTier tier) {
+            this.name = name;
+            this.storage = storage;
+            this.priority = priority;
+            this.budgetBytes = budgetBytes;
+            this.tier = tier;
+        }
+    }
+
+    CacheManager(LookupMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Adds a tier; its size is reported as the gauge "cache.<name>.bytes"
+    synchronized void register(String name, Storage storage, int priority, long budgetBytes, CacheTier tier) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Cache budget must not be negative: " + name);
+        }
+        if (find(name) != null) {
+            throw new IllegalArgumentException("Cache tier already registered: " + name);
+        }
+        tiers.add(new Registration(name, storage, priority, budgetBytes, tier));
+        // Lowest priority first; the sort is stable, so equal priorities keep their order
+        Collections.sort(tiers, (a, b) -> Integer.compare(a.priority, b.priority));
+        metrics.registerGauge("cache." + name + ".bytes", tier::sizeBytes);
+    }
+
+    synchronized void setBudget(String name, long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Cache budget must not be negative: " + name);
+        }
+        require(name).budgetBytes = budgetBytes;
+    }
+
+    synchronized long budget(String name) {
+        return require(name).budgetBytes;
+    }
+
+    // Trims every tier that has grown past its own budget, except the
+    // self-limiting ones; returns the bytes freed
+    synchronized long enforceBudgets() {
+        long freed = 0;
+        for (Registration registration : tiers) {
+            if (registration.tier.selfLimiting()) continue;
+            freed += trim(registration, registration.budgetBytes);
+        }
+        return freed;
+    }
+
+    // Sheds memory tiers, lowest priority first, until together they hold no
+    // more than memoryShare(level) of their combined budget. Returns the bytes freed.
+    synchronized long onTrimMemory(int level) {
+        double share = memoryShare(level);
+        long freed = 0;
+        long target = 0;
+        long total = 0;
+        for (Registration registration : tiers) {
+            if (registration.storage != Storage.MEMORY) continue;
+            freed += trim(registration, registration.budgetBytes);
+            target += (long) (registration.budgetBytes * share);
+            total += registration.tier.sizeBytes();
+        }
+        for (Registration registration : tiers) {
+            if (total <= target) break;
+            if (registration.storage != Storage.MEMORY) continue;
+            long before = registration.tier.sizeBytes();
+            long released = trim(registration, Math.max(0, before - (total - target)));
+            total -= released;
+            freed += released;
+        }
+        metrics.increment("cache.trim_memory");
+        metrics.add("cache.trimmed_bytes", freed);
+        return freed;
+    }
+
+    // Share of the memory budget kept at each ComponentCallbacks2 trim level.
+    // While the app is in the foreground the levels say how short the whole
+    // device is; once its UI is hidden they say how close the app is to being
+    // killed, and at TRIM_MEMORY_COMPLETE everything that can go, goes.
+    static double memoryShare(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) return 0;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) return 0.1;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) return 0.25;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) return 0.5;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) return 0.25;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) return 0.5;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) return 0.75;
+        return 1;
+    }
+
+    private long trim(Registration registration, long maxBytes) {
+        long before = registration.tier.sizeBytes();
+        if (before <= maxBytes) return 0;
+        registration.tier.trimTo(maxBytes);
+        return Math.max(0, before - registration.tier.sizeBytes());
+    }
+
+    private Registration find(String name) {
+        for (Registration registration : tiers) {
+            if (registration.name.equals(name)) return registration;
+        }
+        return null;
+    }
+
+    private Registration require(String name) {
+        Registration registration = find(name);
+        if (registration == null) {
+            throw new IllegalArgumentException("No cache tier named " + name);
+        }
+        return registration;
+    }
+}
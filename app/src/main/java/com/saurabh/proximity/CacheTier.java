@@ -0,0 +1,22 @@
+package com.saurabh.proximity;
+
+// One tier of one of the app's caches -- the in-memory or the on-disk copy of
+// map tiles, point tiles or reverse geocodes -- as seen by CacheManager.
+// Implementations may block on I/O; CacheManager is only called off the main
+// thread.
+interface CacheTier {
+    // Approximate bytes held by this tier
+    long sizeBytes();
+
+    // Drops entries, least useful first, until at most maxBytes are held.
+    // Entries needed for the user's current position may be kept over the
+    // target; everything else can always be read again from the next tier down.
+    void trimTo(long maxBytes);
+
+    // True when the cache already holds itself to its budget and trimTo()
+    // throws away more than the overshoot; enforceBudgets() then leaves the
+    // tier alone and only onTrimMemory() trims it.
+    default boolean selfLimiting() {
+        return false;
+    }
+}
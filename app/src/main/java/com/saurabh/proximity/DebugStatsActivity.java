@@ -0,0 +1,54 @@
+package com.saurabh.proximity;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+// Debug screen showing the LookupMetrics dump: per-stage latency percentiles,
+// counters and the most recent lookups. "Share" exports the same text through
+// the system share sheet so it can be attached to a bug report.
+// Opened by long-pressing the lookup button on the main screen.
+public class DebugStatsActivity extends AppCompatActivity {
+    private final LookupMetrics metrics = LookupMetrics.get();
+    private TextView statsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.debug_stats);
+        statsTextView = findViewById(R.id.statsTextView);
+
+        Button refreshButton = findViewById(R.id.refreshButton);
+        refreshButton.setOnClickListener(v -> refresh());
+
+        Button resetButton = findViewById(R.id.resetButton);
+        resetButton.setOnClickListener(v -> {
+            metrics.reset();
+            refresh();
+        });
+
+        Button shareButton = findViewById(R.id.shareButton);
+        shareButton.setOnClickListener(v -> share());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        statsTextView.setText(metrics.dump());
+    }
+
+    private void share() {
+        Intent send = new Intent(Intent.ACTION_SEND);
+        send.setType("text/plain");
+        send.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.debug_stats_subject));
+        send.putExtra(Intent.EXTRA_TEXT, metrics.dump());
+        startActivity(Intent.createChooser(send, getString(R.string.debug_stats_share)));
+    }
+}
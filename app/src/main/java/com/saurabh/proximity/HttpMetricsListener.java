@@ -0,0 +1,77 @@
+package com.saurabh.proximity;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+// Per-call OkHttp listener feeding LookupMetrics. Calls are grouped by the lane
+// HttpTransport tags them with ("tile:u4pru" counts as "tile"), and for each
+// lane it records the time to the first response byte, the whole call, body
+// bytes in both directions and failures. New connections are counted so pool
+// reuse can be checked against the number of calls.
+class HttpMetricsListener extends EventListener {
+    static final EventListener.Factory FACTORY = call -> new HttpMetricsListener(LookupMetrics.get(), laneOf(call));
+
+    private final LookupMetrics metrics;
+    private final String prefix;
+    private final long startNanos = System.nanoTime();
+    private long connectStartNanos;
+
+    HttpMetricsListener(LookupMetrics metrics, String lane) {
+        this.metrics = metrics;
+        this.prefix = "http." + lane;
+    }
+
+    static String laneOf(Call call) {
+        String lane = call.request().tag(String.class);
+        if (lane == null) return "untagged";
+        int separator = lane.indexOf(':');
+        return separator >= 0 ? lane.substring(0, separator) : lane;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        metrics.increment(prefix + ".calls");
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStartNanos = System.nanoTime();
+        metrics.increment("http.connections");
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                           Protocol protocol) {
+        metrics.recordNanos("http.connect", System.nanoTime() - connectStartNanos);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        metrics.add(prefix + ".bytes_out", byteCount);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        metrics.recordNanos(prefix + ".ttfb", System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        metrics.add(prefix + ".bytes_in", byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        metrics.recordNanos(prefix, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.increment(prefix + (call.isCanceled() ? ".canceled" : ".failures"));
+    }
+}
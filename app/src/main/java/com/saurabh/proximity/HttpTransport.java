@@ -0,0 +1,324 @@
+package com.saurabh.proximity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+// Process-wide HTTP layer. Every request in the app goes through the one
+// OkHttpClient held here, so there is a single connection pool and dispatcher
+// and repeated lookups reuse warm (HTTP/2 where the server offers it)
+// connections instead of paying a new TLS handshake each time.
+//
+// On top of the client it adds two things:
+//  - coalescing: an async request identical to one already in flight (same
+//    method, URL and body, decoded by the same shared() reader) does not go
+//    out again; its callback is attached to the running call and gets the
+//    same decoded result. Requests with other readers are never coalesced.
+//  - lanes: each request names a lane ("nearby", "geocode", ...). Starting a
+//    new request on a lane cancels the previous one, so a fresh location fix
+//    never waits behind work for a stale one. A superseded request fails with
+//    SupersededException: execute() throws it and async waiters get it through
+//    onFailure, so every caller can still finish its trace.
+//
+// A lane has exactly one owner, the component that defines its name. Only the
+// owner starts requests on it, and only the owner or the screen that created
+// the owner cancels them (with the owner's lane constant); a request from
+// anywhere else would silently cancel the owner's work. The lanes in use:
+//   "nearby", "compute", "upload", "batch"  ProximityClient
+//   "tile:<geohash>"                        ProximityClient, one lane per tile
+//   "geocode"                               RoadPointFinder
+//
+// Every call is tagged with its lane, which HttpMetricsListener uses to
+// report latency and bytes per lane.
+//
+// Response bodies are handed to a BodyReader straight from the network
+// stream, so callers can decode without first copying the body into a String.
+class HttpTransport {
+    private static final int TIMEOUT_SECONDS = 30;
+
+    private static volatile HttpTransport instance;
+
+    private final OkHttpClient client;
+    private final Object lock = new Object();
+    private final Map<String, InFlight> inFlightByKey = new HashMap<>();
+    private final Map<String, InFlight> inFlightByLane = new HashMap<>();
+
+    interface BodyReader<T> {
+        T read(BufferedSource source) throws IOException;
+    }
+
+    interface ResultCallback<T> {
+        void onResult(T result);
+        void onFailure(IOException e);
+    }
+
+    // Reads the whole body as text
+    static final BodyReader<String> UTF8 = shared("utf8", BufferedSource::readUtf8);
+
+    // A reader whose result every caller with the same request can share. The
+    // name stands in for the reader when requests are compared, so it must be
+    // unique to the reader, and the reader must not depend on captured state:
+    // lambdas from one call site share a class even when they capture
+    // different values, so a reader's class alone cannot tell them apart.
+    static <T> BodyReader<T> shared(String name, BodyReader<T> reader) {
+        return new SharedReader<>(name, reader);
+    }
+
+    private static final class SharedReader<T> implements BodyReader<T> {
+        final String name;
+        final BodyReader<T> reader;
+
+        SharedReader(String name, BodyReader<T> reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+        @Override
+        public T read(BufferedSource source) throws IOException {
+            return reader.read(source);
+        }
+    }
+
+    static class SupersededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SupersededException(String lane) {
+            super("Request on lane '" + lane + "' was replaced by a newer one");
+        }
+    }
+
+    // A response with a non-2xx status
+    static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        HttpStatusException(int code) {
+            super("Error: " + code);
+            this.code = code;
+        }
+
+        // The server refused the request itself; sending it again gets the same
+        // answer. 408 and 429 only ask the client to come back later.
+        boolean isClientError() {
+            return code >= 400 && code < 500 && code != 408 && code != 429;
+        }
+    }
+
+    private static final class InFlight {
+        final String key;
+        final String lane;
+        final Call call;
+        final List<ResultCallback<Object>> callbacks = new ArrayList<>();
+        // Set when a newer request on the lane cancelled this one. A call
+        // timeout cancels the call too, so isCanceled() cannot tell them apart.
+        volatile boolean superseded;
+
+        InFlight(String key, String lane, Call call) {
+            this.key = key;
+            this.lane = lane;
+            this.call = call;
+        }
+    }
+
+    static HttpTransport get() {
+        if (instance == null) {
+            synchronized (HttpTransport.class) {
+                if (instance == null) {
+                    instance = new HttpTransport(new OkHttpClient.Builder()
+                            .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                            .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                            .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                            .eventListenerFactory(HttpMetricsListener.FACTORY)
+                            .build());
+                }
+            }
+        }
+        return instance;
+    }
+
+    HttpTransport(OkHttpClient client) {
+        this.client = client;
+    }
+
+    OkHttpClient client() {
+        return client;
+    }
+
+    <T> void enqueue(Request request, String lane, BodyReader<T> reader, ResultCallback<T> callback) {
+        enqueue(request, lane, 0, reader, callback);
+    }
+
+    // callTimeoutMillis bounds the whole call; 0 keeps the client's timeouts.
+    // Non-2xx responses are reported through onFailure.
+    @SuppressWarnings("unchecked")
+    <T> void enqueue(Request request, String lane, long callTimeoutMillis, BodyReader<T> reader,
+                     ResultCallback<T> callback) {
+        // Waiters can only share a result if they decode it the same way
+        String key = reader instanceof SharedReader
+                ? ((SharedReader<T>) reader).name + '\n' + coalescingKey(request)
+                : null;
+        InFlight flight;
+        synchronized (lock) {
+            InFlight existing = key != null ? inFlightByKey.get(key) : null;
+            if (existing != null && !existing.call.isCanceled()) {
+                existing.callbacks.add((ResultCallback<Object>) callback);
+                return;
+            }
+            supersede(lane);
+            Call call = client.newCall(tagged(request, lane));
+            if (callTimeoutMillis > 0) {
+                call.timeout().timeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            flight = new InFlight(key, lane, call);
+            flight.callbacks.add((ResultCallback<Object>) callback);
+            if (key != null) {
+                inFlightByKey.put(key, flight);
+            }
+            inFlightByLane.put(lane, flight);
+        }
+
+        final InFlight started = flight;
+        started.call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                IOException failure = started.superseded ? new SupersededException(lane) : e;
+                for (ResultCallback<Object> waiter : finish(started)) {
+                    waiter.onFailure(failure);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                Object result;
+                try {
+                    result = readBody(response, reader);
+                } catch (IOException e) {
+                    onFailure(call, e);
+                    return;
+                } catch (RuntimeException e) {
+                    // A body the reader cannot decode; thrown on OkHttp's
+                    // dispatcher thread it would crash the app
+                    onFailure(call, new IOException("Cannot decode response", e));
+                    return;
+                }
+                for (ResultCallback<Object> waiter : finish(started)) {
+                    waiter.onResult(result);
+                }
+            }
+        });
+    }
+
+    // Runs the request on the calling thread. It still cancels (and can be
+    // cancelled by) other requests on the same lane, but is never coalesced.
+    String execute(Request request, String lane) throws IOException {
+        return execute(request, lane, UTF8);
+    }
+
+    <T> T execute(Request request, String lane, BodyReader<T> reader) throws IOException {
+        Call call;
+        InFlight flight;
+        synchronized (lock) {
+            supersede(lane);
+            call = client.newCall(tagged(request, lane));
+            flight = new InFlight(null, lane, call);
+            inFlightByLane.put(lane, flight);
+        }
+        try {
+            return readBody(call.execute(), reader);
+        } catch (IOException e) {
+            if (flight.superseded) throw new SupersededException(lane);
+            throw e;
+        } finally {
+            finish(flight);
+        }
+    }
+
+    void cancelLane(String lane) {
+        synchronized (lock) {
+            supersede(lane);
+        }
+    }
+
+    // Cancels every lane of a family: the lane named family itself and the
+    // ones named "<family>:<suffix>", e.g. "tile" covers "tile:u4pru"
+    void cancelLanes(String family) {
+        String prefix = family + ':';
+        synchronized (lock) {
+            for (String lane : new ArrayList<>(inFlightByLane.keySet())) {
+                if (lane.equals(family) || lane.startsWith(prefix)) {
+                    supersede(lane);
+                }
+            }
+        }
+    }
+
+    // Caller holds lock
+    private void supersede(String lane) {
+        InFlight previous = inFlightByLane.remove(lane);
+        if (previous == null) return;
+        if (previous.key != null) {
+            inFlightByKey.remove(previous.key);
+        }
+        previous.superseded = true;
+        previous.call.cancel();
+    }
+
+    private static Request tagged(Request request, String lane) {
+        return request.newBuilder().tag(String.class, lane).build();
+    }
+
+    private static <T> T readBody(Response response, BodyReader<T> reader) throws IOException {
+        try (Response r = response) {
+            ResponseBody body = r.body();
+            if (!r.isSuccessful()) {
+                throw new HttpStatusException(r.code());
+            }
+            if (body == null) {
+                throw new IOException("Error: " + r.code());
+            }
+            return reader.read(body.source());
+        }
+    }
+
+    private List<ResultCallback<Object>> finish(InFlight flight) {
+        synchronized (lock) {
+            if (flight.key != null && inFlightByKey.get(flight.key) == flight) {
+                inFlightByKey.remove(flight.key);
+            }
+            if (inFlightByLane.get(flight.lane) == flight) {
+                inFlightByLane.remove(flight.lane);
+            }
+            return new ArrayList<>(flight.callbacks);
+        }
+    }
+
+    private static String coalescingKey(Request request) {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+        RequestBody body = request.body();
+        if (body != null) {
+            Buffer buffer = new Buffer();
+            try {
+                body.writeTo(buffer);
+                key.append('\n').append(buffer.readUtf8());
+            } catch (IOException e) {
+                // Body cannot be replayed; make the key unique so it is never merged
+                key.append('\n').append(System.identityHashCode(request));
+            }
+        }
+        return key.toString();
+    }
+}
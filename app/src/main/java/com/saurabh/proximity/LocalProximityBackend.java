@@ -0,0 +1,163 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.ConcurrentPointIndex;
+import com.saurabh.proximity.core.Geohash;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// In-process implementation of the Lambda's actions. The data actions answer
+// from an in-memory set of points, which makes this an offline or test
+// stand-in for the Lambda and its Redis list. calculateDistance gives the same
+// answers as location/distanceCalculator.js (same formula, radius and
+// rounding); the app has no caller for it, and it is kept, with its test, only
+// to check that parity.
+//
+// Tile versions are derived from the tile's points, like the Lambda's, but are
+// not the same strings, so they are only meaningful to this backend.
+class LocalProximityBackend implements ProximityBackend {
+    static final double EARTH_RADIUS_KM = 6371.0;        // as in distanceCalculator.js
+    static final double SEARCH_RADIUS_KM = 2;            // CONFIG.DEFAULTS.SEARCH_RADIUS_KM
+    static final int COORDINATE_PRECISION = 6;           // CONFIG.DEFAULTS.COORDINATE_PRECISION
+    static final int MIN_TILE_PRECISION = 4;             // CONFIG.DEFAULTS.MIN_TILE_PRECISION
+
+    private final ConcurrentPointIndex points;
+    private final Set<String> storedBatches = new HashSet<>();
+
+    LocalProximityBackend() {
+        this(new PointStore());
+    }
+
+    LocalProximityBackend(PointStore points) {
+        this(new ConcurrentPointIndex(points));
+    }
+
+    // Serves (and stores into) points shared with the rest of the app
+    LocalProximityBackend(ConcurrentPointIndex points) {
+        this.points = points;
+    }
+
+    double calculateDistance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        validateCoordinates(latitude1, longitude1);
+        validateCoordinates(latitude2, longitude2);
+        return round(distanceKm(latitude1, longitude1, latitude2, longitude2));
+    }
+
+    @Override
+    public ProximityClient.NearbyResult checkNearbyWithDistance(double latitude, double longitude) {
+        validateCoordinates(latitude, longitude);
+        ConcurrentPointIndex.Snapshot snapshot = points.snapshot();
+        PointQueryResult found = snapshot.nearest(latitude, longitude, Math.max(1, snapshot.size()),
+                SEARCH_RADIUS_KM * 1000, new PointQueryResult());
+        // Snapshot indices mean nothing outside the snapshot; copy the hits out, as the Lambda's answer would be
+        PointStore store = new PointStore(found.count());
+        PointQueryResult hits = new PointQueryResult(found.count());
+        for (int i = 0; i < found.count(); i++) {
+            int index = found.index(i);
+            hits.add(store.add(snapshot.roadName(index), snapshot.latitude(index), snapshot.longitude(index)),
+                    found.distance(i));
+        }
+        return new ProximityClient.NearbyResult(store, hits);
+    }
+
+    @Override
+    public ProximityClient.TileResult getTile(String geohash, String knownVersion) {
+        if (!Geohash.isValid(geohash) || geohash.length() < MIN_TILE_PRECISION) {
+            throw new IllegalArgumentException("Invalid geohash: expected " + MIN_TILE_PRECISION
+                    + "-12 geohash characters");
+        }
+        ConcurrentPointIndex.Snapshot all = points.snapshot();
+        PointStore tile = new PointStore();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < all.indexLimit(); i++) {
+            if (all.isRemoved(i)) continue;
+            if (Geohash.encode(all.latitude(i), all.longitude(i), geohash.length()).equals(geohash)) {
+                tile.add(all.roadName(i), all.latitude(i), all.longitude(i));
+                lines.add(String.format(Locale.US, "%s,%.6f,%.6f", all.roadName(i), all.latitude(i), all.longitude(i)));
+            }
+        }
+        Collections.sort(lines);
+        String version = version(lines);
+        if (version.equals(knownVersion)) {
+            return new ProximityClient.TileResult(version, null);
+        }
+        return new ProximityClient.TileResult(version, tile);
+    }
+
+    // Published as one edit: queries running meanwhile keep the snapshot they
+    // started with, and the ones that follow see the whole batch
+    @Override
+    public synchronized int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) {
+        if (batchId == null || batchId.isEmpty() || batchId.length() > 128) {
+            throw new IllegalArgumentException("Invalid batchId: expected a string of 1-128 characters");
+        }
+        for (RoadPointUploader.RoadPoint point : points) {
+            validateCoordinates(point.latitude, point.longitude);
+        }
+        if (!storedBatches.add(batchId)) return 0;
+        ConcurrentPointIndex.Editor editor = this.points.edit();
+        for (RoadPointUploader.RoadPoint point : points) {
+            editor.add(point.roadName, point.latitude, point.longitude);
+        }
+        editor.commit();
+        return points.size();
+    }
+
+    // distanceCalculator.js calculateDistance, in kilometers
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = lat1 * Math.PI / 180;
+        double lon1Rad = lon1 * Math.PI / 180;
+        double lat2Rad = lat2 * Math.PI / 180;
+        double lon2Rad = lon2 * Math.PI / 180;
+        double dlat = lat2Rad - lat1Rad;
+        double dlon = lon2Rad - lon1Rad;
+        double a = Math.sin(dlat / 2) * Math.sin(dlat / 2)
+                + Math.cos(lat1Rad) * Math.cos(lat2Rad) * Math.sin(dlon / 2) * Math.sin(dlon / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    // Number(x.toFixed(6)): toFixed rounds the exact binary value half up
+    static double round(double value) {
+        return new BigDecimal(value).setScale(COORDINATE_PRECISION, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    // The Lambda's validateCoordinates
+    static void validateCoordinates(double latitude, double longitude) {
+        if (!isValidCoordinate(latitude) || !isValidCoordinate(longitude)) {
+            throw new IllegalArgumentException("Invalid coordinates provided");
+        }
+        if (Math.abs(latitude) > 90) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90 degrees");
+        }
+    }
+
+    private static boolean isValidCoordinate(double coordinate) {
+        return !Double.isNaN(coordinate) && !Double.isInfinite(coordinate) && Math.abs(coordinate) <= 180;
+    }
+
+    private static String version(List<String> lines) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format(Locale.US, "%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.LatencyHistogram;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Process-wide latency and traffic statistics for the lookup path.
+//
+// Three kinds of data are kept:
+//  - stages: a LatencyHistogram per named stage ("lookup.geocode",
+//    "http.nearby.ttfb", ...), fed by LookupTrace and by the HTTP listener.
+//  - counters: monotonically increasing totals (cache hits, bytes, failures).
+//    Gauges are counters owned by someone else, read when the dump is made.
+//  - the last RECENT_TRACES lookups, one line each, so a single slow lookup
+//    can be looked at stage by stage.
+//
+// Recording is lock-free apart from appending a finished trace, so it can stay
+// on in release builds. dump() renders everything as plain text for the debug
+// screen and for sharing.
+class LookupMetrics {
+    static final int RECENT_TRACES = 50;
+
+    private static final LookupMetrics INSTANCE = new LookupMetrics();
+
+    private final Map<String, LatencyHistogram> stages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ArrayDeque<String> recentTraces = new ArrayDeque<>();
+    private final List<TraceListener> traceListeners = new CopyOnWriteArrayList<>();
+    private volatile long since = System.currentTimeMillis();
+
+    // Told about every finished LookupTrace, on the thread that finished it
+    interface TraceListener {
+        void onTraceFinished(String kind, String outcome, long totalNanos);
+    }
+
+    static LookupMetrics get() {
+        return INSTANCE;
+    }
+
+    LookupTrace startTrace(String kind) {
+        return new LookupTrace(this, kind);
+    }
+
+    LatencyHistogram stage(String name) {
+        LatencyHistogram histogram = stages.get(name);
+        if (histogram == null) {
+            histogram = stages.computeIfAbsent(name, key -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    void recordNanos(String stage, long nanos) {
+        stage(stage).recordNanos(nanos);
+    }
+
+    void increment(String counter) {
+        add(counter, 1);
+    }
+
+    void add(String counter, long delta) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            value = counters.computeIfAbsent(counter, key -> new AtomicLong());
+        }
+        value.addAndGet(delta);
+    }
+
+    long counter(String counter) {
+        AtomicLong value = counters.get(counter);
+        return value != null ? value.get() : 0;
+    }
+
+    // Reported with the counters; the supplier is called from whatever thread dumps
+    void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    void addTraceListener(TraceListener listener) {
+        traceListeners.add(listener);
+    }
+
+    void removeTraceListener(TraceListener listener) {
+        traceListeners.remove(listener);
+    }
+
+    void traceFinished(String kind, String outcome, long totalNanos, String line) {
+        addTrace(line);
+        for (TraceListener listener : traceListeners) {
+            listener.onTraceFinished(kind, outcome, totalNanos);
+        }
+    }
+
+    void addTrace(String line) {
+        synchronized (recentTraces) {
+            if (recentTraces.size() == RECENT_TRACES) {
+                recentTraces.removeFirst();
+            }
+            recentTraces.addLast(line);
+        }
+    }
+
+    // Most recent last
+    List<String> recentTraces() {
+        synchronized (recentTraces) {
+            return new ArrayList<>(recentTraces);
+        }
+    }
+
+    // Snapshot of all counters, sorted by name (gauges not included)
+    Map<String, Long> counters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    // Clears the histograms of stages whose name starts with prefix
+    void resetStages(String prefix) {
+        for (Map.Entry<String, LatencyHistogram> entry : stages.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                entry.getValue().reset();
+            }
+        }
+    }
+
+    // Clears stages, counters and traces. Gauges stay registered.
+    void reset() {
+        for (LatencyHistogram histogram : stages.values()) {
+            histogram.reset();
+        }
+        counters.clear();
+        synchronized (recentTraces) {
+            recentTraces.clear();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    String dump() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        StringBuilder out = new StringBuilder();
+        out.append("Lookup metrics since ").append(format.format(new Date(since)))
+                .append(" (dumped ").append(format.format(new Date())).append(")\n");
+
+        out.append("\n== Stages ==\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(stages).entrySet()) {
+            if (entry.getValue().count() == 0) continue;
+            out.append(entry.getKey()).append(": ").append(entry.getValue().summary()).append('\n');
+        }
+
+        out.append("\n== Counters ==\n");
+        Map<String, Long> values = counters();
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            out.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        }
+
+        out.append("\n== Recent lookups (newest first) ==\n");
+        List<String> traces = recentTraces();
+        Collections.reverse(traces);
+        for (String trace : traces) {
+            out.append(trace).append('\n');
+        }
+        return out.toString();
+    }
+}
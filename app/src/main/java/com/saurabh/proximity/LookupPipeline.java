@@ -0,0 +1,192 @@
+package com.saurabh.proximity;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// Runs one lookup as two independent stages, started together: the road name
+// (RoadPointFinder; local index, cache or Nominatim) and the nearby points
+// (tiles or the server, plus whatever the caller prepares for display). Both
+// results reach the listener in one call on the UI executor, so a lookup takes
+// as long as the slower stage rather than the sum of the two, and the screen
+// is updated once.
+//
+// Starting a lookup cancels the one still running. Its stages are abandoned
+// and each source is told to stop its work (RoadPointFinder drops or cancels
+// the Nominatim request, the points source cancels its HTTP lane), even when
+// the new lookup is answered on the device and would never replace that work
+// on the wire. Its trace finishes as "superseded" and nothing of it reaches
+// the listener, not even a failure its sources report after the cancel.
+// start() and cancel() must be called on the UI executor's thread, where
+// results are delivered too, so a cancelled lookup can never slip through.
+class LookupPipeline<P> {
+    private final RoadSource roads;
+    private final PointsSource<P> points;
+    private final Executor backgroundExecutor;
+    private final Executor uiExecutor;
+    private final Listener<P> listener;
+    private Lookup current;
+
+    interface RoadSource {
+        void getNearestRoad(double latitude, double longitude, LookupTrace trace,
+                            RoadPointFinder.RoadFinderCallback callback);
+
+        // The lookup that passed callback was cancelled; called on the UI thread
+        default void cancel(RoadPointFinder.RoadFinderCallback callback) {
+        }
+    }
+
+    interface PointsSource<P> {
+        // Runs on the background executor. Throws LookupException to end the
+        // lookup with an outcome of its own (e.g. "no_points").
+        P load(double latitude, double longitude, LookupTrace trace) throws IOException, LookupException;
+
+        // The running lookup was cancelled; called on the UI thread, possibly
+        // while load() is still running
+        default void cancel() {
+        }
+    }
+
+    interface Listener<P> {
+        void onResult(String roadName, P points);
+        void onError(String message);
+    }
+
+    static class LookupException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final String outcome;
+
+        LookupException(String outcome, String message) {
+            super(message);
+            this.outcome = outcome;
+        }
+    }
+
+    private static final class Lookup {
+        final LookupTrace trace;
+        final CompletableFuture<String> road = new CompletableFuture<>();
+        RoadPointFinder.RoadFinderCallback roadCallback;
+        CompletableFuture<?> points;
+        boolean cancelled; // UI thread only
+
+        Lookup(LookupTrace trace) {
+            this.trace = trace;
+        }
+    }
+
+    private static final class Results<P> {
+        final String roadName;
+        final P points;
+        final long readyAt = LookupTrace.now();
+
+        Results(String roadName, P points) {
+            this.roadName = roadName;
+            this.points = points;
+        }
+    }
+
+    LookupPipeline(RoadSource roads, PointsSource<P> points, Executor backgroundExecutor, Executor uiExecutor,
+                   Listener<P> listener) {
+        this.roads = roads;
+        this.points = points;
+        this.backgroundExecutor = backgroundExecutor;
+        this.uiExecutor = uiExecutor;
+        this.listener = listener;
+    }
+
+    void start(double latitude, double longitude, LookupTrace trace) {
+        cancel();
+        Lookup lookup = new Lookup(trace);
+        current = lookup;
+
+        long queuedAt = LookupTrace.now();
+        CompletableFuture<P> nearby = CompletableFuture.supplyAsync(() -> {
+            trace.stage("queue", queuedAt);
+            if (lookup.road.isCancelled()) throw new CancellationException();
+            long nearbyStart = LookupTrace.now();
+            try {
+                P loaded = points.load(latitude, longitude, trace);
+                trace.stage("nearby", nearbyStart);
+                return loaded;
+            } catch (IOException | LookupException e) {
+                throw new CompletionException(e);
+            }
+        }, backgroundExecutor);
+        lookup.points = nearby;
+
+        long geocodeStart = LookupTrace.now();
+        lookup.roadCallback = new RoadPointFinder.RoadFinderCallback() {
+            @Override
+            public void onSuccess(String roadName) {
+                trace.stage("geocode", geocodeStart);
+                if (roadName == null) {
+                    lookup.road.completeExceptionally(new LookupException("no_road", "No road found nearby"));
+                } else {
+                    lookup.road.complete(roadName);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                trace.stage("geocode", geocodeStart);
+                lookup.road.completeExceptionally(new LookupException("geocode_error", "Failed to find road: " + error));
+            }
+        };
+        roads.getNearestRoad(latitude, longitude, trace, lookup.roadCallback);
+
+        // thenCombine waits for both stages even when one has failed; a failure
+        // ends the lookup at once instead
+        CompletableFuture<Results<P>> both = lookup.road.thenCombine(nearby, Results::new);
+        lookup.road.whenComplete((roadName, error) -> {
+            if (error != null) both.completeExceptionally(error);
+        });
+        nearby.whenComplete((loaded, error) -> {
+            if (error != null) both.completeExceptionally(error);
+        });
+        both.whenCompleteAsync((results, error) -> deliver(lookup, results, error), uiExecutor);
+    }
+
+    // Abandons the running lookup, if any
+    void cancel() {
+        Lookup lookup = current;
+        if (lookup == null) return;
+        current = null;
+        lookup.cancelled = true;
+        lookup.road.cancel(false);
+        lookup.points.cancel(false);
+        roads.cancel(lookup.roadCallback);
+        points.cancel();
+        lookup.trace.finish("superseded");
+    }
+
+    private void deliver(Lookup lookup, Results<P> results, Throwable error) {
+        if (lookup.cancelled) return;
+        if (current == lookup) current = null;
+        if (error == null) {
+            listener.onResult(results.roadName, results.points);
+            lookup.trace.stage("ui", results.readyAt);
+            lookup.trace.finish("ok");
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof LookupException) {
+            lookup.trace.finish(((LookupException) cause).outcome);
+            listener.onError(cause.getMessage());
+        } else if (cause instanceof HttpTransport.SupersededException || cause instanceof CancellationException) {
+            lookup.trace.finish("superseded");
+        } else if (cause instanceof IOException) {
+            lookup.trace.finish("network_error");
+            listener.onError("Network error: " + cause.getMessage());
+        } else if (cause instanceof IllegalStateException) {
+            // Thrown by the streaming decoder on malformed JSON
+            lookup.trace.finish("parse_error");
+            listener.onError("Parsing error: " + cause.getMessage());
+        } else {
+            lookup.trace.finish("error");
+            listener.onError("Lookup failed: " + cause);
+        }
+    }
+}
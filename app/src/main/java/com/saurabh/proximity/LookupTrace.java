@@ -0,0 +1,75 @@
+package com.saurabh.proximity;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// Timeline of one lookup, from the button tap to the result on screen.
+//
+// Each stage is timed from a start timestamp the caller took with now() and
+// goes both into the "<kind>.<stage>" histogram of LookupMetrics and into this
+// trace's one-line summary, along with any notes (cache hit or miss, where the
+// points came from, ...). finish() records the total and publishes the line.
+// Stages may be recorded from different threads, one after another.
+class LookupTrace {
+    private final LookupMetrics metrics;
+    private final String kind;
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private final StringBuilder detail = new StringBuilder();
+    private boolean finished;
+
+    LookupTrace(LookupMetrics metrics, String kind) {
+        this.metrics = metrics;
+        this.kind = kind;
+    }
+
+    static long now() {
+        return System.nanoTime();
+    }
+
+    String kind() {
+        return kind;
+    }
+
+    // Records the time from stageStartNanos (a now() value) until now
+    void stage(String stage, long stageStartNanos) {
+        long elapsed = System.nanoTime() - stageStartNanos;
+        metrics.recordNanos(kind + "." + stage, elapsed);
+        synchronized (this) {
+            detail.append(String.format(Locale.US, " %s=%.1f", stage, elapsed / 1e6));
+        }
+    }
+
+    // Records a stage whose duration was measured elsewhere, e.g. the age of a location fix
+    void stageMillis(String stage, long millis) {
+        metrics.recordNanos(kind + "." + stage, millis * 1_000_000);
+        synchronized (this) {
+            detail.append(' ').append(stage).append('=').append(millis);
+        }
+    }
+
+    // Adds "key:value" to the summary and counts "<kind>.<key>.<value>"
+    void note(String key, String value) {
+        metrics.increment(kind + "." + key + "." + value);
+        synchronized (this) {
+            detail.append(" [").append(key).append(':').append(value).append(']');
+        }
+    }
+
+    // Ends the trace with an outcome such as "ok" or "error". Only the first call counts.
+    void finish(String outcome) {
+        long elapsed = System.nanoTime() - startNanos;
+        String line;
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            line = String.format(Locale.US, "%s %s %s total=%.1f ms |%s",
+                    new SimpleDateFormat("HH:mm:ss.SSS", Locale.US).format(new Date(startMillis)),
+                    kind, outcome, elapsed / 1e6, detail);
+        }
+        metrics.recordNanos(kind + ".total", elapsed);
+        metrics.increment(kind + "." + outcome);
+        metrics.traceFinished(kind, outcome, elapsed, line);
+    }
+}
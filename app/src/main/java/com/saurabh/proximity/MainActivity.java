@@ -1,13 +1,13 @@
 package com.saurabh.proximity;
 
-import static com.saurabh.proximity.RoadPointFinder.filterPointsByDistance;
-import static com.saurabh.proximity.RoadPointFinder.getPointsForRoad;
-import static com.saurabh.proximity.RoadPointFinder.updateMapWithPoints;
-
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.TextView;
@@ -27,49 +27,75 @@ import com.google.android.gms.location.Priority;
 import com.google.android.gms.tasks.CancellationToken;
 import com.google.android.gms.tasks.OnTokenCanceledListener;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.osmdroid.config.Configuration;
 import org.osmdroid.views.MapView;
 import org.osmdroid.util.GeoPoint;
-import org.osmdroid.views.overlay.Marker;
 
+import com.saurabh.proximity.core.NearestTracker;
+import com.saurabh.proximity.core.PointClusterIndex;
+import com.saurabh.proximity.core.PointGridIndex;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+import com.saurabh.proximity.core.OsmRoadReader;
+import com.saurabh.proximity.core.RecordedTrace;
+import com.saurabh.proximity.core.RoadSegmentIndex;
+import com.saurabh.proximity.core.RoadSegmentStore;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
 
 import org.osmdroid.config.Configuration;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.os.Environment;
 import java.io.File;
 
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_CODE = 100;
-    private MapView mapView;
+    // Launch extras for replaying a recorded trace instead of live location, e.g.
+    //   adb shell am start -n com.saurabh.proximity/.MainActivity --es replayTrace drive.gpx
+    //     --ef replaySpeed 10 --es endpoint http://localhost:3000/ --es geocodeUrl http://localhost:3000/reverse
+    // replayTrace is a GPX or CSV file, relative to the app's external files dir "replay"
+    // (or absolute). endpoint and geocodeUrl also work without a replay.
+    static final String EXTRA_REPLAY_TRACE = "replayTrace";
+    static final String EXTRA_REPLAY_SPEED = "replaySpeed";
+    static final String EXTRA_ENDPOINT = "endpoint";
+    static final String EXTRA_GEOCODE_URL = "geocodeUrl";
+    // "local" answers the data actions in-process from the built-in points instead of the Lambda
+    static final String EXTRA_BACKEND = "backend";
+    // true records the position and road of every successful lookup with storeRoadPoints
+    static final String EXTRA_RECORD_POINTS = "recordPoints";
+    private static final String REPLAY_TRACE_KIND = "replay";
+    private static final long REPLAY_DRAIN_MILLIS = 10000;
+    // OSM extract of the area's roads, in the app's external files dir "roads"
+    private static final String ROADS_FILE = "roads.osm";
+    private volatile MapView mapView; // read by the map tile cache tier off the main thread
+    private PointOverlayLayer overlayLayer;
+    private PointClusterIndex clusterIndex; // guarded by clusterIndexFor
     private static final String[] REQUIRED_PERMISSIONS = {
             Manifest.permission.ACCESS_FINE_LOCATION,
             Manifest.permission.ACCESS_COARSE_LOCATION
     };
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private static final String API_ENDPOINT = "https://cp0yi7o5hg.execute-api.us-east-1.amazonaws.com/default/location";
-    private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
-    private static final int TIMEOUT_SECONDS = 30;
-    private static final long LOCATION_UPDATE_INTERVAL = 1000; // 1 second
+    // Tile downloads run apart from lookups so a slow refresh never delays an answer
+    private final ExecutorService tileExecutor = Executors.newFixedThreadPool(2);
+    // Nearby-point stages of lookups; two threads so a new lookup never queues
+    // behind the abandoned stage of the one it replaced
+    private final ExecutorService lookupExecutor = Executors.newFixedThreadPool(2);
+    // Memory pressure is answered at once, not behind a road index parse on
+    // executorService; CacheManager serializes the trims itself
+    private final ExecutorService trimExecutor = Executors.newSingleThreadExecutor();
+    private LookupPipeline<NearbyView> lookupPipeline;
 
     private TextView locationTextView;
     private TextView resultTextView;
@@ -79,16 +105,49 @@ public class MainActivity extends AppCompatActivity {
     private LocationCallback locationCallback;
     private static final String USER_AGENT = "com.saurabh.proximity"; // Your app's package name
     private final MutableLiveData<Location> locationLiveData = new MutableLiveData<>();
-    private final OkHttpClient httpClient;
+    private final HttpTransport transport = HttpTransport.get();
+    private ProximityBackend proximityBackend;
+    private boolean recordPoints;
+    private volatile RoadPointUploader roadPointUploader; // set once its log has been read
+    // Opens and closes uploaders in order across activity instances, so a
+    // recreated activity's uploader only reads the log after the old one is closed
+    private static final ExecutorService UPLOADER_LIFECYCLE = Executors.newSingleThreadExecutor();
+    private String reverseGeocodeUrl = RoadPointFinder.DEFAULT_REVERSE_URL;
+    private final LookupMetrics metrics = LookupMetrics.get();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private String replayTracePath; // set when replaying instead of using live location
+    private TraceReplayer replayer;
+    private ReplayReport replayReport;
     private RoadPointFinder roadPointFinder;
+    private ReverseGeocodeCache geocodeCache;
+    private PointTileStore tileStore;
+    private final CacheManager cacheManager = new CacheManager(metrics);
+    private static final long MAP_TILE_DISK_BYTES = 64L * 1024 * 1024;
+    private static final long POINT_TILE_DISK_BYTES = 16L * 1024 * 1024;
+    private static final long GEOCODE_MEMORY_BYTES = 256L * 1024;
+    private static final long GEOCODE_DISK_BYTES = 1024L * 1024;
+    private static final int TRACKED_POINTS = 5;
+    private final NearestTracker nearestTracker = new NearestTracker(TRACKED_POINTS, PointTileStore.SEARCH_RADIUS_METERS);
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy();
+    private SamplingPolicy.Schedule activeSchedule = samplingPolicy.initial();
     private Location lastLocation;
 
-    public MainActivity() {
-        httpClient = new OkHttpClient.Builder()
-                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .build();
+    // What a lookup shows once its road name is known too; built off the UI thread
+    private static final class NearbyView {
+        final double latitude;
+        final double longitude;
+        final PointStore store;
+        final PointQueryResult hits;
+        final PointClusterIndex clusters;
+
+        NearbyView(double latitude, double longitude, PointStore store, PointQueryResult hits,
+                   PointClusterIndex clusters) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.store = store;
+            this.hits = hits;
+            this.clusters = clusters;
+        }
     }
 
     @Override
@@ -96,10 +155,18 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.mainactivity);
         initializeOSMDroid();
+        initializeBackend();
+        initializeGeocodeCache();
+        initializeRoadIndex();
+        initializeTileStore();
+        initializeCaches();
+        initializeUploader();
         initializeViews();
+        initializeLookupPipeline();
         setupLocationServices();
         setupLocationCallback();
         setupObservers();
+        loadReplayTrace();
 
     }
     private void initializeOSMDroid() {
@@ -115,6 +182,172 @@ public class MainActivity extends AppCompatActivity {
         File tileCache = new File(Configuration.getInstance().getOsmdroidBasePath().getAbsolutePath(), "tile");
         Configuration.getInstance().setOsmdroidTileCache(tileCache);
     }
+    private void initializeBackend() {
+        Intent intent = getIntent();
+        String endpoint = intent.getStringExtra(EXTRA_ENDPOINT);
+        ProximityClient remote = new ProximityClient(transport, endpoint != null ? endpoint : ProximityClient.DEFAULT_ENDPOINT);
+        // Data actions go to the Lambda unless asked otherwise
+        if ("local".equals(intent.getStringExtra(EXTRA_BACKEND))) {
+            LocalProximityBackend local = new LocalProximityBackend(RoadPointFinder.getPointIndex());
+            proximityBackend = new RoutedProximityBackend(local, local, local);
+        } else {
+            proximityBackend = new RoutedProximityBackend(remote, remote, remote);
+        }
+        recordPoints = intent.getBooleanExtra(EXTRA_RECORD_POINTS, false);
+        String geocodeUrl = intent.getStringExtra(EXTRA_GEOCODE_URL);
+        if (geocodeUrl != null) {
+            reverseGeocodeUrl = geocodeUrl;
+        }
+        replayTracePath = intent.getStringExtra(EXTRA_REPLAY_TRACE);
+    }
+    private void initializeGeocodeCache() {
+        // A replay starts from empty caches so runs of the same trace compare
+        geocodeCache = new ReverseGeocodeCache(replayTracePath != null ? null : new File(getCacheDir(), "geocode_cache.bin"));
+        roadPointFinder = new RoadPointFinder(transport, geocodeCache, reverseGeocodeUrl);
+        metrics.registerGauge("geocode_cache.hits", geocodeCache::hitCount);
+        metrics.registerGauge("geocode_cache.misses", geocodeCache::missCount);
+        executorService.execute(() -> {
+            try {
+                geocodeCache.load();
+            } catch (IOException e) {
+                Log.w("GeocodeCache", "Could not load reverse geocode cache", e);
+            }
+        });
+    }
+    // Builds the on-device road index from ROADS_FILE, if the file is there.
+    // Until it is ready (or without one) road names come from Nominatim.
+    private void initializeRoadIndex() {
+        File file = new File(getExternalFilesDir("roads"), ROADS_FILE);
+        if (!file.exists()) return;
+        executorService.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try (InputStream in = new FileInputStream(file)) {
+                RoadSegmentStore roads = OsmRoadReader.read(in);
+                roadPointFinder.setRoadIndex(new RoadSegmentIndex(roads));
+                metrics.registerGauge("roads.segments", roads::size);
+                Log.i("RoadIndex", "Indexed " + roads.size() + " segments of " + roads.roadCount() + " roads in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+            } catch (IOException e) {
+                Log.w("RoadIndex", "Could not load road extract " + file, e);
+            }
+        });
+    }
+    // Recorded points are queued in a log under files/uploads and sent in
+    // batches; anything an earlier run could not send goes out now.
+    private void initializeUploader() {
+        File directory = new File(getFilesDir(), "uploads");
+        UPLOADER_LIFECYCLE.execute(() -> {
+            try {
+                RoadPointUploader uploader = new RoadPointUploader(directory, proximityBackend);
+                metrics.registerGauge("upload.pending", uploader::pending);
+                uploader.start();
+                roadPointUploader = uploader;
+            } catch (IOException e) {
+                Log.w("RoadPointUploader", "Cannot open the upload log in " + directory, e);
+            }
+        });
+    }
+    private void initializeTileStore() {
+        tileStore = new PointTileStore(replayTracePath != null ? null : new File(getFilesDir(), "tiles"));
+        metrics.registerGauge("tiles.loaded", tileStore::tileCount);
+        tileExecutor.execute(() -> {
+            try {
+                tileStore.load();
+                cacheManager.enforceBudgets();
+            } catch (IOException e) {
+                Log.w("PointTiles", "Could not load point tiles", e);
+            }
+        });
+    }
+    // Memory budgets follow the heap the device gives the app (about 192 MB on
+    // a 2-3 GB phone): a sixteenth for map tile bitmaps and a thirty-second for
+    // point tiles. Disk budgets are fixed. Budgets are enforced after tiles are
+    // added and when the app is paused; onTrimMemory sheds more on top.
+    private void initializeCaches() {
+        long heap = Runtime.getRuntime().maxMemory();
+        long mapTileBytes = heap / 16;
+        MapTileCaches.configure(mapTileBytes, MAP_TILE_DISK_BYTES);
+        cacheManager.register("map_tiles.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_MAP_TILES,
+                mapTileBytes, MapTileCaches.memoryTier(() -> mapView));
+        cacheManager.register("map_tiles.disk", CacheManager.Storage.DISK, CacheManager.PRIORITY_MAP_TILES,
+                MAP_TILE_DISK_BYTES, MapTileCaches.diskTier(() -> mapView));
+        cacheManager.register("point_tiles.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_POINT_TILES,
+                heap / 32, tileStore.memoryTier());
+        cacheManager.register("point_tiles.disk", CacheManager.Storage.DISK, CacheManager.PRIORITY_POINT_TILES,
+                POINT_TILE_DISK_BYTES, tileStore.diskTier());
+        cacheManager.register("geocodes.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_GEOCODES,
+                GEOCODE_MEMORY_BYTES, geocodeCache.memoryTier());
+        cacheManager.register("geocodes.disk", CacheManager.Storage.DISK, CacheManager.PRIORITY_GEOCODES,
+                GEOCODE_DISK_BYTES, geocodeCache.diskTier());
+    }
+    private void prefetchTiles(Location location) {
+        float bearing = location.hasBearing() ? location.getBearing() : Float.NaN;
+        float speed = location.hasSpeed() ? location.getSpeed() : 0f;
+        for (String geohash : tileStore.claimTilesToRefresh(location.getLatitude(), location.getLongitude(), bearing, speed)) {
+            tileExecutor.execute(() -> {
+                try {
+                    tileStore.refresh(proximityBackend, geohash);
+                    cacheManager.enforceBudgets();
+                } catch (IOException e) {
+                    // Offline or server error; the stale copy (if any) keeps answering
+                    Log.d("PointTiles", "Tile " + geohash + " not refreshed: " + e.getMessage());
+                }
+            });
+        }
+    }
+    // Keeps the nearest-point display live from the location stream. Runs on the
+    // main thread: most fixes only re-measure the tracked points, and the full
+    // grid query it occasionally needs touches a few cells of the local tiles.
+    private void trackNearest(Location location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        PointGridIndex index = tileStore.coveringIndex(latitude, longitude, PointTileStore.SEARCH_RADIUS_METERS);
+        if (index == null) {
+            // Tiles for this area are still downloading; the button lookup still works
+            nearestTracker.reset();
+            metrics.increment("track.no_tiles");
+            return;
+        }
+        long start = LookupTrace.now();
+        boolean changed = nearestTracker.update(index, latitude, longitude);
+        metrics.recordNanos("track.update", LookupTrace.now() - start);
+        PointQueryResult nearest = nearestTracker.current();
+        if (nearest.isEmpty()) {
+            if (changed) {
+                resultTextView.setText("No points found nearby");
+                resultTextView2.setText("");
+            }
+            return;
+        }
+        resultTextView.setText(String.format("Distance: %.6f km", nearest.distance(0) / 1000.0));
+        if (changed) {
+            resultTextView2.setText("Nearest Road: " + nearestTracker.store().roadName(nearest.index(0)));
+        }
+    }
+    // Picks the next location schedule from the current speed and the distance
+    // to the nearest tracked point, and re-registers for updates when it changes
+    private void adaptSampling(Location location) {
+        double distanceToPoint = Double.NaN;
+        if (nearestTracker.store() != null) {
+            PointQueryResult nearest = nearestTracker.current();
+            // Nothing within the search radius: the nearest point is at least that far
+            distanceToPoint = nearest.isEmpty() ? PointTileStore.SEARCH_RADIUS_METERS : nearest.distance(0);
+        }
+        SamplingPolicy.Schedule next = samplingPolicy.select(speedOf(location), distanceToPoint);
+        if (next != activeSchedule) {
+            Log.d("SamplingPolicy", "Switching to " + next);
+            activeSchedule = next;
+            startLocationUpdates(); // replaces the request registered for locationCallback
+        }
+    }
+    // Reported speed, or one derived from the previous fix when the provider has none
+    private float speedOf(Location location) {
+        if (location.hasSpeed()) return location.getSpeed();
+        if (lastLocation == null) return Float.NaN;
+        long elapsedNanos = location.getElapsedRealtimeNanos() - lastLocation.getElapsedRealtimeNanos();
+        if (elapsedNanos <= 0) return Float.NaN;
+        return (float) (location.distanceTo(lastLocation) / (elapsedNanos / 1e9));
+    }
     private void initializeViews() {
         locationTextView = findViewById(R.id.locationTextView);
         resultTextView = findViewById(R.id.resultTextView);
@@ -123,6 +356,11 @@ public class MainActivity extends AppCompatActivity {
 
         Button invokeButton = findViewById(R.id.invokeButton);
         invokeButton.setOnClickListener(v -> invokeLambdaFunction());
+        // Hidden entry point to the latency statistics
+        invokeButton.setOnLongClickListener(v -> {
+            startActivity(new Intent(this, DebugStatsActivity.class));
+            return true;
+        });
 
     }
 
@@ -144,8 +382,12 @@ public class MainActivity extends AppCompatActivity {
             public void onLocationResult(@NonNull LocationResult locationResult) {
                 Location location = locationResult.getLastLocation();
                 if (location != null) {
+                    geocodeCache.onLocationChanged(location.getLatitude(), location.getLongitude());
+                    prefetchTiles(location);
                     updateSpeed(location);
                     locationLiveData.setValue(location);
+                    trackNearest(location);
+                    adaptSampling(location);
                     lastLocation = location;
                 } else {
                     Log.w("LocationCallback", "Received null location");
@@ -153,16 +395,8 @@ public class MainActivity extends AppCompatActivity {
             }
         };
     }
-    private long lastUpdateTime = 0;
-    private static final long UPDATE_INTERVAL = 2000; // 2 seconds
-
+    // Fixes arrive at the rate chosen by samplingPolicy, so every one is shown
     private void updateSpeed(Location location) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastUpdateTime < UPDATE_INTERVAL) {
-            return; // Skip update
-        }
-        lastUpdateTime = currentTime;
-
         if (location == null) {
             runOnUiThread(() -> speedTextView.setText("Speed unavailable"));
             return;
@@ -241,15 +475,19 @@ public class MainActivity extends AppCompatActivity {
         locationTextView.setText(locationText);
     }
     private void startLocationUpdates() {
+        if (replayTracePath != null) {
+            return; // the replayer stands in for the location provider
+        }
         if (!hasLocationPermissions()) {
             requestLocationPermissions();
             return;
         }
 
         try {
-            LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY)
-                    .setIntervalMillis(LOCATION_UPDATE_INTERVAL)
-                    .setMinUpdateIntervalMillis(LOCATION_UPDATE_INTERVAL)
+            SamplingPolicy.Schedule schedule = activeSchedule;
+            LocationRequest locationRequest = new LocationRequest.Builder(schedule.priority, schedule.intervalMillis)
+                    .setMinUpdateIntervalMillis(schedule.intervalMillis)
+                    .setMinUpdateDistanceMeters(schedule.minDistanceMeters)
                     .build();
 
             fusedLocationClient.requestLocationUpdates(locationRequest,
@@ -270,68 +508,116 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         stopLocationUpdates();
+        RoadPointUploader uploader = roadPointUploader;
+        if (uploader != null) uploader.flushSoon();
+        executorService.execute(() -> {
+            try {
+                geocodeCache.save();
+            } catch (IOException e) {
+                Log.w("GeocodeCache", "Could not save reverse geocode cache", e);
+            }
+            cacheManager.enforceBudgets();
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        trimExecutor.execute(() -> {
+            long freed = cacheManager.onTrimMemory(level);
+            Log.i("CacheManager", "Trim level " + level + " freed " + freed / 1024 + " KB");
+        });
     }
-    private void findNearestRoad(double latitude, double longitude) {
-        RoadPointFinder roadFinder = new RoadPointFinder();
-        roadFinder.getNearestRoad(latitude, longitude, new RoadPointFinder.RoadFinderCallback() {
 
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+    // The road name and the nearby points are looked up at the same time and
+    // shown together; see LookupPipeline. Every stage is timed into the trace
+    // (see LookupMetrics for where it ends up).
+    private void initializeLookupPipeline() {
+        LookupPipeline.PointsSource<NearbyView> points = new LookupPipeline.PointsSource<NearbyView>() {
+            @Override
+            public NearbyView load(double latitude, double longitude, LookupTrace trace)
+                    throws IOException, LookupPipeline.LookupException {
+                return loadNearby(latitude, longitude, trace);
+            }
 
             @Override
-            public void onSuccess(String roadName) {
-                if (roadName == null) {
-                    runOnUiThread(() -> showError("No road found nearby"));
-                    return;
+            public void cancel() {
+                // Tile lookups answer on the device; only a server lookup has a request to stop
+                transport.cancelLane(ProximityClient.NEARBY_LANE);
+            }
+        };
+        lookupPipeline = new LookupPipeline<>(roadPointFinder, points,
+                lookupExecutor, this::runOnUiThread, new LookupPipeline.Listener<NearbyView>() {
+            @Override
+            public void onResult(String roadName, NearbyView nearby) {
+                int nearestIndex = nearby.hits.index(0);
+                double nearestDistanceKm = nearby.hits.distance(0) / 1000.0;
+                locationTextView.setText("Latitude: " + nearby.store.latitude(nearestIndex)
+                        + "\nLongitude: " + nearby.store.longitude(nearestIndex));
+                if (overlayLayer != null) {
+                    overlayLayer.setPoints(nearby.clusters);
+                    overlayLayer.zoomTo(nearby.store, nearby.hits);
                 }
-
-                executorService.execute(() -> {
-                    // Perform network operation in a background thread
-                    List<Point> nearbyPoints = new ArrayList<>();
-                    String jsonBody = String.format(
-                            "{ \"action\": \"checkNearby\", \"latitude\": %.6f, \"longitude\": %.6f }",
-                           latitude,longitude
-                    );
-                    // HARD CODED
-                    // 23.2563714, 77.48669
-
-                    try {
-                        String response = checknearbypointsbyredis(jsonBody);
-                        JSONObject jsonResponse = new JSONObject(response);
-                        JSONArray pointsArray = jsonResponse.getJSONArray("nearbyPoints");
-                        for (int i = 0; i < pointsArray.length(); i++) {
-                            JSONObject pointObject = pointsArray.getJSONObject(i);
-                            double latitude = pointObject.getDouble("latitude");
-                            double longitude = pointObject.getDouble("longitude");
-                            String roadName1 = pointObject.getString("roadName");
-                            double distance = pointObject.getDouble("distance");// TODO unused
-                            nearbyPoints.add(new Point(roadName1, latitude, longitude, distance));
-                        }
-                        String locationText = "Latitude: " + nearbyPoints.get(0).latitude + "\nLongitude: " + nearbyPoints.get(0).longitude;
-                        locationTextView.setText(locationText);
-                        sendPostRequest(String.format(
-                                "{ \"action\": \"calculateDistance\", \"latitude1\": %.6f, \"longitude1\": %.6f, \"latitude2\": "+latitude+", \"longitude2\":"+longitude+" }",
-                                nearbyPoints.get(0).latitude, nearbyPoints.get(0).longitude
-                        ));
-                        runOnUiThread(() -> {
-                            updateMapWithPoints(mapView, nearbyPoints);
-                            resultTextView2.setText("Nearest Road: " + roadName);
-                        });
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        runOnUiThread(() -> showError("Network error: " + e.getMessage()));
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                        runOnUiThread(() -> showError("Parsing error: " + e.getMessage()));
-                    }
-                });
+                resultTextView.setText(String.format("Distance: %.6f km", nearestDistanceKm));
+                resultTextView2.setText("Nearest Road: " + roadName);
+                if (recordPoints) recordRoadPoint(roadName, nearby);
             }
 
-
             @Override
-            public void onFailure(String error) {
-                runOnUiThread(() -> showError("Failed to find road: " + error));
+            public void onError(String message) {
+                showError(message);
             }
         });
     }
+    // Queues the looked-up position for upload; the log write stays off the UI thread
+    private void recordRoadPoint(String roadName, NearbyView nearby) {
+        RoadPointUploader uploader = roadPointUploader;
+        if (uploader == null) return;
+        double distance = nearby.hits.distance(0);
+        executorService.execute(() -> {
+            try {
+                uploader.append(roadName, nearby.latitude, nearby.longitude, distance);
+            } catch (IOException e) {
+                Log.w("RoadPointUploader", "Could not record road point", e);
+            }
+        });
+    }
+    // Runs on lookupExecutor. Points come back sorted nearest first with their
+    // distances attached. Downloaded tiles answer on the device; the server is
+    // only asked while the tiles around this position are not on the device yet.
+    private NearbyView loadNearby(double latitude, double longitude, LookupTrace trace)
+            throws IOException, LookupPipeline.LookupException {
+        ProximityClient.NearbyResult nearby = tileStore.nearby(latitude, longitude,
+                PointTileStore.SEARCH_RADIUS_METERS);
+        if (nearby == null) {
+            trace.note("points", "server");
+            nearby = proximityBackend.checkNearbyWithDistance(latitude, longitude);
+        } else {
+            trace.note("points", "tiles");
+        }
+        if (nearby.hits.isEmpty()) {
+            throw new LookupPipeline.LookupException("no_points", "No points found nearby");
+        }
+        long clusterStart = LookupTrace.now();
+        PointClusterIndex clusters = clusterIndexFor(nearby.points);
+        trace.stage("cluster", clusterStart);
+        return new NearbyView(latitude, longitude, nearby.points, nearby.hits, clusters);
+    }
+    // Cluster aggregates for the points being shown. Local lookups keep answering
+    // from the same tile snapshot, so the aggregates are only rebuilt when it changes.
+    private synchronized PointClusterIndex clusterIndexFor(PointStore store) {
+        PointClusterIndex current = clusterIndex;
+        if (current == null || current.store() != store) {
+            current = new PointClusterIndex(store);
+            clusterIndex = current;
+        }
+        return current;
+    }
     private void invokeLambdaFunction() {
         //HARD CODED
         Location currentLocation = locationLiveData.getValue();
@@ -348,87 +634,19 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
+        LookupTrace trace = metrics.startTrace("lookup");
+        // How old the position being looked up is; a stale fix is often the real delay
+        trace.stageMillis("fix_age", (SystemClock.elapsedRealtimeNanos()
+                - currentLocation.getElapsedRealtimeNanos()) / 1_000_000);
         //findNearestRoad(23.252060147348807, 77.48537967398161);
-        findNearestRoad(currentLocation.getLatitude(), currentLocation.getLongitude());
+        lookupPipeline.start(currentLocation.getLatitude(), currentLocation.getLongitude(), trace);
     }
 
 
     private void stopLocationUpdates() {
+        if (replayTracePath != null) return;
         fusedLocationClient.removeLocationUpdates(locationCallback);
     }
-    private void sendPostRequest(String jsonBody) {
-        OkHttpClient client = new OkHttpClient();
-
-        // Define MediaType for JSON
-        MediaType JSON = MediaType.get("application/json; charset=utf-8");
-
-        // Create request body
-        RequestBody body = RequestBody.create(jsonBody, JSON);
-
-        // Create POST request
-        Request request = new Request.Builder()
-                .url(API_ENDPOINT) // Replace with your API Gateway URL
-                .post(body)
-                .build();
-
-        // Execute the request
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                runOnUiThread(() -> Toast.makeText(MainActivity.this, "Failed to connect: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    String responseBody = response.body() != null ? response.body().string() : "No response body";
-                    JSONObject jsonResponse = null;
-                    try {
-                        jsonResponse = new JSONObject(responseBody);
-                    } catch (JSONException e) {
-                        throw new RuntimeException(e);
-                    }
-                    String distance = jsonResponse.optString("distance", "N/A");
-                    String unit = jsonResponse.optString("unit", "");
-                    runOnUiThread(() -> resultTextView.setText("Distance: "+distance+" "+unit));
-                } else {
-                    runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error: " + response.code(), Toast.LENGTH_SHORT).show());
-                }
-            }
-        });
-    }
-    private String checknearbypointsbyredis(String jsonBody) throws IOException {
-        OkHttpClient client = new OkHttpClient();
-
-        // Define MediaType for JSON
-        MediaType JSON = MediaType.get("application/json; charset=utf-8");
-
-        // Create request body
-        RequestBody body = RequestBody.create(jsonBody, JSON);
-
-        // Create POST request
-        Request request = new Request.Builder()
-                .url(API_ENDPOINT) // Replace with your API Gateway URL
-                .post(body)
-                .build();
-
-        // Execute synchronously
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                String responseBody = response.body().string(); // Get the response as a string
-
-                // Parse the body if needed (e.g., JSON parsing)
-                return responseBody;
-            } else {
-                throw new IOException("Error: " + response.code());
-            }
-        }
-    }
-
-
-
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
-    private final OkHttpClient client = new OkHttpClient();
     private void showError(String message) {
         runOnUiThread(() ->
                 Toast.makeText(this, message, Toast.LENGTH_SHORT).show()
@@ -454,6 +672,74 @@ public class MainActivity extends AppCompatActivity {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
+    // Reads the trace named by EXTRA_REPLAY_TRACE and starts replaying it through
+    // locationCallback. Every replayed fix also runs a full lookup, traced as
+    // REPLAY_TRACE_KIND, so the report covers the whole location-to-map path.
+    private void loadReplayTrace() {
+        if (replayTracePath == null) return;
+        float speed = getIntent().getFloatExtra(EXTRA_REPLAY_SPEED, 1f);
+        File file = new File(replayTracePath);
+        if (!file.isAbsolute()) {
+            file = new File(getExternalFilesDir("replay"), replayTracePath);
+        }
+        File traceFile = file;
+        executorService.execute(() -> {
+            RecordedTrace trace;
+            try (InputStream in = new FileInputStream(traceFile)) {
+                trace = RecordedTrace.read(traceFile.getName(), in);
+            } catch (IOException e) {
+                Log.e("TraceReplay", "Cannot read trace " + traceFile, e);
+                showError("Cannot read trace: " + e.getMessage());
+                return;
+            }
+            runOnUiThread(() -> startReplay(trace, speed));
+        });
+    }
+    private void startReplay(RecordedTrace trace, float speed) {
+        if (isDestroyed()) return;
+        replayReport = new ReplayReport(trace.name(), speed, metrics, REPLAY_TRACE_KIND);
+        replayer = new TraceReplayer(trace, speed, mainHandler, locationCallback, new TraceReplayer.Listener() {
+            @Override
+            public void onFix(Location location) {
+                replayReport.fixDelivered();
+                replayReport.lookupStarted();
+                LookupTrace lookup = metrics.startTrace(REPLAY_TRACE_KIND);
+                lookup.stageMillis("fix_age", (SystemClock.elapsedRealtimeNanos()
+                        - location.getElapsedRealtimeNanos()) / 1_000_000);
+                lookupPipeline.start(location.getLatitude(), location.getLongitude(), lookup);
+            }
+
+            @Override
+            public void onComplete() {
+                finishReplay(SystemClock.uptimeMillis() + REPLAY_DRAIN_MILLIS);
+            }
+        });
+        Log.i("TraceReplay", "Replaying " + trace.size() + " fixes of " + trace.name() + " at " + speed + "x");
+        replayReport.start(trace.durationMillis());
+        replayer.start();
+    }
+    // Waits (up to the deadline) for lookups still in flight, then writes the
+    // report to the log and next to the traces. Lookups cancelled by the next
+    // fix finish as "superseded".
+    private void finishReplay(long deadlineUptimeMillis) {
+        if (replayReport.pending() > 0 && SystemClock.uptimeMillis() < deadlineUptimeMillis) {
+            mainHandler.postDelayed(() -> finishReplay(deadlineUptimeMillis), 250);
+            return;
+        }
+        String report = replayReport.finish();
+        Log.i("TraceReplay", report);
+        File reportFile = new File(getExternalFilesDir("replay"),
+                "report-" + System.currentTimeMillis() + ".txt");
+        executorService.execute(() -> {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8)) {
+                out.write(report);
+            } catch (IOException e) {
+                Log.w("TraceReplay", "Cannot write " + reportFile, e);
+            }
+        });
+        showToast("Replay finished, report in " + reportFile.getName());
+    }
+
     public void maploader(Location location) {
         if (location == null) {
             showError("Location not available for map.");
@@ -473,21 +759,17 @@ public class MainActivity extends AppCompatActivity {
 
                 // Enable tile downloading
                 mapView.setUseDataConnection(true);
+
+                // Only the initial zoom is set here, so the user's zoom (and the
+                // clustering level that follows it) is kept on later fixes
+                mapView.getController().setZoom(15.0);
+                overlayLayer = new PointOverlayLayer(mapView);
             }
 
-            // Set the map center and zoom level
+            // Follow the current location with the single "My Location" marker
             GeoPoint startPoint = new GeoPoint(location.getLatitude(), location.getLongitude());
-            mapView.getController().setZoom(15.0);
             mapView.getController().setCenter(startPoint);
-
-            // Add a marker for the current location
-            Marker marker = new Marker(mapView);
-            marker.setPosition(startPoint);
-            marker.setTitle("My Location");
-            mapView.getOverlays().add(marker);
-
-            // Force a refresh of the map
-            mapView.invalidate();
+            overlayLayer.setMyLocation(startPoint);
 
         } catch (Exception e) {
             showError("Error loading map: " + e.getMessage());
@@ -500,7 +782,20 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         stopLocationUpdates();
-        httpClient.dispatcher().executorService().shutdown();
-        httpClient.connectionPool().evictAll();
+        // The transport is shared process-wide; only drop what this screen started
+        lookupPipeline.cancel();
+        transport.cancelLane(ProximityClient.NEARBY_LANE);
+        transport.cancelLane(RoadPointFinder.GEOCODE_LANE);
+        transport.cancelLanes(ProximityClient.TILE_LANES);
+        tileExecutor.shutdownNow();
+        lookupExecutor.shutdownNow();
+        trimExecutor.shutdown();
+        UPLOADER_LIFECYCLE.execute(() -> {
+            RoadPointUploader uploader = roadPointUploader;
+            if (uploader != null) uploader.close();
+        });
+        if (replayer != null) {
+            replayer.stop();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.saurabh.proximity;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.tileprovider.modules.IFilesystemCache;
+import org.osmdroid.tileprovider.modules.SqlTileWriter;
+import org.osmdroid.views.MapView;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+// osmdroid's two tile caches as CacheTiers: the decoded bitmaps it keeps in
+// memory for the map on screen, and the downloaded tiles in its SQLite cache
+// under getCacheDir()/osmdroid/tile.
+//
+// osmdroid does the eviction itself; these tiers only set its limits.
+// configure() must run before the MapView is created, because the map reads
+// the memory limit only once, when it starts.
+final class MapTileCaches {
+    static final long TILE_BITMAP_BYTES = 256 * 256 * 4; // ARGB_8888
+    // A screenful of tiles and a border around it; osmdroid drops below this anyway
+    private static final int MIN_MEMORY_TILES = 9;
+
+    private MapTileCaches() {
+    }
+
+    static void configure(long memoryBudgetBytes, long diskBudgetBytes) {
+        Configuration configuration = Configuration.getInstance();
+        long tiles = Math.max(MIN_MEMORY_TILES, memoryBudgetBytes / TILE_BITMAP_BYTES);
+        configuration.setCacheMapTileCount((short) Math.min(Short.MAX_VALUE, tiles));
+        setDiskLimit(diskBudgetBytes);
+    }
+
+    // Tile bitmaps held by the map that mapView returns, if any has been created yet
+    static CacheTier memoryTier(Supplier<MapView> mapView) {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                MapView view = mapView.get();
+                return view != null ? view.getTileProvider().getTileCache().getSize() * TILE_BITMAP_BYTES : 0;
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                MapView view = mapView.get();
+                if (view == null) return;
+                // The cache cannot be shrunk in part; the tiles on screen are
+                // decoded again from the disk cache on the next draw
+                view.getTileProvider().clearTileCache();
+            }
+
+            // osmdroid holds the bitmaps to setCacheMapTileCount on its own, so
+            // clearing them is kept for real memory pressure
+            @Override
+            public boolean selfLimiting() {
+                return true;
+            }
+        };
+    }
+
+    // The SQLite tile cache. Trimming goes through the tile writer of the map
+    // that mapView returns: a writer of our own would share osmdroid's database
+    // handle, and detaching it would close the database under the live map.
+    // Before a map exists only the limits change; osmdroid applies them on its
+    // next write.
+    static CacheTier diskTier(Supplier<MapView> mapView) {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                return directorySize(Configuration.getInstance().getOsmdroidTileCache());
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                setDiskLimit(maxBytes);
+                MapView view = mapView.get();
+                if (view == null) return;
+                IFilesystemCache writer = view.getTileProvider().getTileWriter();
+                if (writer instanceof SqlTileWriter) {
+                    ((SqlTileWriter) writer).runCleanupOperation();
+                }
+            }
+        };
+    }
+
+    // osmdroid trims its database back to the trim size whenever it passes the maximum
+    private static void setDiskLimit(long maxBytes) {
+        Configuration configuration = Configuration.getInstance();
+        configuration.setTileFileSystemCacheMaxBytes(maxBytes);
+        configuration.setTileFileSystemCacheTrimBytes(maxBytes / 10 * 8);
+    }
+
+    private static long directorySize(File directory) {
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null) return 0;
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.isDirectory() ? directorySize(file) : file.length();
+        }
+        return bytes;
+    }
+}
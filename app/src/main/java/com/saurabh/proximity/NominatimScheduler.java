@@ -0,0 +1,282 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.DistanceKernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Paces reverse geocoding requests to Nominatim's usage policy (at most one
+// request per second from the app) while keeping the answers as fresh as that
+// allows.
+//
+//  - A token bucket holds up to `burst` requests and refills at
+//    `requestsPerSecond`; a request only goes out when it can take a token.
+//  - Waiting requests sit in a small queue that is always served newest first.
+//    When it is full the oldest is dropped, and a request that has waited
+//    longer than maxWaitMillis is dropped instead of being sent: by then the
+//    user has moved on, and it would only spend a token a fresh fix needs.
+//  - A request within mergeMeters of one already queued (or of the one on the
+//    wire) joins it instead of becoming a request of its own; the queued one
+//    moves to the newest position and all its callers get the same answer.
+//
+// Nominatim's limit is per application, so the app shares one scheduler (get())
+// with one token bucket and one timer thread, however many RoadPointFinders
+// there are. Each request names its Sender, and only requests with the same
+// Sender are merged.
+//
+// Every caller is called back exactly once: a dropped request fails with
+// "dropped" (pushed out of a full queue) or "expired" (waited too long), so
+// callers can finish their traces. The scheduler only decides when a request
+// goes out; the Sender does the HTTP work.
+class NominatimScheduler {
+    static final double DEFAULT_REQUESTS_PER_SECOND = 1.0;
+    static final int DEFAULT_BURST = 1;
+    static final double DEFAULT_MERGE_METERS = 25;
+    static final int DEFAULT_MAX_QUEUED = 2;
+    static final long DEFAULT_MAX_WAIT_MILLIS = 5000;
+
+    private final double tokensPerMilli;
+    private final int burst;
+    private final double mergeMeters;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    private final LongSupplier clockMillis;
+    private final Wakeup wakeup;
+    private final LookupMetrics metrics = LookupMetrics.get();
+
+    private static volatile NominatimScheduler instance;
+
+    // Guarded by this
+    private final List<Pending> queue = new ArrayList<>();  // oldest first
+    private Pending inFlight;
+    private double tokens;
+    private long refilledAt;
+    private boolean wakeupPending;
+
+    interface Sender {
+        // Sends the request and calls back exactly once, also when a newer
+        // request replaces it on the wire
+        void send(double latitude, double longitude, RoadPointFinder.RoadFinderCallback callback);
+    }
+
+    interface Wakeup {
+        // Runs dispatch after delayMillis, on any thread
+        void wakeAfter(long delayMillis, Runnable dispatch);
+    }
+
+    private static final class Pending {
+        final Sender sender;
+        double latitude;
+        double longitude;
+        final long queuedAt;
+        final List<RoadPointFinder.RoadFinderCallback> callbacks = new ArrayList<>();
+
+        Pending(Sender sender, double latitude, double longitude, long queuedAt) {
+            this.sender = sender;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    static NominatimScheduler get() {
+        if (instance == null) {
+            synchronized (NominatimScheduler.class) {
+                if (instance == null) {
+                    instance = new NominatimScheduler(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_BURST,
+                            DEFAULT_MERGE_METERS, DEFAULT_MAX_QUEUED, DEFAULT_MAX_WAIT_MILLIS,
+                            () -> System.nanoTime() / 1_000_000, executorWakeup());
+                }
+            }
+        }
+        return instance;
+    }
+
+    NominatimScheduler(double requestsPerSecond, int burst, double mergeMeters, int maxQueued,
+                       long maxWaitMillis, LongSupplier clockMillis, Wakeup wakeup) {
+        if (!(requestsPerSecond > 0) || burst <= 0 || maxQueued <= 0 || maxWaitMillis <= 0 || mergeMeters < 0) {
+            throw new IllegalArgumentException("Rate, burst, queue size and wait must be positive");
+        }
+        this.tokensPerMilli = requestsPerSecond / 1000.0;
+        this.burst = burst;
+        this.mergeMeters = mergeMeters;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.clockMillis = clockMillis;
+        this.wakeup = wakeup;
+        this.tokens = burst;
+        this.refilledAt = clockMillis.getAsLong();
+    }
+
+    void submit(Sender sender, double latitude, double longitude, RoadPointFinder.RoadFinderCallback callback) {
+        List<Pending> dropped = new ArrayList<>();
+        synchronized (this) {
+            long now = clockMillis.getAsLong();
+            if (inFlight != null && near(inFlight, sender, latitude, longitude)) {
+                inFlight.callbacks.add(callback);
+                metrics.increment("geocode.scheduler.merged");
+                return;
+            }
+            Pending pending = null;
+            for (int i = queue.size() - 1; i >= 0; i--) {
+                if (near(queue.get(i), sender, latitude, longitude)) {
+                    pending = queue.remove(i);
+                    pending.latitude = latitude;
+                    pending.longitude = longitude;
+                    metrics.increment("geocode.scheduler.merged");
+                    break;
+                }
+            }
+            if (pending == null) {
+                pending = new Pending(sender, latitude, longitude, now);
+            }
+            pending.callbacks.add(callback);
+            queue.add(pending);
+            while (queue.size() > maxQueued) {
+                dropped.add(queue.remove(0));
+                metrics.increment("geocode.scheduler.superseded");
+            }
+        }
+        fail(dropped, "dropped");
+        dispatchReady();
+    }
+
+    // Sends the newest waiting request if a token is free, and arranges to be
+    // called again while requests are left waiting. Returns how long until the
+    // next one can go, or -1 when nothing is waiting.
+    long dispatchReady() {
+        Pending next = null;
+        long delay;
+        List<Pending> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = clockMillis.getAsLong();
+            dropExpired(now, expired);
+            refill(now);
+            if (queue.isEmpty()) {
+                delay = -1;
+            } else if (tokens < 1) {
+                delay = millisUntilToken();
+                scheduleWakeup(delay);
+            } else {
+                tokens -= 1;
+                next = queue.remove(queue.size() - 1);
+                inFlight = next;
+                metrics.recordNanos("geocode.scheduler.wait", TimeUnit.MILLISECONDS.toNanos(now - next.queuedAt));
+                metrics.increment("geocode.scheduler.sent");
+                delay = queue.isEmpty() ? -1 : millisUntilToken();
+                if (delay >= 0) scheduleWakeup(delay);
+            }
+        }
+        fail(expired, "expired");
+        if (next == null) return delay;
+        final Pending sent = next;
+        sent.sender.send(sent.latitude, sent.longitude, new RoadPointFinder.RoadFinderCallback() {
+            @Override
+            public void onSuccess(String roadName) {
+                for (RoadPointFinder.RoadFinderCallback callback : complete(sent)) {
+                    callback.onSuccess(roadName);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                for (RoadPointFinder.RoadFinderCallback callback : complete(sent)) {
+                    callback.onFailure(error);
+                }
+            }
+        });
+        return delay;
+    }
+
+    // Forgets a caller that no longer wants its answer; it is not called back.
+    // A queued request left without callers is dropped. Returns true when the
+    // request on the wire is left without callers, so whoever owns its Sender
+    // can cancel it; a new request is then never merged into it.
+    synchronized boolean cancel(RoadPointFinder.RoadFinderCallback callback) {
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            Pending pending = queue.get(i);
+            if (pending.callbacks.remove(callback) && pending.callbacks.isEmpty()) {
+                queue.remove(i);
+                metrics.increment("geocode.scheduler.cancelled");
+            }
+        }
+        if (inFlight == null || !inFlight.callbacks.remove(callback) || !inFlight.callbacks.isEmpty()) {
+            return false;
+        }
+        inFlight = null;
+        return true;
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    private synchronized List<RoadPointFinder.RoadFinderCallback> complete(Pending sent) {
+        if (inFlight == sent) inFlight = null;
+        return new ArrayList<>(sent.callbacks);
+    }
+
+    // Called without holding this, like the Sender's callbacks
+    private static void fail(List<Pending> dropped, String error) {
+        for (Pending pending : dropped) {
+            for (RoadPointFinder.RoadFinderCallback callback : pending.callbacks) {
+                callback.onFailure(error);
+            }
+        }
+    }
+
+    // Caller holds this. One wakeup at a time is enough: each one that runs
+    // schedules the next while requests are waiting.
+    private void scheduleWakeup(long delayMillis) {
+        if (wakeupPending) return;
+        wakeupPending = true;
+        wakeup.wakeAfter(Math.max(1, delayMillis), this::onWakeup);
+    }
+
+    private void onWakeup() {
+        synchronized (this) {
+            wakeupPending = false;
+        }
+        dispatchReady();
+    }
+
+    // Caller holds this
+    private long millisUntilToken() {
+        return (long) Math.ceil(Math.max(0, 1 - tokens) / tokensPerMilli);
+    }
+
+    // Caller holds this
+    private void dropExpired(long now, List<Pending> expired) {
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            if (now - queue.get(i).queuedAt > maxWaitMillis) {
+                expired.add(queue.remove(i));
+                metrics.increment("geocode.scheduler.expired");
+            }
+        }
+    }
+
+    // Caller holds this
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerMilli);
+            refilledAt = now;
+        }
+    }
+
+    private boolean near(Pending pending, Sender sender, double latitude, double longitude) {
+        return pending.sender == sender && DistanceKernel.haversine(pending.latitude, pending.longitude, latitude, longitude) <= mergeMeters;
+    }
+
+    private static Wakeup executorWakeup() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nominatim-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return (delayMillis, dispatch) -> timer.schedule(dispatch, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,218 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+// Compact binary point-list encoding shared with the Lambda (location/pointCodec.js).
+//
+// Layout (integers are unsigned LEB128 varints unless noted):
+//   "PXP" magic, format version (1 byte), flags (1 byte, bit 0 = distances present)
+//   road name count, then for each name: UTF-8 byte length, UTF-8 bytes
+//   point count, then for each point:
+//     zigzag(latitude * 1e6 - previous), zigzag(longitude * 1e6 - previous),
+//     road name index,
+//     [zigzag(distance in mm - previous)]   only when flag bit 0 is set
+//
+// Tiles (getTile responses and the files PointTileStore keeps) wrap a point list:
+//   "PXT" magic, format version (1 byte), flags (1 byte, bit 0 = not modified)
+//   tile version: UTF-8 byte length, UTF-8 bytes
+//   the point encoding above, only when the tile was modified
+final class PointCodec {
+    static final String MEDIA_TYPE = "application/x-proximity-points";
+    static final ByteString MAGIC = ByteString.encodeUtf8("PXP");
+    static final ByteString TILE_MAGIC = ByteString.encodeUtf8("PXT");
+    private static final int VERSION = 1;
+    private static final int FLAG_DISTANCES = 1;
+    private static final int FLAG_NOT_MODIFIED = 1;
+    private static final double FIXED_POINT_SCALE = 1e6;
+    // Counts come off the wire (or a tile file), so arrays start at most this
+    // big and grow as records are actually read
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+    private static final int MIN_NAME_BYTES = 1;  // the length varint
+    private static final int MIN_POINT_BYTES = 3; // three one-byte varints
+
+    private PointCodec() {
+    }
+
+    static boolean isEncoded(BufferedSource source) throws IOException {
+        return source.rangeEquals(0, MAGIC);
+    }
+
+    static ProximityClient.NearbyResult decode(BufferedSource source) throws IOException {
+        if (!isEncoded(source)) {
+            throw new ProtocolException("Not a proximity point encoding");
+        }
+        source.skip(MAGIC.size());
+        int version = source.readByte() & 0xff;
+        if (version != VERSION) {
+            throw new ProtocolException("Unsupported point encoding version " + version);
+        }
+        boolean withDistances = (source.readByte() & FLAG_DISTANCES) != 0;
+
+        int nameCount = readCount(source, MIN_NAME_BYTES);
+        List<String> names = new ArrayList<>(Math.min(nameCount, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < nameCount; i++) {
+            names.add(source.readUtf8(readVarint(source)));
+        }
+
+        int count = readCount(source, withDistances ? MIN_POINT_BYTES + 1 : MIN_POINT_BYTES);
+        PointStore store = new PointStore(Math.min(count, MAX_INITIAL_CAPACITY));
+        int[] roadIds = new int[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            roadIds[i] = store.internRoadName(names.get(i));
+        }
+        PointQueryResult hits = new PointQueryResult(Math.min(count, MAX_INITIAL_CAPACITY));
+        long lat = 0;
+        long lon = 0;
+        long distance = 0;
+        for (int i = 0; i < count; i++) {
+            lat += unzigzag(readVarint(source));
+            lon += unzigzag(readVarint(source));
+            long nameIndex = readVarint(source);
+            if (nameIndex >= nameCount) {
+                throw new ProtocolException("Road name index out of range: " + nameIndex);
+            }
+            int index = store.addWithRoadId(roadIds[(int) nameIndex], lat / FIXED_POINT_SCALE, lon / FIXED_POINT_SCALE);
+            if (withDistances) {
+                distance += unzigzag(readVarint(source));
+                hits.add(index, distance / 1000.0); // mm -> m
+            } else {
+                hits.add(index, Double.NaN);
+            }
+        }
+        return new ProximityClient.NearbyResult(store, hits);
+    }
+
+    // Writes hits (in order) from store. Distances are written when every hit has one.
+    static void encode(PointStore store, PointQueryResult hits, BufferedSink sink) throws IOException {
+        int count = hits.count();
+        boolean withDistances = count > 0;
+        for (int i = 0; i < count && withDistances; i++) {
+            withDistances = !Double.isNaN(hits.distance(i));
+        }
+
+        // Road name table in first-use order, indexed by store road id
+        int[] nameIndexOfRoad = new int[Math.max(1, store.roadCount())];
+        Arrays.fill(nameIndexOfRoad, -1);
+        int nameCount = 0;
+        int[] roadOfName = new int[Math.max(1, store.roadCount())];
+        for (int i = 0; i < count; i++) {
+            int roadId = store.roadId(hits.index(i));
+            if (nameIndexOfRoad[roadId] < 0) {
+                nameIndexOfRoad[roadId] = nameCount;
+                roadOfName[nameCount++] = roadId;
+            }
+        }
+
+        sink.write(MAGIC);
+        sink.writeByte(VERSION);
+        sink.writeByte(withDistances ? FLAG_DISTANCES : 0);
+        writeVarint(sink, nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            ByteString name = ByteString.encodeUtf8(store.roadNameForId(roadOfName[i]));
+            writeVarint(sink, name.size());
+            sink.write(name);
+        }
+
+        writeVarint(sink, count);
+        long prevLat = 0;
+        long prevLon = 0;
+        long prevDistance = 0;
+        for (int i = 0; i < count; i++) {
+            int index = hits.index(i);
+            long lat = Math.round(store.latitude(index) * FIXED_POINT_SCALE);
+            long lon = Math.round(store.longitude(index) * FIXED_POINT_SCALE);
+            writeVarint(sink, zigzag(lat - prevLat));
+            writeVarint(sink, zigzag(lon - prevLon));
+            writeVarint(sink, nameIndexOfRoad[store.roadId(index)]);
+            prevLat = lat;
+            prevLon = lon;
+            if (withDistances) {
+                long distance = Math.round(hits.distance(i) * 1000.0); // m -> mm
+                writeVarint(sink, zigzag(distance - prevDistance));
+                prevDistance = distance;
+            }
+        }
+    }
+
+    static ProximityClient.TileResult decodeTile(BufferedSource source) throws IOException {
+        if (!source.rangeEquals(0, TILE_MAGIC)) {
+            throw new ProtocolException("Not a proximity tile encoding");
+        }
+        source.skip(TILE_MAGIC.size());
+        int version = source.readByte() & 0xff;
+        if (version != VERSION) {
+            throw new ProtocolException("Unsupported tile encoding version " + version);
+        }
+        boolean notModified = (source.readByte() & FLAG_NOT_MODIFIED) != 0;
+        String tileVersion = source.readUtf8(readVarint(source));
+        PointStore points = notModified ? null : decode(source).points;
+        return new ProximityClient.TileResult(tileVersion, points);
+    }
+
+    // Writes a tile holding every point of store; a null store writes a "not modified" tile
+    static void encodeTile(String tileVersion, PointStore store, BufferedSink sink) throws IOException {
+        ByteString version = ByteString.encodeUtf8(tileVersion);
+        sink.write(TILE_MAGIC);
+        sink.writeByte(VERSION);
+        sink.writeByte(store == null ? FLAG_NOT_MODIFIED : 0);
+        writeVarint(sink, version.size());
+        sink.write(version);
+        if (store != null) {
+            PointQueryResult all = new PointQueryResult(store.size());
+            for (int i = 0; i < store.size(); i++) {
+                all.add(i, Double.NaN);
+            }
+            encode(store, all, sink);
+        }
+    }
+
+    // Reads a record count and checks that the rest of the input is long enough
+    // for that many records of at least minRecordBytes each
+    private static int readCount(BufferedSource source, int minRecordBytes) throws IOException {
+        long count = readVarint(source);
+        if (count > Integer.MAX_VALUE) {
+            throw new ProtocolException("Count out of range: " + count);
+        }
+        if (!source.request(count * minRecordBytes)) {
+            throw new ProtocolException("Count " + count + " is more than the remaining bytes can hold");
+        }
+        return (int) count;
+    }
+
+    static long readVarint(BufferedSource source) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = source.readByte() & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) return value;
+        }
+        throw new ProtocolException("Varint too long");
+    }
+
+    static void writeVarint(BufferedSink sink, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            sink.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        sink.writeByte((int) value);
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,198 @@
+package com.saurabh.proximity;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.FolderOverlay;
+import org.osmdroid.views.overlay.Marker;
+
+import com.saurabh.proximity.core.PointClusterIndex;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Owns every marker the app puts on the map.
+//
+// There is exactly one "My Location" marker, moved on each fix. Point markers
+// come from a pool and are only created for what is on screen: after each pan
+// or zoom (coalesced to one refresh per frame) the visible cells of a
+// PointClusterIndex are read and each gets a recycled marker, either for its
+// single point or as a cluster icon showing the count. The overlay list
+// therefore stays at most MAX_MARKERS + 1 long however many points are loaded.
+//
+// Main thread only.
+class PointOverlayLayer implements MapListener {
+    static final int MAX_MARKERS = 400;
+    private static final int CLUSTER_ICON_DP = 36;
+
+    private final MapView mapView;
+    private final Marker locationMarker;
+    private final FolderOverlay pointFolder = new FolderOverlay();
+    private final List<Marker> active = new ArrayList<>();
+    private final ArrayDeque<Marker> pool = new ArrayDeque<>();
+    private final Map<String, Drawable> clusterIcons = new HashMap<>();
+    private final Runnable refreshTask = this::refresh;
+    private final PointClusterIndex.Visitor placeMarker = this::placeMarker;
+    private Drawable pointIcon;
+    private PointClusterIndex clusters;
+    private boolean refreshPosted;
+
+    PointOverlayLayer(MapView mapView) {
+        this.mapView = mapView;
+        locationMarker = new Marker(mapView);
+        locationMarker.setTitle("My Location");
+        locationMarker.setEnabled(false); // hidden until the first fix
+        mapView.getOverlays().add(pointFolder);
+        mapView.getOverlays().add(locationMarker); // drawn above the points
+        mapView.addMapListener(this);
+    }
+
+    void setMyLocation(GeoPoint position) {
+        locationMarker.setPosition(position);
+        locationMarker.setEnabled(true);
+        mapView.invalidate();
+    }
+
+    // Shows the points of clusters.store(); pass null to remove them
+    void setPoints(PointClusterIndex clusters) {
+        this.clusters = clusters;
+        requestRefresh();
+    }
+
+    // Moves the map so the given hits are all in view
+    void zoomTo(PointStore store, PointQueryResult hits) {
+        if (hits.isEmpty()) return;
+        double north = -90;
+        double south = 90;
+        double east = -180;
+        double west = 180;
+        for (int i = 0; i < hits.count(); i++) {
+            int index = hits.index(i);
+            north = Math.max(north, store.latitude(index));
+            south = Math.min(south, store.latitude(index));
+            east = Math.max(east, store.longitude(index));
+            west = Math.min(west, store.longitude(index));
+        }
+        mapView.zoomToBoundingBox(new BoundingBox(north, east, south, west), true);
+    }
+
+    @Override
+    public boolean onScroll(ScrollEvent event) {
+        requestRefresh();
+        return false;
+    }
+
+    @Override
+    public boolean onZoom(ZoomEvent event) {
+        requestRefresh();
+        return false;
+    }
+
+    int markerCount() {
+        return active.size();
+    }
+
+    private void requestRefresh() {
+        if (refreshPosted) return;
+        refreshPosted = true;
+        mapView.postOnAnimation(refreshTask);
+    }
+
+    private void refresh() {
+        refreshPosted = false;
+        for (Marker marker : active) {
+            marker.closeInfoWindow();
+            pool.push(marker);
+        }
+        active.clear();
+        pointFolder.getItems().clear();
+
+        if (clusters != null) {
+            BoundingBox box = mapView.getBoundingBox();
+            clusters.query(mapView.getZoomLevelDouble(), box.getLatSouth(), box.getLonWest(),
+                    box.getLatNorth(), box.getLonEast(), MAX_MARKERS, placeMarker);
+        }
+        mapView.invalidate();
+    }
+
+    private void placeMarker(double latitude, double longitude, int count, int representative) {
+        Marker marker = pool.isEmpty() ? newMarker() : pool.pop();
+        if (count == 1) {
+            PointStore store = clusters.store();
+            double lat = store.latitude(representative);
+            double lon = store.longitude(representative);
+            marker.setPosition(new GeoPoint(lat, lon));
+            marker.setIcon(pointIcon);
+            marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
+            marker.setTitle(String.format(Locale.US, "Lat: %.6f, Lon: %.6f", lat, lon));
+            marker.setSnippet(store.roadName(representative));
+        } else {
+            marker.setPosition(new GeoPoint(latitude, longitude));
+            marker.setIcon(clusterIcon(count));
+            marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_CENTER);
+            marker.setTitle(count + " points");
+            marker.setSnippet(null);
+        }
+        pointFolder.add(marker);
+        active.add(marker);
+    }
+
+    private Marker newMarker() {
+        Marker marker = new Marker(mapView);
+        if (pointIcon == null) {
+            pointIcon = marker.getIcon(); // osmdroid's default pin
+        }
+        return marker;
+    }
+
+    // Counts are rounded down to one significant digit, so only a few dozen icons exist
+    static String clusterLabel(int count) {
+        if (count < 10) return Integer.toString(count);
+        int magnitude = 10;
+        while (count / magnitude >= 10) {
+            magnitude *= 10;
+        }
+        int leading = count / magnitude * magnitude;
+        return leading >= 1000 ? (leading / 1000) + "k+" : leading + "+";
+    }
+
+    // Icons are shared by every cluster with the same label
+    private Drawable clusterIcon(int count) {
+        String label = clusterLabel(count);
+        Drawable icon = clusterIcons.get(label);
+        if (icon != null) return icon;
+
+        Resources resources = mapView.getContext().getResources();
+        int size = Math.round(CLUSTER_ICON_DP * resources.getDisplayMetrics().density);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.argb(200, 33, 150, 243));
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+        paint.setColor(Color.WHITE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setTextSize(size * (label.length() > 3 ? 0.3f : 0.4f));
+        canvas.drawText(label, size / 2f, size / 2f - (paint.descent() + paint.ascent()) / 2f, paint);
+
+        icon = new BitmapDrawable(resources, bitmap);
+        clusterIcons.put(label, icon);
+        return icon;
+    }
+}
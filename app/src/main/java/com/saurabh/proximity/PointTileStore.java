@@ -0,0 +1,463 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.DistanceKernel;
+import com.saurabh.proximity.core.Geohash;
+import com.saurabh.proximity.core.PointGridIndex;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+// Offline copy of the server's road points, split into geohash tiles.
+//
+// Tiles are downloaded around the user and ahead of them along their direction
+// of travel, and kept on disk (one PointCodec tile file per geohash) with the
+// version stamp the server gave them. Proximity queries are then answered from
+// the tiles on the device; the network is only used to refresh tiles that are
+// missing or older than maxAgeMillis, and a stale tile keeps answering until
+// its refresh lands, so lookups keep working in coverage gaps.
+//
+// All loaded tiles are merged into one PointStore and PointGridIndex, which is
+// swapped in whole whenever the tile set changes. The merge runs outside the
+// store's lock and is published with one volatile write, so queries read the
+// snapshot without locking and claimTilesToRefresh() (called on the main
+// thread) never waits for a rebuild. The loading and refreshing methods do
+// blocking I/O and must run off the main thread.
+//
+// memoryTier() and diskTier() let CacheManager hold the loaded tiles and the
+// tile files to a budget. Tiles the user has not needed for longest go first;
+// those around and ahead of the user are never dropped. A tile dropped from
+// memory is read back from its file the next time it is needed.
+class PointTileStore {
+    static final int TILE_PRECISION = 5;                  // ~4.9 x 4.9 km at the equator
+    static final double SEARCH_RADIUS_METERS = 2000;      // same radius as checkNearby in location/index.js
+    static final long DEFAULT_MAX_AGE_MILLIS = 15 * 60 * 1000;
+    static final int DEFAULT_MAX_TILES = 64;
+    // Two copies of each point (the tile's and the merged store's: two doubles
+    // and a road id each) plus the grid's index entry, rounded up
+    static final int BYTES_PER_POINT = 48;
+    private static final double LOOKAHEAD_SECONDS = 120;
+    private static final double MIN_LOOKAHEAD_METERS = 2000;
+    private static final double MIN_MOVING_SPEED = 1.0;  // m/s; below this the bearing is noise
+    private static final String FILE_SUFFIX = ".pxt";
+
+    private final File directory;
+    private final long maxAgeMillis;
+    private final int maxTiles;
+    private final Map<String, Tile> tiles = new HashMap<>();
+    private final Set<String> pending = new HashSet<>();
+    // When each loaded tile was last around or ahead of the user
+    private final Map<String, Long> wantedAt = new HashMap<>();
+    private Set<String> wantedNow = Collections.emptySet();
+    private long tileSetVersion;  // bumped on every change to tiles
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    static final class Tile {
+        final String geohash;
+        final String version;
+        final long fetchedAt;
+        final PointStore points;
+
+        Tile(String geohash, String version, long fetchedAt, PointStore points) {
+            this.geohash = geohash;
+            this.version = version;
+            this.fetchedAt = fetchedAt;
+            this.points = points;
+        }
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Collections.<String>emptySet(), new PointStore(1));
+
+        final long tileSetVersion;
+        final Set<String> geohashes;
+        final PointGridIndex index;
+
+        Snapshot(long tileSetVersion, Set<String> geohashes, PointStore store) {
+            this.tileSetVersion = tileSetVersion;
+            this.geohashes = geohashes;
+            this.index = new PointGridIndex(store);
+        }
+    }
+
+    PointTileStore(File directory) {
+        this(directory, DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_TILES);
+    }
+
+    PointTileStore(File directory, long maxAgeMillis, int maxTiles) {
+        if (maxAgeMillis <= 0 || maxTiles <= 0) {
+            throw new IllegalArgumentException("Tile age and tile count limits must be positive");
+        }
+        this.directory = directory;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxTiles = maxTiles;
+    }
+
+    // Points within radiusMeters of (latitude, longitude), nearest first, with
+    // distances in meters -- the on-device equivalent of checkNearbyWithDistance.
+    // Returns null when a tile the search circle touches has not been downloaded,
+    // in which case the caller has to ask the server.
+    ProximityClient.NearbyResult nearby(double latitude, double longitude, double radiusMeters) {
+        PointGridIndex index = coveringIndex(latitude, longitude, radiusMeters);
+        if (index == null) return null;
+        PointQueryResult hits = index.nearest(latitude, longitude, index.size(), radiusMeters, new PointQueryResult());
+        return new ProximityClient.NearbyResult(index.store(), hits);
+    }
+
+    // Index over all loaded tiles, or null if a tile within radiusMeters of
+    // (latitude, longitude) is missing. The index is replaced, not modified,
+    // when tiles change, so callers can keep using the one they got.
+    PointGridIndex coveringIndex(double latitude, double longitude, double radiusMeters) {
+        Snapshot current = snapshot;
+        for (String geohash : Geohash.covering(latitude, longitude, radiusMeters, TILE_PRECISION)) {
+            if (!current.geohashes.contains(geohash)) return null;
+        }
+        return current.index;
+    }
+
+    // Tiles worth downloading for a user at (latitude, longitude): those around
+    // the user first, then those around where they will be in LOOKAHEAD_SECONDS
+    // at the current speed and bearing. Only tiles that are missing or stale and
+    // not already being fetched are returned; they are marked as pending until
+    // refresh() is called for them.
+    synchronized List<String> claimTilesToRefresh(double latitude, double longitude, float bearingDegrees,
+                                                  float speedMetersPerSecond) {
+        Set<String> wanted = new LinkedHashSet<>(
+                Geohash.covering(latitude, longitude, SEARCH_RADIUS_METERS, TILE_PRECISION));
+        if (speedMetersPerSecond >= MIN_MOVING_SPEED && !Float.isNaN(bearingDegrees)) {
+            double ahead = Math.max(MIN_LOOKAHEAD_METERS, speedMetersPerSecond * LOOKAHEAD_SECONDS);
+            double[] destination = destination(latitude, longitude, bearingDegrees, ahead);
+            wanted.addAll(Geohash.covering(destination[0], destination[1], SEARCH_RADIUS_METERS, TILE_PRECISION));
+        }
+
+        long now = System.currentTimeMillis();
+        wantedNow = wanted;
+        List<String> claimed = new ArrayList<>();
+        for (String geohash : wanted) {
+            Tile tile = tiles.get(geohash);
+            if (tile != null) {
+                wantedAt.put(geohash, now);
+            }
+            boolean fresh = tile != null && now - tile.fetchedAt <= maxAgeMillis;
+            if (!fresh && pending.add(geohash)) {
+                claimed.add(geohash);
+            }
+        }
+        return claimed;
+    }
+
+    // Downloads (or revalidates) one tile and installs it. Always releases the
+    // pending mark set by claimTilesToRefresh, even if the request fails.
+    void refresh(ProximityBackend backend, String geohash) throws IOException {
+        try {
+            Tile previous;
+            synchronized (this) {
+                previous = tiles.get(geohash);
+            }
+            if (previous == null && directory != null) {
+                // Dropped from memory earlier, or never loaded: the file may still be fresh
+                previous = read(fileFor(geohash), geohash);
+                if (previous != null && System.currentTimeMillis() - previous.fetchedAt <= maxAgeMillis) {
+                    install(Collections.singletonList(previous));
+                    return;
+                }
+            }
+            ProximityClient.TileResult result = backend.getTile(geohash, previous != null ? previous.version : null);
+            long now = System.currentTimeMillis();
+            if (result.notModified() && previous != null) {
+                Tile revalidated = new Tile(geohash, previous.version, now, previous.points);
+                File file = fileFor(geohash);
+                if (file.exists() && !file.setLastModified(now)) {
+                    write(revalidated); // timestamp could not be updated in place
+                }
+                synchronized (this) {
+                    if (tiles.containsKey(geohash)) {
+                        // Same points, so the snapshot stays as it is
+                        tiles.put(geohash, revalidated);
+                        return;
+                    }
+                }
+                // Read back from its file after being trimmed from memory
+                install(Collections.singletonList(revalidated));
+                return;
+            }
+            if (result.notModified()) {
+                throw new IOException("Server reported tile " + geohash + " unchanged but none is stored");
+            }
+            Tile tile = new Tile(geohash, result.version, now, result.points);
+            write(tile);
+            install(Collections.singletonList(tile));
+        } finally {
+            synchronized (this) {
+                pending.remove(geohash);
+            }
+        }
+    }
+
+    // Reads every tile file from disk. Stale tiles are loaded too; they still
+    // answer queries until they are refreshed. Unreadable files are deleted.
+    void load() throws IOException {
+        File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null) return;
+        List<Tile> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(FILE_SUFFIX)) continue;
+            String geohash = name.substring(0, name.length() - FILE_SUFFIX.length());
+            if (!Geohash.isValid(geohash) || geohash.length() != TILE_PRECISION) continue;
+            Tile tile = read(file, geohash);
+            if (tile != null) {
+                loaded.add(tile);
+            }
+        }
+        install(loaded);
+    }
+
+    synchronized int tileCount() {
+        return tiles.size();
+    }
+
+    synchronized Tile tile(String geohash) {
+        return tiles.get(geohash);
+    }
+
+    // Estimated heap used by the loaded tiles
+    synchronized long memoryBytes() {
+        long points = 0;
+        for (Tile tile : tiles.values()) {
+            points += tile.points.size();
+        }
+        return points * BYTES_PER_POINT;
+    }
+
+    // Drops loaded tiles, the longest unneeded first, until the rest fit in
+    // maxBytes, and publishes the smaller snapshot. Their files stay on disk.
+    void trimMemory(long maxBytes) {
+        synchronized (this) {
+            long bytes = memoryBytes();
+            if (bytes <= maxBytes) return;
+            List<Tile> candidates = new ArrayList<>();
+            for (Tile tile : tiles.values()) {
+                if (!wantedNow.contains(tile.geohash)) {
+                    candidates.add(tile);
+                }
+            }
+            Collections.sort(candidates, (a, b) -> Long.compare(lastWanted(a), lastWanted(b)));
+            for (int i = 0; i < candidates.size() && bytes > maxBytes; i++) {
+                Tile tile = candidates.get(i);
+                tiles.remove(tile.geohash);
+                wantedAt.remove(tile.geohash);
+                bytes -= (long) tile.points.size() * BYTES_PER_POINT;
+            }
+        }
+        install(Collections.<Tile>emptyList());
+    }
+
+    long diskBytes() {
+        long bytes = 0;
+        for (File file : tileFiles()) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+
+    // Deletes tile files until the rest fit in maxBytes: files of tiles that
+    // are not loaded first, oldest first, then those of loaded tiles. Files
+    // of tiles around and ahead of the user are kept.
+    void trimDisk(long maxBytes) {
+        List<File> files = tileFiles();
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        if (bytes <= maxBytes) return;
+        Set<String> loaded;
+        Set<String> keep;
+        synchronized (this) {
+            loaded = new HashSet<>(tiles.keySet());
+            keep = wantedNow;
+        }
+        List<File> candidates = new ArrayList<>();
+        for (File file : files) {
+            if (!keep.contains(geohashOf(file))) {
+                candidates.add(file);
+            }
+        }
+        Collections.sort(candidates, (a, b) -> {
+            boolean aLoaded = loaded.contains(geohashOf(a));
+            boolean bLoaded = loaded.contains(geohashOf(b));
+            if (aLoaded != bLoaded) return aLoaded ? 1 : -1;
+            return Long.compare(a.lastModified(), b.lastModified());
+        });
+        for (int i = 0; i < candidates.size() && bytes > maxBytes; i++) {
+            long length = candidates.get(i).length();
+            if (candidates.get(i).delete()) {
+                bytes -= length;
+            }
+        }
+    }
+
+    CacheTier memoryTier() {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                return memoryBytes();
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                trimMemory(maxBytes);
+            }
+        };
+    }
+
+    CacheTier diskTier() {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                return diskBytes();
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                trimDisk(maxBytes);
+            }
+        };
+    }
+
+    // Adds tiles (replacing older copies), drops the tiles not needed for
+    // longest (never the ones just added) while more than maxTiles are loaded,
+    // and publishes a rebuilt snapshot. Like trimMemory(), this leaves the
+    // files alone; only trimDisk() deletes tile files.
+    //
+    // Only the change to the tile set holds the lock. The merged store and its
+    // grid are built from a copy afterwards, so concurrent installs may finish
+    // out of order; a snapshot of an older tile set is never published over a
+    // newer one.
+    private void install(List<Tile> added) {
+        List<Tile> current;
+        long version;
+        synchronized (this) {
+            for (Tile tile : added) {
+                tiles.put(tile.geohash, tile);
+            }
+            if (tiles.size() > maxTiles) {
+                List<Tile> candidates = new ArrayList<>(tiles.values());
+                candidates.removeAll(added);
+                Collections.sort(candidates, (a, b) -> Long.compare(lastWanted(a), lastWanted(b)));
+                for (int i = 0; i < candidates.size() && tiles.size() > maxTiles; i++) {
+                    tiles.remove(candidates.get(i).geohash);
+                    wantedAt.remove(candidates.get(i).geohash);
+                }
+            }
+            current = new ArrayList<>(tiles.values());
+            version = ++tileSetVersion;
+        }
+
+        int total = 0;
+        Set<String> geohashes = new HashSet<>();
+        for (Tile tile : current) {
+            total += tile.points.size();
+            geohashes.add(tile.geohash);
+        }
+        PointStore merged = new PointStore(total);
+        for (Tile tile : current) {
+            PointStore points = tile.points;
+            for (int i = 0; i < points.size(); i++) {
+                merged.add(points.roadName(i), points.latitude(i), points.longitude(i));
+            }
+        }
+        Snapshot next = new Snapshot(version, geohashes, merged);
+
+        synchronized (this) {
+            if (version > snapshot.tileSetVersion) {
+                snapshot = next;
+            }
+        }
+    }
+
+    // Replaces the tile file atomically so a crash never leaves a torn tile behind
+    private void write(Tile tile) throws IOException {
+        if (directory == null) return;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = fileFor(tile.geohash);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+            PointCodec.encodeTile(tile.version, tile.points, sink);
+        }
+        if (!tmp.setLastModified(tile.fetchedAt) || !tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    // The tile stored in file, or null if there is none; an unreadable file is deleted
+    private static Tile read(File file, String geohash) throws IOException {
+        if (!file.exists()) return null;
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            ProximityClient.TileResult result = PointCodec.decodeTile(source);
+            if (result.notModified()) throw new IOException("Tile file without points: " + file);
+            return new Tile(geohash, result.version, file.lastModified(), result.points);
+        } catch (IOException e) {
+            if (!file.delete()) {
+                throw new IOException("Cannot remove unreadable tile " + file, e);
+            }
+            return null;
+        }
+    }
+
+    private long lastWanted(Tile tile) {
+        Long at = wantedAt.get(tile.geohash);
+        return at != null ? at : tile.fetchedAt;
+    }
+
+    private List<File> tileFiles() {
+        File[] files = directory != null ? directory.listFiles() : null;
+        List<File> tileFiles = new ArrayList<>();
+        if (files == null) return tileFiles;
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                tileFiles.add(file);
+            }
+        }
+        return tileFiles;
+    }
+
+    private static String geohashOf(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - FILE_SUFFIX.length());
+    }
+
+    private File fileFor(String geohash) {
+        return new File(directory, geohash + FILE_SUFFIX);
+    }
+
+    // Point reached by travelling distanceMeters from (latitude, longitude) along a great circle
+    static double[] destination(double latitude, double longitude, double bearingDegrees, double distanceMeters) {
+        double angular = distanceMeters / DistanceKernel.EARTH_RADIUS_METERS;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(latitude);
+        double lon1 = Math.toRadians(longitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+        double lon2 = lon1 + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+        double lonDegrees = Math.toDegrees(lon2);
+        lonDegrees = ((lonDegrees + 540.0) % 360.0) - 180.0;
+        return new double[]{Math.toDegrees(lat2), lonDegrees};
+    }
+}
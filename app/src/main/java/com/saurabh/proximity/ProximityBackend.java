@@ -0,0 +1,37 @@
+package com.saurabh.proximity;
+
+import java.io.IOException;
+import java.util.List;
+
+// The actions of the proximity Lambda (location/index.js) as the app uses
+// them. ProximityClient runs them on the Lambda; LocalProximityBackend runs
+// them in-process; RoutedProximityBackend picks one of the two per action.
+// calculateDistance is not one of them: the app computes distances itself.
+//
+// Invalid coordinates are rejected the way the Lambda rejects them, with an
+// IllegalArgumentException locally and an IOException (HTTP 400) remotely.
+// storeRoadPoints reports a remote rejection as a RejectedException, so the
+// uploader can tell a batch that will never be accepted from a failed send.
+interface ProximityBackend {
+    // The backend refused the request itself (an HTTP 4xx other than 408 and
+    // 429); sending it again gets the same answer
+    class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    // checkNearbyWithDistance: stored points within 2 km, nearest first
+    ProximityClient.NearbyResult checkNearbyWithDistance(double latitude, double longitude) throws IOException;
+
+    // getTile: the stored points of one geohash tile, or "not modified" when
+    // knownVersion is still current
+    ProximityClient.TileResult getTile(String geohash, String knownVersion) throws IOException;
+
+    // storeRoadPoints: stores a batch of recorded points with one push. Sending
+    // a batchId again is acknowledged without storing anything; returns how many
+    // points were stored.
+    int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) throws IOException;
+}
@@ -0,0 +1,167 @@
+package com.saurabh.proximity;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.saurabh.proximity.core.Geohash;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSource;
+
+// Client for the proximity Lambda (see location/index.js). The endpoint is a
+// constructor argument so the same code can talk to API Gateway or to the
+// local stand-in server (location/localServer.js).
+class ProximityClient implements ProximityBackend {
+    static final String DEFAULT_ENDPOINT = "https://cp0yi7o5hg.execute-api.us-east-1.amazonaws.com/default/location";
+    // HttpTransport lanes of the lookup path; tile lanes are "tile:<geohash>"
+    static final String NEARBY_LANE = "nearby";
+    static final String TILE_LANES = "tile";
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    private final HttpTransport transport;
+    private final String endpoint;
+
+    // Points returned by checkNearbyWithDistance, nearest first. hits holds the
+    // store index and the server-computed distance (meters) of each point.
+    static class NearbyResult {
+        final PointStore points;
+        final PointQueryResult hits;
+
+        NearbyResult(PointStore points, PointQueryResult hits) {
+            this.points = points;
+            this.hits = hits;
+        }
+    }
+
+    // A getTile answer. points is null when the caller's version is still current.
+    static class TileResult {
+        final String version;
+        final PointStore points;
+
+        TileResult(String version, PointStore points) {
+            this.version = version;
+            this.points = points;
+        }
+
+        boolean notModified() {
+            return points == null;
+        }
+    }
+
+    ProximityClient(HttpTransport transport) {
+        this(transport, DEFAULT_ENDPOINT);
+    }
+
+    ProximityClient(HttpTransport transport, String endpoint) {
+        this.transport = transport;
+        this.endpoint = endpoint;
+    }
+
+    // Runs on the Lambda; LocalProximityBackend gives the same answer without the round trip
+    double calculateDistance(double latitude1, double longitude1, double latitude2, double longitude2)
+            throws IOException {
+        String jsonBody = String.format(Locale.US,
+                "{ \"action\": \"calculateDistance\", \"latitude1\": %s, \"longitude1\": %s, "
+                        + "\"latitude2\": %s, \"longitude2\": %s }",
+                latitude1, longitude1, latitude2, longitude2);
+        String response = transport.execute(postRequest(jsonBody), "compute");
+        try {
+            return new JSONObject(response).getDouble("distance");
+        } catch (JSONException e) {
+            throw new IOException("Invalid calculateDistance response: " + e.getMessage(), e);
+        }
+    }
+
+    // One round trip for what used to be checkNearby followed by calculateDistance.
+    // The response is decoded from the network stream directly into a PointStore.
+    // The compact binary encoding is preferred; JSON from older deployments still works.
+    @Override
+    public NearbyResult checkNearbyWithDistance(double latitude, double longitude) throws IOException {
+        String jsonBody = String.format(Locale.US,
+                "{ \"action\": \"checkNearbyWithDistance\", \"latitude\": %.6f, \"longitude\": %.6f }",
+                latitude, longitude);
+        Request request = postRequest(jsonBody).newBuilder()
+                .header("Accept", PointCodec.MEDIA_TYPE + ", application/json;q=0.5")
+                .build();
+        return transport.execute(request, NEARBY_LANE, ProximityClient::readNearby);
+    }
+
+    static NearbyResult readNearby(BufferedSource source) throws IOException {
+        return PointCodec.isEncoded(source) ? PointCodec.decode(source) : StreamingJsonDecoder.readNearby(source);
+    }
+
+    // Downloads the points of one geohash tile. Passing the version already held
+    // (or null) lets the server answer "not modified" without resending the points.
+    // Each tile has its own lane, so prefetching neighbouring tiles runs in parallel.
+    @Override
+    public TileResult getTile(String geohash, String knownVersion) throws IOException {
+        if (!Geohash.isValid(geohash)) {
+            throw new IllegalArgumentException("Invalid geohash: " + geohash);
+        }
+        String jsonBody = "{ \"action\": \"getTile\", \"geohash\": " + JSONObject.quote(geohash)
+                + (knownVersion != null ? ", \"knownVersion\": " + JSONObject.quote(knownVersion) : "")
+                + " }";
+        Request request = postRequest(jsonBody).newBuilder()
+                .header("Accept", PointCodec.MEDIA_TYPE)
+                .build();
+        return transport.execute(request, TILE_LANES + ":" + geohash, PointCodec::decodeTile);
+    }
+
+    // One request for a whole batch of recorded points, on its own lane so
+    // uploads never cancel (or are cancelled by) lookups
+    @Override
+    public int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) throws IOException {
+        try {
+            JSONArray array = new JSONArray();
+            for (RoadPointUploader.RoadPoint point : points) {
+                JSONObject item = new JSONObject();
+                item.put("roadName", point.roadName);
+                item.put("latitude", point.latitude);
+                item.put("longitude", point.longitude);
+                item.put("distance", point.distance);
+                item.put("timestamp", Instant.ofEpochMilli(point.timeMillis).toString());
+                array.put(item);
+            }
+            JSONObject body = new JSONObject();
+            body.put("action", "storeRoadPoints");
+            body.put("batchId", batchId);
+            body.put("points", array);
+            String response = transport.execute(postRequest(body.toString()), "upload");
+            return new JSONObject(response).getInt("stored");
+        } catch (HttpTransport.HttpStatusException e) {
+            if (e.isClientError()) {
+                throw new RejectedException("storeRoadPoints rejected: " + e.getMessage(), e);
+            }
+            throw e;
+        } catch (JSONException e) {
+            throw new IOException("Invalid storeRoadPoints response: " + e.getMessage(), e);
+        }
+    }
+
+    // Sends several actions in one request; returns one result object per action,
+    // in order. Failed actions come back as {"action", "error", "statusCode"}.
+    JSONArray batch(List<JSONObject> actions) throws IOException, JSONException {
+        JSONObject body = new JSONObject();
+        body.put("action", "batch");
+        body.put("actions", new JSONArray(actions));
+        String response = transport.execute(postRequest(body.toString()), "batch");
+        return new JSONObject(response).getJSONArray("results");
+    }
+
+    private Request postRequest(String jsonBody) {
+        return new Request.Builder()
+                .url(endpoint)
+                .post(RequestBody.create(jsonBody, JSON_MEDIA_TYPE))
+                .build();
+    }
+}
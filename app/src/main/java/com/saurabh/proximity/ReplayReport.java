@@ -0,0 +1,103 @@
+package com.saurabh.proximity;
+
+import com.saurabh.proximity.core.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Results of one trace replay: how fast fixes and lookups went through, the
+// end-to-end latency of the lookups it started, and how many requests (and
+// bytes) each HTTP lane needed. Counters are compared against a snapshot
+// taken at start(), so the numbers cover this replay only, and running the
+// same trace before and after a change gives directly comparable reports.
+class ReplayReport implements LookupMetrics.TraceListener {
+    private final String traceName;
+    private final double speedFactor;
+    private final LookupMetrics metrics;
+    private final String kind;
+    private final LatencyHistogram endToEnd = new LatencyHistogram();
+    private final Map<String, Integer> outcomes = new TreeMap<>();
+    private final AtomicInteger fixes = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private Map<String, Long> countersAtStart;
+    private long startNanos;
+    private long traceSpanMillis;
+
+    // kind is the LookupTrace kind the replayed lookups use
+    ReplayReport(String traceName, double speedFactor, LookupMetrics metrics, String kind) {
+        this.traceName = traceName;
+        this.speedFactor = speedFactor;
+        this.metrics = metrics;
+        this.kind = kind;
+    }
+
+    void start(long traceSpanMillis) {
+        this.traceSpanMillis = traceSpanMillis;
+        metrics.resetStages(kind + ".");
+        countersAtStart = metrics.counters();
+        startNanos = System.nanoTime();
+        metrics.addTraceListener(this);
+    }
+
+    void fixDelivered() {
+        fixes.incrementAndGet();
+    }
+
+    void lookupStarted() {
+        started.incrementAndGet();
+    }
+
+    // Lookups started but not finished yet
+    int pending() {
+        return started.get() - finished.get();
+    }
+
+    @Override
+    public void onTraceFinished(String kind, String outcome, long totalNanos) {
+        if (!this.kind.equals(kind)) return;
+        endToEnd.recordNanos(totalNanos);
+        synchronized (outcomes) {
+            Integer count = outcomes.get(outcome);
+            outcomes.put(outcome, count == null ? 1 : count + 1);
+        }
+        finished.incrementAndGet();
+    }
+
+    // Stops listening and renders the report
+    String finish() {
+        metrics.removeTraceListener(this);
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "Replay of %s at %.1fx\n", traceName, speedFactor));
+        out.append(String.format(Locale.US, "fixes: %d in %.1f s wall (%.2f fixes/s), trace spans %.1f s\n",
+                fixes.get(), wallSeconds, fixes.get() / Math.max(wallSeconds, 1e-9), traceSpanMillis / 1000.0));
+        synchronized (outcomes) {
+            out.append(String.format(Locale.US, "lookups: %d started, %d finished %s (%.2f lookups/s)\n",
+                    started.get(), finished.get(), outcomes, finished.get() / Math.max(wallSeconds, 1e-9)));
+        }
+        out.append("end-to-end: ").append(endToEnd.summary()).append('\n');
+
+        out.append("\nstages:\n");
+        for (String stage : new String[]{"fix_age", "geocode", "queue", "nearby", "cluster", "ui"}) {
+            LatencyHistogram histogram = metrics.stage(kind + "." + stage);
+            if (histogram.count() > 0) {
+                out.append("  ").append(stage).append(": ").append(histogram.summary()).append('\n');
+            }
+        }
+
+        out.append("\nrequests:\n");
+        for (Map.Entry<String, Long> entry : metrics.counters().entrySet()) {
+            String name = entry.getKey();
+            if (!name.startsWith("http.") && !name.startsWith(kind + ".")) continue;
+            Long before = countersAtStart.get(name);
+            long delta = entry.getValue() - (before != null ? before : 0);
+            if (delta != 0) {
+                out.append("  ").append(name).append(" +").append(delta).append('\n');
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,323 @@
+package com.saurabh.proximity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Road names from reverse geocoding, keyed by a snapped lat/lon cell so that
+// small moves along the same road hit the cache instead of Nominatim.
+//
+// Entries are kept in LRU order and expire after ttlMillis. The cache is saved
+// to disk with save() and read back with load(), so it survives app restarts.
+// "No road here" answers are only remembered for the cell the user is in and
+// are dropped as soon as onLocationChanged() reports a different cell.
+//
+// memoryTier() and diskTier() let CacheManager hold the entries and the file
+// to a budget, least recently used first. Entries trimmed from memory stay in
+// the file until it is trimmed too: save() keeps them behind the live ones.
+class ReverseGeocodeCache {
+    static final double DEFAULT_CELL_SIZE_DEGREES = 0.0005; // ~55 m of latitude
+    static final int DEFAULT_MAX_ENTRIES = 512;
+    static final long DEFAULT_TTL_MILLIS = 7L * 24 * 60 * 60 * 1000; // a week
+    private static final int FILE_VERSION = 1;
+    // Map node, boxed key, Entry and String headers; the name's chars come on top
+    private static final int ENTRY_BYTES = 128;
+    // Key, timestamp and the name's length prefix; the name's UTF-8 bytes come on top
+    private static final int RECORD_BYTES = 18;
+
+    private final File file;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double cellSizeDegrees;
+    private final LongSupplier clock; // wall-clock millis; entries outlive restarts
+    private final LinkedHashMap<Long, Entry> entries;
+    private final Object fileLock = new Object(); // held while the file is rewritten
+
+    private long currentCell = Long.MIN_VALUE;
+    private long missingCell = Long.MIN_VALUE;
+    private int hits;
+    private int misses;
+
+    private static final class Entry {
+        final String roadName;
+        final long storedAt;
+
+        Entry(String roadName, long storedAt) {
+            this.roadName = roadName;
+            this.storedAt = storedAt;
+        }
+    }
+
+    ReverseGeocodeCache(File file) {
+        this(file, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    ReverseGeocodeCache(File file, int maxEntries, long ttlMillis, double cellSizeDegrees) {
+        this(file, maxEntries, ttlMillis, cellSizeDegrees, System::currentTimeMillis);
+    }
+
+    ReverseGeocodeCache(File file, int maxEntries, long ttlMillis, double cellSizeDegrees, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMillis <= 0 || !(cellSizeDegrees > 0)) {
+            throw new IllegalArgumentException("Cache size, TTL and cell size must be positive");
+        }
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > ReverseGeocodeCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Cached road name for the cell containing (latitude, longitude), or null
+    synchronized String get(double latitude, double longitude) {
+        long cell = cellKey(latitude, longitude);
+        Entry entry = entries.get(cell);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() - entry.storedAt > ttlMillis) {
+            entries.remove(cell);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.roadName;
+    }
+
+    // True if a lookup in the user's current cell already came back without a road
+    synchronized boolean isKnownMissing(double latitude, double longitude) {
+        return missingCell != Long.MIN_VALUE && missingCell == cellKey(latitude, longitude);
+    }
+
+    synchronized void put(double latitude, double longitude, String roadName) {
+        if (roadName == null) return;
+        long cell = cellKey(latitude, longitude);
+        entries.put(cell, new Entry(roadName, clock.getAsLong()));
+        if (missingCell == cell) {
+            missingCell = Long.MIN_VALUE;
+        }
+    }
+
+    synchronized void putMissing(double latitude, double longitude) {
+        missingCell = cellKey(latitude, longitude);
+    }
+
+    // Called with every location fix; leaving the current cell drops the
+    // remembered "no road here" answer for it
+    synchronized void onLocationChanged(double latitude, double longitude) {
+        long cell = cellKey(latitude, longitude);
+        if (cell != currentCell) {
+            currentCell = cell;
+            if (missingCell != cell) {
+                missingCell = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int hitCount() {
+        return hits;
+    }
+
+    synchronized int missCount() {
+        return misses;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        missingCell = Long.MIN_VALUE;
+    }
+
+    // Estimated heap used by the entries
+    synchronized long memoryBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += ENTRY_BYTES + 2L * entry.roadName.length();
+        }
+        return bytes;
+    }
+
+    // Drops the least recently used entries until the rest fit in maxBytes
+    synchronized void trimMemory(long maxBytes) {
+        long bytes = memoryBytes();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= ENTRY_BYTES + 2L * iterator.next().roadName.length();
+            iterator.remove();
+        }
+    }
+
+    long diskBytes() {
+        return file != null ? file.length() : 0;
+    }
+
+    // Rewrites the file with only the most recently used entries that fit in maxBytes
+    void trimDisk(long maxBytes) throws IOException {
+        synchronized (fileLock) {
+            if (file == null || file.length() <= maxBytes) return;
+            List<Long> keys = new ArrayList<>();
+            List<Entry> saved = new ArrayList<>();
+            read(keys, saved);
+            long bytes = 8; // version and count
+            int first = keys.size();
+            while (first > 0) {
+                long record = RECORD_BYTES + utfLength(saved.get(first - 1).roadName);
+                if (bytes + record > maxBytes) break;
+                bytes += record;
+                first--;
+            }
+            write(keys.subList(first, keys.size()), saved.subList(first, saved.size()));
+        }
+    }
+
+    CacheTier memoryTier() {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                return memoryBytes();
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                trimMemory(maxBytes);
+            }
+        };
+    }
+
+    CacheTier diskTier() {
+        return new CacheTier() {
+            @Override
+            public long sizeBytes() {
+                return diskBytes();
+            }
+
+            @Override
+            public void trimTo(long maxBytes) {
+                try {
+                    trimDisk(maxBytes);
+                } catch (IOException e) {
+                    // Left as it was; the next save or trim tries again
+                }
+            }
+        };
+    }
+
+    // Reads entries saved by save(); expired entries are skipped. A missing or
+    // unreadable file just leaves the cache empty. The file can hold more
+    // entries than fit in memory; only the most recently used are loaded.
+    void load() throws IOException {
+        List<Long> keys = new ArrayList<>();
+        List<Entry> loaded = new ArrayList<>();
+        read(keys, loaded);
+        synchronized (this) {
+            // Entries are saved least recently used first; anything added since
+            // startup is newer, so only as many as still fit are loaded and
+            // eviction never reaches the new ones
+            int first = Math.max(0, keys.size() - (maxEntries - entries.size()));
+            for (int i = first; i < keys.size(); i++) {
+                if (!entries.containsKey(keys.get(i))) {
+                    entries.put(keys.get(i), loaded.get(i));
+                }
+            }
+        }
+    }
+
+    // Writes the live entries to disk, replacing the previous file atomically.
+    // Saved entries no longer in memory (trimmed by trimMemory) are kept
+    // ahead of them, as the least recently used.
+    void save() throws IOException {
+        if (file == null) return;
+        synchronized (fileLock) {
+            List<Long> savedKeys = new ArrayList<>();
+            List<Entry> saved = new ArrayList<>();
+            read(savedKeys, saved);
+            List<Long> keys = new ArrayList<>();
+            List<Entry> snapshot = new ArrayList<>();
+            synchronized (this) {
+                for (int i = 0; i < savedKeys.size(); i++) {
+                    if (!entries.containsKey(savedKeys.get(i))) {
+                        keys.add(savedKeys.get(i));
+                        snapshot.add(saved.get(i));
+                    }
+                }
+                keys.addAll(entries.keySet());
+                snapshot.addAll(entries.values());
+            }
+            write(keys, snapshot);
+        }
+    }
+
+    // Appends the unexpired entries in the file, least recently used first
+    private void read(List<Long> keys, List<Entry> loaded) throws IOException {
+        if (file == null || !file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) return;
+            int count = in.readInt();
+            long now = clock.getAsLong();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long storedAt = in.readLong();
+                String roadName = in.readUTF();
+                if (now - storedAt <= ttlMillis) {
+                    keys.add(key);
+                    loaded.add(new Entry(roadName, storedAt));
+                }
+            }
+        }
+    }
+
+    private void write(List<Long> keys, List<Entry> snapshot) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeLong(keys.get(i));
+                out.writeLong(snapshot.get(i).storedAt);
+                out.writeUTF(snapshot.get(i).roadName);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+        }
+        return length;
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        long row = (long) Math.floor((latitude + 90.0) / cellSizeDegrees);
+        long column = (long) Math.floor((longitude + 180.0) / cellSizeDegrees);
+        return (row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -1,49 +1,71 @@
 package com.saurabh.proximity;
 
 import android.util.Log;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.osmdroid.util.BoundingBox;
-import org.osmdroid.util.GeoPoint;
-import org.osmdroid.views.MapView;
-import org.osmdroid.views.overlay.Marker;
+
+import com.saurabh.proximity.core.ConcurrentPointIndex;
+import com.saurabh.proximity.core.Point;
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+import com.saurabh.proximity.core.RoadMatch;
+import com.saurabh.proximity.core.RoadSegmentIndex;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
-public class RoadPointFinder {
+public class RoadPointFinder implements LookupPipeline.RoadSource {
     private static final String TAG = "RoadFinder";
-    private static final List<Point> predefinedPoints = new ArrayList<>();
-    // HARD CODED
-    static {  //TODO REPLACE WITH LAMBDA
-        predefinedPoints.add(new Point("Raisen Road diff", 23.251858252142124, 77.48453767393227, 0.0));
-    }
-    private static final String OSM_API_URL = "https://nominatim.openstreetmap.org/reverse";
-    private static final String USER_AGENT = "YourAppName/1.0"; // Replace with your app name
+    // Updated by background sync while lookups read snapshots of it
+    private static final ConcurrentPointIndex predefinedPoints = new ConcurrentPointIndex(seedPoints());
+    static final String DEFAULT_REVERSE_URL = "https://nominatim.openstreetmap.org/reverse";
+    // Nominatim's usage policy asks for a User-Agent that identifies the application
+    static final String USER_AGENT = "Proximity/1.0 (Android; +https://github.com/SS0809/proximity)";
     private static final int TIMEOUT_SECONDS = 10;
-
-    private final OkHttpClient client;
+    static final String GEOCODE_LANE = "geocode";
+    // Concurrent lookups of the same position share one Nominatim request
+    private static final HttpTransport.BodyReader<String> ROAD_NAME =
+            HttpTransport.shared("nominatim.roadName", StreamingJsonDecoder::readRoadName);
+    // Farther than this from every known road segment, the road is asked from Nominatim
+    static final double SNAP_DISTANCE_METERS = 50;
+
+    private final HttpTransport transport;
+    private final ReverseGeocodeCache geocodeCache;
+    private final String reverseUrl;
+    private final NominatimScheduler scheduler;
+    // One instance, so the scheduler can merge this finder's requests
+    private final NominatimScheduler.Sender nominatim = this::requestRoadName;
+    private volatile RoadSegmentIndex roadIndex;
 
     public RoadPointFinder() {
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .addInterceptor(chain -> {
-                    Request original = chain.request();
-                    Request request = original.newBuilder()
-                            .header("User-Agent", USER_AGENT)
-                            .method(original.method(), original.body())
-                            .build();
-                    return chain.proceed(request);
-                })
-                .build();
+        this(null);
+    }
+
+    public RoadPointFinder(ReverseGeocodeCache geocodeCache) {
+        this(HttpTransport.get(), geocodeCache);
+    }
+
+    RoadPointFinder(HttpTransport transport, ReverseGeocodeCache geocodeCache) {
+        this(transport, geocodeCache, DEFAULT_REVERSE_URL);
+    }
+
+    // reverseUrl is any Nominatim-compatible /reverse endpoint, e.g. location/localServer.js
+    RoadPointFinder(HttpTransport transport, ReverseGeocodeCache geocodeCache, String reverseUrl) {
+        this(transport, geocodeCache, reverseUrl, NominatimScheduler.get());
+    }
+
+    RoadPointFinder(HttpTransport transport, ReverseGeocodeCache geocodeCache, String reverseUrl,
+                    NominatimScheduler scheduler) {
+        this.transport = transport;
+        this.geocodeCache = geocodeCache;
+        this.reverseUrl = reverseUrl;
+        this.scheduler = scheduler;
+    }
+
+    // Road geometry to answer from on the device; null (the default) always asks Nominatim
+    void setRoadIndex(RoadSegmentIndex roadIndex) {
+        this.roadIndex = roadIndex;
     }
 
     public interface RoadFinderCallback {
@@ -52,170 +74,107 @@ public class RoadPointFinder {
     }
 
     public void getNearestRoad(double latitude, double longitude, RoadFinderCallback callback) {
-        String url = String.format("%s?format=json&lat=%f&lon=%f", OSM_API_URL, latitude, longitude);
+        getNearestRoad(latitude, longitude, null, callback);
+    }
+
+    // Answers from the local road index when a segment is within SNAP_DISTANCE_METERS
+    // (synchronously, in microseconds), then from the geocode cache, then from Nominatim.
+    // Nominatim requests wait their turn in a NominatimScheduler, which may drop a
+    // request superseded by newer ones before it is sent; its callback then gets
+    // onFailure("dropped") or onFailure("expired"). trace, if given, is told which
+    // of these answered.
+    @Override
+    public void getNearestRoad(double latitude, double longitude, LookupTrace trace, RoadFinderCallback callback) {
+        RoadSegmentIndex roads = roadIndex;
+        if (roads != null) {
+            RoadMatch match = roads.nearest(latitude, longitude, SNAP_DISTANCE_METERS, new RoadMatch());
+            if (match.found()) {
+                if (trace != null) trace.note("geocode", "local");
+                callback.onSuccess(match.roadName());
+                return;
+            }
+        }
+        if (geocodeCache != null) {
+            String cachedRoad = geocodeCache.get(latitude, longitude);
+            if (cachedRoad != null) {
+                if (trace != null) trace.note("geocode", "cache");
+                callback.onSuccess(cachedRoad);
+                return;
+            }
+            if (geocodeCache.isKnownMissing(latitude, longitude)) {
+                if (trace != null) trace.note("geocode", "cached_missing");
+                callback.onFailure("Road name not found in response");
+                return;
+            }
+        }
+        if (trace != null) trace.note("geocode", "network");
+        scheduler.submit(nominatim, latitude, longitude, callback);
+    }
+
+    // Stops looking up the road for callback, which is not called back. Its
+    // Nominatim request is dropped from the queue, or cancelled on the wire,
+    // unless another caller is waiting for the same answer.
+    @Override
+    public void cancel(RoadFinderCallback callback) {
+        if (scheduler.cancel(callback)) {
+            transport.cancelLane(GEOCODE_LANE);
+        }
+    }
+
+    // Sent by the scheduler when its turn comes
+    private void requestRoadName(double latitude, double longitude, RoadFinderCallback callback) {
+        String url = String.format("%s?format=json&lat=%f&lon=%f", reverseUrl, latitude, longitude);
 
         Request request = new Request.Builder()
                 .url(url)
+                .header("User-Agent", USER_AGENT)
                 .get()
                 .build();
 
-        client.newCall(request).enqueue(new okhttp3.Callback() {
+        transport.enqueue(request, GEOCODE_LANE, TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS),
+                ROAD_NAME, new HttpTransport.ResultCallback<String>() {
             @Override
-            public void onFailure(okhttp3.Call call, IOException e) {
-                Log.e(TAG, "API call failed", e);
+            public void onFailure(IOException e) {
+                if (!(e instanceof HttpTransport.SupersededException)) {
+                    Log.e(TAG, "API call failed", e);
+                }
                 callback.onFailure("Network error: " + e.getMessage());
             }
 
             @Override
-            public void onResponse(okhttp3.Call call, Response response) {
-                try {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Unexpected response code: " + response);
-                    }
-
-                    ResponseBody responseBody = response.body();
-                    if (responseBody == null) {
-                        throw new IOException("Empty response from server");
-                    }
-
-                    String roadName = extractRoadName(responseBody.string());
-                    if (roadName != null) {
-                        callback.onSuccess(roadName);
-                    } else {
-                        callback.onFailure("Road name not found in response");
-                    }
-
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing response", e);
-                    callback.onFailure("Error processing response: " + e.getMessage());
-                } finally {
-                    response.close();
+            public void onResult(String roadName) {
+                if (roadName != null) {
+                    if (geocodeCache != null) geocodeCache.put(latitude, longitude, roadName);
+                    callback.onSuccess(roadName);
+                } else {
+                    Log.w(TAG, "No road name found in address object");
+                    if (geocodeCache != null) geocodeCache.putMissing(latitude, longitude);
+                    callback.onFailure("Road name not found in response");
                 }
             }
         });
     }
 
-    private String extractRoadName(String responseJson) throws JSONException {
-        JSONObject json = new JSONObject(responseJson);
-        Log.d(TAG, "Response: " + responseJson); // Log the full response for debugging
-
-        if (!json.has("address")) {
-            Log.w(TAG, "No address object in response");
-            return null;
-        }
-
-        JSONObject address = json.getJSONObject("address");
-        if (!address.has("road")) {
-            // Try alternative fields if "road" is not available
-            String[] possibleFields = {"street", "pedestrian", "path", "footway", "highway"};
-            for (String field : possibleFields) {
-                if (address.has(field)) {
-                    return address.getString(field);
-                }
-            }
-            Log.w(TAG, "No road name found in address object");
-            return null;
-        }
-
-        return address.getString("road");
-    }// Method to get points for a specific road
-    static List<Point> getPointsForRoad(String roadName) {
-        List<Point> points = new ArrayList<>();
-        for (Point point : predefinedPoints) {
-            points.add(point);
-        }
-        return points;
-    }
-
-    // Method to filter points within a certain distance
-    public static List<Point> filterPointsByDistance(double lat1, double lon1, List<Point> points, double maxDistanceMeters) {
-        if (points == null || points.isEmpty()) {
-            throw new IllegalArgumentException("Point list is null or empty");
-        }
-
-        List<Point> nearbyPoints = new ArrayList<>();
-        for (Point point : points) {
-            if (point == null) continue; // Skip null points
-            double distance = calculateDistance(lat1, lon1, point.latitude, point.longitude);
-            if (distance <= maxDistanceMeters) {
-                point.distance = distance;
-                nearbyPoints.add(point);
-            }
-        }
-        return nearbyPoints;
+    // HARD CODED
+    private static PointStore seedPoints() {  //TODO REPLACE WITH LAMBDA
+        PointStore seed = new PointStore();
+        seed.add("Raisen Road diff", 23.251858252142124, 77.48453767393227);
+        return seed;
     }
-    public static void updateMapWithPoints(MapView mapView, List<Point> points) {
-        if (mapView == null) {
-            throw new IllegalArgumentException("MapView is null");
-        }
 
-        // Add markers for each point
-        for (Point point : points) {
-            if (point == null) continue;
-            GeoPoint geoPoint = new GeoPoint(point.latitude, point.longitude);
-            Marker marker = new Marker(mapView);
-            marker.setPosition(geoPoint);
-            marker.setTitle(String.format("Lat: %.6f, Lon: %.6f", point.latitude, point.longitude));
-            mapView.getOverlays().add(marker);
-        }
-
-        // Adjust map to show all points if needed
-        if (!points.isEmpty()) {
-            BoundingBox boundingBox = BoundingBox.fromGeoPoints(
-                    points.stream()
-                            .map(p -> new GeoPoint(p.latitude, p.longitude))
-                            .collect(Collectors.toList())
-            );
-            mapView.zoomToBoundingBox(boundingBox, true); // Adjust map to fit all points
-        }
-
-        mapView.invalidate(); // Refresh the map
+    static ConcurrentPointIndex getPointIndex() {
+        return predefinedPoints;
     }
 
-    // Haversine formula to calculate the distance between two points
-    private static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double EARTH_RADIUS = 6371000.0; // Earth's radius in meters
-        if (Double.isNaN(lat1) || Double.isNaN(lon1) || Double.isNaN(lat2) || Double.isNaN(lon2)) {
-            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+    // The k points closest to (lat, lon) within maxRadiusMeters, sorted nearest first
+    public static List<Point> nearest(double lat, double lon, int k, double maxRadiusMeters) {
+        ConcurrentPointIndex.Snapshot snapshot = predefinedPoints.snapshot();
+        PointQueryResult hits = snapshot.nearest(lat, lon, k, maxRadiusMeters, new PointQueryResult(Math.max(1, k)));
+        List<Point> points = new ArrayList<>(hits.count());
+        for (int i = 0; i < hits.count(); i++) {
+            points.add(snapshot.toPoint(hits.index(i), hits.distance(i)));
         }
-
-        // Convert degrees to radians
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        // Apply Haversine formula
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c; // Distance in meters
+        return points;
     }
 
 }
-
-// Class to represent a point
-class Point {
-    String roadName;
-    double latitude;
-    double longitude;
-
-    double distance;
-
-    Point(String roadName, double latitude, double longitude,  double distance) {
-        this.roadName = roadName;
-        this.latitude = latitude;
-        this.longitude = longitude;
-        this.distance = distance;
-    }
-    @Override
-    public String toString() {
-        return "Point{" +
-                "latitude=" + latitude +
-                ", longitude=" + longitude +
-                '}';
-    }
-}
\ No newline at end of file
@@ -0,0 +1,338 @@
+package com.saurabh.proximity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind queue for road points recorded on the device.
+//
+// append() only writes the point to a local log file, so recording never
+// waits on the network and points recorded without coverage are kept. The log
+// is sent in batches with the storeRoadPoints action: as soon as maxBatch
+// points are waiting, or maxDelayMillis after the oldest one was recorded.
+// A batch is always the head of the log; its id and size are saved before it
+// is sent and it is resent under the same id until the server answers, across
+// restarts too, so a retry after a lost response is not stored twice. Failed
+// sends back off exponentially up to MAX_RETRY_MILLIS. A batch the backend
+// rejects outright (ProximityBackend.RejectedException, or invalid points for
+// the local backend) would be rejected on every retry and hold back every
+// point behind it, so it is dropped and counted in "upload.rejected" instead.
+//
+// The log is flushed to the OS after every point, so it survives the app being
+// killed; a record torn by a crash mid-write is dropped when the log is read.
+//
+// Only one uploader may use a directory at a time: close() the old one before
+// opening another, e.g. when the activity is recreated.
+class RoadPointUploader {
+    static final int DEFAULT_MAX_BATCH = 100;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+    static final long MIN_RETRY_MILLIS = 1000;
+    static final long MAX_RETRY_MILLIS = 5 * 60_000;
+    private static final String LOG_FILE = "roadpoints.log";
+    private static final String BATCH_FILE = "roadpoints.batch";
+
+    private final File logFile;
+    private final File batchFile;
+    private final ProximityBackend backend;
+    private final int maxBatch;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final LookupMetrics metrics = LookupMetrics.get();
+    private final Object sendLock = new Object(); // one batch on the wire at a time
+
+    // Guarded by this
+    private final List<RoadPoint> pending = new ArrayList<>(); // oldest first, same as the log
+    private DataOutputStream log;
+    private String batchId;       // the batch being sent, if any
+    private int batchSize;
+    private ScheduledFuture<?> scheduledFlush;
+    private long scheduledAt = Long.MAX_VALUE;
+    private long retryMillis = MIN_RETRY_MILLIS;
+    private boolean closed;
+
+    static final class RoadPoint {
+        final String roadName;
+        final double latitude;
+        final double longitude;
+        final double distance;
+        final long timeMillis;
+
+        RoadPoint(String roadName, double latitude, double longitude, double distance, long timeMillis) {
+            this.roadName = roadName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distance = distance;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    RoadPointUploader(File directory, ProximityBackend backend) throws IOException {
+        this(directory, backend, DEFAULT_MAX_BATCH, DEFAULT_MAX_DELAY_MILLIS,
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "road-point-uploader");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    // Loads whatever an earlier run left in the log; call start() to send it
+    RoadPointUploader(File directory, ProximityBackend backend, int maxBatch, long maxDelayMillis,
+                      ScheduledExecutorService executor) throws IOException {
+        if (maxBatch <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("Batch size and delay must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.logFile = new File(directory, LOG_FILE);
+        this.batchFile = new File(directory, BATCH_FILE);
+        this.backend = backend;
+        this.maxBatch = maxBatch;
+        this.maxDelayMillis = maxDelayMillis;
+        this.executor = executor;
+        readLog();
+        readBatch();
+        log = openLog();
+    }
+
+    // Schedules a send of anything left over from an earlier run
+    synchronized void start() {
+        if (!pending.isEmpty()) schedule(0);
+    }
+
+    // Records a point. Invalid coordinates are rejected here rather than by the server.
+    void append(String roadName, double latitude, double longitude, double distance) throws IOException {
+        LocalProximityBackend.validateCoordinates(latitude, longitude);
+        RoadPoint point = new RoadPoint(roadName, latitude, longitude, distance, System.currentTimeMillis());
+        synchronized (this) {
+            if (closed) throw new IOException("Uploader is closed");
+            writeRecord(log, point);
+            log.flush();
+            pending.add(point);
+            metrics.increment("upload.recorded");
+            if (pending.size() >= maxBatch) {
+                schedule(0);
+            } else if (pending.size() == 1) {
+                schedule(maxDelayMillis);
+            }
+        }
+    }
+
+    // Sends what is waiting without waiting for a full batch, e.g. when the app goes to the background
+    synchronized void flushSoon() {
+        if (!pending.isEmpty()) schedule(0);
+    }
+
+    synchronized int pending() {
+        return pending.size();
+    }
+
+    // Stops sending and closes the log. A batch already on the wire is left to
+    // finish, but its answer no longer changes the files: the next uploader on
+    // this directory finds the batch and resends it under the same id, which
+    // the server acknowledges without storing it again.
+    void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            try {
+                log.close();
+            } catch (IOException e) {
+                metrics.increment("upload.log_errors");
+            }
+        }
+        executor.shutdown();
+    }
+
+    // Sends one batch on the calling thread. Returns false if there was
+    // nothing to send or the send failed (it is then kept for the next try);
+    // a rejected batch is dropped and counts as sent.
+    boolean flushNow() {
+        synchronized (sendLock) {
+            return sendBatch();
+        }
+    }
+
+    private boolean sendBatch() {
+        String id;
+        List<RoadPoint> batch;
+        synchronized (this) {
+            if (closed) return false;
+            if (batchId == null) {
+                if (pending.isEmpty()) return false;
+                batchId = UUID.randomUUID().toString();
+                batchSize = Math.min(maxBatch, pending.size());
+                try {
+                    writeBatch();
+                } catch (IOException e) {
+                    batchId = null;
+                    return false;
+                }
+            }
+            id = batchId;
+            batch = new ArrayList<>(pending.subList(0, batchSize));
+        }
+
+        boolean rejected = false;
+        try {
+            backend.storeRoadPoints(id, batch);
+        } catch (ProximityBackend.RejectedException | IllegalArgumentException e) {
+            rejected = true;
+        } catch (IOException e) {
+            metrics.increment("upload.failures");
+            return false;
+        }
+
+        synchronized (this) {
+            if (closed) return false;
+            pending.subList(0, batch.size()).clear();
+            batchId = null;
+            batchSize = 0;
+            metrics.add(rejected ? "upload.rejected" : "upload.sent", batch.size());
+            try {
+                // Forget the batch before the log shrinks: after a crash in
+                // between, its points are resent as a new batch rather than a
+                // new point being taken for part of the old one.
+                if (!batchFile.delete() && batchFile.exists()) {
+                    throw new IOException("Cannot delete " + batchFile);
+                }
+                rewriteLog();
+            } catch (IOException e) {
+                metrics.increment("upload.log_errors");
+            }
+        }
+        return true;
+    }
+
+    private void flushTask() {
+        synchronized (this) {
+            scheduledFlush = null;
+            scheduledAt = Long.MAX_VALUE;
+        }
+        boolean sent = flushNow();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                retryMillis = MIN_RETRY_MILLIS;
+            } else if (sent) {
+                retryMillis = MIN_RETRY_MILLIS;
+                // Another full batch goes at once; a partial one waits for the rest
+                schedule(pending.size() >= maxBatch ? 0 : maxDelayMillis);
+            } else {
+                schedule(retryMillis);
+                retryMillis = Math.min(MAX_RETRY_MILLIS, retryMillis * 2);
+            }
+        }
+    }
+
+    // Caller holds this. Keeps the earliest of the requested flushes.
+    private void schedule(long delayMillis) {
+        if (closed) return;
+        long at = System.currentTimeMillis() + delayMillis;
+        if (scheduledFlush != null) {
+            if (at >= scheduledAt) return;
+            scheduledFlush.cancel(false);
+        }
+        scheduledAt = at;
+        scheduledFlush = executor.schedule(this::flushTask, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void readLog() throws IOException {
+        if (!logFile.exists()) return;
+        long complete = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                RoadPoint point = new RoadPoint(in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(),
+                        in.readLong());
+                pending.add(point);
+                complete += recordLength(point);
+            }
+        } catch (EOFException e) {
+            // End of the log, or a record cut short by a crash
+        }
+        if (complete < logFile.length()) rewriteLog();
+    }
+
+    private void readBatch() throws IOException {
+        if (!batchFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(batchFile))) {
+            String id = in.readUTF();
+            int size = in.readInt();
+            if (size > 0 && size <= pending.size()) {
+                batchId = id;
+                batchSize = size;
+            }
+        } catch (EOFException e) {
+            // Torn while being written, so never sent
+        }
+    }
+
+    // Caller holds this
+    private void writeBatch() throws IOException {
+        File temp = new File(batchFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeUTF(batchId);
+            out.writeInt(batchSize);
+            out.flush();
+            file.getFD().sync();
+        }
+        if (!temp.renameTo(batchFile)) {
+            throw new IOException("Cannot write " + batchFile);
+        }
+    }
+
+    // Replaces the log with the points still pending. Caller holds this (or is the constructor).
+    private void rewriteLog() throws IOException {
+        boolean open = log != null;
+        if (open) log.close();
+        try {
+            File temp = new File(logFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                for (RoadPoint point : pending) {
+                    writeRecord(out, point);
+                }
+            }
+            if (!temp.renameTo(logFile)) {
+                throw new IOException("Cannot replace " + logFile);
+            }
+        } finally {
+            if (open) log = openLog();
+        }
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+    }
+
+    private static void writeRecord(DataOutputStream out, RoadPoint point) throws IOException {
+        out.writeUTF(point.roadName);
+        out.writeDouble(point.latitude);
+        out.writeDouble(point.longitude);
+        out.writeDouble(point.distance);
+        out.writeLong(point.timeMillis);
+    }
+
+    private static long recordLength(RoadPoint point) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeRecord(new DataOutputStream(bytes), point);
+        return bytes.size();
+    }
+}
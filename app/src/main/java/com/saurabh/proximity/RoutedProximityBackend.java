@@ -0,0 +1,34 @@
+package com.saurabh.proximity;
+
+import java.io.IOException;
+import java.util.List;
+
+// Sends each action to the backend chosen for it: each goes to whichever side
+// holds the data it needs.
+class RoutedProximityBackend implements ProximityBackend {
+    private final ProximityBackend nearby;
+    private final ProximityBackend tiles;
+    private final ProximityBackend uploads;
+
+    RoutedProximityBackend(ProximityBackend nearby, ProximityBackend tiles, ProximityBackend uploads) {
+        this.nearby = nearby;
+        this.tiles = tiles;
+        this.uploads = uploads;
+    }
+
+    @Override
+    public ProximityClient.NearbyResult checkNearbyWithDistance(double latitude, double longitude)
+            throws IOException {
+        return nearby.checkNearbyWithDistance(latitude, longitude);
+    }
+
+    @Override
+    public ProximityClient.TileResult getTile(String geohash, String knownVersion) throws IOException {
+        return tiles.getTile(geohash, knownVersion);
+    }
+
+    @Override
+    public int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) throws IOException {
+        return uploads.storeRoadPoints(batchId, points);
+    }
+}
@@ -0,0 +1,79 @@
+package com.saurabh.proximity;
+
+import com.google.android.gms.location.Priority;
+
+// Chooses how often to ask for location fixes, from the current speed and the
+// distance to the nearest point of interest.
+//
+// The question is how soon the user could reach a point: a car closing in on
+// one needs a fix every second, while a phone lying on a desk or a walk far from
+// any point does not need GPS more than a few times a minute. Schedules come
+// from a short fixed ladder so small speed changes do not re-register the
+// location request, and the stationary state has hysteresis so GPS speed noise
+// around walking pace does not flap between schedules.
+//
+// Everything downstream of the location callback (tracking, tile prefetch,
+// the speed display) runs once per delivered fix, so this schedule also sets
+// how often those run.
+class SamplingPolicy {
+    static final Schedule APPROACH = new Schedule("approach", 1000, 0f, Priority.PRIORITY_HIGH_ACCURACY);
+    static final Schedule NEAR = new Schedule("near", 2000, 2f, Priority.PRIORITY_HIGH_ACCURACY);
+    static final Schedule CRUISE = new Schedule("cruise", 5000, 10f, Priority.PRIORITY_BALANCED_POWER_ACCURACY);
+    static final Schedule FAR = new Schedule("far", 10000, 25f, Priority.PRIORITY_BALANCED_POWER_ACCURACY);
+    static final Schedule IDLE_NEAR = new Schedule("idle-near", 10000, 5f, Priority.PRIORITY_HIGH_ACCURACY);
+    static final Schedule IDLE = new Schedule("idle", 60000, 20f, Priority.PRIORITY_BALANCED_POWER_ACCURACY);
+
+    static final float STOP_SPEED = 0.5f;       // m/s; slower than this counts as stationary
+    static final float MOVE_SPEED = 1.0f;       // m/s; faster than this leaves the stationary state
+    static final double IDLE_NEAR_METERS = 100; // stationary this close to a point keeps GPS warm
+    static final double APPROACH_SECONDS = 30;
+    static final double NEAR_SECONDS = 120;
+    static final double CRUISE_SECONDS = 600;
+
+    private boolean stationary;
+
+    static final class Schedule {
+        final String name;
+        final long intervalMillis;
+        final float minDistanceMeters;
+        final int priority;
+
+        Schedule(String name, long intervalMillis, float minDistanceMeters, int priority) {
+            this.name = name;
+            this.intervalMillis = intervalMillis;
+            this.minDistanceMeters = minDistanceMeters;
+            this.priority = priority;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + intervalMillis + " ms, " + minDistanceMeters + " m)";
+        }
+    }
+
+    // Schedule to start with, before any fix has been seen
+    Schedule initial() {
+        return NEAR;
+    }
+
+    // speedMetersPerSecond may be NaN when unknown. distanceToPointMeters is the
+    // distance to the nearest point of interest, or NaN when it is not known
+    // (e.g. the tiles for the area are not on the device yet).
+    Schedule select(float speedMetersPerSecond, double distanceToPointMeters) {
+        float speed = Float.isNaN(speedMetersPerSecond) ? 0f : speedMetersPerSecond;
+        if (stationary ? speed < MOVE_SPEED : speed < STOP_SPEED) {
+            stationary = true;
+            return distanceToPointMeters <= IDLE_NEAR_METERS ? IDLE_NEAR : IDLE;
+        }
+        stationary = false;
+
+        if (Double.isNaN(distanceToPointMeters)) {
+            return CRUISE;
+        }
+        double secondsToPoint = distanceToPointMeters / speed;
+        if (secondsToPoint < APPROACH_SECONDS) return APPROACH;
+        if (secondsToPoint < NEAR_SECONDS) return NEAR;
+        if (secondsToPoint < CRUISE_SECONDS) return CRUISE;
+        return FAR;
+    }
+}
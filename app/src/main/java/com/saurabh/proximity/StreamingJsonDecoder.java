@@ -0,0 +1,172 @@
+package com.saurabh.proximity;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import okio.BufferedSource;
+
+// Pull-parser decoding of the JSON responses the app reads. Values are read
+// straight off the response stream into their destination (a PointStore for
+// nearby points, a single String for the road name); no response String or
+// JSONObject tree is built, and reading stops as soon as the needed fields
+// have been seen.
+//
+// JSON nulls are read as absent values. A payload of the wrong shape is an
+// IOException, never an IllegalStateException from the reader, since these
+// run on OkHttp's threads too.
+final class StreamingJsonDecoder {
+    // Nominatim address fields to use when there is no "road", in order of preference
+    private static final String[] ROAD_FALLBACK_FIELDS = {"street", "pedestrian", "path", "footway", "highway"};
+
+    private StreamingJsonDecoder() {
+    }
+
+    // Decodes a checkNearbyWithDistance response. Stops after the nearbyPoints array.
+    static ProximityClient.NearbyResult readNearby(BufferedSource source) throws IOException {
+        PointStore store = new PointStore();
+        PointQueryResult hits = new PointQueryResult();
+        JsonReader reader = newReader(source);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Nearby response is not a JSON object: " + reader.peek());
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("nearbyPoints") || reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new IOException("nearbyPoints is not an array: " + reader.peek());
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readPoint(reader, store, hits);
+            }
+            reader.endArray();
+            break; // count and unit are not needed
+        }
+        return new ProximityClient.NearbyResult(store, hits);
+    }
+
+    private static void readPoint(JsonReader reader, PointStore store, PointQueryResult hits) throws IOException {
+        String roadName = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        double distanceKm = Double.NaN;
+
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Nearby point is not a JSON object: " + reader.peek());
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "roadName":
+                    roadName = nextStringOrNull(reader);
+                    break;
+                case "latitude":
+                    latitude = nextDoubleOrNaN(reader); // the lambda sends coordinates as strings; both are parsed
+                    break;
+                case "longitude":
+                    longitude = nextDoubleOrNaN(reader);
+                    break;
+                case "distanceKm":
+                    distanceKm = nextDoubleOrNaN(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new IOException("Nearby point without coordinates");
+        }
+        int index = store.add(roadName, latitude, longitude);
+        hits.add(index, Double.isNaN(distanceKm) ? Double.NaN : distanceKm * 1000.0);
+    }
+
+    // Road name from a Nominatim /reverse response, or null if the address has none.
+    // Only the "address" object is read; the rest of the payload is never decoded.
+    static String readRoadName(BufferedSource source) throws IOException {
+        JsonReader reader = newReader(source);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return null; // e.g. [] for a position in the sea
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("address") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            return readRoadFromAddress(reader);
+        }
+        return null;
+    }
+
+    private static String readRoadFromAddress(JsonReader reader) throws IOException {
+        String[] fallbacks = new String[ROAD_FALLBACK_FIELDS.length];
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int fallback = fallbackRank(name);
+            if (name.equals("road")) {
+                String road = nextStringOrNull(reader);
+                if (road != null) return road;
+            } else if (fallback >= 0) {
+                fallbacks[fallback] = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        for (String road : fallbacks) {
+            if (road != null) return road;
+        }
+        return null;
+    }
+
+    // The next string (numbers are read as their text), or null for JSON null
+    // or any other kind of value, which is skipped
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    // The next number, or NaN for JSON null
+    private static double nextDoubleOrNaN(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return Double.NaN;
+        }
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IOException("Expected a number but was " + token);
+        }
+        try {
+            return reader.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a number", e);
+        }
+    }
+
+    private static int fallbackRank(String field) {
+        for (int i = 0; i < ROAD_FALLBACK_FIELDS.length; i++) {
+            if (ROAD_FALLBACK_FIELDS[i].equals(field)) return i;
+        }
+        return -1;
+    }
+
+    private static JsonReader newReader(BufferedSource source) {
+        return new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+    }
+}
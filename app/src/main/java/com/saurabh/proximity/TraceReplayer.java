@@ -0,0 +1,125 @@
+package com.saurabh.proximity;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationResult;
+
+import com.saurabh.proximity.core.RecordedTrace;
+
+import java.util.Collections;
+import java.util.List;
+
+// Feeds a RecordedTrace to a LocationCallback in place of the
+// FusedLocationProviderClient, so the whole location pipeline can be driven
+// from a recorded drive at the desk.
+//
+// Fixes are delivered on the handler's thread with the trace's own spacing
+// divided by speedFactor (10 plays a ten-minute drive in a minute); a
+// speedFactor of 0 delivers them back to back, yielding to the looper between
+// fixes, to measure throughput. Each Location carries the current clock (so it
+// looks fresh to fix-age checks) and a speed and bearing derived from the
+// previous fix when the trace has none.
+class TraceReplayer {
+    static final String PROVIDER = "replay";
+    private static final float DEFAULT_ACCURACY_METERS = 5f;
+
+    private final List<RecordedTrace.Fix> fixes;
+    private final double speedFactor;
+    private final Handler handler;
+    private final LocationCallback callback;
+    private final Listener listener;
+    private final Runnable deliverNext = this::deliverNext;
+    private long startUptimeMillis;
+    private int next;
+    private boolean running;
+
+    interface Listener {
+        // Called after the callback has seen the fix
+        void onFix(Location location);
+        void onComplete();
+    }
+
+    TraceReplayer(RecordedTrace trace, double speedFactor, Handler handler, LocationCallback callback,
+                  Listener listener) {
+        if (!(speedFactor >= 0)) {
+            throw new IllegalArgumentException("Replay speed must be 0 (no delays) or positive: " + speedFactor);
+        }
+        this.fixes = trace.fixes();
+        this.speedFactor = speedFactor;
+        this.handler = handler;
+        this.callback = callback;
+        this.listener = listener;
+    }
+
+    void start() {
+        if (running) return;
+        running = true;
+        next = 0;
+        startUptimeMillis = SystemClock.uptimeMillis();
+        schedule();
+    }
+
+    void stop() {
+        running = false;
+        handler.removeCallbacks(deliverNext);
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    private void schedule() {
+        if (next >= fixes.size()) {
+            running = false;
+            listener.onComplete();
+            return;
+        }
+        if (speedFactor == 0) {
+            handler.post(deliverNext);
+            return;
+        }
+        long offset = fixes.get(next).timeMillis - fixes.get(0).timeMillis;
+        handler.postAtTime(deliverNext, startUptimeMillis + (long) (offset / speedFactor));
+    }
+
+    private void deliverNext() {
+        if (!running) return;
+        Location location = toLocation(next);
+        next++;
+        callback.onLocationResult(LocationResult.create(Collections.singletonList(location)));
+        listener.onFix(location);
+        schedule();
+    }
+
+    private Location toLocation(int index) {
+        RecordedTrace.Fix fix = fixes.get(index);
+        Location location = new Location(PROVIDER);
+        location.setLatitude(fix.latitude);
+        location.setLongitude(fix.longitude);
+        location.setTime(System.currentTimeMillis());
+        location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+        location.setAccuracy(Float.isNaN(fix.accuracy) ? DEFAULT_ACCURACY_METERS : fix.accuracy);
+
+        float speed = fix.speed;
+        float bearing = fix.bearing;
+        if (index > 0 && (Float.isNaN(speed) || Float.isNaN(bearing))) {
+            RecordedTrace.Fix previous = fixes.get(index - 1);
+            float[] distanceAndBearing = new float[2];
+            Location.distanceBetween(previous.latitude, previous.longitude, fix.latitude, fix.longitude,
+                    distanceAndBearing);
+            long elapsed = fix.timeMillis - previous.timeMillis;
+            if (Float.isNaN(speed) && elapsed > 0) {
+                speed = distanceAndBearing[0] / (elapsed / 1000f);
+            }
+            if (Float.isNaN(bearing) && distanceAndBearing[0] > 0) {
+                bearing = (distanceAndBearing[1] + 360f) % 360f; // distanceBetween gives -180..180
+            }
+        }
+        if (!Float.isNaN(speed)) location.setSpeed(speed);
+        if (!Float.isNaN(bearing)) location.setBearing(bearing);
+        return location;
+    }
+}
@@ -0,0 +1,115 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+public class CacheManagerTest {
+    @Test
+    public void enforceBudgets_trimsOnlyTiersOverTheirBudget() {
+        CacheManager manager = new CacheManager(new LookupMetrics());
+        FakeTier memory = new FakeTier(3000, 0);
+        FakeTier disk = new FakeTier(500, 0);
+        manager.register("points.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_POINT_TILES, 2000, memory);
+        manager.register("points.disk", CacheManager.Storage.DISK, CacheManager.PRIORITY_POINT_TILES, 1000, disk);
+
+        assertEquals(1000, manager.enforceBudgets());
+        assertEquals(2000, memory.size);
+        assertEquals(500, disk.size);
+        assertEquals(0, disk.trims);
+
+        manager.setBudget("points.disk", 200);
+        assertEquals(300, manager.enforceBudgets());
+        assertEquals(200, disk.size);
+    }
+
+    @Test
+    public void enforceBudgets_leavesSelfLimitingTiersToOnTrimMemory() {
+        CacheManager manager = new CacheManager(new LookupMetrics());
+        FakeTier bitmaps = new FakeTier(3000, 0, true);
+        manager.register("map_tiles.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_MAP_TILES, 2000, bitmaps);
+
+        assertEquals(0, manager.enforceBudgets());
+        assertEquals(0, bitmaps.trims);
+
+        assertEquals(3000, manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+        assertEquals(0, bitmaps.size);
+    }
+
+    @Test
+    public void onTrimMemory_shedsLowestPriorityTiersFirst() {
+        LookupMetrics metrics = new LookupMetrics();
+        CacheManager manager = new CacheManager(metrics);
+        FakeTier geocodes = new FakeTier(100, 0);
+        FakeTier points = new FakeTier(800, 300);   // tiles around the user stay
+        FakeTier mapTiles = new FakeTier(1000, 0);
+        FakeTier mapDisk = new FakeTier(5000, 0);
+        manager.register("geocodes.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_GEOCODES, 100, geocodes);
+        manager.register("point_tiles.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_POINT_TILES, 1000, points);
+        manager.register("map_tiles.memory", CacheManager.Storage.MEMORY, CacheManager.PRIORITY_MAP_TILES, 1000, mapTiles);
+        manager.register("map_tiles.disk", CacheManager.Storage.DISK, CacheManager.PRIORITY_MAP_TILES, 10000, mapDisk);
+
+        // Half of the 2100 byte budget: only map tile bitmaps go
+        assertEquals(850, manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(150, mapTiles.size);
+        assertEquals(800, points.size);
+        assertEquals(100, geocodes.size);
+
+        // A tenth: point tiles stop at what the user needs, which is over the target, so geocodes go too
+        assertEquals(150 + 500 + 100, manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(0, mapTiles.size);
+        assertEquals(300, points.size);
+        assertEquals(0, geocodes.size);
+
+        assertEquals(0, manager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+        assertEquals(300, points.size);
+        assertEquals(5000, mapDisk.size);
+        assertEquals(0, mapDisk.trims);
+        assertEquals(3, metrics.counter("cache.trim_memory"));
+    }
+
+    @Test
+    public void memoryShare_shrinksAsPressureRises() {
+        assertEquals(1, CacheManager.memoryShare(0), 0);
+        assertEquals(0.75, CacheManager.memoryShare(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE), 0);
+        assertEquals(0.25, CacheManager.memoryShare(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL), 0);
+        assertEquals(0.5, CacheManager.memoryShare(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN), 0);
+        assertEquals(0.25, CacheManager.memoryShare(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND), 0);
+        assertEquals(0, CacheManager.memoryShare(ComponentCallbacks2.TRIM_MEMORY_COMPLETE), 0);
+    }
+
+    private static final class FakeTier implements CacheTier {
+        final long floor;
+        final boolean selfLimiting;
+        long size;
+        int trims;
+
+        FakeTier(long size, long floor) {
+            this(size, floor, false);
+        }
+
+        FakeTier(long size, long floor, boolean selfLimiting) {
+            this.size = size;
+            this.floor = floor;
+            this.selfLimiting = selfLimiting;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return size;
+        }
+
+        @Override
+        public void trimTo(long maxBytes) {
+            trims++;
+            size = Math.max(floor, Math.min(size, maxBytes));
+        }
+
+        @Override
+        public boolean selfLimiting() {
+            return selfLimiting;
+        }
+    }
+}
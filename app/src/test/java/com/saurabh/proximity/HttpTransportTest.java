@@ -0,0 +1,170 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class HttpTransportTest {
+    private MockWebServer server;
+    private HttpTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        transport = new HttpTransport(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void enqueue_reportsAReaderThatThrowsAsAFailure() throws Exception {
+        server.enqueue(new MockResponse().setBody("[]"));
+        Recorder<String> recorder = new Recorder<>();
+
+        transport.enqueue(get("/reverse"), "geocode", source -> {
+            throw new IllegalStateException("Expected BEGIN_OBJECT but was BEGIN_ARRAY");
+        }, recorder);
+
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+        assertNotNull(recorder.failure.get());
+        assertTrue(recorder.failure.get().getCause() instanceof IllegalStateException);
+        assertEquals(1, recorder.calls.get());
+    }
+
+    @Test
+    public void enqueue_coalescesIdenticalRequestsWithASharedReader() throws Exception {
+        server.enqueue(new MockResponse().setBody("Raisen Road").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        Recorder<String> first = new Recorder<>();
+        Recorder<String> second = new Recorder<>();
+
+        transport.enqueue(get("/reverse"), "geocode", HttpTransport.UTF8, first);
+        transport.enqueue(get("/reverse"), "geocode", HttpTransport.UTF8, second);
+
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertEquals("Raisen Road", first.result.get());
+        assertEquals("Raisen Road", second.result.get());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void enqueue_neverCoalescesReadersThatAreNotShared() throws Exception {
+        server.enqueue(new MockResponse().setBody("Raisen Road").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody("Raisen Road").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        List<Recorder<String>> recorders = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            // Same call site, so the same lambda class, capturing a different prefix each time
+            String prefix = i + ":";
+            Recorder<String> recorder = new Recorder<>();
+            recorders.add(recorder);
+            transport.enqueue(get("/reverse"), "lane" + i, source -> prefix + source.readUtf8(), recorder);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(recorders.get(i).done.await(5, TimeUnit.SECONDS));
+            assertEquals(i + ":Raisen Road", recorders.get(i).result.get());
+        }
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void enqueue_failsTheSupersededRequestsWaiters() throws Exception {
+        // Either request may reach the server first, so both answers are alike
+        for (int i = 0; i < 2; i++) {
+            server.enqueue(new MockResponse().setBody("Raisen Road").setBodyDelay(500, TimeUnit.MILLISECONDS));
+        }
+        Recorder<String> first = new Recorder<>();
+        Recorder<String> second = new Recorder<>();
+
+        transport.enqueue(get("/reverse?lat=1"), "geocode", HttpTransport.UTF8, first);
+        transport.enqueue(get("/reverse?lat=2"), "geocode", HttpTransport.UTF8, second);
+
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(first.failure.get() instanceof HttpTransport.SupersededException);
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertEquals("Raisen Road", second.result.get());
+        assertEquals(1, first.calls.get());
+    }
+
+    @Test
+    public void cancelLanes_cancelsOnlyTheFamilysLanes() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("[]").setBodyDelay(500, TimeUnit.MILLISECONDS));
+        }
+        Recorder<String> tileA = new Recorder<>();
+        Recorder<String> tileB = new Recorder<>();
+        Recorder<String> nearby = new Recorder<>();
+
+        transport.enqueue(get("/tile?g=a"), "tile:a", HttpTransport.UTF8, tileA);
+        transport.enqueue(get("/tile?g=b"), "tile:b", HttpTransport.UTF8, tileB);
+        transport.enqueue(get("/nearby"), "nearby", HttpTransport.UTF8, nearby);
+        transport.cancelLanes("tile");
+
+        assertTrue(tileA.done.await(5, TimeUnit.SECONDS));
+        assertTrue(tileB.done.await(5, TimeUnit.SECONDS));
+        assertTrue(nearby.done.await(5, TimeUnit.SECONDS));
+        assertTrue(tileA.failure.get() instanceof HttpTransport.SupersededException);
+        assertTrue(tileB.failure.get() instanceof HttpTransport.SupersededException);
+        assertEquals("[]", nearby.result.get());
+    }
+
+    @Test
+    public void enqueue_reportsATimeoutAsAnOrdinaryFailure() throws Exception {
+        server.enqueue(new MockResponse().setBody("Raisen Road").setHeadersDelay(2, TimeUnit.SECONDS));
+        Recorder<String> recorder = new Recorder<>();
+
+        transport.enqueue(get("/reverse"), "geocode", 200, HttpTransport.UTF8, recorder);
+
+        assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+        assertNotNull(recorder.failure.get());
+        assertFalse(recorder.failure.get() instanceof HttpTransport.SupersededException);
+    }
+
+    private Request get(String path) {
+        return new Request.Builder().url(server.url(path)).get().build();
+    }
+
+    private static final class Recorder<T> implements HttpTransport.ResultCallback<T> {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<T> result = new AtomicReference<>();
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void onResult(T value) {
+            result.set(value);
+            calls.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            failure.set(e);
+            calls.incrementAndGet();
+            done.countDown();
+        }
+    }
+}
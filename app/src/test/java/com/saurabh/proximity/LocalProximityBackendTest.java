@@ -0,0 +1,79 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.saurabh.proximity.core.PointStore;
+
+import org.junit.Test;
+
+// Expected values were produced by location/index.js (calculateDistance and
+// checkNearbyWithDistance, the latter over memoryRedis), so the local engine is
+// checked against the Lambda's own answers.
+public class LocalProximityBackendTest {
+    private final LocalProximityBackend backend = new LocalProximityBackend(seed());
+
+    private static PointStore seed() {
+        PointStore points = new PointStore();
+        points.add("Raisen Road", 23.252, 77.47);
+        points.add("Raisen Road", 23.2531, 77.4765);
+        points.add("Raisen Road diff", 23.251858, 77.484538); // stored by the Lambda with 6 decimals
+        points.add("Hoshangabad Road", 23.2, 77.43);
+        points.add("Link Road", 23.2601, 77.4702);
+        return points;
+    }
+
+    @Test
+    public void calculateDistance_matchesTheLambda() {
+        assertEquals(0.547898, backend.calculateDistance(23.251858252142124, 77.48453767393227, 23.2563714, 77.48669), 0);
+        assertEquals(0.017064, backend.calculateDistance(23.2520456, 77.4852134, 23.252060147348807, 77.48537967398161), 0);
+        assertEquals(0, backend.calculateDistance(0, 0, 0, 0), 0);
+        assertEquals(5574.840457, backend.calculateDistance(51.5007, -0.1246, 40.6892, -74.0445), 0);
+        assertEquals(7821.161138, backend.calculateDistance(-33.8568, 151.2153, 35.6586, 139.7454), 0);
+        assertEquals(20015.086796, backend.calculateDistance(89.9, 0, -89.9, 180), 0);
+        assertEquals(0.000102, backend.calculateDistance(23.25, 77.48, 23.25, 77.480001), 0);
+        assertEquals(0.022239, backend.calculateDistance(0, 179.9999, 0, -179.9999), 0);
+    }
+
+    @Test
+    public void calculateDistance_rejectsWhatTheLambdaRejects() {
+        assertInvalid(91, 0, "Latitude must be between -90 and 90 degrees");
+        assertInvalid(0, 181, "Invalid coordinates provided");
+        assertInvalid(Double.NaN, 0, "Invalid coordinates provided");
+    }
+
+    @Test
+    public void checkNearbyWithDistance_matchesTheLambda() {
+        ProximityClient.NearbyResult nearby = backend.checkNearbyWithDistance(23.2520456, 77.4852134);
+
+        String[] roads = {"Raisen Road diff", "Raisen Road", "Raisen Road", "Link Road"};
+        double[] distancesKm = {0.072085, 0.897874, 1.554261, 1.776112};
+        assertEquals(roads.length, nearby.hits.count());
+        for (int i = 0; i < roads.length; i++) {
+            assertEquals(roads[i], nearby.points.roadName(nearby.hits.index(i)));
+            assertEquals(distancesKm[i] * 1000, nearby.hits.distance(i), 0.001);
+        }
+    }
+
+    @Test
+    public void getTile_isNotModifiedForTheCurrentVersion() {
+        ProximityClient.TileResult tile = backend.getTile("tsph", null);
+        assertNotNull(tile.points);
+        assertEquals(4, tile.points.size());
+
+        assertTrue(backend.getTile("tsph", tile.version).notModified());
+        assertEquals(tile.version, backend.getTile("tsph", "stale").version);
+        assertEquals(0, backend.getTile("tspj", null).points.size());
+    }
+
+    private void assertInvalid(double latitude, double longitude, String message) {
+        try {
+            backend.calculateDistance(latitude, longitude, 0, 0);
+            fail("Accepted " + latitude + ", " + longitude);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LookupMetricsTest {
+    @Test
+    public void trace_recordsStagesNotesAndTotal() {
+        LookupMetrics metrics = new LookupMetrics();
+        LookupTrace trace = metrics.startTrace("lookup");
+        trace.stageMillis("fix_age", 250);
+        trace.note("geocode", "cache");
+        trace.stage("nearby", LookupTrace.now());
+        trace.finish("ok");
+        trace.finish("error"); // ignored
+
+        assertEquals(1, metrics.stage("lookup.total").count());
+        assertEquals(1, metrics.stage("lookup.nearby").count());
+        assertEquals(250_000, metrics.stage("lookup.fix_age").max(), 250_000 / 64);
+        assertEquals(1, metrics.counter("lookup.ok"));
+        assertEquals(0, metrics.counter("lookup.error"));
+        assertEquals(1, metrics.counter("lookup.geocode.cache"));
+        assertEquals(1, metrics.recentTraces().size());
+        String line = metrics.recentTraces().get(0);
+        assertTrue(line, line.contains("lookup ok") && line.contains("fix_age=250") && line.contains("[geocode:cache]"));
+    }
+
+    @Test
+    public void recentTraces_keepsOnlyTheNewest() {
+        LookupMetrics metrics = new LookupMetrics();
+        for (int i = 0; i < LookupMetrics.RECENT_TRACES + 10; i++) {
+            metrics.addTrace("trace " + i);
+        }
+        assertEquals(LookupMetrics.RECENT_TRACES, metrics.recentTraces().size());
+        assertEquals("trace 10", metrics.recentTraces().get(0));
+    }
+
+    @Test
+    public void dump_includesStagesCountersAndGauges() {
+        LookupMetrics metrics = new LookupMetrics();
+        metrics.recordNanos("http.nearby", 12_000_000);
+        metrics.add("http.nearby.bytes_in", 2048);
+        metrics.registerGauge("tiles.loaded", () -> 7);
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("http.nearby: n=1"));
+        assertTrue(dump, dump.contains("http.nearby.bytes_in = 2048"));
+        assertTrue(dump, dump.contains("tiles.loaded = 7"));
+
+        metrics.reset();
+        assertEquals(0, metrics.counter("http.nearby.bytes_in"));
+        assertEquals(0, metrics.stage("http.nearby").count());
+        assertTrue(metrics.dump().contains("tiles.loaded = 7"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.saurabh.proximity.core.RoadSegmentIndex;
+import com.saurabh.proximity.core.RoadSegmentStore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class LookupPipelineTest {
+    private final LookupMetrics metrics = new LookupMetrics();
+    private final List<RoadPointFinder.RoadFinderCallback> roadCallbacks = new ArrayList<>();
+    private final List<String> shown = new ArrayList<>();
+
+    private LookupPipeline<String> pipeline(LookupPipeline.PointsSource<String> points) {
+        return pipeline((lat, lon, trace, callback) -> roadCallbacks.add(callback), points);
+    }
+
+    private LookupPipeline<String> pipeline(LookupPipeline.RoadSource roads, LookupPipeline.PointsSource<String> points) {
+        return new LookupPipeline<>(roads, points, Runnable::run, Runnable::run, new LookupPipeline.Listener<String>() {
+            @Override
+            public void onResult(String roadName, String nearby) {
+                shown.add(roadName + " / " + nearby);
+            }
+
+            @Override
+            public void onError(String message) {
+                shown.add("error: " + message);
+            }
+        });
+    }
+
+    @Test
+    public void start_loadsPointsWithoutWaitingForTheRoad() {
+        List<String> loaded = new ArrayList<>();
+        LookupPipeline<String> pipeline = pipeline((lat, lon, trace) -> {
+            loaded.add(lat + "," + lon);
+            return "3 points";
+        });
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        assertEquals(1, loaded.size());
+        assertTrue(shown.isEmpty());
+
+        roadCallbacks.get(0).onSuccess("Raisen Road");
+        assertEquals("Raisen Road / 3 points", shown.get(0));
+        assertEquals(1, shown.size());
+        assertEquals(1, metrics.counter("lookup.ok"));
+        assertEquals(1, metrics.stage("lookup.ui").count());
+    }
+
+    @Test
+    public void start_cancelsTheLookupStillRunning() {
+        LookupPipeline<String> pipeline = pipeline((lat, lon, trace) -> "points at " + lat);
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        pipeline.start(23.26, 77.48, metrics.startTrace("lookup"));
+        assertEquals(1, metrics.counter("lookup.superseded"));
+
+        roadCallbacks.get(0).onSuccess("Old Road");
+        assertTrue(shown.isEmpty());
+        roadCallbacks.get(1).onSuccess("New Road");
+        assertEquals(1, shown.size());
+        assertEquals("New Road / points at 23.26", shown.get(0));
+        assertEquals(1, metrics.counter("lookup.ok"));
+    }
+
+    @Test
+    public void start_cancelsTheRequestOfALookupReplacedByALocalAnswer() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));   // Nominatim stalls
+        server.start();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        OkHttpClient client = new OkHttpClient.Builder().eventListener(new EventListener() {
+            @Override
+            public void canceled(Call call) {
+                cancelled.countDown();
+            }
+        }).build();
+        NominatimScheduler scheduler = new NominatimScheduler(1.0, 1, 25, 2, 60000, System::currentTimeMillis,
+                (delay, dispatch) -> { });
+        RoadPointFinder finder = new RoadPointFinder(new HttpTransport(client), null,
+                server.url("/reverse").toString(), scheduler);
+        RoadSegmentStore roads = new RoadSegmentStore();
+        roads.addSegment("Raisen Road", 23.25, 77.48, 23.25, 77.49);
+        finder.setRoadIndex(new RoadSegmentIndex(roads));
+        List<String> pointsCancelled = new ArrayList<>();
+        LookupPipeline<String> pipeline = pipeline(finder, new LookupPipeline.PointsSource<String>() {
+            @Override
+            public String load(double latitude, double longitude, LookupTrace trace) {
+                return "points at " + latitude;
+            }
+
+            @Override
+            public void cancel() {
+                pointsCancelled.add("nearby");
+            }
+        });
+
+        try {
+            pipeline.start(23.30, 77.48, metrics.startTrace("lookup"));   // far from the road: asks Nominatim
+            server.takeRequest(5, TimeUnit.SECONDS);
+            pipeline.start(23.25, 77.485, metrics.startTrace("lookup"));  // on the road: answered locally
+
+            assertEquals("Raisen Road / points at 23.25", shown.get(0));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            assertEquals(1, pointsCancelled.size());
+            assertEquals(1, metrics.counter("lookup.superseded"));
+            assertEquals(1, shown.size());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void start_ignoresTheFailureOfACancelledLookup() {
+        LookupPipeline<String> pipeline = pipeline((lat, lon, trace) -> "points at " + lat);
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        pipeline.start(23.26, 77.48, metrics.startTrace("lookup"));
+        // The scheduler pushes the old request out of its queue
+        roadCallbacks.get(0).onFailure("dropped");
+        assertTrue(shown.isEmpty());
+        assertEquals(0, metrics.counter("lookup.geocode_error"));
+
+        roadCallbacks.get(1).onSuccess("New Road");
+        assertEquals(1, shown.size());
+        assertEquals("New Road / points at 23.26", shown.get(0));
+    }
+
+    @Test
+    public void start_reportsTheOutcomeOfAFailedStage() {
+        LookupPipeline<String> pipeline = pipeline((lat, lon, trace) -> {
+            if (lat > 23.3) throw new IOException("timeout");
+            throw new LookupPipeline.LookupException("no_points", "No points found nearby");
+        });
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        roadCallbacks.get(0).onSuccess("Raisen Road");
+        assertEquals("error: No points found nearby", shown.get(0));
+        assertEquals(1, metrics.counter("lookup.no_points"));
+
+        pipeline.start(23.35, 77.48, metrics.startTrace("lookup"));
+        // The failed stage ends the lookup without waiting for the other one
+        assertEquals("error: Network error: timeout", shown.get(1));
+        assertEquals(1, metrics.counter("lookup.network_error"));
+        roadCallbacks.get(1).onFailure("Network error");
+        assertEquals(2, shown.size());
+        assertEquals(0, metrics.counter("lookup.superseded"));
+    }
+
+    @Test
+    public void start_reportsAMissingRoad() {
+        LookupPipeline<String> pipeline = pipeline((lat, lon, trace) -> "3 points");
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        roadCallbacks.get(0).onFailure("Road name not found in response");
+        assertEquals("error: Failed to find road: Road name not found in response", shown.get(0));
+        assertEquals(1, metrics.counter("lookup.geocode_error"));
+
+        pipeline.start(23.25, 77.48, metrics.startTrace("lookup"));
+        roadCallbacks.get(1).onSuccess(null);
+        assertEquals("error: No road found nearby", shown.get(1));
+        assertEquals(1, metrics.counter("lookup.no_road"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NominatimSchedulerTest {
+    private long now = 1000;
+    private final List<double[]> sent = new ArrayList<>();
+    private final List<RoadPointFinder.RoadFinderCallback> sentCallbacks = new ArrayList<>();
+    private final List<Long> wakeups = new ArrayList<>();
+
+    private final NominatimScheduler.Sender sender = (lat, lon, callback) -> {
+        sent.add(new double[] {lat, lon});
+        sentCallbacks.add(callback);
+    };
+
+    private NominatimScheduler scheduler(int maxQueued, long maxWaitMillis) {
+        return new NominatimScheduler(1.0, 1, 25, maxQueued, maxWaitMillis, () -> now,
+                (delay, dispatch) -> wakeups.add(delay));
+    }
+
+    private static RoadPointFinder.RoadFinderCallback recording(List<String> answers) {
+        return new RoadPointFinder.RoadFinderCallback() {
+            @Override
+            public void onSuccess(String roadName) {
+                answers.add(roadName);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                answers.add("error: " + error);
+            }
+        };
+    }
+
+    @Test
+    public void submit_sendsAtMostOneRequestPerSecond() {
+        NominatimScheduler scheduler = scheduler(4, 60000);
+        List<String> answers = new ArrayList<>();
+
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        scheduler.submit(sender, 23.26, 77.48, recording(answers));
+        scheduler.submit(sender, 23.27, 77.48, recording(answers));
+
+        assertEquals(1, sent.size());
+        assertEquals(1, wakeups.size());
+        assertEquals(1000L, (long) wakeups.get(0));
+
+        now += 400;
+        assertEquals(600, scheduler.dispatchReady());
+        assertEquals(1, sent.size());
+
+        now += 600;
+        scheduler.dispatchReady();
+        now += 1000;
+        scheduler.dispatchReady();
+        assertEquals(3, sent.size());
+        // Newest first
+        assertEquals(23.27, sent.get(1)[0], 0);
+        assertEquals(23.26, sent.get(2)[0], 0);
+        assertEquals(-1, scheduler.dispatchReady());
+    }
+
+    @Test
+    public void submit_mergesNearbyPositionsIntoOneRequest() {
+        NominatimScheduler scheduler = scheduler(4, 60000);
+        List<String> answers = new ArrayList<>();
+
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        scheduler.submit(sender, 23.25005, 77.48, recording(answers));      // ~6 m from the request on the wire
+        scheduler.submit(sender, 23.30, 77.48, recording(answers));
+        scheduler.submit(sender, 23.30010, 77.48005, recording(answers));   // ~12 m from the queued one
+
+        assertEquals(1, sent.size());
+        assertEquals(1, scheduler.queued());
+        sentCallbacks.get(0).onSuccess("Raisen Road");
+        assertEquals(2, answers.size());
+
+        now += 1000;
+        scheduler.dispatchReady();
+        assertEquals(2, sent.size());
+        assertEquals(23.30010, sent.get(1)[0], 0);   // moved to the newest position
+        sentCallbacks.get(1).onFailure("Network error");
+        assertEquals("error: Network error", answers.get(3));
+        assertEquals(4, answers.size());
+    }
+
+    @Test
+    public void submit_pacesEverySenderWithOneBucketButMergesOnlyTheirOwnRequests() {
+        NominatimScheduler scheduler = scheduler(4, 60000);
+        List<String> answers = new ArrayList<>();
+        List<double[]> sentByOther = new ArrayList<>();
+        NominatimScheduler.Sender other = (lat, lon, callback) -> sentByOther.add(new double[] {lat, lon});
+
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        scheduler.submit(other, 23.25, 77.48, recording(answers));   // same position, another sender
+
+        assertEquals(1, sent.size());
+        assertEquals(0, sentByOther.size());
+        assertEquals(1, scheduler.queued());
+
+        now += 1000;
+        scheduler.dispatchReady();
+        assertEquals(1, sentByOther.size());
+    }
+
+    @Test
+    public void cancel_dropsRequestsNobodyIsWaitingFor() {
+        NominatimScheduler scheduler = scheduler(4, 60000);
+        List<String> answers = new ArrayList<>();
+        RoadPointFinder.RoadFinderCallback onWire = recording(answers);
+        RoadPointFinder.RoadFinderCallback queued = recording(answers);
+        RoadPointFinder.RoadFinderCallback sharing = recording(answers);
+
+        scheduler.submit(sender, 23.25, 77.48, onWire);
+        scheduler.submit(sender, 23.30, 77.48, queued);
+        scheduler.submit(sender, 23.30, 77.48, sharing);
+
+        assertFalse(scheduler.cancel(queued));      // another caller still waits for it
+        assertEquals(1, scheduler.queued());
+        assertFalse(scheduler.cancel(sharing));
+        assertEquals(0, scheduler.queued());
+        assertTrue(scheduler.cancel(onWire));       // the owner may cancel it on the wire
+
+        // Not merged into the abandoned request
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        assertEquals(1, scheduler.queued());
+        sentCallbacks.get(0).onFailure("superseded");
+        assertTrue(answers.isEmpty());
+    }
+
+    @Test
+    public void submit_dropsOldestWhenQueueIsFull() {
+        NominatimScheduler scheduler = scheduler(1, 60000);
+        List<String> answers = new ArrayList<>();
+
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        scheduler.submit(sender, 23.26, 77.48, recording(answers));
+        scheduler.submit(sender, 23.27, 77.48, recording(answers));
+
+        assertEquals(1, scheduler.queued());
+        assertEquals(1, answers.size());
+        assertEquals("error: dropped", answers.get(0));
+        now += 1000;
+        scheduler.dispatchReady();
+        assertEquals(2, sent.size());
+        assertEquals(23.27, sent.get(1)[0], 0);
+    }
+
+    @Test
+    public void dispatchReady_dropsRequestsThatWaitedTooLong() {
+        NominatimScheduler scheduler = scheduler(4, 1500);
+        List<String> answers = new ArrayList<>();
+
+        scheduler.submit(sender, 23.25, 77.48, recording(answers));
+        scheduler.submit(sender, 23.26, 77.48, recording(answers));
+        now += 2000;
+
+        assertEquals(-1, scheduler.dispatchReady());
+        assertEquals(1, sent.size());
+        assertEquals(0, scheduler.queued());
+        assertEquals(1, answers.size());
+        assertEquals("error: expired", answers.get(0));
+
+        // The token the stale request did not take is there for a fresh one
+        scheduler.submit(sender, 23.27, 77.48, recording(answers));
+        assertEquals(2, sent.size());
+        assertEquals(1, answers.size());
+    }
+}
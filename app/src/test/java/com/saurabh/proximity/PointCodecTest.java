@@ -0,0 +1,91 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.net.ProtocolException;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import com.saurabh.proximity.core.PointQueryResult;
+import com.saurabh.proximity.core.PointStore;
+
+public class PointCodecTest {
+    // Produced by location/pointCodec.js; the Node tests check the same bytes
+    private static final String GOLDEN_HEX = "505850010102094e65617220526f61640b52616973656e20526f616403a8b89616f8d6f24900e0cb06af09cf0f01a09603b782cb2ca59bc7f50100feafea01";
+
+    @Test
+    public void decode_readsBytesFromTheNodeEncoder() throws Exception {
+        Buffer source = new Buffer().write(ByteString.decodeHex(GOLDEN_HEX));
+
+        ProximityClient.NearbyResult result = PointCodec.decode(source);
+
+        assertEquals(3, result.hits.count());
+        assertEquals(2, result.points.roadCount());
+        assertEquals("Near Road", result.points.roadName(0));
+        assertEquals("Raisen Road", result.points.roadName(1));
+        assertEquals(23.2525, result.points.latitude(0), 1e-9);
+        assertEquals(-179.999999, result.points.longitude(2), 1e-9);
+        assertEquals(54.0, result.hits.distance(0), 1e-9);
+        assertEquals(1999.999, result.hits.distance(2), 1e-9);
+    }
+
+    @Test
+    public void encode_roundTripsAndMatchesNodeBytes() throws Exception {
+        PointStore store = new PointStore();
+        PointQueryResult hits = new PointQueryResult();
+        hits.add(store.add("Near Road", 23.2525, 77.4855), 54.0);
+        hits.add(store.add("Raisen Road", 23.2519, 77.4845), 80.0);
+        hits.add(store.add("Near Road", -23.5, -179.999999), 1999.999);
+
+        Buffer buffer = new Buffer();
+        PointCodec.encode(store, hits, buffer);
+        assertEquals(GOLDEN_HEX, buffer.snapshot().hex());
+
+        ProximityClient.NearbyResult decoded = PointCodec.decode(buffer);
+        assertEquals(3, decoded.hits.count());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(store.latitude(i), decoded.points.latitude(decoded.hits.index(i)), 1e-9);
+            assertEquals(store.longitude(i), decoded.points.longitude(decoded.hits.index(i)), 1e-9);
+            assertEquals(store.roadName(i), decoded.points.roadName(decoded.hits.index(i)));
+            assertEquals(hits.distance(i), decoded.hits.distance(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void decode_rejectsCountsTheRemainingBytesCannotHold() throws Exception {
+        // Header, no road names, then a point count of Integer.MAX_VALUE and a single point
+        Buffer source = new Buffer()
+                .write(ByteString.decodeHex("5058500100" + "00" + "ffffffff07" + "000000"));
+
+        try {
+            PointCodec.decode(source);
+            fail();
+        } catch (ProtocolException expected) {
+            assertTrue(expected.getMessage().contains("2147483647"));
+        }
+
+        Buffer names = new Buffer().write(ByteString.decodeHex("5058500100" + "ffffffff07" + "00"));
+        try {
+            PointCodec.decode(names);
+            fail();
+        } catch (ProtocolException expected) {
+            assertTrue(expected.getMessage().contains("2147483647"));
+        }
+    }
+
+    @Test
+    public void readNearby_fallsBackToJson() throws Exception {
+        Buffer json = new Buffer().writeUtf8("{\"nearbyPoints\":[{\"roadName\":\"A\",\"latitude\":\"1.5\",\"longitude\":\"2.5\",\"distanceKm\":0.1}]}");
+
+        ProximityClient.NearbyResult result = ProximityClient.readNearby(json);
+
+        assertEquals(1, result.hits.count());
+        assertEquals(100.0, result.hits.distance(0), 1e-9);
+        assertTrue(!PointCodec.isEncoded(new Buffer().writeUtf8("{}")));
+    }
+}
@@ -0,0 +1,234 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.saurabh.proximity.core.Geohash;
+import com.saurabh.proximity.core.PointGridIndex;
+import com.saurabh.proximity.core.PointStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+public class PointTileStoreTest {
+    private static final double LAT = 23.2519;
+    private static final double LON = 77.4845;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ProximityClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new ProximityClient(new HttpTransport(new OkHttpClient()), server.url("/").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void nearby_needsEveryCoveringTileBeforeAnsweringLocally() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        List<String> claimed = tiles.claimTilesToRefresh(LAT, LON, Float.NaN, 0f);
+        assertEquals(4, claimed.size());
+        assertTrue(tiles.claimTilesToRefresh(LAT, LON, Float.NaN, 0f).isEmpty()); // already pending
+
+        for (String geohash : claimed.subList(0, 3)) {
+            enqueueTile("v1", geohash.equals("tsph7") ? raisenRoad() : new PointStore());
+            tiles.refresh(client, geohash);
+        }
+        assertNull(tiles.nearby(LAT, LON, PointTileStore.SEARCH_RADIUS_METERS));
+
+        enqueueTile("v1", claimed.get(3).equals("tsph7") ? raisenRoad() : new PointStore());
+        tiles.refresh(client, claimed.get(3));
+        ProximityClient.NearbyResult nearby = tiles.nearby(LAT + 0.0005, LON, PointTileStore.SEARCH_RADIUS_METERS);
+
+        assertNotNull(nearby);
+        assertEquals(2, nearby.hits.count());
+        assertEquals("Raisen Road", nearby.points.roadName(nearby.hits.index(0)));
+        assertTrue(nearby.hits.distance(0) <= nearby.hits.distance(1));
+    }
+
+    @Test
+    public void refresh_sendsKnownVersionAndKeepsTileWhenNotModified() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        enqueueTile("v1", raisenRoad());
+        tiles.refresh(client, "tsph7");
+        server.takeRequest();
+
+        enqueueTile("v1", null);
+        tiles.refresh(client, "tsph7");
+
+        JSONObject body = new JSONObject(server.takeRequest().getBody().readUtf8());
+        assertEquals("getTile", body.getString("action"));
+        assertEquals("v1", body.getString("knownVersion"));
+        assertEquals(2, tiles.tile("tsph7").points.size());
+    }
+
+    @Test
+    public void load_restoresTilesFromDisk() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        enqueueTile("v2", raisenRoad());
+        tiles.refresh(client, "tsph7");
+        assertTrue(new File(folder.getRoot(), "tsph7.pxt").exists());
+
+        PointTileStore reloaded = new PointTileStore(folder.getRoot());
+        reloaded.load();
+
+        assertEquals(1, reloaded.tileCount());
+        assertEquals("v2", reloaded.tile("tsph7").version);
+        assertEquals("Raisen Road", reloaded.tile("tsph7").points.roadName(0));
+    }
+
+    @Test
+    public void trimMemory_keepsTilesAroundTheUserAndReadsOthersBackFromDisk() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        enqueueTile("v1", raisenRoad());
+        tiles.refresh(client, "tsph7");
+        enqueueTile("v1", raisenRoad());
+        tiles.refresh(client, "tsq4b"); // elsewhere
+        tiles.claimTilesToRefresh(LAT, LON, Float.NaN, 0f);
+        assertEquals(4 * PointTileStore.BYTES_PER_POINT, tiles.memoryBytes());
+
+        tiles.trimMemory(0);
+        assertEquals(1, tiles.tileCount());
+        assertNotNull(tiles.tile("tsph7"));
+        assertTrue(new File(folder.getRoot(), "tsq4b.pxt").exists());
+
+        tiles.refresh(client, "tsq4b"); // still fresh on disk: no request
+        assertEquals(2, server.getRequestCount());
+        assertEquals("v1", tiles.tile("tsq4b").version);
+
+        tiles.trimDisk(0);
+        assertTrue(new File(folder.getRoot(), "tsph7.pxt").exists());
+        assertFalse(new File(folder.getRoot(), "tsq4b.pxt").exists());
+    }
+
+    @Test
+    public void refresh_evictsTilesBeyondMaxTilesFromMemoryOnly() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot(), PointTileStore.DEFAULT_MAX_AGE_MILLIS, 1);
+        enqueueTile("v1", raisenRoad());
+        tiles.refresh(client, "tsph7");
+        enqueueTile("v1", raisenRoad());
+        tiles.refresh(client, "tsq4b");
+
+        assertEquals(1, tiles.tileCount());
+        assertNull(tiles.tile("tsph7"));
+        assertTrue(new File(folder.getRoot(), "tsph7.pxt").exists());
+
+        tiles.refresh(client, "tsph7"); // still fresh on disk: no request
+        assertEquals(2, server.getRequestCount());
+        assertEquals("v1", tiles.tile("tsph7").version);
+    }
+
+    @Test
+    public void refresh_reinstallsTrimmedTileWhenServerReportsStaleFileUnchanged() throws Exception {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        List<String> claimed = tiles.claimTilesToRefresh(LAT, LON, Float.NaN, 0f);
+        for (String geohash : claimed) {
+            enqueueTile("v1", geohash.equals("tsph7") ? raisenRoad() : new PointStore());
+            tiles.refresh(client, geohash);
+        }
+        tiles.claimTilesToRefresh(LAT + 1, LON, Float.NaN, 0f); // the user drove off
+        tiles.trimMemory(0);
+        assertNull(tiles.nearby(LAT, LON, PointTileStore.SEARCH_RADIUS_METERS));
+
+        File file = new File(folder.getRoot(), "tsph7.pxt");
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * PointTileStore.DEFAULT_MAX_AGE_MILLIS));
+        for (String geohash : claimed) {
+            if (geohash.equals("tsph7")) {
+                enqueueTile("v1", null);
+            }
+            tiles.refresh(client, geohash); // the others are fresh on disk
+        }
+
+        assertEquals(5, server.getRequestCount());
+        ProximityClient.NearbyResult nearby = tiles.nearby(LAT + 0.0005, LON, PointTileStore.SEARCH_RADIUS_METERS);
+        assertNotNull(nearby);
+        assertEquals(2, nearby.hits.count());
+        assertEquals("Raisen Road", nearby.points.roadName(nearby.hits.index(0)));
+    }
+
+    @Test
+    public void refresh_publishesTheNewestTileSetWhenInstallsRunConcurrently() throws Exception {
+        PointTileStore downloaded = new PointTileStore(folder.getRoot());
+        List<String> claimed = downloaded.claimTilesToRefresh(LAT, LON, Float.NaN, 0f);
+        for (String geohash : claimed) {
+            enqueueTile("v1", raisenRoad());
+            downloaded.refresh(client, geohash);
+        }
+
+        // Every tile is fresh on disk, so each refresh only reads and installs it
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (String geohash : tiles.claimTilesToRefresh(LAT, LON, Float.NaN, 0f)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    tiles.refresh(client, geohash);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty());
+        assertEquals(claimed.size(), server.getRequestCount());
+        PointGridIndex index = tiles.coveringIndex(LAT, LON, PointTileStore.SEARCH_RADIUS_METERS);
+        assertNotNull(index);
+        assertEquals(2 * claimed.size(), index.size());
+    }
+
+    @Test
+    public void claimTilesToRefresh_looksAheadAlongTheBearing() {
+        PointTileStore tiles = new PointTileStore(folder.getRoot());
+
+        List<String> claimed = tiles.claimTilesToRefresh(LAT, LON, 90f, 25f); // due east at 90 km/h
+
+        double[] ahead = PointTileStore.destination(LAT, LON, 90, 25 * 120);
+        assertTrue(claimed.contains(Geohash.encode(ahead[0], ahead[1], PointTileStore.TILE_PRECISION)));
+    }
+
+    private static PointStore raisenRoad() {
+        PointStore store = new PointStore();
+        store.add("Raisen Road", 23.2519, 77.4845);
+        store.add("Raisen Road", 23.2530, 77.4850);
+        return store;
+    }
+
+    private void enqueueTile(String version, PointStore points) throws Exception {
+        Buffer body = new Buffer();
+        PointCodec.encodeTile(version, points, body);
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", PointCodec.MEDIA_TYPE)
+                .setBody(body));
+    }
+}
@@ -0,0 +1,105 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+// Runs ProximityClient against a local stand-in for the Lambda endpoint
+public class ProximityClientTest {
+    private MockWebServer server;
+    private ProximityClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new ProximityClient(new HttpTransport(new OkHttpClient()), server.url("/").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void checkNearbyWithDistance_isOneRequestWithDistancesAttached() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"nearbyPoints\":["
+                        + "{\"roadName\":\"Near Road\",\"latitude\":\"23.252500\",\"longitude\":\"77.485500\",\"distanceKm\":0.054},"
+                        + "{\"roadName\":\"Raisen Road\",\"latitude\":\"23.251900\",\"longitude\":\"77.484500\",\"distanceKm\":0.08}"
+                        + "],\"count\":2,\"unit\":\"km\"}"));
+
+        ProximityClient.NearbyResult result = client.checkNearbyWithDistance(23.2520456, 77.4852134);
+
+        assertEquals(1, server.getRequestCount());
+        RecordedRequest request = server.takeRequest();
+        JSONObject body = new JSONObject(request.getBody().readUtf8());
+        assertEquals("checkNearbyWithDistance", body.getString("action"));
+        assertEquals(23.252046, body.getDouble("latitude"), 1e-9);
+
+        assertEquals(2, result.hits.count());
+        assertEquals("Near Road", result.points.roadName(result.hits.index(0)));
+        assertEquals(54.0, result.hits.distance(0), 1e-9);
+        assertEquals(80.0, result.hits.distance(1), 1e-9);
+        assertEquals(77.4845, result.points.longitude(result.hits.index(1)), 1e-9);
+    }
+
+    @Test
+    public void storeRoadPoints_tellsARejectedBatchFromAFailedSend() throws Exception {
+        List<RoadPointUploader.RoadPoint> points = Collections.singletonList(
+                new RoadPointUploader.RoadPoint("Raisen Road", 23.2519, 77.4845, 10, 0));
+        server.enqueue(new MockResponse().setResponseCode(400).setBody("{\"error\":\"Invalid batchId\"}"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(429));
+
+        try {
+            client.storeRoadPoints("batch-1", points);
+            fail();
+        } catch (ProximityBackend.RejectedException expected) {
+        }
+        for (int i = 0; i < 2; i++) {
+            try {
+                client.storeRoadPoints("batch-1", points);
+                fail();
+            } catch (IOException e) {
+                assertFalse(e instanceof ProximityBackend.RejectedException);
+            }
+        }
+    }
+
+    @Test
+    public void batch_sendsAllActionsInOneRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"results\":["
+                + "{\"action\":\"calculateDistance\",\"result\":{\"distance\":1.5,\"unit\":\"km\"}},"
+                + "{\"action\":\"nope\",\"error\":\"Invalid action: nope\",\"statusCode\":400}]}"));
+
+        JSONArray results = client.batch(Arrays.asList(
+                new JSONObject().put("action", "calculateDistance"),
+                new JSONObject().put("action", "nope")));
+
+        assertEquals(1, server.getRequestCount());
+        JSONObject sent = new JSONObject(server.takeRequest().getBody().readUtf8());
+        assertEquals("batch", sent.getString("action"));
+        assertEquals(2, sent.getJSONArray("actions").length());
+        assertEquals(2, results.length());
+        assertTrue(results.getJSONObject(1).has("error"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReplayReportTest {
+    @Test
+    public void finish_coversOnlyTheReplayedLookups() {
+        LookupMetrics metrics = new LookupMetrics();
+        metrics.add("http.nearby.calls", 5); // before the replay
+        ReplayReport report = new ReplayReport("drive.gpx", 10, metrics, "replay");
+        report.start(60_000);
+
+        for (int i = 0; i < 3; i++) {
+            report.fixDelivered();
+            report.lookupStarted();
+            metrics.increment("http.nearby.calls");
+        }
+        metrics.startTrace("replay").finish("ok");
+        metrics.startTrace("replay").finish("superseded");
+        metrics.startTrace("lookup").finish("ok"); // a manual lookup meanwhile
+        assertEquals(1, report.pending());
+        metrics.startTrace("replay").finish("ok");
+        assertEquals(0, report.pending());
+
+        String text = report.finish();
+        assertTrue(text, text.startsWith("Replay of drive.gpx at 10.0x\n"));
+        assertTrue(text, text.contains("fixes: 3 in "));
+        assertTrue(text, text.contains("3 started, 3 finished {ok=2, superseded=1}"));
+        assertTrue(text, text.contains("end-to-end: n=3 "));
+        assertTrue(text, text.contains("http.nearby.calls +3"));
+        assertTrue(text, text.contains("replay.ok +2"));
+        assertFalse(text, text.contains("lookup.ok"));
+
+        metrics.startTrace("replay").finish("ok"); // after finish() the report no longer listens
+        assertEquals(0, report.pending());
+    }
+}
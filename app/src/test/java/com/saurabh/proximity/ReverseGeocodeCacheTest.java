@@ -0,0 +1,144 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReverseGeocodeCacheTest {
+    // Centres of their 0.0005 degree cells, so moves of up to 0.0002 stay inside
+    private static final double LAT = 23.25175;
+    private static final double LON = 77.48475;
+    private static final double CELL = ReverseGeocodeCache.DEFAULT_CELL_SIZE_DEGREES;
+    private static final long TTL = 60_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    public void get_snapsNearbyPositionsToTheSameCell() {
+        ReverseGeocodeCache cache = cache(null, 16);
+        cache.put(LAT, LON, "Raisen Road");
+
+        assertEquals("Raisen Road", cache.get(LAT - 0.0002, LON + 0.0001));
+        assertNull(cache.get(LAT + CELL, LON));
+        assertNull(cache.get(LAT, LON - CELL));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void get_expiresEntriesOlderThanTheTtl() {
+        ReverseGeocodeCache cache = cache(null, 16);
+        cache.put(LAT, LON, "Raisen Road");
+
+        now.addAndGet(TTL);
+        assertEquals("Raisen Road", cache.get(LAT, LON));
+
+        now.incrementAndGet();
+        assertNull(cache.get(LAT, LON));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedEntry() {
+        ReverseGeocodeCache cache = cache(null, 2);
+        cache.put(LAT, LON, "A");
+        cache.put(LAT + CELL, LON, "B");
+        cache.get(LAT, LON); // A is now the most recently used
+
+        cache.put(LAT + 2 * CELL, LON, "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get(LAT, LON));
+        assertNull(cache.get(LAT + CELL, LON));
+        assertEquals("C", cache.get(LAT + 2 * CELL, LON));
+    }
+
+    @Test
+    public void putMissing_isForgottenOnceTheUserLeavesTheCell() {
+        ReverseGeocodeCache cache = cache(null, 16);
+        cache.onLocationChanged(LAT, LON);
+        cache.putMissing(LAT, LON);
+
+        assertTrue(cache.isKnownMissing(LAT + 0.0001, LON));
+        assertFalse(cache.isKnownMissing(LAT + CELL, LON));
+        cache.onLocationChanged(LAT + 0.0001, LON); // same cell
+        assertTrue(cache.isKnownMissing(LAT, LON));
+
+        cache.onLocationChanged(LAT + CELL, LON);
+        assertFalse(cache.isKnownMissing(LAT, LON));
+
+        cache.onLocationChanged(LAT, LON);
+        cache.putMissing(LAT, LON);
+        cache.put(LAT, LON, "Raisen Road"); // a later answer replaces it
+        assertFalse(cache.isKnownMissing(LAT, LON));
+        assertEquals("Raisen Road", cache.get(LAT, LON));
+    }
+
+    @Test
+    public void load_restoresUnexpiredEntriesAfterARestart() throws Exception {
+        File file = new File(folder.getRoot(), "geocode_cache.bin");
+        ReverseGeocodeCache cache = cache(file, 16);
+        cache.put(LAT, LON, "Old Road");
+        now.addAndGet(TTL / 2);
+        cache.put(LAT + CELL, LON, "Raisen Road");
+        cache.putMissing(LAT + 2 * CELL, LON);
+        cache.save();
+
+        now.addAndGet(TTL / 2 + 1); // Old Road is past its TTL
+        ReverseGeocodeCache restarted = cache(file, 16);
+        restarted.load();
+
+        assertEquals(1, restarted.size());
+        assertNull(restarted.get(LAT, LON));
+        assertEquals("Raisen Road", restarted.get(LAT + CELL, LON));
+        assertFalse(restarted.isKnownMissing(LAT + 2 * CELL, LON));
+    }
+
+    @Test
+    public void save_keepsEntriesTrimmedFromMemoryAndLoadPrefersTheNewest() throws Exception {
+        File file = new File(folder.getRoot(), "geocode_cache.bin");
+        ReverseGeocodeCache cache = cache(file, 16);
+        for (int i = 0; i < 4; i++) {
+            cache.put(LAT + i * CELL, LON, "Road " + i);
+        }
+        cache.save();
+        cache.trimMemory(0);
+        cache.put(LAT + 4 * CELL, LON, "Road 4");
+        cache.save();
+
+        ReverseGeocodeCache all = cache(file, 16);
+        all.load();
+        assertEquals(5, all.size());
+
+        ReverseGeocodeCache small = cache(file, 2);
+        small.put(LAT + 9 * CELL, LON, "Added before load");
+        small.load();
+        assertEquals(2, small.size());
+        assertEquals("Added before load", small.get(LAT + 9 * CELL, LON));
+        assertEquals("Road 4", small.get(LAT + 4 * CELL, LON));
+    }
+
+    @Test
+    public void load_leavesTheCacheEmptyWithoutAFile() throws Exception {
+        ReverseGeocodeCache cache = cache(new File(folder.getRoot(), "absent.bin"), 16);
+
+        cache.load();
+
+        assertEquals(0, cache.size());
+    }
+
+    private ReverseGeocodeCache cache(File file, int maxEntries) {
+        return new ReverseGeocodeCache(file, maxEntries, TTL, CELL, now::get);
+    }
+}
@@ -0,0 +1,196 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class RoadPointUploaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> sentBatchIds = new ArrayList<>();
+    private boolean failAfterStoring;
+    private boolean rejectNext;
+
+    // Stores like the Lambda would; failAfterStoring loses the response of the
+    // next batch and rejectNext answers it with an HTTP 400
+    private final LocalProximityBackend backend = new LocalProximityBackend() {
+        @Override
+        public synchronized int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) {
+            sentBatchIds.add(batchId);
+            return super.storeRoadPoints(batchId, points);
+        }
+    };
+    private final ProximityBackend lossy = new RoutedProximityBackend(backend, backend, backend) {
+        @Override
+        public int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) throws IOException {
+            if (rejectNext) {
+                rejectNext = false;
+                throw new ProximityBackend.RejectedException("storeRoadPoints rejected: Error: 400", null);
+            }
+            int stored = super.storeRoadPoints(batchId, points);
+            if (failAfterStoring) {
+                failAfterStoring = false;
+                throw new IOException("Connection reset");
+            }
+            return stored;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // The hour-long delay keeps partial batches for the test's own flushNow calls
+    private RoadPointUploader uploader(int maxBatch) throws IOException {
+        return new RoadPointUploader(folder.getRoot(), lossy, maxBatch, 3_600_000, executor);
+    }
+
+    private int storedPoints() {
+        return backend.checkNearbyWithDistance(23.25, 77.48).hits.count();
+    }
+
+    @Test
+    public void append_keepsPointsAcrossRestarts() throws IOException {
+        RoadPointUploader uploader = uploader(100);
+        uploader.append("Raisen Road", 23.2519, 77.4845, 10);
+        uploader.append("Raisen Road", 23.2525, 77.4855, 5);
+
+        assertEquals(2, uploader(100).pending());
+        assertTrue(sentBatchIds.isEmpty());
+    }
+
+    @Test
+    public void append_sendsFullBatchesInTheBackground() throws Exception {
+        RoadPointUploader uploader = uploader(2);
+        for (int i = 0; i < 5; i++) {
+            uploader.append("Raisen Road", 23.2519 + i * 0.0001, 77.4845, i);
+        }
+
+        // Two full batches go at once; the last point waits for more (or the delay)
+        for (int i = 0; i < 100 && uploader.pending() > 1; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, uploader.pending());
+        assertEquals(4, storedPoints());
+        assertEquals(2, sentBatchIds.size());
+        assertEquals(1, uploader(2).pending());
+
+        assertTrue(uploader.flushNow());
+        assertFalse(uploader.flushNow());
+        assertEquals(5, storedPoints());
+        assertEquals(0, uploader(2).pending());
+    }
+
+    @Test
+    public void flushNow_resendsALostBatchUnderTheSameId() throws IOException {
+        RoadPointUploader uploader = uploader(100);
+        uploader.append("Raisen Road", 23.2519, 77.4845, 10);
+        uploader.append("Raisen Road", 23.2525, 77.4855, 5);
+        failAfterStoring = true;
+
+        assertFalse(uploader.flushNow());
+        assertEquals(2, uploader.pending());
+
+        // Points recorded meanwhile and a restart do not change the batch being retried
+        uploader.append("Raisen Road", 23.2530, 77.4860, 1);
+        RoadPointUploader restarted = uploader(100);
+        assertTrue(restarted.flushNow());
+        assertEquals(sentBatchIds.get(0), sentBatchIds.get(1));
+        assertEquals(2, storedPoints());
+        assertEquals(1, restarted.pending());
+
+        assertTrue(restarted.flushNow());
+        assertEquals(3, storedPoints());
+    }
+
+    @Test
+    public void flushNow_dropsARejectedBatchAndKeepsDraining() throws IOException {
+        LookupMetrics metrics = LookupMetrics.get();
+        long rejectedBefore = metrics.counter("upload.rejected");
+        RoadPointUploader uploader = uploader(100);
+        uploader.append("Raisen Road", 23.2519, 77.4845, 10);
+        uploader.append("Raisen Road", 23.2525, 77.4855, 5);
+        rejectNext = true;
+
+        assertTrue(uploader.flushNow());
+        assertEquals(0, uploader.pending());
+        assertEquals(2, metrics.counter("upload.rejected") - rejectedBefore);
+        assertEquals(0, uploader(100).pending());
+
+        // The points recorded after it are not held back
+        uploader.append("Raisen Road", 23.2530, 77.4860, 1);
+        assertTrue(uploader.flushNow());
+        assertEquals(1, storedPoints());
+        assertEquals(0, uploader.pending());
+    }
+
+    @Test
+    public void close_leavesABatchOnTheWireToTheNextUploader() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        ProximityBackend slow = new RoutedProximityBackend(backend, backend, backend) {
+            @Override
+            public int storeRoadPoints(String batchId, List<RoadPointUploader.RoadPoint> points) throws IOException {
+                sending.countDown();
+                try {
+                    answer.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.storeRoadPoints(batchId, points);
+            }
+        };
+        RoadPointUploader closing = new RoadPointUploader(folder.getRoot(), slow, 100, 3_600_000,
+                Executors.newSingleThreadScheduledExecutor());
+        closing.append("Raisen Road", 23.2519, 77.4845, 10);
+        closing.append("Raisen Road", 23.2525, 77.4855, 5);
+        Thread send = new Thread(closing::flushNow);
+        send.start();
+        sending.await();
+
+        // The activity is recreated while the batch is on the wire
+        closing.close();
+        RoadPointUploader next = uploader(100);
+        answer.countDown();
+        send.join();
+        next.append("Raisen Road", 23.2530, 77.4860, 1);
+
+        assertEquals(3, next.pending());
+        assertEquals(3, uploader(100).pending()); // all three are in the log on disk
+        assertTrue(next.flushNow());
+        assertEquals(sentBatchIds.get(0), sentBatchIds.get(1));
+        assertEquals(2, storedPoints());
+        assertEquals(1, uploader(100).pending());
+    }
+
+    @Test
+    public void constructor_dropsARecordTornByACrash() throws IOException {
+        RoadPointUploader uploader = uploader(100);
+        uploader.append("Raisen Road", 23.2519, 77.4845, 10);
+        try (FileOutputStream log = new FileOutputStream(new File(folder.getRoot(), "roadpoints.log"), true)) {
+            log.write(new byte[] {0, 11, 'R', 'a', 'i'});
+        }
+
+        RoadPointUploader restarted = uploader(100);
+        assertEquals(1, restarted.pending());
+        restarted.append("Link Road", 23.2601, 77.4702, 0);
+        assertEquals(2, uploader(100).pending());
+    }
+}
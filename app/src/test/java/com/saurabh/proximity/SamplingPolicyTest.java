@@ -0,0 +1,37 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SamplingPolicyTest {
+    @Test
+    public void select_slowsDownWhenStationary() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        assertSame(SamplingPolicy.IDLE, policy.select(0f, 1500));
+        assertSame(SamplingPolicy.IDLE_NEAR, policy.select(0.2f, 40));
+        assertSame(SamplingPolicy.IDLE, policy.select(Float.NaN, Double.NaN));
+    }
+
+    @Test
+    public void select_speedsUpOnAFastApproach() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        assertSame(SamplingPolicy.FAR, policy.select(1.4f, 2000));      // walking, ~24 min away
+        assertSame(SamplingPolicy.NEAR, policy.select(25f, 2000));      // driving, 80 s away
+        assertSame(SamplingPolicy.APPROACH, policy.select(25f, 500));   // driving, 20 s away
+        assertSame(SamplingPolicy.CRUISE, policy.select(25f, Double.NaN));
+    }
+
+    @Test
+    public void select_hasHysteresisAroundWalkingPace() {
+        SamplingPolicy policy = new SamplingPolicy();
+
+        assertSame(SamplingPolicy.IDLE, policy.select(0.3f, 1500));
+        assertSame(SamplingPolicy.IDLE, policy.select(0.8f, 1500));  // not yet moving
+        assertSame(SamplingPolicy.FAR, policy.select(1.2f, 1500));
+        assertSame(SamplingPolicy.FAR, policy.select(0.8f, 1500));   // not yet stopped
+        assertSame(SamplingPolicy.IDLE, policy.select(0.4f, 1500));
+    }
+}
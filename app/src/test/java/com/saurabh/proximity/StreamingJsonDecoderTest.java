@@ -0,0 +1,104 @@
+package com.saurabh.proximity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+public class StreamingJsonDecoderTest {
+
+    private static Buffer json(String text) {
+        return new Buffer().writeUtf8(text);
+    }
+
+    @Test
+    public void readRoadName_prefersRoadOverFallbacks() throws Exception {
+        String response = "{\"place_id\":1,\"boundingbox\":[\"23.1\",\"23.3\"],"
+                + "\"address\":{\"footway\":\"Side Path\",\"street\":\"Some Street\",\"road\":\"Raisen Road\",\"city\":\"Bhopal\"},"
+                + "\"display_name\":\"Raisen Road, Bhopal\"}";
+
+        assertEquals("Raisen Road", StreamingJsonDecoder.readRoadName(json(response)));
+    }
+
+    @Test
+    public void readRoadName_usesFallbacksInPreferenceOrder() throws Exception {
+        String response = "{\"address\":{\"footway\":\"Side Path\",\"street\":\"Some Street\"}}";
+
+        assertEquals("Some Street", StreamingJsonDecoder.readRoadName(json(response)));
+    }
+
+    @Test
+    public void readRoadName_returnsNullWithoutAddress() throws Exception {
+        assertNull(StreamingJsonDecoder.readRoadName(json("{\"error\":\"Unable to geocode\"}")));
+    }
+
+    @Test
+    public void readNearby_fillsStoreAndSkipsUnknownFields() throws Exception {
+        String response = "{\"nearbyPoints\":["
+                + "{\"roadName\":\"A\",\"latitude\":\"23.250000\",\"longitude\":\"77.480000\",\"distance\":\"1.0\","
+                + "\"timestamp\":\"2024-11-24T16:51:00.000Z\",\"distanceKm\":0.111195},"
+                + "{\"roadName\":\"B\",\"latitude\":23.26,\"longitude\":77.49,\"distanceKm\":1.5}"
+                + "],\"count\":2,\"unit\":\"km\"}";
+
+        ProximityClient.NearbyResult result = StreamingJsonDecoder.readNearby(json(response));
+
+        assertEquals(2, result.points.size());
+        assertEquals("A", result.points.roadName(result.hits.index(0)));
+        assertEquals(23.25, result.points.latitude(0), 1e-9);
+        assertEquals(111.195, result.hits.distance(0), 1e-6);
+        assertEquals(1500.0, result.hits.distance(1), 1e-6);
+    }
+
+    @Test
+    public void readRoadName_treatsNullFieldsAsMissing() throws Exception {
+        String response = "{\"address\":{\"road\":null,\"street\":null,\"path\":\"Lake Path\",\"city\":null}}";
+        assertEquals("Lake Path", StreamingJsonDecoder.readRoadName(json(response)));
+        assertNull(StreamingJsonDecoder.readRoadName(json("{\"address\":{\"road\":null}}")));
+        assertNull(StreamingJsonDecoder.readRoadName(json("{\"address\":null}")));
+    }
+
+    @Test
+    public void readRoadName_returnsNullForPayloadsThatAreNotObjects() throws Exception {
+        assertNull(StreamingJsonDecoder.readRoadName(json("[]")));
+        assertNull(StreamingJsonDecoder.readRoadName(json("null")));
+    }
+
+    @Test
+    public void readNearby_readsNullRoadNamesAndDistances() throws Exception {
+        String response = "{\"nearbyPoints\":["
+                + "{\"roadName\":null,\"latitude\":\"23.250000\",\"longitude\":\"77.480000\",\"distanceKm\":null}"
+                + "]}";
+
+        ProximityClient.NearbyResult result = StreamingJsonDecoder.readNearby(json(response));
+
+        assertEquals(1, result.points.size());
+        assertEquals("", result.points.roadName(0));
+        assertTrue(Double.isNaN(result.hits.distance(0)));
+        assertEquals(0, StreamingJsonDecoder.readNearby(json("{\"nearbyPoints\":null}")).points.size());
+    }
+
+    @Test
+    public void readNearby_rejectsPayloadsOfTheWrongShapeWithIOException() {
+        String[] responses = {
+                "[]",
+                "{\"nearbyPoints\":{}}",
+                "{\"nearbyPoints\":[null]}",
+                "{\"nearbyPoints\":[{\"latitude\":null,\"longitude\":\"77.48\"}]}",
+                "{\"nearbyPoints\":[{\"latitude\":\"north\",\"longitude\":\"77.48\"}]}"
+        };
+        for (String response : responses) {
+            try {
+                StreamingJsonDecoder.readNearby(json(response));
+                fail("Decoded " + response);
+            } catch (IOException expected) {
+                // The caller reports it like a network error
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Standard base-32 geohash, used to name the point tiles served by getTile
+const BASE32 = '0123456789bcdefghjkmnpqrstuvwxyz';
+
+const encodeGeohash = (latitude, longitude, precision) => {
+    let latMin = -90;
+    let latMax = 90;
+    let lonMin = -180;
+    let lonMax = 180;
+    let hash = '';
+    let bit = 0;
+    let value = 0;
+    let evenBit = true; // longitude first
+
+    while (hash.length < precision) {
+        if (evenBit) {
+            const mid = (lonMin + lonMax) / 2;
+            if (longitude >= mid) {
+                value = value * 2 + 1;
+                lonMin = mid;
+            } else {
+                value *= 2;
+                lonMax = mid;
+            }
+        } else {
+            const mid = (latMin + latMax) / 2;
+            if (latitude >= mid) {
+                value = value * 2 + 1;
+                latMin = mid;
+            } else {
+                value *= 2;
+                latMax = mid;
+            }
+        }
+        evenBit = !evenBit;
+        if (++bit === 5) {
+            hash += BASE32[value];
+            bit = 0;
+            value = 0;
+        }
+    }
+    return hash;
+};
+
+const isValidGeohash = (hash) => typeof hash === 'string' && /^[0-9b-hjkmnp-z]{1,12}$/.test(hash);
+
+module.exports = { encodeGeohash, isValidGeohash };
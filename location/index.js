@@ -1,5 +1,8 @@
 const { calculateDistance } = require('./distanceCalculator');
-const { createClient } = require('redis');
+const { acceptsPointEncoding, binaryPointsResponse, binaryResponse, encodeTile } = require('./pointCodec');
+const { encodeGeohash, isValidGeohash } = require('./geohash');
+const { STORE_BATCH } = require('./redisScripts');
+const crypto = require('crypto');
 const fs = require('fs');
 const path = require('path');
 
@@ -13,13 +16,23 @@ const CONFIG = {
     },
     DEFAULTS: {
         SEARCH_RADIUS_KM: 2,
-        COORDINATE_PRECISION: 6
+        COORDINATE_PRECISION: 6,
+        MIN_TILE_PRECISION: 4,
+        MAX_BATCH_POINTS: 500,
+        // How long a stored batchId is remembered, i.e. how late a retry can still be recognised
+        BATCH_ID_TTL_SECONDS: 7 * 24 * 60 * 60
     }
 };
 
 // Redis client singleton
 let redisClient;
 
+// Actions that do not touch Redis, so they never wait for a connection
+const COMPUTE_ACTIONS = new Set(['calculateDistance']);
+
+// Actions whose nearbyPoints can be sent in the compact binary encoding
+const POINT_LIST_ACTIONS = new Set(['checkNearby', 'checkNearbyWithDistance']);
+
 // Validation functions
 const validateRequestBody = (body) => {
     if (!body) {
@@ -59,6 +72,8 @@ const validateCoordinates = (lat, lon) => {
 // Redis client initialization
 const getRedisClient = async () => {
     if (!redisClient) {
+        // Loaded lazily so the local stand-in server can run without the redis package
+        const { createClient } = require('redis');
         redisClient = createClient({
             password: CONFIG.REDIS.PASSWORD,
             socket: {
@@ -83,6 +98,11 @@ const getRedisClient = async () => {
     return redisClient;
 };
 
+// Replaces the Redis client, e.g. with an in-memory stand-in for local testing
+const setRedisClient = (client) => {
+    redisClient = client;
+};
+
 // Action handlers
 const handleCalculateDistance = async (params) => {
     const { latitude1, longitude1, latitude2, longitude2 } = params;
@@ -153,22 +173,109 @@ const handleCheckNearby = async (params, client) => {
         count: withinRadius.length
     };
 };
-const handleStoreRoadPoint = async (params, client) => {
+// Same as checkNearby, but every point carries its distance from the query
+// position (distanceKm) and the list is sorted nearest first, so the client
+// needs no follow-up calculateDistance call
+const handleCheckNearbyWithDistance = async (params, client) => {
+    const lat = parseFloat(params.latitude);
+    const lon = parseFloat(params.longitude);
+    const limit = params.limit !== undefined ? parseInt(params.limit, 10) : undefined;
+
+    validateCoordinates(lat, lon);
+    if (limit !== undefined && (!Number.isInteger(limit) || limit < 1)) {
+        throw new Error('Invalid limit: must be a positive integer');
+    }
+
+    const storedPoints = await client.lRange('storedPoints', 0, -1);
+    const withDistance = (storedPoints || [])
+        .map(point => {
+            try {
+                return JSON.parse(point);
+            } catch (e) {
+                console.warn('Invalid point data in Redis:', point);
+                return null;
+            }
+        })
+        .filter(point => point !== null)
+        .map(point => ({
+            ...point,
+            distanceKm: Number(calculateDistance(
+                lat,
+                lon,
+                parseFloat(point.latitude),
+                parseFloat(point.longitude)
+            ).toFixed(CONFIG.DEFAULTS.COORDINATE_PRECISION))
+        }))
+        .filter(point => point.distanceKm <= CONFIG.DEFAULTS.SEARCH_RADIUS_KM)
+        .sort((a, b) => a.distanceKm - b.distanceKm);
+
+    const nearbyPoints = limit !== undefined ? withDistance.slice(0, limit) : withDistance;
+    return {
+        nearbyPoints,
+        count: nearbyPoints.length,
+        unit: 'km'
+    };
+};
+
+// Returns every stored point inside one geohash tile, with a version stamp
+// derived from the tile's contents. A client that already holds the current
+// version (knownVersion) gets notModified instead of the points.
+const handleGetTile = async (params, client) => {
+    const { geohash, knownVersion } = params;
+    if (!isValidGeohash(geohash) || geohash.length < CONFIG.DEFAULTS.MIN_TILE_PRECISION) {
+        throw new Error(`Invalid geohash: expected ${CONFIG.DEFAULTS.MIN_TILE_PRECISION}-12 geohash characters`);
+    }
+
+    const storedPoints = await client.lRange('storedPoints', 0, -1);
+    const raw = [];
+    const points = [];
+    for (const entry of storedPoints || []) {
+        let point;
+        try {
+            point = JSON.parse(entry);
+        } catch (e) {
+            console.warn('Invalid point data in Redis:', entry);
+            continue;
+        }
+        const hash = encodeGeohash(parseFloat(point.latitude), parseFloat(point.longitude), geohash.length);
+        if (hash === geohash) {
+            raw.push(entry);
+            points.push(point);
+        }
+    }
+
+    const version = crypto.createHash('sha1').update(raw.sort().join('\n')).digest('hex').slice(0, 16);
+    if (knownVersion === version) {
+        return { geohash, version, notModified: true };
+    }
+    return {
+        geohash,
+        version,
+        nearbyPoints: points,
+        count: points.length
+    };
+};
+
+// Validates one road point and shapes it the way it is stored in Redis
+const toRoadPoint = (params, timestamp) => {
     const { roadName, latitude, longitude, distance } = params;
-    
+
     // Validate coordinates
     [
         [parseFloat(latitude), parseFloat(longitude)]
     ].forEach(([lat, lon]) => validateCoordinates(lat, lon));
 
-    // Create road point object
-    const roadPoint = {
+    return {
         roadName,
         latitude: parseFloat(latitude).toFixed(CONFIG.DEFAULTS.COORDINATE_PRECISION),
         longitude: parseFloat(longitude).toFixed(CONFIG.DEFAULTS.COORDINATE_PRECISION),
         distance: parseFloat(distance).toFixed(1),
-        timestamp: new Date().toISOString()
+        timestamp
     };
+};
+
+const handleStoreRoadPoint = async (params, client) => {
+    const roadPoint = toRoadPoint(params, new Date().toISOString());
 
     // Store the point in Redis list
     await client.lPush('storedPoints', JSON.stringify(roadPoint));
@@ -179,6 +286,95 @@ const handleStoreRoadPoint = async (params, client) => {
     };
 };
 
+// Stores points recorded on a device in one multi-element LPUSH. Each point
+// keeps the time it was recorded (timestamp, ISO 8601) when it has one. The
+// client names every batch with a batchId and resends the same one until it
+// gets an answer, so a batch that was stored but whose response was lost is
+// acknowledged again instead of being pushed twice.
+const handleStoreRoadPoints = async (params, client) => {
+    const { batchId, points } = params;
+    if (typeof batchId !== 'string' || batchId.length === 0 || batchId.length > 128) {
+        throw new Error('Invalid batchId: expected a string of 1-128 characters');
+    }
+    if (!Array.isArray(points) || points.length === 0 || points.length > CONFIG.DEFAULTS.MAX_BATCH_POINTS) {
+        throw new Error(`Invalid points: expected 1-${CONFIG.DEFAULTS.MAX_BATCH_POINTS} road points`);
+    }
+    const now = new Date().toISOString();
+    const roadPoints = points.map(point => {
+        const recordedAt = point && point.timestamp ? new Date(point.timestamp) : null;
+        return toRoadPoint(point || {}, recordedAt && !isNaN(recordedAt) ? recordedAt.toISOString() : now);
+    });
+
+    // Claim and push in one script: a claim without its points (a Lambda
+    // timeout or crash between two commands) would make the client's retry
+    // look like a duplicate and the batch would be lost
+    const stored = await client.eval(STORE_BATCH.lua, {
+        keys: [`roadPointBatch:${batchId}`, 'storedPoints'],
+        arguments: [
+            String(roadPoints.length),
+            String(CONFIG.DEFAULTS.BATCH_ID_TTL_SECONDS),
+            ...roadPoints.map(point => JSON.stringify(point))
+        ]
+    });
+    if (stored === 0) {
+        return { message: 'Batch already stored', batchId, stored: 0, duplicate: true };
+    }
+
+    return { message: 'Road points stored successfully', batchId, stored: roadPoints.length, duplicate: false };
+};
+
+const runAction = async (params, getClient) => {
+    const client = COMPUTE_ACTIONS.has(params.action) ? null : await getClient();
+
+    switch (params.action) {
+        case 'calculateDistance':
+            return handleCalculateDistance(params);
+        case 'checkNearby':
+            return handleCheckNearby(params, client);
+        case 'checkNearbyWithDistance':
+            return handleCheckNearbyWithDistance(params, client);
+        case 'storeRoadPoint':
+            return handleStoreRoadPoint(params, client);
+        case 'storeRoadPoints':
+            return handleStoreRoadPoints(params, client);
+        case 'getTile':
+            return handleGetTile(params, client);
+        default:
+            throw new Error(`Invalid action: ${params.action}`);
+    }
+};
+
+// Runs several actions in one request. Each entry of params.actions is an
+// ordinary request body; results come back in the same order, and a failing
+// action reports its error without failing the others.
+const handleBatch = async (params, getClient) => {
+    if (!Array.isArray(params.actions) || params.actions.length === 0) {
+        throw new Error('Invalid batch: actions must be a non-empty array');
+    }
+
+    const results = await Promise.all(params.actions.map(async (item) => {
+        const action = item && item.action;
+        try {
+            if (!action) {
+                throw new Error('Missing required field: action');
+            }
+            if (action === 'batch') {
+                throw new Error('Invalid action: batch cannot be nested');
+            }
+            return { action, result: await runAction(item, getClient) };
+        } catch (error) {
+            const statusCode = error.message.includes('Invalid') || error.message.includes('Missing') ? 400 : 500;
+            return {
+                action,
+                error: statusCode === 400 ? error.message : 'Internal Server Error',
+                statusCode
+            };
+        }
+    }));
+
+    return { results };
+};
+
 // Main handler
 exports.handler = async (event) => {
         if (event.httpMethod === 'GET') {
@@ -202,21 +398,18 @@ exports.handler = async (event) => {
         // Validate and parse request body
         const params = validateRequestBody(event.body);
         
-        const client = await getRedisClient();
-        let result;
-
-        switch (params.action) {
-            case 'calculateDistance':
-                result = await handleCalculateDistance(params);
-                break;
-            case 'checkNearby':
-                result = await handleCheckNearby(params, client);
-                break;
-            case 'storeRoadPoint':
-                result = await handleStoreRoadPoint(params, client);
-                break;
-            default:
-                throw new Error(`Invalid action: ${params.action}`);
+        const result = params.action === 'batch'
+            ? await handleBatch(params, getRedisClient)
+            : await runAction(params, getRedisClient);
+
+        if (POINT_LIST_ACTIONS.has(params.action) && acceptsPointEncoding(event.headers)) {
+            return binaryPointsResponse(result.nearbyPoints, event.headers);
+        }
+        if (params.action === 'getTile' && acceptsPointEncoding(event.headers)) {
+            return binaryResponse(
+                encodeTile(result.version, result.notModified ? null : result.nearbyPoints),
+                event.headers
+            );
         }
 
         return {
@@ -248,4 +441,6 @@ exports.handler = async (event) => {
             })
         };
     }
-};
\ No newline at end of file
+};
+
+exports.setRedisClient = setRedisClient;
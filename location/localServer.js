@@ -0,0 +1,118 @@
+// Local stand-in for the API Gateway + Lambda deployment. Serves the same
+// handler over plain HTTP, backed by an in-memory Redis stand-in, so the
+// Android client can be pointed at http://<host>:<port>/ during development.
+//
+// It also answers GET /reverse like Nominatim, naming the road of the nearest
+// stored point, so trace replays (see TraceReplayer in the app) run without
+// touching any external service. GEOCODE_DELAY_MS adds a fixed delay to those
+// answers to approximate the real service.
+//
+// Usage: node localServer.js [port] [seed.json]
+// seed.json is an array of {roadName, latitude, longitude} stored on startup.
+const fs = require('fs');
+const http = require('http');
+const { URL } = require('url');
+const { handler, setRedisClient } = require('./index');
+const { createMemoryClient } = require('./memoryRedis');
+const { calculateDistance } = require('./distanceCalculator');
+
+// Farther than this from every stored point, /reverse reports no road
+const REVERSE_MAX_DISTANCE_KM = 0.2;
+
+// Stores points through the handler, i.e. into the client given to createServer
+const seedPoints = async (points) => {
+    for (const { roadName, latitude, longitude } of points) {
+        const response = await handler({
+            httpMethod: 'POST',
+            body: JSON.stringify({ action: 'storeRoadPoint', roadName, latitude, longitude, distance: 0 })
+        });
+        if (response.statusCode !== 200) {
+            throw new Error(`Cannot seed point ${roadName}: ${response.body}`);
+        }
+    }
+};
+
+const reverseGeocode = async (redisClient, searchParams) => {
+    const lat = parseFloat(searchParams.get('lat'));
+    const lon = parseFloat(searchParams.get('lon'));
+    if (!Number.isFinite(lat) || !Number.isFinite(lon)) {
+        return { statusCode: 400, body: { error: 'Unable to geocode' } };
+    }
+
+    let nearest = null;
+    let nearestKm = REVERSE_MAX_DISTANCE_KM;
+    for (const entry of await redisClient.lRange('storedPoints', 0, -1)) {
+        let point;
+        try {
+            point = JSON.parse(entry);
+        } catch (e) {
+            continue;
+        }
+        const distanceKm = calculateDistance(lat, lon, parseFloat(point.latitude), parseFloat(point.longitude));
+        if (distanceKm <= nearestKm) {
+            nearest = point;
+            nearestKm = distanceKm;
+        }
+    }
+    return {
+        statusCode: 200,
+        body: { lat: String(lat), lon: String(lon), address: nearest ? { road: nearest.roadName } : {} }
+    };
+};
+
+const createServer = (redisClient = createMemoryClient(), options = {}) => {
+    setRedisClient(redisClient);
+    const geocodeDelayMs = options.geocodeDelayMs || 0;
+
+    return http.createServer((req, res) => {
+        const chunks = [];
+        req.on('data', chunk => chunks.push(chunk));
+        req.on('end', async () => {
+            const url = new URL(req.url, 'http://localhost');
+            if (req.method === 'GET' && url.pathname === '/reverse') {
+                const { statusCode, body } = await reverseGeocode(redisClient, url.searchParams);
+                setTimeout(() => {
+                    res.writeHead(statusCode, { 'Content-Type': 'application/json' });
+                    res.end(JSON.stringify(body));
+                }, geocodeDelayMs);
+                return;
+            }
+
+            const event = {
+                httpMethod: req.method,
+                path: req.url,
+                headers: req.headers,
+                body: chunks.length ? Buffer.concat(chunks).toString('utf-8') : null
+            };
+            try {
+                const response = await handler(event);
+                const body = response.isBase64Encoded
+                    ? Buffer.from(response.body, 'base64')
+                    : response.body;
+                res.writeHead(response.statusCode, response.headers);
+                res.end(body);
+            } catch (error) {
+                res.writeHead(500, { 'Content-Type': 'application/json' });
+                res.end(JSON.stringify({ error: error.message }));
+            }
+        });
+    });
+};
+
+if (require.main === module) {
+    const port = parseInt(process.argv[2] || process.env.PORT || '3000', 10);
+    const seedFile = process.argv[3];
+    const redisClient = createMemoryClient();
+    const server = createServer(redisClient, { geocodeDelayMs: parseInt(process.env.GEOCODE_DELAY_MS || '0', 10) });
+    const seeded = seedFile ? seedPoints(JSON.parse(fs.readFileSync(seedFile, 'utf-8'))) : Promise.resolve();
+    seeded.then(() => {
+        server.listen(port, () => {
+            console.log(`Local proximity server listening on http://localhost:${port}/`);
+        });
+    }).catch((error) => {
+        console.error(error.message);
+        process.exit(1);
+    });
+}
+
+module.exports = { createServer, seedPoints };
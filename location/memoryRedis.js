@@ -0,0 +1,73 @@
+// In-memory stand-in for the subset of the redis client used by index.js.
+// Lets the handler run locally (localServer.js, tests) without a Redis server.
+const { SCRIPTS } = require('./redisScripts');
+
+const createMemoryClient = () => {
+    const lists = new Map();
+    const strings = new Map(); // key -> { value, expiresAt }
+
+    const list = (key) => {
+        if (!lists.has(key)) {
+            lists.set(key, []);
+        }
+        return lists.get(key);
+    };
+
+    // Redis ranges are inclusive and accept negative indexes from the end
+    const resolveIndex = (index, length) => (index < 0 ? length + index : index);
+
+    return {
+        async lPush(key, values) {
+            const items = list(key);
+            for (const value of [].concat(values)) {
+                items.unshift(value);
+            }
+            return items.length;
+        },
+        async lRange(key, start, stop) {
+            const items = list(key);
+            const from = Math.max(0, resolveIndex(start, items.length));
+            const to = Math.min(items.length - 1, resolveIndex(stop, items.length));
+            return from > to ? [] : items.slice(from, to + 1);
+        },
+        async lLen(key) {
+            return list(key).length;
+        },
+        // Supports the NX and EX options; returns null when NX finds the key
+        async set(key, value, options = {}) {
+            const existing = strings.get(key);
+            const live = existing && (existing.expiresAt === null || existing.expiresAt > Date.now());
+            if (options.NX && live) {
+                return null;
+            }
+            strings.set(key, {
+                value: String(value),
+                expiresAt: options.EX ? Date.now() + options.EX * 1000 : null
+            });
+            return 'OK';
+        },
+        async get(key) {
+            const entry = strings.get(key);
+            return entry && (entry.expiresAt === null || entry.expiresAt > Date.now()) ? entry.value : null;
+        },
+        async del(key) {
+            const removed = (strings.delete(key) ? 1 : 0) + (lists.delete(key) ? 1 : 0);
+            return removed;
+        },
+        // Runs the JS version of one of the scripts in redisScripts.js
+        async eval(script, { keys = [], arguments: args = [] } = {}) {
+            const known = SCRIPTS.find(candidate => candidate.lua === script);
+            if (!known) {
+                throw new Error('Script not supported by the memory client');
+            }
+            return known.emulate(this, keys, args);
+        },
+        async flushAll() {
+            lists.clear();
+            strings.clear();
+            return 'OK';
+        }
+    };
+};
+
+module.exports = { createMemoryClient };
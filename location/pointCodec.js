@@ -0,0 +1,191 @@
+// Compact binary encoding for nearby-point responses, used instead of JSON when
+// the client sends "Accept: application/x-proximity-points".
+//
+// Layout (all integers are unsigned LEB128 varints unless noted):
+//   "PXP" magic, format version (1 byte), flags (1 byte, bit 0 = distances present)
+//   road name count, then for each name: UTF-8 byte length, UTF-8 bytes
+//   point count, then for each point:
+//     zigzag(latitude * 1e6 - previous), zigzag(longitude * 1e6 - previous),
+//     road name index,
+//     [zigzag(distance in mm - previous)]   only when flag bit 0 is set
+// Coordinates are fixed-point micro-degrees (the same 6 decimals the Lambda
+// stores) and are delta-coded against the previous point.
+const zlib = require('zlib');
+
+const MEDIA_TYPE = 'application/x-proximity-points';
+const MAGIC = Buffer.from('PXP', 'ascii');
+const VERSION = 1;
+const FLAG_DISTANCES = 1;
+
+const zigzag = (n) => (n >= 0 ? n * 2 : -n * 2 - 1);
+const unzigzag = (n) => (n % 2 === 0 ? n / 2 : -(n + 1) / 2);
+
+const writeVarint = (bytes, value) => {
+    let v = value;
+    while (v >= 0x80) {
+        bytes.push((v % 0x80) | 0x80);
+        v = Math.floor(v / 0x80);
+    }
+    bytes.push(v);
+};
+
+const toFixed = (value) => Math.round(parseFloat(value) * 1e6);
+
+const encodePoints = (points) => {
+    const withDistance = points.length > 0 && points.every(p => p.distanceKm !== undefined);
+    const names = [];
+    const nameIds = new Map();
+    for (const point of points) {
+        const name = point.roadName || '';
+        if (!nameIds.has(name)) {
+            nameIds.set(name, names.length);
+            names.push(name);
+        }
+    }
+
+    const bytes = [];
+    bytes.push(...MAGIC, VERSION, withDistance ? FLAG_DISTANCES : 0);
+    writeVarint(bytes, names.length);
+    for (const name of names) {
+        const utf8 = Buffer.from(name, 'utf-8');
+        writeVarint(bytes, utf8.length);
+        bytes.push(...utf8);
+    }
+
+    writeVarint(bytes, points.length);
+    let prevLat = 0;
+    let prevLon = 0;
+    let prevDistance = 0;
+    for (const point of points) {
+        const lat = toFixed(point.latitude);
+        const lon = toFixed(point.longitude);
+        writeVarint(bytes, zigzag(lat - prevLat));
+        writeVarint(bytes, zigzag(lon - prevLon));
+        writeVarint(bytes, nameIds.get(point.roadName || ''));
+        prevLat = lat;
+        prevLon = lon;
+        if (withDistance) {
+            const distance = Math.round(point.distanceKm * 1e6);
+            writeVarint(bytes, zigzag(distance - prevDistance));
+            prevDistance = distance;
+        }
+    }
+    return Buffer.from(bytes);
+};
+
+// Tile responses (getTile) wrap a point list with the tile's version:
+//   "PXT" magic, format version (1 byte), flags (1 byte, bit 0 = not modified)
+//   version string: UTF-8 byte length (varint), UTF-8 bytes
+//   the encodePoints output, only when the tile was modified
+const TILE_MAGIC = Buffer.from('PXT', 'ascii');
+const FLAG_NOT_MODIFIED = 1;
+
+const encodeTile = (version, points) => {
+    const bytes = [];
+    const utf8 = Buffer.from(version, 'utf-8');
+    bytes.push(...TILE_MAGIC, VERSION, points ? 0 : FLAG_NOT_MODIFIED);
+    writeVarint(bytes, utf8.length);
+    bytes.push(...utf8);
+    const header = Buffer.from(bytes);
+    return points ? Buffer.concat([header, encodePoints(points)]) : header;
+};
+
+// Inverse of encodePoints; used by tests and tooling
+const decodePoints = (buffer) => {
+    let offset = 0;
+    const readVarint = () => {
+        let value = 0;
+        let scale = 1;
+        for (;;) {
+            if (offset >= buffer.length) {
+                throw new Error('Invalid point encoding: truncated');
+            }
+            const b = buffer[offset++];
+            value += (b & 0x7f) * scale;
+            if (b < 0x80) return value;
+            scale *= 0x80;
+        }
+    };
+
+    if (buffer.length < 5 || !buffer.subarray(0, 3).equals(MAGIC) || buffer[3] !== VERSION) {
+        throw new Error('Invalid point encoding: bad header');
+    }
+    const withDistance = (buffer[4] & FLAG_DISTANCES) !== 0;
+    offset = 5;
+
+    const names = [];
+    const nameCount = readVarint();
+    for (let i = 0; i < nameCount; i++) {
+        const length = readVarint();
+        names.push(buffer.toString('utf-8', offset, offset + length));
+        offset += length;
+    }
+
+    const points = [];
+    const count = readVarint();
+    let lat = 0;
+    let lon = 0;
+    let distance = 0;
+    for (let i = 0; i < count; i++) {
+        lat += unzigzag(readVarint());
+        lon += unzigzag(readVarint());
+        const point = {
+            roadName: names[readVarint()],
+            latitude: lat / 1e6,
+            longitude: lon / 1e6
+        };
+        if (withDistance) {
+            distance += unzigzag(readVarint());
+            point.distanceKm = distance / 1e6;
+        }
+        points.push(point);
+    }
+    return points;
+};
+
+const headerValue = (headers, name) => {
+    if (!headers) return undefined;
+    const key = Object.keys(headers).find(k => k.toLowerCase() === name);
+    return key !== undefined ? headers[key] : undefined;
+};
+
+const acceptsPointEncoding = (headers) => {
+    const accept = headerValue(headers, 'accept');
+    return typeof accept === 'string' && accept.includes(MEDIA_TYPE);
+};
+
+const acceptsGzip = (headers) => {
+    const encoding = headerValue(headers, 'accept-encoding');
+    return typeof encoding === 'string' && /\bgzip\b/.test(encoding);
+};
+
+// Builds the Lambda response for a binary-encoded point list
+const binaryPointsResponse = (points, headers) => binaryResponse(encodePoints(points), headers);
+
+const binaryResponse = (encoded, headers) => {
+    let body = encoded;
+    const responseHeaders = {
+        'Content-Type': MEDIA_TYPE,
+        'Cache-Control': 'no-store'
+    };
+    if (acceptsGzip(headers)) {
+        body = zlib.gzipSync(body);
+        responseHeaders['Content-Encoding'] = 'gzip';
+    }
+    return {
+        statusCode: 200,
+        headers: responseHeaders,
+        isBase64Encoded: true,
+        body: body.toString('base64')
+    };
+};
+
+module.exports = {
+    MEDIA_TYPE,
+    encodePoints,
+    encodeTile,
+    decodePoints,
+    acceptsPointEncoding,
+    binaryPointsResponse,
+    binaryResponse
+};
@@ -0,0 +1,32 @@
+// Lua scripts that index.js runs with EVAL, so Redis executes their steps as
+// one unit. Each has an emulate() with the same steps against the memory
+// client (memoryRedis.js), which has no Lua.
+
+// Stores a batch of road points under a batch id unless the id was already
+// used. KEYS: the batch id key, the points list. ARGV: the point count (the
+// id key's value), its TTL in seconds, then the points. The points go in
+// before the id is claimed: if the push fails nothing is claimed and a retry
+// stores the batch; a claimed id always has its points stored.
+// Returns 1 if the batch was stored, 0 if the id was already used.
+const STORE_BATCH = {
+    lua: `
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+redis.call('LPUSH', KEYS[2], unpack(ARGV, 3))
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+return 1
+`,
+    emulate: async (client, keys, args) => {
+        if (await client.get(keys[0]) !== null) {
+            return 0;
+        }
+        await client.lPush(keys[1], args.slice(2));
+        await client.set(keys[0], args[0], { EX: Number(args[1]) });
+        return 1;
+    }
+};
+
+const SCRIPTS = [STORE_BATCH];
+
+module.exports = { STORE_BATCH, SCRIPTS };
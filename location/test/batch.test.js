@@ -0,0 +1,68 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const { handler, setRedisClient } = require('../index');
+const { createMemoryClient } = require('../memoryRedis');
+
+const invoke = async (body) => {
+    const response = await handler({ httpMethod: 'POST', body: JSON.stringify(body) });
+    return { statusCode: response.statusCode, body: JSON.parse(response.body) };
+};
+
+const seed = async () => {
+    const client = createMemoryClient();
+    setRedisClient(client);
+    const points = [
+        ['Far Road', 23.2700, 77.5000],
+        ['Raisen Road', 23.2519, 77.4845],
+        ['Near Road', 23.2525, 77.4855],
+        ['Other City', 28.7041, 77.1025]
+    ];
+    for (const [roadName, latitude, longitude] of points) {
+        await invoke({ action: 'storeRoadPoint', roadName, latitude, longitude, distance: 0 });
+    }
+};
+
+test('checkNearbyWithDistance returns points in range sorted by distance', async () => {
+    await seed();
+    const { statusCode, body } = await invoke({
+        action: 'checkNearbyWithDistance',
+        latitude: 23.25204561436272,
+        longitude: 77.48521347885162
+    });
+
+    assert.strictEqual(statusCode, 200);
+    assert.deepStrictEqual(body.nearbyPoints.map(p => p.roadName), ['Near Road', 'Raisen Road']);
+    assert.strictEqual(body.count, 2);
+    assert.ok(body.nearbyPoints[0].distanceKm <= body.nearbyPoints[1].distanceKm);
+});
+
+test('checkNearbyWithDistance honours limit', async () => {
+    await seed();
+    const { body } = await invoke({
+        action: 'checkNearbyWithDistance',
+        latitude: 23.2520,
+        longitude: 77.4852,
+        limit: 1
+    });
+
+    assert.strictEqual(body.count, 1);
+    assert.strictEqual(body.nearbyPoints[0].roadName, 'Near Road');
+});
+
+test('batch runs every action and isolates failures', async () => {
+    await seed();
+    const { statusCode, body } = await invoke({
+        action: 'batch',
+        actions: [
+            { action: 'calculateDistance', latitude1: 22.5726, longitude1: 88.3639, latitude2: 28.7041, longitude2: 77.1025 },
+            { action: 'checkNearby', latitude: 23.2520, longitude: 77.4852 },
+            { action: 'noSuchAction' }
+        ]
+    });
+
+    assert.strictEqual(statusCode, 200);
+    assert.strictEqual(body.results.length, 3);
+    assert.strictEqual(body.results[0].result.unit, 'km');
+    assert.strictEqual(body.results[1].result.count, 2);
+    assert.strictEqual(body.results[2].statusCode, 400);
+});
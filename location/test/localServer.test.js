@@ -0,0 +1,46 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const { createServer, seedPoints } = require('../localServer');
+const { createMemoryClient } = require('../memoryRedis');
+
+const withServer = async (run) => {
+    const server = createServer(createMemoryClient());
+    await new Promise(resolve => server.listen(0, resolve));
+    try {
+        await seedPoints([
+            { roadName: 'Raisen Road', latitude: 23.2519, longitude: 77.4845 },
+            { roadName: 'Near Road', latitude: 23.2525, longitude: 77.4855 }
+        ]);
+        await run(`http://127.0.0.1:${server.address().port}`);
+    } finally {
+        await new Promise(resolve => server.close(resolve));
+    }
+};
+
+test('reverse names the road of the nearest stored point', async () => {
+    await withServer(async (base) => {
+        const response = await fetch(`${base}/reverse?format=json&lat=23.252400&lon=77.485400`);
+        assert.strictEqual(response.status, 200);
+        const body = await response.json();
+        assert.strictEqual(body.address.road, 'Near Road');
+    });
+});
+
+test('reverse returns an address without a road far from every point', async () => {
+    await withServer(async (base) => {
+        const body = await (await fetch(`${base}/reverse?format=json&lat=28.7041&lon=77.1025`)).json();
+        assert.deepStrictEqual(body.address, {});
+    });
+});
+
+test('seeded points are served by the lambda actions', async () => {
+    await withServer(async (base) => {
+        const response = await fetch(base, {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/json' },
+            body: JSON.stringify({ action: 'checkNearbyWithDistance', latitude: 23.2520, longitude: 77.4850 })
+        });
+        const body = await response.json();
+        assert.strictEqual(body.count, 2);
+    });
+});
@@ -0,0 +1,73 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const zlib = require('zlib');
+const { encodePoints, decodePoints, MEDIA_TYPE } = require('../pointCodec');
+const { handler, setRedisClient } = require('../index');
+const { createMemoryClient } = require('../memoryRedis');
+
+const POINTS = [
+    { roadName: 'Near Road', latitude: '23.252500', longitude: '77.485500', distanceKm: 0.054 },
+    { roadName: 'Raisen Road', latitude: '23.251900', longitude: '77.484500', distanceKm: 0.08 },
+    { roadName: 'Near Road', latitude: '-23.5', longitude: '-179.999999', distanceKm: 1.999999 }
+];
+
+// Shared with PointCodecTest on the Android side
+const GOLDEN_HEX = '505850010102094e65617220526f61640b52616973656e20526f616403a8b89616f8d6f24900e0cb06af09cf0f01a09603b782cb2ca59bc7f50100feafea01';
+
+test('encodePoints round-trips through decodePoints', () => {
+    const decoded = decodePoints(encodePoints(POINTS));
+    assert.deepStrictEqual(decoded, [
+        { roadName: 'Near Road', latitude: 23.2525, longitude: 77.4855, distanceKm: 0.054 },
+        { roadName: 'Raisen Road', latitude: 23.2519, longitude: 77.4845, distanceKm: 0.08 },
+        { roadName: 'Near Road', latitude: -23.5, longitude: -179.999999, distanceKm: 1.999999 }
+    ]);
+});
+
+test('encoding matches the golden bytes the Android decoder is tested against', () => {
+    assert.strictEqual(encodePoints(POINTS).toString('hex'), GOLDEN_HEX);
+});
+
+test('points without distances are encoded without the distance column', () => {
+    const points = POINTS.map(({ distanceKm, ...rest }) => rest);
+    const decoded = decodePoints(encodePoints(points));
+    assert.strictEqual(decoded.length, 3);
+    assert.strictEqual(decoded[0].distanceKm, undefined);
+});
+
+test('binary encoding is much smaller than JSON', () => {
+    const points = [];
+    for (let i = 0; i < 500; i++) {
+        points.push({
+            roadName: `Road ${i % 20}`,
+            latitude: (23.25 + i * 0.0001).toFixed(6),
+            longitude: (77.48 + i * 0.00013).toFixed(6),
+            distance: '0.0',
+            timestamp: '2024-11-24T16:51:00.000Z',
+            distanceKm: i * 0.003
+        });
+    }
+    const json = Buffer.byteLength(JSON.stringify({ nearbyPoints: points, count: points.length }));
+    const binary = encodePoints(points).length;
+    assert.ok(binary * 5 < json, `binary ${binary} bytes vs json ${json} bytes`);
+});
+
+test('handler negotiates the binary encoding through Accept', async () => {
+    setRedisClient(createMemoryClient());
+    await handler({ body: JSON.stringify({ action: 'storeRoadPoint', roadName: 'Near Road', latitude: 23.2525, longitude: 77.4855, distance: 0 }) });
+
+    const response = await handler({
+        headers: { Accept: MEDIA_TYPE, 'Accept-Encoding': 'gzip' },
+        body: JSON.stringify({ action: 'checkNearbyWithDistance', latitude: 23.2520, longitude: 77.4852 })
+    });
+
+    assert.strictEqual(response.headers['Content-Type'], MEDIA_TYPE);
+    assert.strictEqual(response.isBase64Encoded, true);
+    const decoded = decodePoints(zlib.gunzipSync(Buffer.from(response.body, 'base64')));
+    assert.strictEqual(decoded.length, 1);
+    assert.strictEqual(decoded[0].roadName, 'Near Road');
+
+    const jsonResponse = await handler({
+        body: JSON.stringify({ action: 'checkNearbyWithDistance', latitude: 23.2520, longitude: 77.4852 })
+    });
+    assert.strictEqual(jsonResponse.headers['Content-Type'], 'application/json');
+});
@@ -0,0 +1,116 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const { handler, setRedisClient } = require('../index');
+const { createMemoryClient } = require('../memoryRedis');
+
+const invoke = async (body) => {
+    const response = await handler({ httpMethod: 'POST', body: JSON.stringify(body) });
+    return { statusCode: response.statusCode, body: JSON.parse(response.body) };
+};
+
+const batch = (batchId) => ({
+    action: 'storeRoadPoints',
+    batchId,
+    points: [
+        { roadName: 'Raisen Road', latitude: 23.2519, longitude: 77.4845, distance: 12.5, timestamp: '2024-05-01T10:00:00.000Z' },
+        { roadName: 'Raisen Road', latitude: 23.2525, longitude: 77.4855, distance: 3 }
+    ]
+});
+
+test('storeRoadPoints stores the whole batch in one push', async () => {
+    const client = createMemoryClient();
+    const pushes = [];
+    const lPush = client.lPush;
+    client.lPush = async (key, values) => {
+        pushes.push(values);
+        return lPush(key, values);
+    };
+    setRedisClient(client);
+
+    const { statusCode, body } = await invoke(batch('device-1:0'));
+
+    assert.strictEqual(statusCode, 200);
+    assert.strictEqual(body.stored, 2);
+    assert.strictEqual(pushes.length, 1);
+    const stored = (await client.lRange('storedPoints', 0, -1)).map(JSON.parse);
+    assert.strictEqual(stored.length, 2);
+    const recorded = stored.find(point => point.latitude === '23.251900');
+    assert.strictEqual(recorded.timestamp, '2024-05-01T10:00:00.000Z');
+    assert.strictEqual(recorded.distance, '12.5');
+});
+
+test('storeRoadPoints acknowledges a retried batch without storing it again', async () => {
+    const client = createMemoryClient();
+    setRedisClient(client);
+
+    await invoke(batch('device-1:1'));
+    const { statusCode, body } = await invoke(batch('device-1:1'));
+
+    assert.strictEqual(statusCode, 200);
+    assert.strictEqual(body.duplicate, true);
+    assert.strictEqual(await client.lLen('storedPoints'), 2);
+
+    await invoke(batch('device-1:2'));
+    assert.strictEqual(await client.lLen('storedPoints'), 4);
+});
+
+test('storeRoadPoints releases the batchId when the push fails', async () => {
+    const client = createMemoryClient();
+    const lPush = client.lPush;
+    client.lPush = async () => {
+        throw new Error('Connection lost');
+    };
+    setRedisClient(client);
+
+    const failed = await invoke(batch('device-1:3'));
+    assert.strictEqual(failed.statusCode, 500);
+
+    client.lPush = lPush;
+    const retried = await invoke(batch('device-1:3'));
+    assert.strictEqual(retried.body.stored, 2);
+});
+
+test('storeRoadPoints leaves no claim behind when the push fails', async () => {
+    const client = createMemoryClient();
+    client.lPush = async () => {
+        throw new Error('OOM command not allowed');
+    };
+    setRedisClient(client);
+
+    assert.strictEqual((await invoke(batch('device-1:4'))).statusCode, 500);
+    assert.strictEqual(await client.get('roadPointBatch:device-1:4'), null);
+});
+
+test('storeRoadPoints does not acknowledge a retry while the first push is still running', async () => {
+    const client = createMemoryClient();
+    const lPush = client.lPush;
+    let release;
+    client.lPush = () => new Promise(resolve => {
+        release = resolve;
+    });
+    setRedisClient(client);
+
+    const first = invoke(batch('device-1:5')); // stuck in the push, e.g. a Lambda about to time out
+    await new Promise(resolve => setImmediate(resolve));
+    client.lPush = lPush;
+    const retried = await invoke(batch('device-1:5'));
+
+    assert.strictEqual(retried.body.duplicate, false);
+    assert.strictEqual(retried.body.stored, 2);
+    assert.strictEqual(await client.lLen('storedPoints'), 2);
+    release(0);
+    await first;
+});
+
+test('storeRoadPoints rejects malformed batches', async () => {
+    setRedisClient(createMemoryClient());
+
+    assert.strictEqual((await invoke({ action: 'storeRoadPoints', points: batch('x').points })).statusCode, 400);
+    assert.strictEqual((await invoke({ action: 'storeRoadPoints', batchId: 'x', points: [] })).statusCode, 400);
+    const badPoint = await invoke({
+        action: 'storeRoadPoints',
+        batchId: 'x',
+        points: [{ roadName: 'Nowhere', latitude: 'north', longitude: 77 }]
+    });
+    assert.strictEqual(badPoint.statusCode, 400);
+});
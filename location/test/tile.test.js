@@ -0,0 +1,64 @@
+const test = require('node:test');
+const assert = require('node:assert');
+const { handler, setRedisClient } = require('../index');
+const { createMemoryClient } = require('../memoryRedis');
+const { encodeGeohash } = require('../geohash');
+const { decodePoints, MEDIA_TYPE } = require('../pointCodec');
+
+const invoke = async (body, headers) => handler({ headers, body: JSON.stringify(body) });
+
+const seed = async () => {
+    setRedisClient(createMemoryClient());
+    await invoke({ action: 'storeRoadPoint', roadName: 'Raisen Road', latitude: 23.2519, longitude: 77.4845, distance: 0 });
+    await invoke({ action: 'storeRoadPoint', roadName: 'Other City', latitude: 28.7041, longitude: 77.1025, distance: 0 });
+};
+
+test('encodeGeohash matches the reference implementation', () => {
+    assert.strictEqual(encodeGeohash(57.64911, 10.40744, 11), 'u4pruydqqvj');
+    assert.strictEqual(encodeGeohash(23.2519, 77.4845, 5), 'tsph7');
+});
+
+test('getTile returns only the points inside the tile', async () => {
+    await seed();
+    const response = await invoke({ action: 'getTile', geohash: encodeGeohash(23.2519, 77.4845, 5) });
+    const body = JSON.parse(response.body);
+
+    assert.strictEqual(response.statusCode, 200);
+    assert.strictEqual(body.count, 1);
+    assert.strictEqual(body.nearbyPoints[0].roadName, 'Raisen Road');
+    assert.match(body.version, /^[0-9a-f]{16}$/);
+});
+
+test('getTile reports notModified for the current version', async () => {
+    await seed();
+    const geohash = encodeGeohash(23.2519, 77.4845, 5);
+    const first = JSON.parse((await invoke({ action: 'getTile', geohash })).body);
+    const second = JSON.parse((await invoke({ action: 'getTile', geohash, knownVersion: first.version })).body);
+
+    assert.strictEqual(second.notModified, true);
+    assert.strictEqual(second.nearbyPoints, undefined);
+
+    await invoke({ action: 'storeRoadPoint', roadName: 'New Road', latitude: 23.2530, longitude: 77.4850, distance: 0 });
+    const third = JSON.parse((await invoke({ action: 'getTile', geohash, knownVersion: first.version })).body);
+    assert.notStrictEqual(third.version, first.version);
+    assert.strictEqual(third.count, 2);
+});
+
+test('getTile binary response carries the version ahead of the points', async () => {
+    await seed();
+    const response = await invoke({ action: 'getTile', geohash: encodeGeohash(23.2519, 77.4845, 5) }, { accept: MEDIA_TYPE });
+    const body = Buffer.from(response.body, 'base64');
+
+    assert.strictEqual(body.subarray(0, 3).toString('ascii'), 'PXT');
+    assert.strictEqual(body[4], 0);
+    const versionLength = body[5];
+    assert.strictEqual(versionLength, 16);
+    const points = decodePoints(body.subarray(6 + versionLength));
+    assert.strictEqual(points[0].roadName, 'Raisen Road');
+});
+
+test('getTile rejects coarse or malformed geohashes', async () => {
+    await seed();
+    const response = await invoke({ action: 'getTile', geohash: 'tu' });
+    assert.strictEqual(response.statusCode, 400);
+});
@@ -0,0 +1,94 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Radius queries on a ConcurrentPointIndex snapshot, alone ("idle") and while
+// a writer keeps moving points around ("refresh": one batch of a removal and an
+// addition after another, compacting every MAX_PENDING / 2 batches). Compare
+// the query scores of the two groups: readers never wait for the writer.
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentIndexBenchmark {
+    private static final int ORIGINS = 1024;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"clustered"})
+    public String density;
+
+    @Param({"2000"})
+    public double radiusMeters;
+
+    private ConcurrentPointIndex index;
+    private double[][] origins;
+    private int[] ids;
+
+    @Setup
+    public void setUp() {
+        PointStore store = PointDatasets.generate(size, density);
+        index = new ConcurrentPointIndex(store);
+        origins = PointDatasets.origins(store, ORIGINS);
+        ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final PointQueryResult out = new PointQueryResult();
+        int next;
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final Random random = new Random(7);
+    }
+
+    @Benchmark
+    @Group("idle")
+    @GroupThreads(3)
+    public int idleQuery(Reader reader) {
+        return query(reader);
+    }
+
+    @Benchmark
+    @Group("refresh")
+    @GroupThreads(3)
+    public int refreshQuery(Reader reader) {
+        return query(reader);
+    }
+
+    @Benchmark
+    @Group("refresh")
+    @GroupThreads(1)
+    public int refreshWrite(Writer writer) {
+        int slot = writer.random.nextInt(ids.length);
+        double[] origin = origins[writer.random.nextInt(ORIGINS)];
+        ids[slot] = index.edit()
+                .remove(ids[slot])
+                .add("Moved", origin[0], origin[1])
+                .commit();
+        return ids[slot];
+    }
+
+    private int query(Reader reader) {
+        double[] origin = origins[reader.next];
+        reader.next = (reader.next + 1) % ORIGINS;
+        return index.snapshot().query(origin[0], origin[1], radiusMeters, reader.out).count();
+    }
+}
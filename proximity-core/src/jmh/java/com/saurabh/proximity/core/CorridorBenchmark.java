@@ -0,0 +1,86 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Points along a ~20 km drive: one corridor query against the radius queries
+// it replaces, one every widthMeters along the route with a radius that
+// covers the corridor between them (the radius results overlap and are not
+// merged or ordered, so the baseline is the cheaper side of the comparison).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CorridorBenchmark {
+    private static final int VERTICES = 40;
+    private static final double METERS_PER_DEGREE = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "clustered"})
+    public String density;
+
+    @Param({"50", "200"})
+    public double widthMeters;
+
+    private PointGridIndex index;
+    private final double[] lats = new double[VERTICES];
+    private final double[] lons = new double[VERTICES];
+    private double[][] stops;
+    private final CorridorResult corridor = new CorridorResult();
+    private final PointQueryResult out = new PointQueryResult();
+
+    @Setup
+    public void setUp() {
+        index = new PointGridIndex(PointDatasets.generate(size, density));
+        Random random = new Random(42);
+        lats[0] = PointDatasets.CENTER_LAT - 0.05;
+        lons[0] = PointDatasets.CENTER_LON - 0.05;
+        for (int i = 1; i < VERTICES; i++) {
+            // ~500 m legs heading roughly north-east
+            double heading = Math.PI / 4 + (random.nextDouble() - 0.5);
+            lats[i] = lats[i - 1] + 0.0045 * Math.cos(heading);
+            lons[i] = lons[i - 1] + 0.0045 * Math.sin(heading);
+        }
+
+        // Radius query positions every widthMeters along the route
+        int count = 0;
+        double[][] positions = new double[100000][];
+        for (int i = 0; i < VERTICES - 1; i++) {
+            double length = DistanceKernel.haversine(lats[i], lons[i], lats[i + 1], lons[i + 1]);
+            int steps = Math.max(1, (int) Math.ceil(length / widthMeters));
+            for (int step = 0; step < steps; step++) {
+                double t = (double) step / steps;
+                positions[count++] = new double[]{lats[i] + t * (lats[i + 1] - lats[i]),
+                        lons[i] + t * (lons[i + 1] - lons[i])};
+            }
+        }
+        stops = new double[count][];
+        System.arraycopy(positions, 0, stops, 0, count);
+    }
+
+    @Benchmark
+    public int corridorQuery() {
+        return index.corridor(lats, lons, VERTICES, widthMeters, corridor).count();
+    }
+
+    @Benchmark
+    public int repeatedRadiusQueries() {
+        // Circles every widthMeters need a radius of width * sqrt(1.25) to leave no gaps in the corridor
+        double radius = widthMeters * Math.sqrt(1.25);
+        int total = 0;
+        for (double[] stop : stops) {
+            total += index.query(stop[0], stop[1], radius, out).count();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,61 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one distance: the exact haversine against the DistanceKernel path
+// (bounding box, then the equirectangular estimate, haversine only near the edge)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+    private static final int TARGETS = 1024;
+    private static final double RADIUS_METERS = 2000;
+
+    private final double[] latitudes = new double[TARGETS];
+    private final double[] longitudes = new double[TARGETS];
+    private final DistanceKernel kernel = new DistanceKernel();
+
+    @Setup
+    public void setUp() {
+        PointStore store = PointDatasets.generate(TARGETS, "clustered");
+        for (int i = 0; i < TARGETS; i++) {
+            latitudes[i] = store.latitude(i);
+            longitudes[i] = store.longitude(i);
+        }
+        kernel.setOrigin(PointDatasets.CENTER_LAT, PointDatasets.CENTER_LON, RADIUS_METERS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TARGETS)
+    public void haversine(Blackhole blackhole) {
+        for (int i = 0; i < TARGETS; i++) {
+            blackhole.consume(ProximityQueries.calculateDistance(
+                    PointDatasets.CENTER_LAT, PointDatasets.CENTER_LON, latitudes[i], longitudes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TARGETS)
+    public void kernelDistanceWithin(Blackhole blackhole) {
+        for (int i = 0; i < TARGETS; i++) {
+            blackhole.consume(kernel.distanceWithin(latitudes[i], longitudes[i]));
+        }
+    }
+
+    // Includes the per-origin setup, as paid by a query with a single candidate
+    @Benchmark
+    public double kernelSetOrigin() {
+        return kernel.setOrigin(PointDatasets.CENTER_LAT, PointDatasets.CENTER_LON, RADIUS_METERS)
+                .distanceWithin(latitudes[0], longitudes[0]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Nearest-k queries across dataset sizes and densities, as a one-off grid
+// query and as the per-fix cost of NearestTracker following a ~15 m/s walk
+// through the data.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NearestBenchmark {
+    private static final int ORIGINS = 1024;
+    private static final double MAX_RADIUS_METERS = 2000;
+    private static final double STEP_DEGREES = 15 / 111000.0;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "clustered", "sparse"})
+    public String density;
+
+    @Param({"1", "10", "50"})
+    public int k;
+
+    private PointGridIndex index;
+    private double[][] origins;
+    private final PointQueryResult out = new PointQueryResult();
+    private NearestTracker tracker;
+    private double walkLat;
+    private double walkLon;
+    private double heading;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        PointStore store = PointDatasets.generate(size, density);
+        index = new PointGridIndex(store);
+        origins = PointDatasets.origins(store, ORIGINS);
+        tracker = new NearestTracker(k, MAX_RADIUS_METERS);
+        walkLat = PointDatasets.CENTER_LAT;
+        walkLon = PointDatasets.CENTER_LON;
+    }
+
+    @Benchmark
+    public int gridNearest() {
+        double[] origin = origins[next];
+        next = (next + 1) % ORIGINS;
+        return index.nearest(origin[0], origin[1], k, MAX_RADIUS_METERS, out).count();
+    }
+
+    // Deterministic wander around the centre of the data
+    @Benchmark
+    public boolean trackerUpdate() {
+        heading += 0.05;
+        walkLat += Math.cos(heading * 0.37) * STEP_DEGREES;
+        walkLon += Math.sin(heading * 0.23) * STEP_DEGREES;
+        return tracker.update(index, walkLat, walkLon);
+    }
+}
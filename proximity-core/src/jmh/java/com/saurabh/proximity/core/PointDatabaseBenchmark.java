@@ -0,0 +1,81 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Radius and nearest-k queries read from a memory-mapped PointDatabase, to
+// compare with gridQuery / gridNearest on the same datasets, and the cost of
+// opening one (which should not grow with the dataset). The file is in the
+// page cache after the first iterations, so this measures the warm case.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PointDatabaseBenchmark {
+    private static final int ORIGINS = 1024;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "clustered", "sparse"})
+    public String density;
+
+    @Param({"2000"})
+    public double radiusMeters;
+
+    @Param({"10"})
+    public int k;
+
+    private File file;
+    private PointDatabase database;
+    private double[][] origins;
+    private final PointQueryResult out = new PointQueryResult();
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        PointStore store = PointDatasets.generate(size, density);
+        file = File.createTempFile("points", ".pdb");
+        PointDatabaseWriter.write(store, file);
+        database = PointDatabase.open(file);
+        origins = PointDatasets.origins(store, ORIGINS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public int databaseQuery() {
+        double[] origin = nextOrigin();
+        return database.query(origin[0], origin[1], radiusMeters, out).count();
+    }
+
+    @Benchmark
+    public int databaseNearest() {
+        double[] origin = nextOrigin();
+        return database.nearest(origin[0], origin[1], k, radiusMeters, out).count();
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        return PointDatabase.open(file).size();
+    }
+
+    private double[] nextOrigin() {
+        double[] origin = origins[next];
+        next = (next + 1) % ORIGINS;
+        return origin;
+    }
+}
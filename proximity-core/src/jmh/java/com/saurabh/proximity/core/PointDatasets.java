@@ -0,0 +1,67 @@
+package com.saurabh.proximity.core;
+
+import java.util.Random;
+
+// Synthetic point sets for the benchmarks. All are centred on Bhopal (where the
+// app's real points are) and generated from a fixed seed, so runs compare.
+final class PointDatasets {
+    static final double CENTER_LAT = 23.25;
+    static final double CENTER_LON = 77.48;
+    private static final long SEED = 42;
+
+    private PointDatasets() {
+    }
+
+    // density: "uniform" over a ~55 km square, "clustered" around 20 town-sized
+    // centres within that square, "sparse" uniform over a ~1100 km square
+    static PointStore generate(int size, String density) {
+        Random random = new Random(SEED);
+        PointStore store = new PointStore(size);
+        double[][] centres = new double[20][2];
+        for (double[] centre : centres) {
+            centre[0] = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            centre[1] = CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+        }
+        for (int i = 0; i < size; i++) {
+            double lat;
+            double lon;
+            switch (density) {
+                case "uniform":
+                    lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+                    lon = CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+                    break;
+                case "clustered":
+                    double[] centre = centres[random.nextInt(centres.length)];
+                    lat = centre[0] + random.nextGaussian() * 0.005;
+                    lon = centre[1] + random.nextGaussian() * 0.005;
+                    break;
+                case "sparse":
+                    lat = CENTER_LAT + (random.nextDouble() - 0.5) * 10;
+                    lon = CENTER_LON + (random.nextDouble() - 0.5) * 10;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown density: " + density);
+            }
+            store.add("Road " + (i % 500), lat, lon);
+        }
+        return store;
+    }
+
+    // Query origins: half at stored points (the common case of a user on a
+    // road), half anywhere in the dataset's area
+    static double[][] origins(PointStore store, int count) {
+        Random random = new Random(SEED + 1);
+        double[][] origins = new double[count][2];
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0 && store.size() > 0) {
+                int index = random.nextInt(store.size());
+                origins[i][0] = store.latitude(index);
+                origins[i][1] = store.longitude(index);
+            } else {
+                origins[i][0] = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+                origins[i][1] = CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+            }
+        }
+        return origins;
+    }
+}
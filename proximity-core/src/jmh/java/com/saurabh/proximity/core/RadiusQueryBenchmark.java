@@ -0,0 +1,79 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Radius filtering (the checkNearby query) across dataset sizes and densities:
+// the grid index against a full scan of the store and against the List<Point>
+// API the app started with. Watch gc.alloc.rate.norm: the grid and scan paths
+// should allocate nothing per query once the result has grown.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RadiusQueryBenchmark {
+    private static final int ORIGINS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "clustered", "sparse"})
+    public String density;
+
+    @Param({"2000"})
+    public double radiusMeters;
+
+    private PointStore store;
+    private PointGridIndex index;
+    private List<Point> points;
+    private double[][] origins;
+    private final DistanceKernel kernel = new DistanceKernel();
+    private final PointQueryResult out = new PointQueryResult();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        store = PointDatasets.generate(size, density);
+        index = new PointGridIndex(store);
+        points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(store.toPoint(i, 0.0));
+        }
+        origins = PointDatasets.origins(store, ORIGINS);
+    }
+
+    @Benchmark
+    public int gridQuery() {
+        double[] origin = nextOrigin();
+        return index.query(origin[0], origin[1], radiusMeters, out).count();
+    }
+
+    @Benchmark
+    public int storeScan() {
+        double[] origin = nextOrigin();
+        out.clear();
+        kernel.setOrigin(origin[0], origin[1], radiusMeters).filter(store, out);
+        return out.count();
+    }
+
+    @Benchmark
+    public int pointListFilter() {
+        double[] origin = nextOrigin();
+        return ProximityQueries.filterPointsByDistance(origin[0], origin[1], points, radiusMeters).size();
+    }
+
+    private double[] nextOrigin() {
+        double[] origin = origins[next];
+        next = (next + 1) % ORIGINS;
+        return origin;
+    }
+}
@@ -0,0 +1,65 @@
+package com.saurabh.proximity.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Snapping a position to the nearest road segment (the local replacement for a
+// Nominatim reverse lookup) over synthetic street networks of growing size.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoadSnapBenchmark {
+    private static final int ORIGINS = 1024;
+    private static final int VERTICES_PER_ROAD = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int roads;
+
+    @Param({"50"})
+    public double snapMeters;
+
+    private RoadSegmentIndex index;
+    private double[][] origins;
+    private final RoadMatch match = new RoadMatch();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        RoadSegmentStore store = new RoadSegmentStore(roads * (VERTICES_PER_ROAD - 1));
+        double[] lats = new double[VERTICES_PER_ROAD];
+        double[] lons = new double[VERTICES_PER_ROAD];
+        for (int road = 0; road < roads; road++) {
+            // Random walks of ~100 m steps across the same ~55 km square as PointDatasets
+            lats[0] = PointDatasets.CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            lons[0] = PointDatasets.CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+            for (int i = 1; i < VERTICES_PER_ROAD; i++) {
+                lats[i] = lats[i - 1] + (random.nextDouble() - 0.5) * 0.002;
+                lons[i] = lons[i - 1] + (random.nextDouble() - 0.5) * 0.002;
+            }
+            store.addPolyline("Road " + road, lats, lons, VERTICES_PER_ROAD);
+        }
+        index = new RoadSegmentIndex(store);
+        origins = new double[ORIGINS][2];
+        for (double[] origin : origins) {
+            origin[0] = PointDatasets.CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            origin[1] = PointDatasets.CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+        }
+    }
+
+    @Benchmark
+    public int nearestRoad() {
+        double[] origin = origins[next];
+        next = (next + 1) % ORIGINS;
+        return index.nearest(origin[0], origin[1], snapMeters, match).segment();
+    }
+}
@@ -0,0 +1,327 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Point index that is updated while it is being queried.
+//
+// Readers call snapshot() and query the Snapshot it returns; a snapshot never
+// changes, so a query needs no lock and sees one consistent set of points no
+// matter what the writer does meanwhile. Writers (add, remove, or an Editor
+// for a batch) are serialized, build the next snapshot next to the current
+// one and publish it with a single volatile write.
+//
+// A snapshot is a PointGridIndex over a base PointStore plus a small delta:
+// points added since the base was built, kept in plain arrays that queries
+// scan, and the base points removed since, marked in a bit set that queries
+// check. Publishing an edit copies the delta and, when it removes base points,
+// the bit set (one bit per point). Once the delta holds MAX_PENDING changes, the
+// writer compacts it into a new base (a full rebuild, on the writer's thread);
+// readers keep using the old snapshot until the new one is published, and the
+// garbage collector frees old snapshots once no query holds them.
+//
+// Every point gets an id when it is added, which stays the same across
+// compactions and is what remove() takes. Snapshot indices (the indices in a
+// PointQueryResult) are only meaningful for the snapshot that produced them.
+public final class ConcurrentPointIndex {
+    // Changes kept in the delta before it is compacted; bounds the extra work of every query
+    public static final int MAX_PENDING = 1024;
+
+    private final double cellSizeDegrees;
+    private volatile Snapshot current;
+    private int nextId;  // guarded by this
+
+    public ConcurrentPointIndex() {
+        this(new PointStore());
+    }
+
+    public ConcurrentPointIndex(PointStore initial) {
+        this(initial, PointGridIndex.DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    // The points of initial get ids 0..initial.size() - 1; initial is copied
+    public ConcurrentPointIndex(PointStore initial, double cellSizeDegrees) {
+        this.cellSizeDegrees = cellSizeDegrees;
+        int n = initial.size();
+        PointStore base = new PointStore(n);
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            base.add(initial.roadName(i), initial.latitude(i), initial.longitude(i));
+            ids[i] = i;
+        }
+        nextId = n;
+        current = new Snapshot(new PointGridIndex(base, cellSizeDegrees), ids, null, 0,
+                new double[0], new double[0], new String[0], new int[0]);
+    }
+
+    // The current points; never blocks
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    // Adds one point and returns its id
+    public int add(String roadName, double latitude, double longitude) {
+        Editor editor = edit();
+        editor.add(roadName, latitude, longitude);
+        return editor.commit();
+    }
+
+    // Removes the point with this id; false if there is none
+    public synchronized boolean remove(int id) {
+        Snapshot before = current;
+        edit().remove(id).commit();
+        return current != before;
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    // A batch of changes, published together by commit() so readers see all of them or none
+    public final class Editor {
+        private final List<String> roadNames = new ArrayList<>();
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int[] removals = new int[16];
+        private int removalCount;
+        private boolean committed;
+
+        private Editor() {
+        }
+
+        public Editor add(String roadName, double latitude, double longitude) {
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+            }
+            int count = roadNames.size();
+            if (count == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, count * 2);
+                longitudes = Arrays.copyOf(longitudes, count * 2);
+            }
+            roadNames.add(roadName != null ? roadName : "");
+            latitudes[count] = latitude;
+            longitudes[count] = longitude;
+            return this;
+        }
+
+        // Removals of unknown ids are ignored
+        public Editor remove(int id) {
+            if (removalCount == removals.length) {
+                removals = Arrays.copyOf(removals, removalCount * 2);
+            }
+            removals[removalCount++] = id;
+            return this;
+        }
+
+        // Publishes the changes. The added points get consecutive ids in the
+        // order they were added; returns the first of them (or -1 if none).
+        public int commit() {
+            if (committed) {
+                throw new IllegalStateException("Editor already committed");
+            }
+            committed = true;
+            return apply(this);
+        }
+    }
+
+    private synchronized int apply(Editor editor) {
+        Snapshot snapshot = current;
+        int added = editor.roadNames.size();
+        if (added == 0 && editor.removalCount == 0) return -1;
+
+        // Removed base points are marked in a copy of the removal bits; removed delta points are dropped
+        long[] removed = snapshot.removed;
+        int removedCount = snapshot.removedCount;
+        boolean[] dropDelta = new boolean[snapshot.deltaIds.length];
+        int dropped = 0;
+        for (int r = 0; r < editor.removalCount; r++) {
+            int id = editor.removals[r];
+            int delta = Arrays.binarySearch(snapshot.deltaIds, id);
+            if (delta >= 0) {
+                if (!dropDelta[delta]) dropped++;
+                dropDelta[delta] = true;
+                continue;
+            }
+            int base = Arrays.binarySearch(snapshot.baseIds, id);
+            if (base < 0) continue;
+            if (isSet(removed, base)) continue;
+            if (removed == snapshot.removed) {
+                removed = removed != null ? removed.clone() : new long[(snapshot.baseSize + 63) >>> 6];
+            }
+            removed[base >>> 6] |= 1L << base;
+            removedCount++;
+        }
+        if (added == 0 && dropped == 0 && removedCount == snapshot.removedCount) return -1;
+
+        int deltaCount = snapshot.deltaIds.length - dropped + added;
+        double[] lats = new double[deltaCount];
+        double[] lons = new double[deltaCount];
+        String[] names = new String[deltaCount];
+        int[] ids = new int[deltaCount];
+        int d = 0;
+        for (int i = 0; i < snapshot.deltaIds.length; i++) {
+            if (dropDelta[i]) continue;
+            lats[d] = snapshot.deltaLats[i];
+            lons[d] = snapshot.deltaLons[i];
+            names[d] = snapshot.deltaNames[i];
+            ids[d] = snapshot.deltaIds[i];
+            d++;
+        }
+        int firstId = added > 0 ? nextId : -1;
+        for (int i = 0; i < added; i++) {
+            lats[d] = editor.latitudes[i];
+            lons[d] = editor.longitudes[i];
+            names[d] = editor.roadNames.get(i);
+            ids[d] = nextId++;
+            d++;
+        }
+
+        Snapshot next = new Snapshot(snapshot.base, snapshot.baseIds, removed, removedCount, lats, lons, names, ids);
+        current = next.pending() > MAX_PENDING ? compact(next) : next;
+        return firstId;
+    }
+
+    // Folds the delta into a new base; the live points keep their order, so ids stay sorted
+    private Snapshot compact(Snapshot snapshot) {
+        PointStore store = new PointStore(Math.max(1, snapshot.size()));
+        int[] ids = new int[snapshot.size()];
+        int n = 0;
+        PointStore old = snapshot.base.store();
+        for (int i = 0; i < old.size(); i++) {
+            if (snapshot.isRemoved(i)) continue;
+            store.add(old.roadName(i), old.latitude(i), old.longitude(i));
+            ids[n++] = snapshot.baseIds[i];
+        }
+        for (int i = 0; i < snapshot.deltaIds.length; i++) {
+            store.add(snapshot.deltaNames[i], snapshot.deltaLats[i], snapshot.deltaLons[i]);
+            ids[n++] = snapshot.deltaIds[i];
+        }
+        return new Snapshot(new PointGridIndex(store, cellSizeDegrees), ids, null, 0,
+                new double[0], new double[0], new String[0], new int[0]);
+    }
+
+    // One immutable version of the index. Indices 0..base size - 1 are base
+    // points (some of which may be removed), the ones after are delta points.
+    public static final class Snapshot {
+        private final PointGridIndex base;
+        private final int[] baseIds;        // sorted
+        private final long[] removed;       // one bit per base point, null when none is removed
+        private final int removedCount;
+        private final double[] deltaLats;
+        private final double[] deltaLons;
+        private final String[] deltaNames;
+        private final int[] deltaIds;       // sorted
+        private final int baseSize;
+
+        private Snapshot(PointGridIndex base, int[] baseIds, long[] removed, int removedCount, double[] deltaLats,
+                         double[] deltaLons, String[] deltaNames, int[] deltaIds) {
+            this.base = base;
+            this.baseIds = baseIds;
+            this.removed = removed;
+            this.removedCount = removedCount;
+            this.deltaLats = deltaLats;
+            this.deltaLons = deltaLons;
+            this.deltaNames = deltaNames;
+            this.deltaIds = deltaIds;
+            this.baseSize = base.size();
+        }
+
+        // Number of points
+        public int size() {
+            return baseSize - removedCount + deltaIds.length;
+        }
+
+        // Indices run from 0 to indexLimit() - 1; skip the ones isRemoved() reports
+        public int indexLimit() {
+            return baseSize + deltaIds.length;
+        }
+
+        public boolean isRemoved(int index) {
+            return index < baseSize && isSet(removed, index);
+        }
+
+        public int id(int index) {
+            return index < baseSize ? baseIds[index] : deltaIds[index - baseSize];
+        }
+
+        public double latitude(int index) {
+            return index < baseSize ? base.store().latitude(index) : deltaLats[index - baseSize];
+        }
+
+        public double longitude(int index) {
+            return index < baseSize ? base.store().longitude(index) : deltaLons[index - baseSize];
+        }
+
+        public String roadName(int index) {
+            return index < baseSize ? base.store().roadName(index) : deltaNames[index - baseSize];
+        }
+
+        public Point toPoint(int index, double distance) {
+            return new Point(roadName(index), latitude(index), longitude(index), distance);
+        }
+
+        // Collects every point within radiusMeters of (latitude, longitude) into out, which is cleared first
+        public PointQueryResult query(double latitude, double longitude, double radiusMeters, PointQueryResult out) {
+            base.query(latitude, longitude, radiusMeters, out);
+            dropRemoved(out);
+            if (deltaIds.length > 0) {
+                DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, radiusMeters);
+                for (int i = 0; i < deltaIds.length; i++) {
+                    double distance = kernel.distanceWithin(deltaLats[i], deltaLons[i]);
+                    if (distance >= 0) {
+                        out.add(baseSize + i, distance);
+                    }
+                }
+            }
+            return out;
+        }
+
+        // The k points closest to (latitude, longitude) within maxRadiusMeters, sorted nearest first
+        public PointQueryResult nearest(double latitude, double longitude, int k, double maxRadiusMeters,
+                                        PointQueryResult out) {
+            // Removed points may take places among the base's nearest k; ask again
+            // for as many more as were lost, until k live points are found or the
+            // base has nothing more within the radius
+            int baseK = k;
+            while (true) {
+                base.nearest(latitude, longitude, baseK, maxRadiusMeters, out);
+                int found = out.count();
+                dropRemoved(out);
+                if (out.count() >= k || found < baseK || baseK >= baseSize) break;
+                baseK = (int) Math.min(baseSize, (long) baseK + 2L * (found - out.count()));
+            }
+            if (out.count() > k) out.truncate(Math.max(0, k));
+            if (deltaIds.length > 0 && k > 0) {
+                DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, maxRadiusMeters);
+                for (int i = 0; i < deltaIds.length; i++) {
+                    double distance = kernel.distanceWithin(deltaLats[i], deltaLons[i]);
+                    if (distance >= 0) {
+                        out.insertSorted(baseSize + i, distance, k);
+                    }
+                }
+            }
+            return out;
+        }
+
+        int pending() {
+            return removedCount + deltaIds.length;
+        }
+
+        private void dropRemoved(PointQueryResult out) {
+            if (removed == null) return;
+            int kept = 0;
+            for (int i = 0; i < out.count(); i++) {
+                int index = out.index(i);
+                if (!isSet(removed, index)) {
+                    out.set(kept++, index, out.distance(i));
+                }
+            }
+            out.truncate(kept);
+        }
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return bits != null && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
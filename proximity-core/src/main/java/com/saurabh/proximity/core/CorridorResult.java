@@ -0,0 +1,149 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Result of PointGridIndex.corridor: the points near a route, each with its
+// distance from the route, how far along the route it comes and the route
+// segment it is closest to, sorted by distance along the route. Like
+// PointQueryResult, one instance can be reused for every query on a thread;
+// it also carries the query's (cell, segment) scratch list.
+public final class CorridorResult {
+    private int[] indices;
+    private double[] offsets;
+    private double[] alongs;
+    private int[] segments;
+    private int count;
+
+    // Non-empty cell slot << 32 | segment, filled while covering the route
+    private long[] pairs = new long[64];
+    private int pairCount;
+
+    public CorridorResult() {
+        this(16);
+    }
+
+    public CorridorResult(int capacity) {
+        capacity = Math.max(1, capacity);
+        indices = new int[capacity];
+        offsets = new double[capacity];
+        alongs = new double[capacity];
+        segments = new int[capacity];
+    }
+
+    public void clear() {
+        count = 0;
+        pairCount = 0;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Index of the point in the index's PointStore
+    public int index(int i) {
+        checkIndex(i);
+        return indices[i];
+    }
+
+    // Distance in meters from the point to the nearest route segment
+    public double distanceFromRoute(int i) {
+        checkIndex(i);
+        return offsets[i];
+    }
+
+    // Distance in meters from the start of the route to where the point is closest to it
+    public double distanceAlongRoute(int i) {
+        checkIndex(i);
+        return alongs[i];
+    }
+
+    // Route segment the point is closest to; segment s runs from vertex s to vertex s + 1
+    public int segment(int i) {
+        checkIndex(i);
+        return segments[i];
+    }
+
+    // Points with their distance from the route as the distance
+    public List<Point> toPoints(PointStore store) {
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(store.toPoint(indices[i], offsets[i]));
+        }
+        return points;
+    }
+
+    void add(int index, double offset, double along, int segment) {
+        if (count == indices.length) {
+            int capacity = count * 2;
+            indices = Arrays.copyOf(indices, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            alongs = Arrays.copyOf(alongs, capacity);
+            segments = Arrays.copyOf(segments, capacity);
+        }
+        indices[count] = index;
+        offsets[count] = offset;
+        alongs[count] = along;
+        segments[count] = segment;
+        count++;
+    }
+
+    void addPair(int slot, int segment) {
+        if (pairCount == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairCount * 2);
+        }
+        pairs[pairCount++] = ((long) slot << 32) | (segment & 0xffffffffL);
+    }
+
+    // Sorts the pairs by cell and drops repeats; returns how many are left
+    int sortPairs() {
+        Arrays.sort(pairs, 0, pairCount);
+        int unique = 0;
+        for (int i = 0; i < pairCount; i++) {
+            if (unique == 0 || pairs[unique - 1] != pairs[i]) {
+                pairs[unique++] = pairs[i];
+            }
+        }
+        pairCount = unique;
+        return unique;
+    }
+
+    long pair(int i) {
+        return pairs[i];
+    }
+
+    // Orders the hits by distance along the route (compared as floats: to the
+    // centimetre on a 100 km route), ties in the order they were found
+    void sortByAlong() {
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            // Along distances are non-negative, so their float bits sort like the values
+            order[i] = ((long) Float.floatToIntBits((float) alongs[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedIndices = new int[count];
+        double[] sortedOffsets = new double[count];
+        double[] sortedAlongs = new double[count];
+        int[] sortedSegments = new int[count];
+        for (int i = 0; i < count; i++) {
+            int from = (int) order[i];
+            sortedIndices[i] = indices[from];
+            sortedOffsets[i] = offsets[from];
+            sortedAlongs[i] = alongs[from];
+            sortedSegments[i] = segments[from];
+        }
+        System.arraycopy(sortedIndices, 0, indices, 0, count);
+        System.arraycopy(sortedOffsets, 0, offsets, 0, count);
+        System.arraycopy(sortedAlongs, 0, alongs, 0, count);
+        System.arraycopy(sortedSegments, 0, segments, 0, count);
+    }
+
+    private void checkIndex(int i) {
+        if (i >= count) throw new IndexOutOfBoundsException("Index: " + i + ", Count: " + count);
+    }
+}
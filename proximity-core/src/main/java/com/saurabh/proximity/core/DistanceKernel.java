@@ -0,0 +1,135 @@
+package com.saurabh.proximity.core;
+
+// Distance engine for one origin and many targets.
+//
+// setOrigin() does the per-origin trig once (radians, cos/sin of the latitude,
+// the bounding box of the search radius). Each candidate is then
+//   1. rejected by a plain lat/lon bounding-box compare if it is clearly outside,
+//   2. measured with an equirectangular approximation that uses the cosine of
+//      the mid latitude (first-order corrected from the origin, so no trig per
+//      candidate), and
+//   3. re-measured with the exact haversine only when that estimate lands
+//      within BOUNDARY_BAND of the radius, so membership is always decided by
+//      the haversine.
+//
+// Tolerance: membership always matches the haversine. Distances returned for
+// points inside the band differ from the haversine by less than 0.001% for
+// radii up to 10 km (millimetres at the 2 km search radius), and by less than
+// 0.05% at the MAX_APPROX_RADIUS_METERS / MAX_APPROX_LATITUDE limits. Beyond
+// those limits every candidate goes through the haversine.
+//
+// A kernel holds per-origin state; use one per thread (they are cheap to create).
+public class DistanceKernel {
+    public static final double EARTH_RADIUS_METERS = 6371000.0;
+    public static final double MAX_APPROX_RADIUS_METERS = 100000.0;
+    public static final double MAX_APPROX_LATITUDE = 80.0;
+    private static final double BOUNDARY_BAND = 1e-3; // relative, far above the approximation error
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private double originLat;
+    private double originLon;
+    private double originLatRad;
+    private double cosOriginLat;
+    private double sinOriginLat;
+
+    private double radius;
+    private double latSpan;       // degrees
+    private double lonSpan;       // degrees, or +inf when the box spans all longitudes
+    private double innerRadius;   // approximations below this are accepted as-is
+    private double outerRadius;   // approximations above this are rejected as-is
+    private boolean approximate;
+
+    public DistanceKernel setOrigin(double latitude, double longitude, double radiusMeters) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude) || Double.isNaN(radiusMeters)) {
+            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+        }
+        originLat = latitude;
+        originLon = longitude;
+        originLatRad = Math.toRadians(latitude);
+        cosOriginLat = Math.cos(originLatRad);
+        sinOriginLat = Math.sin(originLatRad);
+
+        radius = radiusMeters;
+        latSpan = radiusMeters / METERS_PER_DEGREE;
+        double maxAbsLat = Math.abs(latitude) + latSpan;
+        if (maxAbsLat >= 90.0) {
+            lonSpan = Double.POSITIVE_INFINITY;
+        } else {
+            double span = latSpan / Math.cos(Math.toRadians(maxAbsLat));
+            lonSpan = span >= 180.0 ? Double.POSITIVE_INFINITY : span;
+        }
+        innerRadius = radiusMeters * (1.0 - BOUNDARY_BAND);
+        outerRadius = radiusMeters * (1.0 + BOUNDARY_BAND);
+        approximate = radiusMeters <= MAX_APPROX_RADIUS_METERS && Math.abs(latitude) <= MAX_APPROX_LATITUDE;
+        return this;
+    }
+
+    public double radius() {
+        return radius;
+    }
+
+    // Distance in meters from the origin to (latitude, longitude), or -1 if it is
+    // farther than the radius given to setOrigin
+    public double distanceWithin(double latitude, double longitude) {
+        double dLat = latitude - originLat;
+        if (dLat > latSpan || dLat < -latSpan) return -1;
+        double dLon = longitude - originLon;
+        if (dLon > 180.0) dLon -= 360.0;
+        else if (dLon < -180.0) dLon += 360.0;
+        if (dLon > lonSpan || dLon < -lonSpan) return -1;
+
+        if (!approximate) {
+            double exact = haversine(latitude, longitude);
+            return exact <= radius ? exact : -1;
+        }
+
+        double cosMid = cosOriginLat - sinOriginLat * Math.toRadians(dLat) * 0.5;
+        double x = dLon * cosMid;
+        double approx = METERS_PER_DEGREE * Math.sqrt(x * x + dLat * dLat);
+        if (approx < innerRadius) return approx;
+        if (approx > outerRadius) return -1;
+        double exact = haversine(latitude, longitude);
+        return exact <= radius ? exact : -1;
+    }
+
+    // Batch form: tests store points indices[from..to) and appends the hits to out
+    public void filter(PointStore store, int[] indices, int from, int to, PointQueryResult out) {
+        for (int p = from; p < to; p++) {
+            int index = indices[p];
+            double distance = distanceWithin(store.latitude(index), store.longitude(index));
+            if (distance >= 0) {
+                out.add(index, distance);
+            }
+        }
+    }
+
+    // Batch form over a whole store
+    public void filter(PointStore store, PointQueryResult out) {
+        int n = store.size();
+        for (int index = 0; index < n; index++) {
+            double distance = distanceWithin(store.latitude(index), store.longitude(index));
+            if (distance >= 0) {
+                out.add(index, distance);
+            }
+        }
+    }
+
+    // Exact haversine from the origin, reusing the origin's precomputed cosine
+    public double haversine(double latitude, double longitude) {
+        double lat2Rad = Math.toRadians(latitude);
+        double sinDLat = Math.sin((lat2Rad - originLatRad) * 0.5);
+        double sinDLon = Math.sin(Math.toRadians(longitude - originLon) * 0.5);
+        double a = sinDLat * sinDLat + cosOriginLat * Math.cos(lat2Rad) * sinDLon * sinDLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // Haversine formula to calculate the distance between two points, in meters
+    public static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double sinDLat = Math.sin((lat2Rad - lat1Rad) * 0.5);
+        double sinDLon = Math.sin(Math.toRadians(lon2 - lon1) * 0.5);
+        double a = sinDLat * sinDLat + Math.cos(lat1Rad) * Math.cos(lat2Rad) * sinDLon * sinDLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
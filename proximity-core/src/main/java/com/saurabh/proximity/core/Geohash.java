@@ -0,0 +1,133 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Standard base-32 geohash, matching location/geohash.js. Point tiles are named
+// by the geohash of the area they cover. Encoding works on integer cell
+// indices, which also makes it cheap to enumerate the tiles covering a box.
+public final class Geohash {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    public static final int MAX_PRECISION = 12;
+
+    private Geohash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        return encodeCell(latitudeIndex(latitude, precision), longitudeIndex(longitude, precision), precision);
+    }
+
+    // Height of a geohash cell of this precision, in degrees of latitude
+    public static double cellHeightDegrees(int precision) {
+        checkPrecision(precision);
+        return 180.0 / (1L << latitudeBits(precision));
+    }
+
+    // Width of a geohash cell of this precision, in degrees of longitude
+    public static double cellWidthDegrees(int precision) {
+        checkPrecision(precision);
+        return 360.0 / (1L << longitudeBits(precision));
+    }
+
+    // Geohashes of every cell that overlaps the box, row by row from the south-west.
+    // The box may cross the antimeridian (minLongitude > maxLongitude).
+    public static List<String> covering(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                                 int precision) {
+        checkPrecision(precision);
+        long columns = 1L << longitudeBits(precision);
+        long firstRow = latitudeIndex(minLatitude, precision);
+        long lastRow = latitudeIndex(maxLatitude, precision);
+        long firstColumn = longitudeIndex(minLongitude, precision);
+        long lastColumn = longitudeIndex(maxLongitude, precision);
+        if (lastColumn < firstColumn) {
+            lastColumn += columns;
+        }
+
+        List<String> cells = new ArrayList<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                cells.add(encodeCell(row, Math.floorMod(column, columns), precision));
+            }
+        }
+        return cells;
+    }
+
+    // Same as covering, for the bounding box of a circle around (latitude, longitude)
+    public static List<String> covering(double latitude, double longitude, double radiusMeters, int precision) {
+        double latSpan = radiusMeters / (DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0);
+        double maxAbsLat = Math.min(90.0, Math.abs(latitude) + latSpan);
+        double cosLat = Math.cos(Math.toRadians(maxAbsLat));
+        double lonSpan = cosLat < 1e-9 ? 180.0 : Math.min(180.0, latSpan / cosLat);
+        if (lonSpan >= 180.0) {
+            return covering(latitude - latSpan, -180.0, latitude + latSpan, 180.0, precision);
+        }
+        return covering(latitude - latSpan, wrapLongitude(longitude - lonSpan),
+                latitude + latSpan, wrapLongitude(longitude + lonSpan), precision);
+    }
+
+    public static boolean isValid(String geohash) {
+        if (geohash == null || geohash.isEmpty() || geohash.length() > MAX_PRECISION) return false;
+        for (int i = 0; i < geohash.length(); i++) {
+            if (digit(geohash.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    // Bits alternate longitude, latitude, longitude, ... starting at the most significant
+    private static String encodeCell(long row, long column, int precision) {
+        int latBits = latitudeBits(precision);
+        int lonBits = longitudeBits(precision);
+        char[] hash = new char[precision];
+        int value = 0;
+        for (int bit = 0; bit < precision * 5; bit++) {
+            long b = bit % 2 == 0
+                    ? column >>> (--lonBits) & 1
+                    : row >>> (--latBits) & 1;
+            value = (value << 1) | (int) b;
+            if (bit % 5 == 4) {
+                hash[bit / 5] = BASE32[value];
+                value = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    private static long latitudeIndex(double latitude, int precision) {
+        long rows = 1L << latitudeBits(precision);
+        long index = (long) Math.floor((latitude + 90.0) / 180.0 * rows);
+        return Math.max(0, Math.min(rows - 1, index));
+    }
+
+    private static long longitudeIndex(double longitude, int precision) {
+        long columns = 1L << longitudeBits(precision);
+        long index = (long) Math.floor((wrapLongitude(longitude) + 180.0) / 360.0 * columns);
+        return Math.min(columns - 1, index);
+    }
+
+    private static int latitudeBits(int precision) {
+        return precision * 5 / 2;
+    }
+
+    private static int longitudeBits(int precision) {
+        return precision * 5 - latitudeBits(precision);
+    }
+
+    private static double wrapLongitude(double longitude) {
+        if (longitude >= -180.0 && longitude <= 180.0) return longitude;
+        return ((longitude + 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < BASE32.length; i++) {
+            if (BASE32[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Geohash precision must be 1-" + MAX_PRECISION);
+        }
+    }
+}
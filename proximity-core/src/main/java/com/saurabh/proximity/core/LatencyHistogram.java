@@ -0,0 +1,102 @@
+package com.saurabh.proximity.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency distribution in microseconds, bucketed the way HdrHistogram does it:
+// values below 2^SUB_BUCKET_BITS get a bucket each, and every power of two
+// above that is split into 2^SUB_BUCKET_BITS equal buckets. Any recorded value
+// is therefore reported within 1/64 (~1.6%) of itself, from microseconds up to
+// an hour, in a fixed array of under 2k counters.
+//
+// record() is a few shifts and one atomic increment, with no allocation or
+// locking, so it is safe to call from any thread on the lookup path. Readers
+// see a slightly blurred picture if recording happens while they iterate,
+// which is fine for monitoring.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_TRACKABLE_MICROS = 60L * 60 * 1000 * 1000; // an hour; longer values are clamped
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_TRACKABLE_MICROS) + 1);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(value);
+        long max;
+        while (value > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, value)) {
+            // another thread raised the max; re-check against the new one
+        }
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    public long max() {
+        return maxMicros.get();
+    }
+
+    public double mean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalMicros.get() / count;
+    }
+
+    // Smallest bucketed value that at least `percentile` percent (0-100) of the
+    // recorded values do not exceed; 0 when nothing has been recorded
+    public long percentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    // One line, in milliseconds: count, median, p90, p99, max and mean
+    public String summary() {
+        return String.format(Locale.US, "n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f mean=%.1f ms",
+                count(), percentile(50) / 1000.0, percentile(90) / 1000.0, percentile(99) / 1000.0,
+                max() / 1000.0, mean() / 1000.0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift); // in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return (shift + 1) * SUB_BUCKET_COUNT + mantissa - SUB_BUCKET_COUNT;
+    }
+
+    // Largest value that falls into bucket `index`
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
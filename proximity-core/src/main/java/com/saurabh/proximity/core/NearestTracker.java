@@ -0,0 +1,149 @@
+package com.saurabh.proximity.core;
+
+import java.util.Arrays;
+
+// Keeps the k nearest points up to date while the user moves, for a stream of
+// location fixes instead of one-off queries.
+//
+// A full nearest() query is only run when the fix moves to a different grid
+// cell, the index is swapped for a new one, or the margin runs out. Otherwise
+// the tracker re-measures the candidates it kept from the last query: the
+// nearest k * CANDIDATE_FACTOR points (at least k + MIN_EXTRA_CANDIDATES).
+// The margin follows from the triangle inequality: every point that is not a
+// candidate was at least outsideBound from the anchor, so after moving d it is
+// still at least outsideBound - d away. While that is more than the current
+// k-th distance, no outside point can have joined the nearest k. A typical 1 Hz
+// fix therefore costs a few dozen distance computations, independent of how
+// many points the index holds.
+//
+// Not thread-safe; feed it from one thread (the location callback).
+public class NearestTracker {
+    public static final double DEFAULT_SLACK_METERS = 250;
+    // Extra candidates widen the margin, so dense areas do not need a query per fix
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final int MIN_EXTRA_CANDIDATES = 8;
+    // Relative allowance for the grid query's distance approximation (see DistanceKernel)
+    private static final double BOUND_TOLERANCE = 1e-4;
+
+    private final int k;
+    private final int candidateCount;
+    private final double maxRadiusMeters;
+    private final double slackMeters;
+    private final DistanceKernel kernel = new DistanceKernel();
+    private final PointQueryResult candidates = new PointQueryResult();
+    private final PointQueryResult current = new PointQueryResult();
+
+    private PointGridIndex index;
+    private long anchorCell;
+    private double anchorLat;
+    private double anchorLon;
+    private double outsideBound;
+    private int[] reported = new int[0];
+    private int updates;
+    private int recomputes;
+
+    public NearestTracker(int k, double maxRadiusMeters) {
+        this(k, maxRadiusMeters, DEFAULT_SLACK_METERS);
+    }
+
+    // slackMeters widens the candidate search beyond maxRadiusMeters, so points
+    // just outside the radius are already known when the user walks towards them
+    public NearestTracker(int k, double maxRadiusMeters, double slackMeters) {
+        if (k <= 0 || !(maxRadiusMeters > 0) || !(slackMeters >= 0)) {
+            throw new IllegalArgumentException("k and radius must be positive, slack non-negative");
+        }
+        this.k = k;
+        this.candidateCount = Math.max(k * CANDIDATE_FACTOR, k + MIN_EXTRA_CANDIDATES);
+        this.maxRadiusMeters = maxRadiusMeters;
+        this.slackMeters = slackMeters;
+    }
+
+    // Moves the tracker to (latitude, longitude). Returns true when the set or
+    // order of the nearest points changed, or the index was replaced (point
+    // indices then refer to a different store); distances change on every call.
+    public boolean update(PointGridIndex index, double latitude, double longitude) {
+        updates++;
+        boolean replaced = index != this.index;
+        if (replaced || index.cellOf(latitude, longitude) != anchorCell) {
+            recompute(index, latitude, longitude);
+        } else {
+            rescore(latitude, longitude);
+            double moved = DistanceKernel.haversine(anchorLat, anchorLon, latitude, longitude);
+            double kth = current.count() >= k ? current.distance(k - 1) : maxRadiusMeters;
+            if (outsideBound - moved <= kth) {
+                recompute(index, latitude, longitude);
+            }
+        }
+        return report() || replaced;
+    }
+
+    // Nearest points as of the last update, sorted by ascending distance (meters)
+    public PointQueryResult current() {
+        return current;
+    }
+
+    public PointStore store() {
+        return index != null ? index.store() : null;
+    }
+
+    public int updateCount() {
+        return updates;
+    }
+
+    // How many updates needed a full grid query
+    public int recomputeCount() {
+        return recomputes;
+    }
+
+    // Forgets the tracked set; the next update runs a full query
+    public void reset() {
+        index = null;
+        current.clear();
+        candidates.clear();
+        reported = new int[0];
+    }
+
+    private void recompute(PointGridIndex index, double latitude, double longitude) {
+        recomputes++;
+        this.index = index;
+        anchorCell = index.cellOf(latitude, longitude);
+        anchorLat = latitude;
+        anchorLon = longitude;
+
+        double searchRadius = maxRadiusMeters + slackMeters;
+        index.nearest(latitude, longitude, candidateCount, searchRadius, candidates);
+        // Anything not kept is at least as far as the farthest candidate
+        double bound = candidates.count() == candidateCount
+                ? candidates.distance(candidateCount - 1) : searchRadius;
+        outsideBound = bound * (1 - BOUND_TOLERANCE);
+        rescore(latitude, longitude);
+    }
+
+    private void rescore(double latitude, double longitude) {
+        PointStore store = index.store();
+        kernel.setOrigin(latitude, longitude, maxRadiusMeters);
+        current.clear();
+        for (int i = 0; i < candidates.count(); i++) {
+            int point = candidates.index(i);
+            double distance = kernel.haversine(store.latitude(point), store.longitude(point));
+            if (distance <= maxRadiusMeters) {
+                current.offerBounded(point, distance, k);
+            }
+        }
+        current.sortHeapAscending();
+    }
+
+    private boolean report() {
+        int count = current.count();
+        boolean same = count == reported.length;
+        for (int i = 0; same && i < count; i++) {
+            same = current.index(i) == reported[i];
+        }
+        if (same) return false;
+        reported = Arrays.copyOf(reported, count);
+        for (int i = 0; i < count; i++) {
+            reported[i] = current.index(i);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,190 @@
+package com.saurabh.proximity.core;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+// Reads the roads of an OpenStreetMap XML extract (.osm, as produced by the
+// OSM export, Overpass or osmium) into a RoadSegmentStore.
+//
+// Every way with a highway tag is a road, except the ones that are not
+// travelled (proposed, under construction, platforms, ...). It is named by its
+// name tag, or its ref (e.g. "NH46") when it has none; unnamed ways are
+// skipped, as they could not answer "which road is this". Node coordinates are
+// held in flat arrays looked up by binary search on the node id; extracts list
+// every node before the ways that use them, and a vertex whose node is not in
+// the file (clipped at the extract's edge) splits the way there.
+public final class OsmRoadReader {
+    private static final Set<String> SKIPPED_HIGHWAYS = new HashSet<>(Arrays.asList(
+            "proposed", "construction", "abandoned", "platform", "bus_stop", "elevator", "raceway", "rest_area",
+            "services"));
+
+    private OsmRoadReader() {
+    }
+
+    public static RoadSegmentStore read(InputStream in) throws IOException {
+        OsmHandler handler = new OsmHandler();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.newSAXParser().parse(in, handler);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid OSM XML: " + e.getMessage(), e);
+        }
+        return handler.roads;
+    }
+
+    private static final class OsmHandler extends DefaultHandler {
+        final RoadSegmentStore roads = new RoadSegmentStore(1024);
+
+        private long[] nodeIds = new long[1024];
+        private double[] nodeLats = new double[1024];
+        private double[] nodeLons = new double[1024];
+        private int nodeCount;
+        private boolean nodesSorted = true;
+        private boolean nodesReady;
+
+        private boolean inWay;
+        private long[] wayRefs = new long[64];
+        private int wayRefCount;
+        private String highway;
+        private String name;
+        private String ref;
+        private double[] wayLats = new double[64];
+        private double[] wayLons = new double[64];
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            switch (qName) {
+                case "node":
+                    addNode(attributes);
+                    break;
+                case "way":
+                    inWay = true;
+                    wayRefCount = 0;
+                    highway = null;
+                    name = null;
+                    ref = null;
+                    break;
+                case "nd":
+                    if (inWay) addRef(attributes.getValue("ref"));
+                    break;
+                case "tag":
+                    if (inWay) readTag(attributes.getValue("k"), attributes.getValue("v"));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (!qName.equals("way")) return;
+            inWay = false;
+            String roadName = name != null ? name : ref;
+            if (highway == null || roadName == null || SKIPPED_HIGHWAYS.contains(highway)) return;
+            prepareNodes();
+            if (wayLats.length < wayRefCount) {
+                wayLats = new double[wayRefCount];
+                wayLons = new double[wayRefCount];
+            }
+            // Vertices missing from a clipped extract split the way into the parts that are present
+            int count = 0;
+            for (int i = 0; i < wayRefCount; i++) {
+                int node = Arrays.binarySearch(nodeIds, 0, nodeCount, wayRefs[i]);
+                if (node < 0) {
+                    roads.addPolyline(roadName, wayLats, wayLons, count);
+                    count = 0;
+                    continue;
+                }
+                wayLats[count] = nodeLats[node];
+                wayLons[count] = nodeLons[node];
+                count++;
+            }
+            roads.addPolyline(roadName, wayLats, wayLons, count);
+        }
+
+        private void addNode(Attributes attributes) throws SAXException {
+            String id = attributes.getValue("id");
+            String lat = attributes.getValue("lat");
+            String lon = attributes.getValue("lon");
+            if (id == null || lat == null || lon == null) return; // deleted or incomplete node
+            if (nodesReady) {
+                // Nodes after ways (unusual): they are only seen by the ways that follow
+                nodesReady = false;
+                nodesSorted = false;
+            }
+            if (nodeCount == nodeIds.length) {
+                int capacity = nodeCount * 2;
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                nodeLats = Arrays.copyOf(nodeLats, capacity);
+                nodeLons = Arrays.copyOf(nodeLons, capacity);
+            }
+            try {
+                nodeIds[nodeCount] = Long.parseLong(id);
+                nodeLats[nodeCount] = Double.parseDouble(lat);
+                nodeLons[nodeCount] = Double.parseDouble(lon);
+            } catch (NumberFormatException e) {
+                throw new SAXException("Invalid node " + id);
+            }
+            if (nodeCount > 0 && nodeIds[nodeCount] < nodeIds[nodeCount - 1]) {
+                nodesSorted = false;
+            }
+            nodeCount++;
+        }
+
+        private void addRef(String value) throws SAXException {
+            if (wayRefCount == wayRefs.length) {
+                wayRefs = Arrays.copyOf(wayRefs, wayRefCount * 2);
+            }
+            try {
+                wayRefs[wayRefCount++] = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new SAXException("Invalid node reference " + value);
+            }
+        }
+
+        private void readTag(String key, String value) {
+            if (key == null || value == null) return;
+            switch (key) {
+                case "highway": highway = value; break;
+                case "name": name = value; break;
+                case "ref": ref = value; break;
+                default: break;
+            }
+        }
+
+        // Sorts the nodes by id once, before the first way is resolved. Extracts
+        // come sorted by id, so the boxed sort below is only the fallback.
+        private void prepareNodes() {
+            if (nodesReady) return;
+            nodesReady = true;
+            if (nodesSorted) return;
+            Integer[] byId = new Integer[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                byId[i] = i;
+            }
+            Arrays.sort(byId, (a, b) -> Long.compare(nodeIds[a], nodeIds[b]));
+            long[] ids = new long[nodeCount];
+            double[] lats = new double[nodeCount];
+            double[] lons = new double[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                ids[i] = nodeIds[byId[i]];
+                lats[i] = nodeLats[byId[i]];
+                lons[i] = nodeLons[byId[i]];
+            }
+            nodeIds = ids;
+            nodeLats = lats;
+            nodeLons = lons;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.saurabh.proximity.core;
+
+// A road point as a standalone object, for callers that work with List<Point>
+// rather than with PointStore indices.
+public class Point {
+    public final String roadName;
+    public final double latitude;
+    public final double longitude;
+
+    public final double distance;
+
+    public Point(String roadName, double latitude, double longitude, double distance) {
+        this.roadName = roadName;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.distance = distance;
+    }
+    @Override
+    public String toString() {
+        return "Point{" +
+                "latitude=" + latitude +
+                ", longitude=" + longitude +
+                '}';
+    }
+}
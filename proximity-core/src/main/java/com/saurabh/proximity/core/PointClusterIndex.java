@@ -0,0 +1,208 @@
+package com.saurabh.proximity.core;
+
+import java.util.Arrays;
+
+// Per-zoom grid aggregates for drawing a PointStore on the map.
+//
+// Each zoom level has a grid whose cells are about CELL_PIXELS wide on screen
+// (map tiles are 256 px, so a cell is 90 / 2^zoom degrees). Every non-empty
+// cell keeps the number of points in it, their centroid and one representative
+// point. A cell holding a single point is drawn as that point, anything else
+// as a cluster, so zooming in splits clusters until only single points remain.
+//
+// Because cell sizes halve from one level to the next and share the same
+// origin, each level is built by merging the cells of the level below it
+// rather than by rescanning the points. Cells are stored sorted by (row,
+// column), so a viewport query binary-searches each visible row and only
+// touches the cells on screen. Built once off the main thread; read-only after.
+public class PointClusterIndex {
+    public static final int MAX_ZOOM = 20;
+    public static final double CELL_PIXELS = 64;
+    private static final double TILE_PIXELS = 256;
+
+    private final PointStore store;
+    private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+    public interface Visitor {
+        // representative is a store index; for count == 1 it is the point itself
+        void visit(double latitude, double longitude, int count, int representative);
+    }
+
+    private static final class Level {
+        final double cellSizeDegrees;
+        final int rowCount;
+        final int columnCount;
+        final long[] keys;       // sorted (row << 32 | column)
+        final int[] counts;
+        final double[] latSums;
+        final double[] lonSums;
+        final int[] representatives;
+
+        Level(double cellSizeDegrees, long[] keys, int[] counts, double[] latSums, double[] lonSums,
+              int[] representatives) {
+            this.cellSizeDegrees = cellSizeDegrees;
+            this.rowCount = (int) Math.ceil(180.0 / cellSizeDegrees);
+            this.columnCount = (int) Math.ceil(360.0 / cellSizeDegrees);
+            this.keys = keys;
+            this.counts = counts;
+            this.latSums = latSums;
+            this.lonSums = lonSums;
+            this.representatives = representatives;
+        }
+
+        int size() {
+            return keys.length;
+        }
+    }
+
+    public PointClusterIndex(PointStore store) {
+        this.store = store;
+        levels[MAX_ZOOM] = buildFinest(store, cellSize(MAX_ZOOM));
+        for (int zoom = MAX_ZOOM - 1; zoom >= 0; zoom--) {
+            levels[zoom] = merge(levels[zoom + 1], cellSize(zoom));
+        }
+    }
+
+    public PointStore store() {
+        return store;
+    }
+
+    // Number of aggregates (clusters plus single points) at a zoom level
+    public int cellCount(double zoom) {
+        return levels[level(zoom)].size();
+    }
+
+    // Calls visitor for every aggregate of the zoom level whose cell overlaps the
+    // box, and returns how many were visited. west > east means the box crosses
+    // the antimeridian. Stops early once limit aggregates have been visited.
+    public int query(double zoom, double south, double west, double north, double east, int limit, Visitor visitor) {
+        Level level = levels[level(zoom)];
+        if (level.size() == 0 || limit <= 0) return 0;
+
+        int firstRow = row(level, south);
+        int lastRow = row(level, north);
+        int firstColumn = column(level, west);
+        int lastColumn = column(level, east);
+        if (lastColumn < firstColumn || east - west >= 360.0) {
+            lastColumn += level.columnCount; // wraps past the antimeridian
+        }
+        lastColumn = Math.min(lastColumn, firstColumn + level.columnCount - 1);
+
+        int visited = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            // At most two contiguous key ranges per row: before and after the wrap
+            int end = Math.min(lastColumn, level.columnCount - 1);
+            visited += visitRange(level, r, firstColumn, end, limit - visited, visitor);
+            if (lastColumn >= level.columnCount && visited < limit) {
+                visited += visitRange(level, r, 0, lastColumn - level.columnCount, limit - visited, visitor);
+            }
+            if (visited >= limit) break;
+        }
+        return visited;
+    }
+
+    private int visitRange(Level level, int row, int fromColumn, int toColumn, int limit, Visitor visitor) {
+        int from = lowerBound(level.keys, cellKey(row, fromColumn));
+        int visited = 0;
+        long last = cellKey(row, toColumn);
+        for (int i = from; i < level.size() && level.keys[i] <= last && visited < limit; i++) {
+            int count = level.counts[i];
+            visitor.visit(level.latSums[i] / count, level.lonSums[i] / count, count, level.representatives[i]);
+            visited++;
+        }
+        return visited;
+    }
+
+    public static double cellSize(int zoom) {
+        return 360.0 * CELL_PIXELS / (TILE_PIXELS * (1L << zoom));
+    }
+
+    private static int level(double zoom) {
+        if (Double.isNaN(zoom)) return 0;
+        return (int) Math.max(0, Math.min(MAX_ZOOM, Math.floor(zoom)));
+    }
+
+    private static Level buildFinest(PointStore store, double cellSize) {
+        int n = store.size();
+        int rowCount = (int) Math.ceil(180.0 / cellSize);
+        int columnCount = (int) Math.ceil(360.0 / cellSize);
+        long[] keys = new long[n];
+        int[] counts = new int[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = clamp((int) Math.floor((store.latitude(i) + 90.0) / cellSize), rowCount);
+            int c = Math.floorMod((int) Math.floor((store.longitude(i) + 180.0) / cellSize), columnCount);
+            keys[i] = cellKey(r, c);
+            counts[i] = 1;
+            latitudes[i] = store.latitude(i);
+            longitudes[i] = store.longitude(i);
+            indices[i] = i;
+        }
+        return aggregate(cellSize, keys, counts, latitudes, longitudes, indices);
+    }
+
+    // Halving both cell indices maps a cell onto its parent one level up
+    private static Level merge(Level finer, double cellSize) {
+        int n = finer.size();
+        long[] parentKeys = new long[n];
+        for (int i = 0; i < n; i++) {
+            long key = finer.keys[i];
+            parentKeys[i] = cellKey((int) (key >>> 32) >> 1, (int) key >> 1);
+        }
+        return aggregate(cellSize, parentKeys, finer.counts, finer.latSums, finer.lonSums, finer.representatives);
+    }
+
+    // Sums the entries sharing a key into one cell per distinct key. The first
+    // entry seen for a cell becomes its representative.
+    private static Level aggregate(double cellSize, long[] keys, int[] counts, double[] latSums, double[] lonSums,
+                                   int[] representatives) {
+        int n = keys.length;
+        long[] sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || sortedKeys[unique - 1] != sortedKeys[i]) {
+                sortedKeys[unique++] = sortedKeys[i];
+            }
+        }
+        long[] cellKeys = Arrays.copyOf(sortedKeys, unique);
+        int[] cellCounts = new int[unique];
+        double[] cellLatSums = new double[unique];
+        double[] cellLonSums = new double[unique];
+        int[] cellRepresentatives = new int[unique];
+        for (int i = 0; i < n; i++) {
+            int slot = Arrays.binarySearch(cellKeys, keys[i]);
+            if (cellCounts[slot] == 0) {
+                cellRepresentatives[slot] = representatives[i];
+            }
+            cellCounts[slot] += counts[i];
+            cellLatSums[slot] += latSums[i];
+            cellLonSums[slot] += lonSums[i];
+        }
+        return new Level(cellSize, cellKeys, cellCounts, cellLatSums, cellLonSums, cellRepresentatives);
+    }
+
+    private static int row(Level level, double latitude) {
+        return clamp((int) Math.floor((latitude + 90.0) / level.cellSizeDegrees), level.rowCount);
+    }
+
+    private static int column(Level level, double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180.0) / level.cellSizeDegrees), level.columnCount);
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    private static int lowerBound(long[] keys, long key) {
+        int slot = Arrays.binarySearch(keys, key);
+        if (slot >= 0) return slot;
+        return -slot - 1;
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -0,0 +1,247 @@
+package com.saurabh.proximity.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Read-only point set backed by a memory-mapped file (written by
+// PointDatabaseWriter), for datasets too large to hold on the heap.
+//
+// File layout (big-endian):
+//   header   magic, version, point count, block size, group size, road count,
+//            and the offsets of the sections below
+//   groups   bounding box of every GROUP_SIZE consecutive blocks
+//   blocks   bounding box of every BLOCK_SIZE consecutive records
+//   records  (latitude, longitude, road id), coordinates as ints with 7
+//            decimals (about 1 cm), in Z-order
+//   names    road name offsets, then the names as UTF-8
+//
+// open() reads the header and maps the file; nothing else is parsed, so
+// opening costs the same for any size and the heap holds only this object.
+// A query scans the group boxes (about 1 KB per million points), then the
+// boxes of the groups that can hold a hit, then the records of the blocks
+// that can; the OS pages in only what is touched. Because records are in
+// Z-order, the points of a neighbourhood sit in a few neighbouring blocks.
+//
+// Point indices in query results are record positions in the file. Reads use
+// absolute positions only, so a database can be queried from several threads,
+// each with its own PointQueryResult. The mapping stays valid after the file
+// is replaced and is released when the database is garbage collected.
+public final class PointDatabase {
+    static final int MAGIC = 0x50584442;          // "PXDB"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int BOX_BYTES = 16;              // min lat, min lon, max lat, max lon
+    static final int RECORD_BYTES = 12;           // lat, lon, road id
+    static final double UNITS_PER_DEGREE = 1e7;
+    private static final double METERS_PER_DEGREE = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int blockSize;
+    private final int groupSize;
+    private final int blockCount;
+    private final int groupCount;
+    private final int roadCount;
+    private final int groupsOffset;
+    private final int blocksOffset;
+    private final int recordsOffset;
+    private final int namesOffset;
+
+    private PointDatabase(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a point database");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported point database version " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        blockSize = buffer.getInt(12);
+        groupSize = buffer.getInt(16);
+        roadCount = buffer.getInt(20);
+        long groups = buffer.getLong(24);
+        long blocks = buffer.getLong(32);
+        long records = buffer.getLong(40);
+        long names = buffer.getLong(48);
+        long length = buffer.getLong(56);
+        if (size < 0 || blockSize <= 0 || groupSize <= 0 || roadCount < 0 || length != buffer.capacity()) {
+            throw new IOException("Corrupt point database header");
+        }
+        blockCount = (int) ((size + (long) blockSize - 1) / blockSize);
+        groupCount = (int) ((blockCount + (long) groupSize - 1) / groupSize);
+        if (groups != HEADER_BYTES
+                || blocks != groups + (long) groupCount * BOX_BYTES
+                || records != blocks + (long) blockCount * BOX_BYTES
+                || names != records + (long) size * RECORD_BYTES
+                || length < names + (roadCount + 1L) * 4) {
+            throw new IOException("Corrupt point database header");
+        }
+        groupsOffset = (int) groups;
+        blocksOffset = (int) blocks;
+        recordsOffset = (int) records;
+        namesOffset = (int) names;
+    }
+
+    public static PointDatabase open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Point database larger than 2 GB: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new PointDatabase(mapped);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double latitude(int index) {
+        return buffer.getInt(record(index)) / UNITS_PER_DEGREE;
+    }
+
+    public double longitude(int index) {
+        return buffer.getInt(record(index) + 4) / UNITS_PER_DEGREE;
+    }
+
+    public int roadId(int index) {
+        return buffer.getInt(record(index) + 8);
+    }
+
+    public String roadName(int index) {
+        return roadNameForId(roadId(index));
+    }
+
+    // Decoded from the file on every call
+    public String roadNameForId(int roadId) {
+        if (roadId < 0 || roadId >= roadCount) {
+            throw new IndexOutOfBoundsException("Road id: " + roadId + ", Count: " + roadCount);
+        }
+        int table = namesOffset + 4 * roadId;
+        int start = buffer.getInt(table);
+        int end = buffer.getInt(table + 4);
+        int position = namesOffset + 4 * (roadCount + 1) + start;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int roadCount() {
+        return roadCount;
+    }
+
+    public Point toPoint(int index, double distance) {
+        return new Point(roadName(index), latitude(index), longitude(index), distance);
+    }
+
+    // Collects every point within radiusMeters of (latitude, longitude) into out,
+    // which is cleared first. Only the blocks whose box reaches the search radius are read.
+    public PointQueryResult query(double latitude, double longitude, double radiusMeters, PointQueryResult out) {
+        out.clear();
+        DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, radiusMeters);
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        for (int group = 0; group < groupCount; group++) {
+            if (boxDistance(groupsOffset, group, latitude, longitude, cosLat) > radiusMeters) continue;
+            int lastBlock = Math.min(blockCount, (group + 1) * groupSize);
+            for (int block = group * groupSize; block < lastBlock; block++) {
+                if (boxDistance(blocksOffset, block, latitude, longitude, cosLat) > radiusMeters) continue;
+                int end = Math.min(size, (block + 1) * blockSize);
+                for (int index = block * blockSize; index < end; index++) {
+                    double distance = scoreRecord(kernel, index);
+                    if (distance >= 0) {
+                        out.add(index, distance);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    // Finds the k points closest to (latitude, longitude) within maxRadiusMeters and
+    // writes them into out sorted by ascending distance. Groups and blocks are
+    // read in order of the distance to their box, and the search stops once that
+    // distance reaches the k-th best hit.
+    public PointQueryResult nearest(double latitude, double longitude, int k, double maxRadiusMeters,
+                                    PointQueryResult out) {
+        out.clear();
+        if (k <= 0 || size == 0) return out;
+        DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, maxRadiusMeters);
+        double cosLat = Math.cos(Math.toRadians(latitude));
+
+        // Queue entries are groups (encoded as -1 - group) and blocks
+        for (int group = 0; group < groupCount; group++) {
+            double bound = boxDistance(groupsOffset, group, latitude, longitude, cosLat);
+            if (bound <= maxRadiusMeters) out.push(bound, -1 - group);
+        }
+        while (out.hasQueued() && out.peekKey() <= maxRadiusMeters && out.peekKey() < out.worstDistance(k)) {
+            int node = out.pop();
+            if (node < 0) {
+                int group = -1 - node;
+                int lastBlock = Math.min(blockCount, (group + 1) * groupSize);
+                for (int block = group * groupSize; block < lastBlock; block++) {
+                    double bound = boxDistance(blocksOffset, block, latitude, longitude, cosLat);
+                    if (bound <= maxRadiusMeters && bound < out.worstDistance(k)) out.push(bound, block);
+                }
+            } else {
+                int end = Math.min(size, (node + 1) * blockSize);
+                for (int index = node * blockSize; index < end; index++) {
+                    double distance = scoreRecord(kernel, index);
+                    if (distance >= 0) {
+                        out.offerBounded(index, distance, k);
+                    }
+                }
+            }
+        }
+        out.sortHeapAscending();
+        return out;
+    }
+
+    private double scoreRecord(DistanceKernel kernel, int index) {
+        int position = record(index);
+        return kernel.distanceWithin(buffer.getInt(position) / UNITS_PER_DEGREE,
+                buffer.getInt(position + 4) / UNITS_PER_DEGREE);
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return recordsOffset + index * RECORD_BYTES;
+    }
+
+    // Lower bound on the distance from (latitude, longitude) to any point in a
+    // box: the larger of the distance along the meridian to its latitude band
+    // and the distance to the nearest meridian bounding its longitude range
+    private double boxDistance(int section, int box, double latitude, double longitude, double cosLat) {
+        int position = section + box * BOX_BYTES;
+        double minLat = buffer.getInt(position) / UNITS_PER_DEGREE;
+        double minLon = buffer.getInt(position + 4) / UNITS_PER_DEGREE;
+        double maxLat = buffer.getInt(position + 8) / UNITS_PER_DEGREE;
+        double maxLon = buffer.getInt(position + 12) / UNITS_PER_DEGREE;
+
+        double latGap = Math.max(0, Math.max(minLat - latitude, latitude - maxLat));
+        double lonGap = 0;
+        if (longitude < minLon || longitude > maxLon) {
+            // The box may be closer the other way around the antimeridian
+            lonGap = Math.min(wrap(minLon - longitude), wrap(longitude - maxLon));
+        }
+        double gap = Math.toRadians(Math.min(90.0, lonGap));
+        double meridian = DistanceKernel.EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.abs(cosLat) * Math.sin(gap)));
+        return Math.max(latGap * METERS_PER_DEGREE, meridian);
+    }
+
+    // Degrees east, in [0, 360)
+    private static double wrap(double degrees) {
+        double wrapped = degrees % 360.0;
+        return wrapped < 0 ? wrapped + 360.0 : wrapped;
+    }
+}
@@ -0,0 +1,201 @@
+package com.saurabh.proximity.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Builds the file read by PointDatabase from a PointStore. Meant for preparing
+// datasets off the device (or once, in the background): the whole store is on
+// the heap while it is written.
+//
+// Points are sorted by the Morton (Z-order) code of their quantized
+// coordinates, which keeps points that are close on the ground close in the
+// file, and then cut into blocks of BLOCK_SIZE; every GROUP_SIZE blocks form a
+// group. The file is written next to the target and renamed over it, so a
+// reader never sees a half-written database.
+public final class PointDatabaseWriter {
+    public static final int BLOCK_SIZE = 256;  // 3 KB of records, under one 4 KB page
+    public static final int GROUP_SIZE = 64;
+
+    private PointDatabaseWriter() {
+    }
+
+    public static void write(PointStore store, File file) throws IOException {
+        int n = store.size();
+        int[] lats = new int[n];
+        int[] lons = new int[n];
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = quantize(store.latitude(i), 90.0);
+            lons[i] = quantize(store.longitude(i), 180.0);
+            keys[i] = morton(lats[i], lons[i]);
+            order[i] = i;
+        }
+        sortByKey(keys, order);
+
+        int blockCount = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int groupCount = (blockCount + GROUP_SIZE - 1) / GROUP_SIZE;
+        int[] blockBoxes = new int[blockCount * 4];
+        for (int block = 0; block < blockCount; block++) {
+            int first = block * BLOCK_SIZE;
+            setBox(blockBoxes, block, lats, lons, order, first, Math.min(n, first + BLOCK_SIZE));
+        }
+        int[] groupBoxes = new int[groupCount * 4];
+        for (int group = 0; group < groupCount; group++) {
+            int first = group * GROUP_SIZE;
+            int end = Math.min(blockCount, first + GROUP_SIZE);
+            groupBoxes[group * 4] = Integer.MAX_VALUE;
+            groupBoxes[group * 4 + 1] = Integer.MAX_VALUE;
+            groupBoxes[group * 4 + 2] = Integer.MIN_VALUE;
+            groupBoxes[group * 4 + 3] = Integer.MIN_VALUE;
+            for (int block = first; block < end; block++) {
+                groupBoxes[group * 4] = Math.min(groupBoxes[group * 4], blockBoxes[block * 4]);
+                groupBoxes[group * 4 + 1] = Math.min(groupBoxes[group * 4 + 1], blockBoxes[block * 4 + 1]);
+                groupBoxes[group * 4 + 2] = Math.max(groupBoxes[group * 4 + 2], blockBoxes[block * 4 + 2]);
+                groupBoxes[group * 4 + 3] = Math.max(groupBoxes[group * 4 + 3], blockBoxes[block * 4 + 3]);
+            }
+        }
+
+        int roadCount = store.roadCount();
+        byte[][] names = new byte[roadCount][];
+        for (int id = 0; id < roadCount; id++) {
+            names[id] = store.roadNameForId(id).getBytes(StandardCharsets.UTF_8);
+        }
+
+        long groupsOffset = PointDatabase.HEADER_BYTES;
+        long blocksOffset = groupsOffset + (long) groupCount * PointDatabase.BOX_BYTES;
+        long recordsOffset = blocksOffset + (long) blockCount * PointDatabase.BOX_BYTES;
+        long namesOffset = recordsOffset + (long) n * PointDatabase.RECORD_BYTES;
+        long nameBytes = 0;
+        for (byte[] name : names) {
+            nameBytes += name.length;
+        }
+        long length = namesOffset + (roadCount + 1L) * 4 + nameBytes;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Point database would exceed 2 GB (" + length + " bytes)");
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(PointDatabase.MAGIC);
+            out.writeInt(PointDatabase.VERSION);
+            out.writeInt(n);
+            out.writeInt(BLOCK_SIZE);
+            out.writeInt(GROUP_SIZE);
+            out.writeInt(roadCount);
+            out.writeLong(groupsOffset);
+            out.writeLong(blocksOffset);
+            out.writeLong(recordsOffset);
+            out.writeLong(namesOffset);
+            out.writeLong(length);
+            for (int value : groupBoxes) {
+                out.writeInt(value);
+            }
+            for (int value : blockBoxes) {
+                out.writeInt(value);
+            }
+            for (int i = 0; i < n; i++) {
+                int index = order[i];
+                out.writeInt(lats[index]);
+                out.writeInt(lons[index]);
+                out.writeInt(store.roadId(index));
+            }
+            // Name offsets relative to the end of the offset table, then the UTF-8 bytes
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] name : names) {
+                offset += name.length;
+                out.writeInt(offset);
+            }
+            for (byte[] name : names) {
+                out.write(name);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    // Degrees to fixed point with 7 decimals (about 1 cm), clamped to the valid range
+    static int quantize(double degrees, double limit) {
+        if (Double.isNaN(degrees) || Double.isInfinite(degrees)) {
+            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+        }
+        double clamped = Math.max(-limit, Math.min(limit, degrees));
+        return (int) Math.round(clamped * PointDatabase.UNITS_PER_DEGREE);
+    }
+
+    // Z-order key: the coordinates are shifted to be non-negative, longitude is
+    // halved so both fit 31 bits, and the bits are interleaved
+    static long morton(int latitude, int longitude) {
+        long y = latitude + 900_000_000L;
+        long x = (longitude + 1_800_000_000L) >>> 1;
+        return spread(x) << 1 | spread(y);
+    }
+
+    // Moves bit i of a 31-bit value to bit 2i
+    private static long spread(long v) {
+        v &= 0x7fffffffL;
+        v = (v | (v << 16)) & 0x0000ffff0000ffffL;
+        v = (v | (v << 8)) & 0x00ff00ff00ff00ffL;
+        v = (v | (v << 4)) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static void setBox(int[] boxes, int slot, int[] lats, int[] lons, int[] order, int from, int to) {
+        int minLat = Integer.MAX_VALUE;
+        int minLon = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE;
+        int maxLon = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int index = order[i];
+            minLat = Math.min(minLat, lats[index]);
+            minLon = Math.min(minLon, lons[index]);
+            maxLat = Math.max(maxLat, lats[index]);
+            maxLon = Math.max(maxLon, lons[index]);
+        }
+        boxes[slot * 4] = minLat;
+        boxes[slot * 4 + 1] = minLon;
+        boxes[slot * 4 + 2] = maxLat;
+        boxes[slot * 4 + 3] = maxLon;
+    }
+
+    // LSD radix sort of the non-negative 62-bit keys, carrying values along
+    private static void sortByKey(long[] keys, int[] values) {
+        int n = keys.length;
+        long[] keyBuffer = new long[n];
+        int[] valueBuffer = new int[n];
+        int[] counts = new int[1 << 11];
+        for (int shift = 0; shift < 62; shift += 11) {
+            Arrays.fill(counts, 0);
+            for (long key : keys) {
+                counts[(int) (key >>> shift) & 0x7ff]++;
+            }
+            if (n == 0 || counts[(int) (keys[0] >>> shift) & 0x7ff] == n) continue; // same digit everywhere
+            int sum = 0;
+            for (int d = 0; d < counts.length; d++) {
+                int count = counts[d];
+                counts[d] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = counts[(int) (keys[i] >>> shift) & 0x7ff]++;
+                keyBuffer[slot] = keys[i];
+                valueBuffer[slot] = values[i];
+            }
+            System.arraycopy(keyBuffer, 0, keys, 0, n);
+            System.arraycopy(valueBuffer, 0, values, 0, n);
+        }
+    }
+}
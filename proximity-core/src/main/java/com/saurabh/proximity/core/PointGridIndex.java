@@ -0,0 +1,352 @@
+package com.saurabh.proximity.core;
+
+import java.util.Arrays;
+
+// Uniform lat/lon grid over a PointStore. A radius query only visits the
+// cells that overlap the search circle's bounding box, so its cost depends on
+// how many points are near the query position rather than on the total size
+// of the dataset.
+//
+// Cells are kept in a compact sorted layout (cell keys, offsets, point
+// indices), so a query does not allocate and never touches shared mutable
+// state. The index reflects the store as it was when the index was built.
+public class PointGridIndex {
+    public static final double DEFAULT_CELL_SIZE_DEGREES = 0.01; // ~1.1 km of latitude
+    private static final double METERS_PER_DEGREE = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private final PointStore store;
+    private final double cellSizeDegrees;
+    private final int rowCount;
+    private final int columnCount;
+
+    private final long[] cellKeys;   // sorted, one entry per non-empty cell
+    private final int[] cellStart;   // cellStart[i]..cellStart[i + 1] index into cellPoints
+    private final int[] cellPoints;  // point indices grouped by cell
+
+    public PointGridIndex(PointStore store) {
+        this(store, DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    public PointGridIndex(PointStore store, double cellSizeDegrees) {
+        if (store == null) {
+            throw new IllegalArgumentException("Point store is null");
+        }
+        if (!(cellSizeDegrees > 0) || cellSizeDegrees > 90) {
+            throw new IllegalArgumentException("Cell size must be in (0, 90] degrees");
+        }
+        this.store = store;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.rowCount = (int) Math.ceil(180.0 / cellSizeDegrees);
+        this.columnCount = (int) Math.ceil(360.0 / cellSizeDegrees);
+
+        int n = store.size();
+        long[] pointKeys = new long[n];
+        for (int i = 0; i < n; i++) {
+            pointKeys[i] = cellKey(row(store.latitude(i)), column(store.longitude(i)));
+        }
+
+        long[] sortedKeys = pointKeys.clone();
+        Arrays.sort(sortedKeys);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || sortedKeys[unique - 1] != sortedKeys[i]) {
+                sortedKeys[unique++] = sortedKeys[i];
+            }
+        }
+        cellKeys = Arrays.copyOf(sortedKeys, unique);
+
+        // Counting sort of the point indices by cell
+        int[] slotOfPoint = new int[n];
+        cellStart = new int[unique + 1];
+        for (int i = 0; i < n; i++) {
+            int slot = Arrays.binarySearch(cellKeys, pointKeys[i]);
+            slotOfPoint[i] = slot;
+            cellStart[slot + 1]++;
+        }
+        for (int i = 0; i < unique; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        int[] fill = Arrays.copyOf(cellStart, unique);
+        cellPoints = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellPoints[fill[slotOfPoint[i]]++] = i;
+        }
+    }
+
+    public PointStore store() {
+        return store;
+    }
+
+    public int size() {
+        return cellPoints.length;
+    }
+
+    // Collects every point within radiusMeters of (latitude, longitude) into out,
+    // which is cleared first. Only cells touching the search radius are tested.
+    public PointQueryResult query(double latitude, double longitude, double radiusMeters, PointQueryResult out) {
+        out.clear();
+        if (cellPoints.length == 0) return out;
+
+        double latSpan = radiusMeters / METERS_PER_DEGREE;
+        int minRow = row(latitude - latSpan);
+        int maxRow = row(latitude + latSpan);
+
+        // Use the latitude furthest from the equator inside the box, where a
+        // degree of longitude is shortest, so the column range is never too narrow.
+        double maxAbsLat = Math.min(90.0, Math.max(Math.abs(latitude - latSpan), Math.abs(latitude + latSpan)));
+        double cosLat = Math.cos(Math.toRadians(maxAbsLat));
+        int columnSpan;
+        if (cosLat < 1e-9) {
+            columnSpan = columnCount;
+        } else {
+            double lonSpan = latSpan / cosLat;
+            columnSpan = lonSpan >= 180.0 ? columnCount : (int) Math.ceil(lonSpan / cellSizeDegrees) + 1;
+        }
+        int centerColumn = column(longitude);
+        int firstColumn = centerColumn - columnSpan;
+        int lastColumn = centerColumn + columnSpan;
+        if (lastColumn - firstColumn + 1 >= columnCount) {
+            firstColumn = 0;
+            lastColumn = columnCount - 1;
+        }
+
+        DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, radiusMeters);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int slot = Arrays.binarySearch(cellKeys, cellKey(r, Math.floorMod(c, columnCount)));
+                if (slot >= 0) {
+                    kernel.filter(store, cellPoints, cellStart[slot], cellStart[slot + 1], out);
+                }
+            }
+        }
+        return out;
+    }
+
+    // Finds the k points closest to (latitude, longitude) within maxRadiusMeters and
+    // writes them into out sorted by ascending distance. The search starts in the
+    // query's cell and widens one ring of cells at a time; it stops as soon as the
+    // k-th best hit is closer than anything outside the rings visited so far, so
+    // only a handful of cells are scored even in dense areas.
+    public PointQueryResult nearest(double latitude, double longitude, int k, double maxRadiusMeters, PointQueryResult out) {
+        out.clear();
+        if (k <= 0 || cellPoints.length == 0) return out;
+
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+        // Longitude in [-180, 180), the frame the columns are numbered in; 180
+        // itself falls in column 0, and its gaps must be measured from -180
+        double columnLongitude = longitude - 360.0 * Math.floor((longitude + 180.0) / 360.0);
+        int maxWest = (columnCount - 1) / 2;
+        int maxEast = columnCount - 1 - maxWest;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, maxRadiusMeters);
+
+        int prevWest = -1;
+        int prevEast = -1;
+        for (int ring = 0; ; ring++) {
+            int west = Math.min(ring, maxWest);
+            int east = Math.min(ring, maxEast);
+            int firstRow = Math.max(0, centerRow - ring);
+            int lastRow = Math.min(rowCount - 1, centerRow + ring);
+
+            // Visit only the cells that were not part of the previous ring's block
+            for (int r = firstRow; r <= lastRow; r++) {
+                boolean newRow = r == centerRow - ring || r == centerRow + ring;
+                if (newRow) {
+                    for (int c = centerColumn - west; c <= centerColumn + east; c++) {
+                        scoreCell(r, c, kernel, k, out);
+                    }
+                } else {
+                    if (west > prevWest) scoreCell(r, centerColumn - west, kernel, k, out);
+                    if (east > prevEast) scoreCell(r, centerColumn + east, kernel, k, out);
+                }
+            }
+            prevWest = west;
+            prevEast = east;
+
+            // Lower bound on the distance to any point outside the visited block
+            double northEdge = (centerRow + ring + 1) * cellSizeDegrees - 90.0;
+            double southEdge = (centerRow - ring) * cellSizeDegrees - 90.0;
+            double bound = Double.POSITIVE_INFINITY;
+            if (northEdge < 90.0) bound = Math.min(bound, (northEdge - latitude) * METERS_PER_DEGREE);
+            if (southEdge > -90.0) bound = Math.min(bound, (latitude - southEdge) * METERS_PER_DEGREE);
+            boolean allColumns = west + east + 1 >= columnCount;
+            if (!allColumns) {
+                double eastGap = (centerColumn + east + 1) * cellSizeDegrees - 180.0 - columnLongitude;
+                double westGap = columnLongitude - ((centerColumn - west) * cellSizeDegrees - 180.0);
+                bound = Math.min(bound, meridianDistance(cosLat, eastGap));
+                bound = Math.min(bound, meridianDistance(cosLat, westGap));
+            }
+
+            if (bound > maxRadiusMeters || bound >= out.worstDistance(k)) break;
+            if (allColumns && firstRow == 0 && lastRow == rowCount - 1) break;
+        }
+        out.sortHeapAscending();
+        return out;
+    }
+
+    // Collects every point within widthMeters of the route through the given
+    // vertices (latitudes[i], longitudes[i]) for i < count into out, sorted by
+    // distance along the route. Each segment is cut into pieces no longer than
+    // a cell, and the cells within widthMeters of each piece are paired with the
+    // segment; every point of a paired cell is then measured against the
+    // segments paired with its cell only, and kept with the nearest of them.
+    // One corridor query reads each cell once, where radius queries spaced
+    // along the route would read the overlapping cells again and again.
+    //
+    // Distances use the same local projection as RoadSegmentIndex (well under
+    // 0.1% off the great-circle distance for widths of a few kilometres). A
+    // point near two parts of a route that passes by twice is reported once,
+    // at the part it is closest to. A single vertex is a corridor around that
+    // point.
+    public CorridorResult corridor(double[] latitudes, double[] longitudes, int count, double widthMeters,
+                                   CorridorResult out) {
+        out.clear();
+        if (count <= 0 || cellPoints.length == 0) return out;
+        int segmentCount = Math.max(1, count - 1);
+        double latSpan = widthMeters / METERS_PER_DEGREE;
+
+        for (int s = 0; s < segmentCount; s++) {
+            int end = Math.min(s + 1, count - 1);
+            double startLat = latitudes[s];
+            double startLon = longitudes[s];
+            double dLat = latitudes[end] - startLat;
+            double dLon = wrapLongitude(longitudes[end] - startLon);
+            int pieces = Math.max(1, (int) Math.ceil(Math.max(Math.abs(dLat), Math.abs(dLon)) / cellSizeDegrees));
+            for (int piece = 0; piece < pieces; piece++) {
+                double lat1 = startLat + dLat * piece / pieces;
+                double lat2 = startLat + dLat * (piece + 1) / pieces;
+                double lon1 = startLon + dLon * piece / pieces;
+                double lon2 = startLon + dLon * (piece + 1) / pieces;
+                coverBox(Math.min(lat1, lat2) - latSpan, Math.max(lat1, lat2) + latSpan,
+                        Math.min(lon1, lon2), Math.max(lon1, lon2), latSpan, s, out);
+            }
+        }
+
+        // Cumulative route length at every vertex
+        double[] along = new double[count];
+        for (int i = 1; i < count; i++) {
+            along[i] = along[i - 1] + DistanceKernel.haversine(latitudes[i - 1], longitudes[i - 1],
+                    latitudes[i], longitudes[i]);
+        }
+
+        int pairs = out.sortPairs();
+        for (int first = 0; first < pairs; ) {
+            int slot = (int) (out.pair(first) >>> 32);
+            int last = first + 1;
+            while (last < pairs && (int) (out.pair(last) >>> 32) == slot) last++;
+            for (int p = cellStart[slot]; p < cellStart[slot + 1]; p++) {
+                scoreAgainstRoute(cellPoints[p], latitudes, longitudes, count, along, widthMeters, first, last, out);
+            }
+            first = last;
+        }
+        out.sortByAlong();
+        return out;
+    }
+
+    // Measures one point against the segments of pairs [first, last) and keeps it if the nearest is close enough
+    private void scoreAgainstRoute(int index, double[] latitudes, double[] longitudes, int count, double[] along,
+                                   double widthMeters, int first, int last, CorridorResult out) {
+        double latitude = store.latitude(index);
+        double longitude = store.longitude(index);
+        double ky = METERS_PER_DEGREE;
+        double kx = Math.cos(Math.toRadians(latitude)) * METERS_PER_DEGREE;
+        double best = Double.POSITIVE_INFINITY;
+        double bestAlong = 0;
+        int bestSegment = -1;
+        for (int i = first; i < last; i++) {
+            int s = (int) out.pair(i);
+            int end = Math.min(s + 1, count - 1);
+            // Segment end points relative to the point, in meters
+            double ax = wrapLongitude(longitudes[s] - longitude) * kx;
+            double ay = (latitudes[s] - latitude) * ky;
+            double dx = wrapLongitude(longitudes[end] - longitudes[s]) * kx;
+            double dy = (latitudes[end] - latitudes[s]) * ky;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? -(ax * dx + ay * dy) / lengthSquared : 0;
+            t = Math.max(0, Math.min(1, t));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            double distance = Math.sqrt(px * px + py * py);
+            if (distance < best) {
+                best = distance;
+                bestAlong = along[s] + t * (along[end] - along[s]);
+                bestSegment = s;
+            }
+        }
+        if (best <= widthMeters) {
+            out.add(index, best, bestAlong, bestSegment);
+        }
+    }
+
+    // Pairs every non-empty cell touching the box (latitudes south..north, longitudes
+    // west..east widened by widthMeters at the box's poleward edge) with the segment
+    private void coverBox(double south, double north, double west, double east, double latSpan, int segment,
+                          CorridorResult out) {
+        double maxAbsLat = Math.min(90.0, Math.max(Math.abs(south), Math.abs(north)));
+        double cosLat = Math.cos(Math.toRadians(maxAbsLat));
+        int firstColumn;
+        int lastColumn;
+        double lonSpan = cosLat < 1e-9 ? Double.POSITIVE_INFINITY : latSpan / cosLat;
+        if (east - west + 2 * lonSpan >= 360.0) {
+            firstColumn = 0;
+            lastColumn = columnCount - 1;
+        } else {
+            firstColumn = (int) Math.floor((west - lonSpan + 180.0) / cellSizeDegrees);
+            lastColumn = (int) Math.floor((east + lonSpan + 180.0) / cellSizeDegrees);
+        }
+        int minRow = row(south);
+        int maxRow = row(north);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int slot = Arrays.binarySearch(cellKeys, cellKey(r, Math.floorMod(c, columnCount)));
+                if (slot >= 0) {
+                    out.addPair(slot, segment);
+                }
+            }
+        }
+    }
+
+    private static double wrapLongitude(double degrees) {
+        if (degrees > 180.0) return degrees - 360.0;
+        if (degrees < -180.0) return degrees + 360.0;
+        return degrees;
+    }
+
+    // Key of the grid cell containing (latitude, longitude); equal keys mean the same cell
+    public long cellOf(double latitude, double longitude) {
+        return cellKey(row(latitude), column(longitude));
+    }
+
+    private void scoreCell(int r, int c, DistanceKernel kernel, int k, PointQueryResult out) {
+        int slot = Arrays.binarySearch(cellKeys, cellKey(r, Math.floorMod(c, columnCount)));
+        if (slot < 0) return;
+        for (int p = cellStart[slot]; p < cellStart[slot + 1]; p++) {
+            int index = cellPoints[p];
+            double distance = kernel.distanceWithin(store.latitude(index), store.longitude(index));
+            if (distance >= 0) {
+                out.offerBounded(index, distance, k);
+            }
+        }
+    }
+
+    // Shortest distance from a point at the given latitude to a meridian lonGap degrees away
+    private static double meridianDistance(double cosLat, double lonGapDegrees) {
+        double gap = Math.toRadians(Math.min(90.0, Math.max(0.0, lonGapDegrees)));
+        return DistanceKernel.EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.abs(cosLat) * Math.sin(gap)));
+    }
+
+    private int row(double latitude) {
+        int r = (int) Math.floor((latitude + 90.0) / cellSizeDegrees);
+        return Math.max(0, Math.min(rowCount - 1, r));
+    }
+
+    private int column(double longitude) {
+        int c = (int) Math.floor((longitude + 180.0) / cellSizeDegrees);
+        return Math.floorMod(c, columnCount);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -0,0 +1,206 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Result of a point query: indices into a PointStore plus the distance (in
+// meters) of each hit. Callers can keep one instance per thread and pass it
+// to every query, which avoids allocating anything once the arrays have grown
+// to the usual result size.
+public class PointQueryResult {
+    private int[] indices;
+    private double[] distances;
+    private int count;
+
+    // Binary min-heap of (lower bound, node) for searches that visit nodes
+    // best-first, such as PointDatabase.nearest
+    private double[] heapKeys = new double[32];
+    private int[] heapNodes = new int[32];
+    private int heapSize;
+
+    public PointQueryResult() {
+        this(16);
+    }
+
+    public PointQueryResult(int capacity) {
+        capacity = Math.max(1, capacity);
+        indices = new int[capacity];
+        distances = new double[capacity];
+    }
+
+    public void clear() {
+        count = 0;
+        heapSize = 0;
+    }
+
+    public void add(int index, double distance) {
+        if (count == indices.length) {
+            int capacity = count * 2;
+            indices = Arrays.copyOf(indices, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+        }
+        indices[count] = index;
+        distances[count] = distance;
+        count++;
+    }
+
+    // Bounded max-heap used by nearest-k queries: keeps the k closest hits seen so
+    // far, with the farthest of them at position 0 so it can be replaced cheaply.
+    public void offerBounded(int index, double distance, int k) {
+        if (count < k) {
+            add(index, distance);
+            siftUp(count - 1);
+        } else if (distance < distances[0]) {
+            indices[0] = index;
+            distances[0] = distance;
+            siftDown(0, count);
+        }
+    }
+
+    // Distance of the farthest hit kept by offerBounded, or +infinity while fewer than k are kept
+    public double worstDistance(int k) {
+        return count < k ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    // Turns the heap built by offerBounded into a list sorted by ascending distance
+    public void sortHeapAscending() {
+        for (int end = count - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    void set(int i, int index, double distance) {
+        indices[i] = index;
+        distances[i] = distance;
+    }
+
+    void truncate(int count) {
+        this.count = Math.min(this.count, count);
+    }
+
+    // Inserts into a list sorted by ascending distance, keeping at most k hits
+    void insertSorted(int index, double distance, int k) {
+        if (count >= k && distance >= distances[count - 1]) return;
+        if (count < k) add(index, distance);
+        int i = count - 1;
+        while (i > 0 && distances[i - 1] > distance) {
+            indices[i] = indices[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        indices[i] = index;
+        distances[i] = distance;
+    }
+
+    void push(double key, int node) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) break;
+            heapKeys[i] = heapKeys[parent];
+            heapNodes[i] = heapNodes[parent];
+            i = parent;
+        }
+        heapKeys[i] = key;
+        heapNodes[i] = node;
+    }
+
+    boolean hasQueued() {
+        return heapSize > 0;
+    }
+
+    double peekKey() {
+        return heapKeys[0];
+    }
+
+    int pop() {
+        int top = heapNodes[0];
+        heapSize--;
+        double key = heapKeys[heapSize];
+        int node = heapNodes[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (heapKeys[child] >= key) break;
+            heapKeys[i] = heapKeys[child];
+            heapNodes[i] = heapNodes[child];
+            i = child;
+        }
+        heapKeys[i] = key;
+        heapNodes[i] = node;
+        return top;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (distances[parent] >= distances[i]) break;
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < end && distances[left] > distances[largest]) largest = left;
+            if (right < end && distances[right] > distances[largest]) largest = right;
+            if (largest == i) return;
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = indices[a];
+        indices[a] = indices[b];
+        indices[b] = index;
+        double distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int index(int i) {
+        if (i >= count) throw new IndexOutOfBoundsException("Index: " + i + ", Count: " + count);
+        return indices[i];
+    }
+
+    public double distance(int i) {
+        if (i >= count) throw new IndexOutOfBoundsException("Index: " + i + ", Count: " + count);
+        return distances[i];
+    }
+
+    public List<Point> toPoints(PointStore store) {
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(store.toPoint(indices[i], distances[i]));
+        }
+        return points;
+    }
+
+    public List<Point> toPoints(PointDatabase database) {
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(database.toPoint(indices[i], distances[i]));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,110 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Structure-of-arrays point storage. Coordinates live in parallel primitive
+// arrays and road names are interned to int ids, so holding 100k+ points costs
+// a few flat arrays instead of one heap object (and one String) per point.
+// A store is filled once and then only read; it is safe to query from several
+// threads as long as nobody is still adding to it.
+public class PointStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private int[] roadIds;
+    private int size;
+
+    private final List<String> roadNames = new ArrayList<>();
+    private final Map<String, Integer> roadIdsByName = new HashMap<>();
+
+    public PointStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PointStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        roadIds = new int[capacity];
+    }
+
+    // Appends a point and returns its index
+    public int add(String roadName, double latitude, double longitude) {
+        return addWithRoadId(internRoadName(roadName), latitude, longitude);
+    }
+
+    // Same as add, for callers that already hold an id from internRoadName
+    public int addWithRoadId(int roadId, double latitude, double longitude) {
+        if (roadId < 0 || roadId >= roadNames.size()) {
+            throw new IllegalArgumentException("Unknown road id: " + roadId);
+        }
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+        }
+        if (size == latitudes.length) {
+            int capacity = size * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            roadIds = Arrays.copyOf(roadIds, capacity);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        roadIds[size] = roadId;
+        return size++;
+    }
+
+    public int internRoadName(String roadName) {
+        String name = roadName != null ? roadName : "";
+        Integer id = roadIdsByName.get(name);
+        if (id == null) {
+            id = roadNames.size();
+            roadNames.add(name);
+            roadIdsByName.put(name, id);
+        }
+        return id;
+    }
+
+    // Returns the id of roadName, or -1 if no point on that road has been added
+    public int roadId(String roadName) {
+        Integer id = roadIdsByName.get(roadName != null ? roadName : "");
+        return id != null ? id : -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    public int roadId(int index) {
+        return roadIds[index];
+    }
+
+    public String roadName(int index) {
+        return roadNames.get(roadIds[index]);
+    }
+
+    public String roadNameForId(int roadId) {
+        return roadNames.get(roadId);
+    }
+
+    public int roadCount() {
+        return roadNames.size();
+    }
+
+    // Materializes a Point for callers that still work with List<Point>
+    public Point toPoint(int index, double distance) {
+        return new Point(roadName(index), latitudes[index], longitudes[index], distance);
+    }
+}
@@ -0,0 +1,58 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Query helpers over the point structures in this module. They used to live in
+// the app's RoadPointFinder; keeping them here lets them run (and be
+// benchmarked) on a plain JVM.
+public final class ProximityQueries {
+    private ProximityQueries() {
+    }
+
+    // Method to filter points within a certain distance
+    public static List<Point> filterPointsByDistance(double lat1, double lon1, List<Point> points, double maxDistanceMeters) {
+        if (points == null || points.isEmpty()) {
+            throw new IllegalArgumentException("Point list is null or empty");
+        }
+
+        List<Point> nearbyPoints = new ArrayList<>();
+        DistanceKernel kernel = new DistanceKernel().setOrigin(lat1, lon1, maxDistanceMeters);
+        for (Point point : points) {
+            if (point == null) continue; // Skip null points
+            double distance = kernel.distanceWithin(point.latitude, point.longitude);
+            if (distance >= 0) {
+                // Copy instead of writing into the caller's point, which other queries may share
+                nearbyPoints.add(new Point(point.roadName, point.latitude, point.longitude, distance));
+            }
+        }
+        return nearbyPoints;
+    }
+
+    // Same as above, but only tests the points in the grid cells that touch the search radius.
+    // Hits are written into out as store indices plus distances; nothing shared is modified.
+    public static PointQueryResult filterPointsByDistance(double lat1, double lon1, PointGridIndex index,
+                                                          double maxDistanceMeters, PointQueryResult out) {
+        if (index == null) {
+            throw new IllegalArgumentException("Point index is null");
+        }
+        return index.query(lat1, lon1, maxDistanceMeters, out);
+    }
+
+    // The k points closest to (lat, lon) within maxRadiusMeters, sorted nearest first
+    public static PointQueryResult nearest(PointGridIndex index, double lat, double lon, int k,
+                                           double maxRadiusMeters, PointQueryResult out) {
+        if (index == null) {
+            throw new IllegalArgumentException("Point index is null");
+        }
+        return index.nearest(lat, lon, k, maxRadiusMeters, out);
+    }
+
+    // Haversine formula to calculate the distance between two points
+    public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+        if (Double.isNaN(lat1) || Double.isNaN(lon1) || Double.isNaN(lat2) || Double.isNaN(lon2)) {
+            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+        }
+        return DistanceKernel.haversine(lat1, lon1, lat2, lon2); // Distance in meters
+    }
+}
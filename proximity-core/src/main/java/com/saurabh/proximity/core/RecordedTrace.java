@@ -0,0 +1,259 @@
+package com.saurabh.proximity.core;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+// A recorded drive or walk, read from a GPX track or a CSV file, for replaying
+// through the app instead of live location updates.
+//
+// GPX: every <trkpt> (or <rtept>/<wpt>) with its <time>, and <speed>/<course>
+// when present (GPX 1.0 elements or the same names inside <extensions>);
+// GPX has no accuracy in meters, so that is left unknown.
+// CSV: one fix per line with the columns time, latitude, longitude and
+// optionally speed (m/s), bearing (degrees) and accuracy (m). A header line
+// naming the columns (lat/lon/lng, time/timestamp, course, ...) may reorder
+// them. Times are epoch milliseconds or ISO-8601 with an offset.
+//
+// Fixes without a time are spaced DEFAULT_INTERVAL_MILLIS apart. Missing
+// speed, bearing and accuracy are NaN.
+public final class RecordedTrace {
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private final String name;
+    private final List<Fix> fixes;
+
+    public static final class Fix {
+        public final long timeMillis;
+        public final double latitude;
+        public final double longitude;
+        public final float speed;
+        public final float bearing;
+        public final float accuracy;
+
+        public Fix(long timeMillis, double latitude, double longitude, float speed, float bearing, float accuracy) {
+            this.timeMillis = timeMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.speed = speed;
+            this.bearing = bearing;
+            this.accuracy = accuracy;
+        }
+    }
+
+    public RecordedTrace(String name, List<Fix> fixes) {
+        this.name = name;
+        this.fixes = Collections.unmodifiableList(new ArrayList<>(fixes));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<Fix> fixes() {
+        return fixes;
+    }
+
+    public int size() {
+        return fixes.size();
+    }
+
+    // Recorded time from the first fix to the last
+    public long durationMillis() {
+        return fixes.isEmpty() ? 0 : fixes.get(fixes.size() - 1).timeMillis - fixes.get(0).timeMillis;
+    }
+
+    // Picks the format from the file name: ".gpx" is GPX, anything else CSV
+    public static RecordedTrace read(String name, InputStream in) throws IOException {
+        return name.toLowerCase(Locale.US).endsWith(".gpx") ? readGpx(name, in) : readCsv(name, in);
+    }
+
+    public static RecordedTrace readGpx(String name, InputStream in) throws IOException {
+        GpxHandler handler = new GpxHandler();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(in, handler);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid GPX in " + name + ": " + e.getMessage(), e);
+        }
+        return new RecordedTrace(name, withTimes(handler.fixes));
+    }
+
+    public static RecordedTrace readCsv(String name, InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int[] columns = {0, 1, 2, 3, 4, 5}; // time, latitude, longitude, speed, bearing, accuracy
+        List<Fix> fixes = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split(",", -1);
+            // Only the first non-comment line may be a header
+            boolean header = first && isHeader(fields);
+            first = false;
+            if (header) {
+                columns = headerColumns(fields, name);
+                continue;
+            }
+            try {
+                long time = columns[0] >= 0 && columns[0] < fields.length ? parseTime(fields[columns[0]].trim()) : -1;
+                fixes.add(new Fix(time,
+                        Double.parseDouble(fields[columns[1]].trim()),
+                        Double.parseDouble(fields[columns[2]].trim()),
+                        optionalFloat(fields, columns[3]),
+                        optionalFloat(fields, columns[4]),
+                        optionalFloat(fields, columns[5])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IOException(name + ":" + lineNumber + ": cannot read fix '" + line + "'", e);
+            }
+        }
+        return new RecordedTrace(name, withTimes(fixes));
+    }
+
+    private static boolean isHeader(String[] fields) {
+        for (String field : fields) {
+            String value = field.trim();
+            if (value.isEmpty()) continue;
+            char first = value.charAt(0);
+            if (!(Character.isDigit(first) || first == '-' || first == '+' || first == '.')) return true;
+        }
+        return false;
+    }
+
+    private static int[] headerColumns(String[] fields, String name) throws IOException {
+        int[] columns = {-1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < fields.length; i++) {
+            String column = fields[i].trim().toLowerCase(Locale.US);
+            switch (column) {
+                case "time": case "timestamp": case "time_ms": columns[0] = i; break;
+                case "lat": case "latitude": columns[1] = i; break;
+                case "lon": case "lng": case "longitude": columns[2] = i; break;
+                case "speed": columns[3] = i; break;
+                case "bearing": case "course": case "heading": columns[4] = i; break;
+                case "accuracy": columns[5] = i; break;
+                default: break; // other columns are ignored
+            }
+        }
+        if (columns[1] < 0 || columns[2] < 0) {
+            throw new IOException(name + ": header has no latitude/longitude columns");
+        }
+        return columns;
+    }
+
+    private static float optionalFloat(String[] fields, int column) {
+        if (column < 0 || column >= fields.length || fields[column].trim().isEmpty()) return Float.NaN;
+        return Float.parseFloat(fields[column].trim());
+    }
+
+    // Epoch milliseconds, or ISO-8601 with an offset; -1 for an empty field
+    static long parseTime(String text) {
+        if (text.isEmpty()) return -1;
+        char first = text.charAt(0);
+        if (Character.isDigit(first) && text.indexOf('-') < 0 && text.indexOf(':') < 0) {
+            return Long.parseLong(text);
+        }
+        return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+
+    // Fills in missing times DEFAULT_INTERVAL_MILLIS after the previous fix
+    private static List<Fix> withTimes(List<Fix> fixes) {
+        List<Fix> timed = new ArrayList<>(fixes.size());
+        long previous = 0;
+        for (int i = 0; i < fixes.size(); i++) {
+            Fix fix = fixes.get(i);
+            long time = fix.timeMillis;
+            if (time < 0) {
+                time = i == 0 ? 0 : previous + DEFAULT_INTERVAL_MILLIS;
+                fix = new Fix(time, fix.latitude, fix.longitude, fix.speed, fix.bearing, fix.accuracy);
+            }
+            timed.add(fix);
+            previous = time;
+        }
+        return timed;
+    }
+
+    private static final class GpxHandler extends DefaultHandler {
+        final List<Fix> fixes = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private final Map<String, String> fields = new HashMap<>();
+        private boolean inPoint;
+        private double latitude;
+        private double longitude;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            String element = name(localName, qName);
+            text.setLength(0);
+            if (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt")) {
+                try {
+                    latitude = Double.parseDouble(attributes.getValue("lat"));
+                    longitude = Double.parseDouble(attributes.getValue("lon"));
+                } catch (NullPointerException | NumberFormatException e) {
+                    throw new SAXException("Point without valid lat/lon");
+                }
+                fields.clear();
+                inPoint = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inPoint) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (!inPoint) return;
+            String element = name(localName, qName);
+            if (element.equals("trkpt") || element.equals("rtept") || element.equals("wpt")) {
+                inPoint = false;
+                try {
+                    fixes.add(new Fix(parseTime(value("time")), latitude, longitude,
+                            floatValue("speed"), floatValue("course"), Float.NaN));
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    throw new SAXException("Invalid point value: " + e.getMessage());
+                }
+            } else {
+                fields.put(element, text.toString().trim());
+            }
+        }
+
+        private String value(String element) {
+            String value = fields.get(element);
+            return value != null ? value : "";
+        }
+
+        private float floatValue(String element) {
+            String value = value(element);
+            return value.isEmpty() ? Float.NaN : Float.parseFloat(value);
+        }
+
+        private static String name(String localName, String qName) {
+            String name = localName != null && !localName.isEmpty() ? localName : qName;
+            int colon = name.indexOf(':');
+            return colon >= 0 ? name.substring(colon + 1) : name;
+        }
+    }
+}
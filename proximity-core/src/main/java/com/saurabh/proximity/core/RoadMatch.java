@@ -0,0 +1,115 @@
+package com.saurabh.proximity.core;
+
+import java.util.Arrays;
+
+// Result of RoadSegmentIndex.nearest: the closest segment, the distance to it
+// and the closest point on it. Like PointQueryResult, one instance can be
+// reused for every query on a thread; it also carries the search queue, so
+// repeated queries do not allocate.
+public final class RoadMatch {
+    private RoadSegmentStore store;
+    private int segment = -1;
+    private double distance = Double.NaN;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private double fraction = Double.NaN;
+
+    // Binary min-heap of (lower bound, node) used by the search
+    private double[] heapKeys = new double[32];
+    private int[] heapNodes = new int[32];
+    private int heapSize;
+
+    public boolean found() {
+        return segment >= 0;
+    }
+
+    // Index of the segment in the index's RoadSegmentStore, or -1
+    public int segment() {
+        return segment;
+    }
+
+    public String roadName() {
+        return found() ? store.roadName(segment) : null;
+    }
+
+    public double distance() {
+        return distance;
+    }
+
+    // Closest point on the segment
+    public double latitude() {
+        return latitude;
+    }
+
+    public double longitude() {
+        return longitude;
+    }
+
+    // Position of that point along the segment, 0 at its start and 1 at its end
+    public double fraction() {
+        return fraction;
+    }
+
+    void clear(RoadSegmentStore store) {
+        this.store = store;
+        segment = -1;
+        distance = Double.NaN;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        fraction = Double.NaN;
+        heapSize = 0;
+    }
+
+    void set(int segment, double distance, double latitude, double longitude, double fraction) {
+        this.segment = segment;
+        this.distance = distance;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.fraction = fraction;
+    }
+
+    void push(double key, int node) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) break;
+            heapKeys[i] = heapKeys[parent];
+            heapNodes[i] = heapNodes[parent];
+            i = parent;
+        }
+        heapKeys[i] = key;
+        heapNodes[i] = node;
+    }
+
+    boolean hasQueued() {
+        return heapSize > 0;
+    }
+
+    double peekKey() {
+        return heapKeys[0];
+    }
+
+    int pop() {
+        int top = heapNodes[0];
+        heapSize--;
+        double key = heapKeys[heapSize];
+        int node = heapNodes[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (heapKeys[child] >= key) break;
+            heapKeys[i] = heapKeys[child];
+            heapNodes[i] = heapNodes[child];
+            i = child;
+        }
+        heapKeys[i] = key;
+        heapNodes[i] = node;
+        return top;
+    }
+}
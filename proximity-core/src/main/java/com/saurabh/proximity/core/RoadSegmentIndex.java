@@ -0,0 +1,243 @@
+package com.saurabh.proximity.core;
+
+import java.util.Arrays;
+
+// Static R-tree over the segments of a RoadSegmentStore, for snapping a
+// position to the nearest road.
+//
+// The tree is bulk-loaded with Sort-Tile-Recursive packing: segments are
+// sorted into vertical slabs by the centre of their bounding box, each slab is
+// sorted by latitude and cut into leaves of NODE_CAPACITY, and the same is done
+// to the nodes of each level until one root is left. Nodes are stored level by
+// level in flat arrays, leaves first, with the children of every node
+// contiguous, so the tree is a handful of primitive arrays.
+//
+// nearest() is a best-first search: nodes are visited in order of the distance
+// to their bounding box and the search stops once that bound exceeds the best
+// segment found. Distances are exact point-to-segment distances in a local
+// equirectangular projection around the query point (the same first-order
+// approximation DistanceKernel accepts; well under 0.1% off the great-circle
+// distance within a few kilometres). Segments crossing the antimeridian are
+// not supported.
+//
+// The index never changes after construction and can be queried from several
+// threads, each with its own RoadMatch.
+public final class RoadSegmentIndex {
+    public static final int NODE_CAPACITY = 16;
+    private static final double METERS_PER_DEGREE = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    private final RoadSegmentStore store;
+    private final int[] order;          // segment indices in leaf order
+    private double[] minLats;
+    private double[] minLons;
+    private double[] maxLats;
+    private double[] maxLons;
+    private int[] firstChild;           // into order (leaves) or into the node arrays (inner nodes)
+    private int[] childCount;
+    private int nodeCount;
+    private final int leafCount;
+
+    public RoadSegmentIndex(RoadSegmentStore store) {
+        this.store = store;
+        int n = store.size();
+        double[] centreLats = new double[n];
+        double[] centreLons = new double[n];
+        for (int i = 0; i < n; i++) {
+            centreLats[i] = (store.startLatitude(i) + store.endLatitude(i)) / 2;
+            centreLons[i] = (store.startLongitude(i) + store.endLongitude(i)) / 2;
+        }
+        order = strOrder(centreLons, centreLats, n);
+
+        leafCount = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int capacity = Math.max(1, leafCount * 2);
+        minLats = new double[capacity];
+        minLons = new double[capacity];
+        maxLats = new double[capacity];
+        maxLons = new double[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        for (int leaf = 0; leaf < leafCount; leaf++) {
+            int first = leaf * NODE_CAPACITY;
+            int count = Math.min(NODE_CAPACITY, n - first);
+            double minLat = Double.POSITIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            for (int i = first; i < first + count; i++) {
+                int segment = order[i];
+                minLat = Math.min(minLat, Math.min(store.startLatitude(segment), store.endLatitude(segment)));
+                maxLat = Math.max(maxLat, Math.max(store.startLatitude(segment), store.endLatitude(segment)));
+                minLon = Math.min(minLon, Math.min(store.startLongitude(segment), store.endLongitude(segment)));
+                maxLon = Math.max(maxLon, Math.max(store.startLongitude(segment), store.endLongitude(segment)));
+            }
+            addNode(minLat, minLon, maxLat, maxLon, first, count);
+        }
+
+        int levelStart = 0;
+        int levelCount = leafCount;
+        while (levelCount > 1) {
+            sortLevel(levelStart, levelCount);
+            int parentStart = nodeCount;
+            for (int first = levelStart; first < levelStart + levelCount; first += NODE_CAPACITY) {
+                int count = Math.min(NODE_CAPACITY, levelStart + levelCount - first);
+                double minLat = Double.POSITIVE_INFINITY;
+                double minLon = Double.POSITIVE_INFINITY;
+                double maxLat = Double.NEGATIVE_INFINITY;
+                double maxLon = Double.NEGATIVE_INFINITY;
+                for (int child = first; child < first + count; child++) {
+                    minLat = Math.min(minLat, minLats[child]);
+                    minLon = Math.min(minLon, minLons[child]);
+                    maxLat = Math.max(maxLat, maxLats[child]);
+                    maxLon = Math.max(maxLon, maxLons[child]);
+                }
+                addNode(minLat, minLon, maxLat, maxLon, first, count);
+            }
+            levelStart = parentStart;
+            levelCount = nodeCount - parentStart;
+        }
+    }
+
+    public RoadSegmentStore store() {
+        return store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    // Closest segment to (latitude, longitude) no farther than maxDistanceMeters.
+    // out.found() is false when there is none.
+    public RoadMatch nearest(double latitude, double longitude, double maxDistanceMeters, RoadMatch out) {
+        out.clear(store);
+        if (nodeCount == 0) return out;
+        double ky = METERS_PER_DEGREE;
+        double kx = Math.cos(Math.toRadians(latitude)) * METERS_PER_DEGREE;
+        double best = maxDistanceMeters;
+
+        int root = nodeCount - 1;
+        double rootBound = boxDistance(root, latitude, longitude, kx, ky);
+        if (rootBound <= best) out.push(rootBound, root);
+        while (out.hasQueued() && out.peekKey() <= best) {
+            int node = out.pop();
+            int first = firstChild[node];
+            int end = first + childCount[node];
+            if (node < leafCount) {
+                for (int i = first; i < end; i++) {
+                    int segment = order[i];
+                    // Segment end points relative to the query point, in meters
+                    double ax = (store.startLongitude(segment) - longitude) * kx;
+                    double ay = (store.startLatitude(segment) - latitude) * ky;
+                    double dx = (store.endLongitude(segment) - longitude) * kx - ax;
+                    double dy = (store.endLatitude(segment) - latitude) * ky - ay;
+                    double lengthSquared = dx * dx + dy * dy;
+                    double t = lengthSquared > 0 ? -(ax * dx + ay * dy) / lengthSquared : 0;
+                    t = Math.max(0, Math.min(1, t));
+                    double px = ax + t * dx;
+                    double py = ay + t * dy;
+                    double distance = Math.sqrt(px * px + py * py);
+                    if (distance < best || (distance == best && !out.found())) {
+                        best = distance;
+                        out.set(segment, distance, latitude + py / ky, longitude + px / kx, t);
+                    }
+                }
+            } else {
+                for (int child = first; child < end; child++) {
+                    double bound = boxDistance(child, latitude, longitude, kx, ky);
+                    if (bound <= best) out.push(bound, child);
+                }
+            }
+        }
+        return out;
+    }
+
+    private double boxDistance(int node, double latitude, double longitude, double kx, double ky) {
+        double dx = Math.max(0, Math.max(minLons[node] - longitude, longitude - maxLons[node])) * kx;
+        double dy = Math.max(0, Math.max(minLats[node] - latitude, latitude - maxLats[node])) * ky;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void addNode(double minLat, double minLon, double maxLat, double maxLon, int first, int count) {
+        if (nodeCount == minLats.length) {
+            int capacity = nodeCount * 2;
+            minLats = Arrays.copyOf(minLats, capacity);
+            minLons = Arrays.copyOf(minLons, capacity);
+            maxLats = Arrays.copyOf(maxLats, capacity);
+            maxLons = Arrays.copyOf(maxLons, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+        }
+        minLats[nodeCount] = minLat;
+        minLons[nodeCount] = minLon;
+        maxLats[nodeCount] = maxLat;
+        maxLons[nodeCount] = maxLon;
+        firstChild[nodeCount] = first;
+        childCount[nodeCount] = count;
+        nodeCount++;
+    }
+
+    // Rearranges the nodes of one level into STR order, so that consecutive
+    // runs of NODE_CAPACITY become the children of one parent
+    private void sortLevel(int start, int count) {
+        double[] centreLats = new double[count];
+        double[] centreLons = new double[count];
+        for (int i = 0; i < count; i++) {
+            centreLats[i] = (minLats[start + i] + maxLats[start + i]) / 2;
+            centreLons[i] = (minLons[start + i] + maxLons[start + i]) / 2;
+        }
+        int[] levelOrder = strOrder(centreLons, centreLats, count);
+        double[] sortedMinLats = new double[count];
+        double[] sortedMinLons = new double[count];
+        double[] sortedMaxLats = new double[count];
+        double[] sortedMaxLons = new double[count];
+        int[] sortedFirst = new int[count];
+        int[] sortedCount = new int[count];
+        for (int i = 0; i < count; i++) {
+            int node = start + levelOrder[i];
+            sortedMinLats[i] = minLats[node];
+            sortedMinLons[i] = minLons[node];
+            sortedMaxLats[i] = maxLats[node];
+            sortedMaxLons[i] = maxLons[node];
+            sortedFirst[i] = firstChild[node];
+            sortedCount[i] = childCount[node];
+        }
+        System.arraycopy(sortedMinLats, 0, minLats, start, count);
+        System.arraycopy(sortedMinLons, 0, minLons, start, count);
+        System.arraycopy(sortedMaxLats, 0, maxLats, start, count);
+        System.arraycopy(sortedMaxLons, 0, maxLons, start, count);
+        System.arraycopy(sortedFirst, 0, firstChild, start, count);
+        System.arraycopy(sortedCount, 0, childCount, start, count);
+    }
+
+    // Items 0..count-1 in Sort-Tile-Recursive order: sorted by x, cut into
+    // about sqrt(groups) slabs whose sizes are multiples of NODE_CAPACITY, and
+    // each slab sorted by y
+    static int[] strOrder(double[] x, double[] y, int count) {
+        int[] items = new int[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = i;
+        }
+        sortByKey(items, 0, count, x);
+        int groups = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slabs = Math.max(1, (int) Math.ceil(Math.sqrt(groups)));
+        int slabSize = (groups + slabs - 1) / slabs * NODE_CAPACITY;
+        for (int start = 0; start < count; start += slabSize) {
+            sortByKey(items, start, Math.min(count, start + slabSize), y);
+        }
+        return items;
+    }
+
+    // Sorts items[from, to) by key[item] without boxing: each item is packed
+    // with an order-preserving float encoding of its key into one long
+    private static void sortByKey(int[] items, int from, int to, double[] key) {
+        long[] packed = new long[to - from];
+        for (int i = from; i < to; i++) {
+            int bits = Float.floatToIntBits((float) key[items[i]]);
+            bits ^= (bits >> 31) & 0x7fffffff; // negative floats sort in reverse bit order
+            packed[i - from] = ((long) bits << 32) | (items[i] & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+        for (int i = from; i < to; i++) {
+            items[i] = (int) packed[i - from];
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.saurabh.proximity.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Structure-of-arrays storage for road geometry: each road is a polyline, kept
+// as its individual straight segments (start and end coordinates) plus the
+// interned id of the road's name. Filled once, then only read, like PointStore.
+public class RoadSegmentStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] startLatitudes;
+    private double[] startLongitudes;
+    private double[] endLatitudes;
+    private double[] endLongitudes;
+    private int[] roadIds;
+    private int size;
+
+    private final List<String> roadNames = new ArrayList<>();
+    private final Map<String, Integer> roadIdsByName = new HashMap<>();
+
+    public RoadSegmentStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public RoadSegmentStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        startLatitudes = new double[capacity];
+        startLongitudes = new double[capacity];
+        endLatitudes = new double[capacity];
+        endLongitudes = new double[capacity];
+        roadIds = new int[capacity];
+    }
+
+    // Adds the segments of a polyline (consecutive vertex pairs); returns how many were added
+    public int addPolyline(String roadName, double[] latitudes, double[] longitudes, int count) {
+        if (count > latitudes.length || count > longitudes.length) {
+            throw new IllegalArgumentException("Polyline has fewer than " + count + " vertices");
+        }
+        int roadId = internRoadName(roadName);
+        int added = 0;
+        for (int i = 1; i < count; i++) {
+            if (latitudes[i] == latitudes[i - 1] && longitudes[i] == longitudes[i - 1]) continue;
+            addSegment(roadId, latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            added++;
+        }
+        return added;
+    }
+
+    public int addSegment(String roadName, double startLatitude, double startLongitude,
+                          double endLatitude, double endLongitude) {
+        return addSegment(internRoadName(roadName), startLatitude, startLongitude, endLatitude, endLongitude);
+    }
+
+    // Appends a segment and returns its index
+    public int addSegment(int roadId, double startLatitude, double startLongitude,
+                          double endLatitude, double endLongitude) {
+        if (roadId < 0 || roadId >= roadNames.size()) {
+            throw new IllegalArgumentException("Unknown road id: " + roadId);
+        }
+        if (Double.isNaN(startLatitude) || Double.isNaN(startLongitude)
+                || Double.isNaN(endLatitude) || Double.isNaN(endLongitude)) {
+            throw new IllegalArgumentException("Latitude or Longitude values are invalid");
+        }
+        if (size == roadIds.length) {
+            int capacity = size * 2;
+            startLatitudes = Arrays.copyOf(startLatitudes, capacity);
+            startLongitudes = Arrays.copyOf(startLongitudes, capacity);
+            endLatitudes = Arrays.copyOf(endLatitudes, capacity);
+            endLongitudes = Arrays.copyOf(endLongitudes, capacity);
+            roadIds = Arrays.copyOf(roadIds, capacity);
+        }
+        startLatitudes[size] = startLatitude;
+        startLongitudes[size] = startLongitude;
+        endLatitudes[size] = endLatitude;
+        endLongitudes[size] = endLongitude;
+        roadIds[size] = roadId;
+        return size++;
+    }
+
+    public int internRoadName(String roadName) {
+        Integer id = roadIdsByName.get(roadName);
+        if (id == null) {
+            id = roadNames.size();
+            roadNames.add(roadName);
+            roadIdsByName.put(roadName, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double startLatitude(int index) {
+        return startLatitudes[index];
+    }
+
+    public double startLongitude(int index) {
+        return startLongitudes[index];
+    }
+
+    public double endLatitude(int index) {
+        return endLatitudes[index];
+    }
+
+    public double endLongitude(int index) {
+        return endLongitudes[index];
+    }
+
+    public int roadId(int index) {
+        return roadIds[index];
+    }
+
+    public String roadName(int index) {
+        return roadNames.get(roadIds[index]);
+    }
+
+    public int roadCount() {
+        return roadNames.size();
+    }
+}
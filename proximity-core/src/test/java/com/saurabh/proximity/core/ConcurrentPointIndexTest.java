@@ -0,0 +1,162 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentPointIndexTest {
+    @Test
+    public void queries_matchBruteForceThroughEditsAndCompactions() {
+        Random random = new Random(31);
+        PointStore initial = new PointStore();
+        Map<Integer, double[]> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            double[] point = randomPoint(random);
+            initial.add("Road " + i, point[0], point[1]);
+            expected.put(i, point);
+        }
+        ConcurrentPointIndex index = new ConcurrentPointIndex(initial);
+        PointQueryResult out = new PointQueryResult();
+
+        for (int round = 0; round < 40; round++) {
+            // Enough changes over the rounds to compact several times
+            ConcurrentPointIndex.Editor editor = index.edit();
+            List<double[]> added = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                double[] point = randomPoint(random);
+                editor.add("Added", point[0], point[1]);
+                added.add(point);
+            }
+            List<Integer> ids = new ArrayList<>(expected.keySet());
+            for (int i = 0; i < 30; i++) {
+                int id = ids.get(random.nextInt(ids.size()));
+                editor.remove(id);
+                expected.remove(id);
+            }
+            int firstId = editor.commit();
+            for (int i = 0; i < added.size(); i++) {
+                expected.put(firstId + i, added.get(i));
+            }
+
+            ConcurrentPointIndex.Snapshot snapshot = index.snapshot();
+            assertEquals(expected.size(), snapshot.size());
+            for (int query = 0; query < 20; query++) {
+                double[] origin = randomPoint(random);
+                double radius = 300 + random.nextDouble() * 1500;
+
+                snapshot.query(origin[0], origin[1], radius, out);
+                List<Integer> actual = new ArrayList<>();
+                for (int i = 0; i < out.count(); i++) {
+                    actual.add(snapshot.id(out.index(i)));
+                }
+                Collections.sort(actual);
+                List<Integer> within = new ArrayList<>();
+                for (Map.Entry<Integer, double[]> entry : expected.entrySet()) {
+                    double[] p = entry.getValue();
+                    if (DistanceKernel.haversine(origin[0], origin[1], p[0], p[1]) <= radius) within.add(entry.getKey());
+                }
+                Collections.sort(within);
+                assertEquals(within, actual);
+
+                int k = 1 + random.nextInt(15);
+                snapshot.nearest(origin[0], origin[1], k, radius, out);
+                double[] distances = new double[within.size()];
+                for (int i = 0; i < distances.length; i++) {
+                    double[] p = expected.get(within.get(i));
+                    distances[i] = DistanceKernel.haversine(origin[0], origin[1], p[0], p[1]);
+                }
+                Arrays.sort(distances);
+                assertEquals(Math.min(k, distances.length), out.count());
+                for (int i = 0; i < out.count(); i++) {
+                    assertEquals(distances[i], out.distance(i), 1e-3);
+                    assertFalse(snapshot.isRemoved(out.index(i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_doesNotSeeLaterEdits() {
+        ConcurrentPointIndex index = new ConcurrentPointIndex();
+        int first = index.add("Raisen Road", 23.2518, 77.4845);
+        ConcurrentPointIndex.Snapshot before = index.snapshot();
+
+        index.add("Hamidia Road", 23.2519, 77.4846);
+        assertTrue(index.remove(first));
+        assertFalse(index.remove(first));
+
+        PointQueryResult out = before.query(23.2518, 77.4845, 100, new PointQueryResult());
+        assertEquals(1, out.count());
+        assertEquals("Raisen Road", before.roadName(out.index(0)));
+
+        ConcurrentPointIndex.Snapshot after = index.snapshot();
+        out = after.query(23.2518, 77.4845, 100, out);
+        assertEquals(1, out.count());
+        assertEquals("Hamidia Road", after.roadName(out.index(0)));
+    }
+
+    @Test
+    public void readers_alwaysSeeWholeBatches() throws InterruptedException {
+        // The writer keeps exactly 50 points around the origin by moving one per batch
+        PointStore initial = new PointStore();
+        for (int i = 0; i < 50; i++) {
+            initial.add("Road", 23.25 + i * 1e-5, 77.48);
+        }
+        ConcurrentPointIndex index = new ConcurrentPointIndex(initial);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        final boolean[] done = {false};
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                PointQueryResult out = new PointQueryResult();
+                while (!isDone(done)) {
+                    int count = index.snapshot().query(23.25, 77.48, 500, out).count();
+                    if (count != 50) failure.compareAndSet(null, "Saw " + count + " points");
+                }
+            });
+            readers[r].start();
+        }
+        Random random = new Random(5);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(i);
+        }
+        for (int batch = 0; batch < 3000; batch++) {
+            int slot = random.nextInt(ids.size());
+            int id = index.edit()
+                    .remove(ids.get(slot))
+                    .add("Road", 23.25 + random.nextDouble() * 1e-3, 77.48)
+                    .commit();
+            ids.set(slot, id);
+        }
+        synchronized (done) {
+            done[0] = true;
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(null, failure.get());
+        assertEquals(50, index.snapshot().size());
+    }
+
+    private static boolean isDone(boolean[] done) {
+        synchronized (done) {
+            return done[0];
+        }
+    }
+
+    private static double[] randomPoint(Random random) {
+        return new double[]{23.2 + random.nextDouble() * 0.1, 77.4 + random.nextDouble() * 0.1};
+    }
+}
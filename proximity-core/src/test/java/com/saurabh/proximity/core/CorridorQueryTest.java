@@ -0,0 +1,123 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CorridorQueryTest {
+    private static final double METERS_PER_DEGREE = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    @Test
+    public void corridor_matchesBruteForce() {
+        Random random = new Random(41);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 20000; i++) {
+            store.add("Road " + (i % 50), 23.1 + random.nextDouble() * 0.3, 77.3 + random.nextDouble() * 0.3);
+        }
+        PointGridIndex index = new PointGridIndex(store);
+        CorridorResult out = new CorridorResult();
+
+        for (int route = 0; route < 30; route++) {
+            // A wandering drive with 100 m to 3 km legs, crossing cells in every direction
+            int count = 2 + random.nextInt(30);
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            lats[0] = 23.15 + random.nextDouble() * 0.2;
+            lons[0] = 77.35 + random.nextDouble() * 0.2;
+            for (int i = 1; i < count; i++) {
+                double leg = (0.001 + random.nextDouble() * 0.03);
+                double heading = random.nextDouble() * 2 * Math.PI;
+                lats[i] = lats[i - 1] + leg * Math.cos(heading);
+                lons[i] = lons[i - 1] + leg * Math.sin(heading);
+            }
+            double width = route % 2 == 0 ? 50 : 400;
+
+            index.corridor(lats, lons, count, width, out);
+            List<Integer> expected = new ArrayList<>();
+            for (int p = 0; p < store.size(); p++) {
+                double best = Double.POSITIVE_INFINITY;
+                for (int s = 0; s < count - 1; s++) {
+                    best = Math.min(best, segmentDistance(store.latitude(p), store.longitude(p), lats[s], lons[s],
+                            lats[s + 1], lons[s + 1]));
+                }
+                if (best <= width) expected.add(p);
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (int i = 0; i < out.count(); i++) {
+                actual.add(out.index(i));
+                int s = out.segment(i);
+                assertEquals(segmentDistance(store.latitude(out.index(i)), store.longitude(out.index(i)), lats[s], lons[s],
+                        lats[s + 1], lons[s + 1]), out.distanceFromRoute(i), 1e-6);
+                if (i > 0) assertTrue(out.distanceAlongRoute(i - 1) <= out.distanceAlongRoute(i) + 0.01);
+            }
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void corridor_ordersPointsAlongTheRoute() {
+        PointStore store = new PointStore();
+        store.add("Far ahead", 23.2505, 77.50);
+        store.add("Behind the start", 23.25, 77.4790);   // ~100 m before the first vertex
+        store.add("Just ahead", 23.2502, 77.4810);
+        store.add("Off the road", 23.26, 77.49);          // ~1.1 km to the side
+        store.add("Round the corner", 23.2600, 77.5001);
+        PointGridIndex index = new PointGridIndex(store);
+
+        // East along 23.25, then north
+        double[] lats = {23.25, 23.25, 23.27};
+        double[] lons = {77.48, 77.50, 77.50};
+        CorridorResult out = index.corridor(lats, lons, 3, 150, new CorridorResult());
+
+        assertEquals(4, out.count());
+        assertEquals("Behind the start", store.roadName(out.index(0)));
+        assertEquals(0, out.distanceAlongRoute(0), 1e-9);
+        assertEquals(0.001 * METERS_PER_DEGREE * Math.cos(Math.toRadians(23.25)), out.distanceFromRoute(0), 0.5);
+        assertEquals("Just ahead", store.roadName(out.index(1)));
+        assertEquals("Far ahead", store.roadName(out.index(2)));
+        assertEquals("Round the corner", store.roadName(out.index(3)));
+        assertEquals(1, out.segment(3));
+        double firstLeg = DistanceKernel.haversine(23.25, 77.48, 23.25, 77.50);
+        assertEquals(firstLeg + 0.01 * METERS_PER_DEGREE, out.distanceAlongRoute(3), 1);
+    }
+
+    @Test
+    public void corridor_followsARouteAcrossTheAntimeridian() {
+        PointStore store = new PointStore();
+        store.add("East side", -17.0, 179.995);
+        store.add("West side", -17.0, -179.995);
+        store.add("Elsewhere", -17.0, 179.5);
+        PointGridIndex index = new PointGridIndex(store);
+
+        CorridorResult out = index.corridor(new double[]{-17.0, -17.0}, new double[]{179.99, -179.99}, 2, 100,
+                new CorridorResult());
+        assertEquals(2, out.count());
+        assertEquals("East side", store.roadName(out.index(0)));
+        assertEquals("West side", store.roadName(out.index(1)));
+    }
+
+    // Same local projection as the index, computed the straightforward way
+    private static double segmentDistance(double lat, double lon, double lat1, double lon1, double lat2, double lon2) {
+        double ky = METERS_PER_DEGREE;
+        double kx = Math.cos(Math.toRadians(lat)) * ky;
+        double ax = (lon1 - lon) * kx;
+        double ay = (lat1 - lat) * ky;
+        double bx = (lon2 - lon) * kx;
+        double by = (lat2 - lat) * ky;
+        double best = Math.min(Math.hypot(ax, ay), Math.hypot(bx, by));
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t = -(ax * dx + ay * dy) / (dx * dx + dy * dy);
+        if (t > 0 && t < 1) {
+            best = Math.min(best, Math.hypot(ax + t * dx, ay + t * dy));
+        }
+        return best;
+    }
+}
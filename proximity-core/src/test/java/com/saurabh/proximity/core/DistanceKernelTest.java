@@ -0,0 +1,150 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class DistanceKernelTest {
+    private static final double[] RADII = {50, 500, 2000, 10000, 100000};
+
+    @Test
+    public void distanceWithin_agreesWithHaversineWithinTheStatedTolerance() {
+        Random random = new Random(11);
+        DistanceKernel kernel = new DistanceKernel();
+        for (int origin = 0; origin < 2000; origin++) {
+            double latitude = (random.nextDouble() * 2 - 1) * DistanceKernel.MAX_APPROX_LATITUDE;
+            double longitude = random.nextDouble() * 360 - 180;
+            double radius = RADII[random.nextInt(RADII.length)];
+            kernel.setOrigin(latitude, longitude, radius);
+            // 0.001% up to 10 km, 0.05% up to the approximation limits
+            double tolerance = radius <= 10000 ? 1e-5 : 5e-4;
+
+            for (int i = 0; i < 50; i++) {
+                double[] target = destination(latitude, longitude, random.nextDouble() * 360,
+                        random.nextDouble() * radius * 1.5);
+                double exact = DistanceKernel.haversine(latitude, longitude, target[0], target[1]);
+                double distance = kernel.distanceWithin(target[0], target[1]);
+
+                assertEquals(exact <= radius, distance >= 0);
+                if (distance >= 0) {
+                    assertEquals(exact, distance, exact * tolerance + 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void distanceWithin_decidesMembershipByHaversineAtTheRadius() {
+        Random random = new Random(12);
+        DistanceKernel kernel = new DistanceKernel();
+        for (int origin = 0; origin < 2000; origin++) {
+            double latitude = random.nextDouble() * 178 - 89;
+            double longitude = random.nextDouble() * 360 - 180;
+            double radius = RADII[random.nextInt(RADII.length)];
+            kernel.setOrigin(latitude, longitude, radius);
+
+            for (double scale : new double[] {1 - 1e-6, 1 - 1e-9, 1 + 1e-9, 1 + 1e-6}) {
+                double[] target = destination(latitude, longitude, random.nextDouble() * 360, radius * scale);
+                double exact = kernel.haversine(target[0], target[1]);
+                double distance = kernel.distanceWithin(target[0], target[1]);
+
+                assertEquals(exact <= radius, distance >= 0);
+                if (distance >= 0) {
+                    assertEquals(exact, distance, 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void distanceWithin_boundingBoxRejectsOnlyPointsOutsideTheRadius() {
+        DistanceKernel kernel = new DistanceKernel().setOrigin(23.2519, 77.4845, 2000);
+        double latSpan = 2000 / (DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0);
+
+        assertEquals(-1, kernel.distanceWithin(23.2519 + latSpan * 1.001, 77.4845), 0);
+        assertEquals(-1, kernel.distanceWithin(23.2519 - latSpan * 1.001, 77.4845), 0);
+        assertEquals(-1, kernel.distanceWithin(23.2519, 77.4845 + 0.03), 0);
+        assertEquals(-1, kernel.distanceWithin(-23.2519, -102.5155), 0); // antipode
+
+        // The box is widest in longitude at its poleward edge, so points just
+        // inside the radius in every direction pass it
+        for (double latitude : new double[] {0, 45, 70, DistanceKernel.MAX_APPROX_LATITUDE}) {
+            kernel.setOrigin(latitude, 10, 100000);
+            for (int bearing = 0; bearing < 360; bearing += 5) {
+                double[] target = destination(latitude, 10, bearing, 99990);
+                assertTrue("bearing " + bearing + " at " + latitude, kernel.distanceWithin(target[0], target[1]) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void distanceWithin_handlesHighLatitudesAndThePole() {
+        DistanceKernel kernel = new DistanceKernel();
+
+        // Past MAX_APPROX_LATITUDE every candidate is measured exactly
+        kernel.setOrigin(85, 30, 50000);
+        double[] north = destination(85, 30, 10, 40000);
+        assertEquals(DistanceKernel.haversine(85, 30, north[0], north[1]),
+                kernel.distanceWithin(north[0], north[1]), 0);
+
+        // A radius that reaches over the pole spans every longitude
+        kernel.setOrigin(89.99, 0, 3000);
+        double across = DistanceKernel.haversine(89.99, 0, 89.99, 180);
+        assertEquals(across, kernel.distanceWithin(89.99, 180), 0);
+        assertEquals(DistanceKernel.haversine(89.99, 0, 89.995, -90), kernel.distanceWithin(89.995, -90), 0);
+        assertEquals(-1, kernel.distanceWithin(89.9, 180), 0);
+    }
+
+    @Test
+    public void distanceWithin_wrapsAcrossTheAntimeridian() {
+        DistanceKernel kernel = new DistanceKernel().setOrigin(-16.5, 179.999, 2000);
+
+        double distance = kernel.distanceWithin(-16.5, -179.999);
+        assertEquals(DistanceKernel.haversine(-16.5, 179.999, -16.5, -179.999), distance, 1e-3);
+        assertTrue(distance > 200 && distance < 220);
+
+        kernel.setOrigin(-16.5, -179.999, 2000);
+        assertEquals(distance, kernel.distanceWithin(-16.5, 179.999), 1e-3);
+        assertEquals(-1, kernel.distanceWithin(-16.5, 179.97), 0);
+    }
+
+    @Test
+    public void filter_keepsTheSameHitsAsDistanceWithin() {
+        Random random = new Random(13);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 2000; i++) {
+            store.add("Road", 23.2 + random.nextDouble() * 0.1, 77.4 + random.nextDouble() * 0.1);
+        }
+        DistanceKernel kernel = new DistanceKernel().setOrigin(23.25, 77.45, 2000);
+        PointQueryResult hits = new PointQueryResult();
+
+        kernel.filter(store, hits);
+
+        int expected = 0;
+        for (int i = 0; i < store.size(); i++) {
+            if (DistanceKernel.haversine(23.25, 77.45, store.latitude(i), store.longitude(i)) <= 2000) expected++;
+        }
+        assertEquals(expected, hits.count());
+        for (int i = 0; i < hits.count(); i++) {
+            int index = hits.index(i);
+            assertEquals(kernel.distanceWithin(store.latitude(index), store.longitude(index)), hits.distance(i), 0);
+        }
+    }
+
+    // Point reached by going distanceMeters from (latitude, longitude) along the great circle at bearingDegrees
+    static double[] destination(double latitude, double longitude, double bearingDegrees, double distanceMeters) {
+        double angular = distanceMeters / DistanceKernel.EARTH_RADIUS_METERS;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+        double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+        double lon = Math.toDegrees(lon2);
+        lon = ((lon + 540) % 360) - 180;
+        return new double[] {Math.toDegrees(lat2), lon};
+    }
+}
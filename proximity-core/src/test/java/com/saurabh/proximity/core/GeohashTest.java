@@ -0,0 +1,43 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class GeohashTest {
+    @Test
+    public void encode_matchesReferenceAndNodeEncoder() {
+        // Same vectors as location/test/tile.test.js
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("tsph7", Geohash.encode(23.2519, 77.4845, 5));
+    }
+
+    @Test
+    public void covering_includesEveryTileTheCircleTouches() {
+        List<String> tiles = Geohash.covering(23.2519, 77.4845, 2000, 5);
+
+        assertEquals(Arrays.asList("tsph4", "tsph5", "tsph6", "tsph7"), tiles);
+    }
+
+    @Test
+    public void covering_wrapsAcrossTheAntimeridian() {
+        List<String> tiles = Geohash.covering(0.01, 179.99, 2000, 5);
+
+        assertTrue(tiles.contains(Geohash.encode(0.01, 179.99, 5)));
+        assertTrue(tiles.contains(Geohash.encode(0.01, -179.99, 5)));
+        assertEquals(4, tiles.size());
+    }
+
+    @Test
+    public void isValid_rejectsCharactersOutsideTheAlphabet() {
+        assertTrue(Geohash.isValid("tsph7"));
+        assertFalse(Geohash.isValid("tsphA"));
+        assertFalse(Geohash.isValid("tspha"));
+        assertFalse(Geohash.isValid(""));
+    }
+}
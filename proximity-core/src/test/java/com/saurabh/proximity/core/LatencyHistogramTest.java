@@ -0,0 +1,68 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest {
+    @Test
+    public void buckets_coverEveryValueOnceWithinPrecision() {
+        for (long value = 0; value < 1_000_000; value += 1 + value / 50) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long high = LatencyHistogram.highestEquivalent(index);
+            assertTrue(value + " above its bucket", value <= high);
+            if (index > 0) {
+                assertTrue(value + " below its bucket", value > LatencyHistogram.highestEquivalent(index - 1));
+            }
+            assertTrue(value + " bucket too wide", high - value <= Math.max(0, value / 64));
+        }
+        assertEquals(LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_MICROS),
+                LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_MICROS - 1));
+    }
+
+    @Test
+    public void percentile_matchesSortedValuesWithinPrecision() {
+        Random random = new Random(9);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish, like network latencies: mostly tens of ms, a long tail
+            values[i] = (long) (Math.exp(random.nextGaussian() + 10));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double p : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(p / 100 * values.length) - 1];
+            long actual = histogram.percentile(p);
+            assertTrue("p" + p + ": " + actual + " vs " + expected,
+                    actual >= expected && actual - expected <= expected / 64);
+        }
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values.length, histogram.count());
+    }
+
+    @Test
+    public void record_clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.recordNanos(Long.MAX_VALUE);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_MICROS, histogram.max());
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1234);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.mean(), 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class NearestTrackerTest {
+    @Test
+    public void update_matchesBruteForceAlongAWalk() {
+        Random random = new Random(3);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 5000; i++) {
+            store.add("Road " + (i % 50), 23.2 + random.nextDouble() * 0.2, 77.4 + random.nextDouble() * 0.2);
+        }
+        PointGridIndex index = new PointGridIndex(store);
+        NearestTracker tracker = new NearestTracker(5, 2000);
+
+        double latitude = 23.3;
+        double longitude = 77.5;
+        double heading = 0;
+        for (int step = 0; step < 3000; step++) {
+            heading += (random.nextDouble() - 0.5) * 0.3;
+            latitude += Math.cos(heading) * 15 / 111000.0; // ~15 m per fix
+            longitude += Math.sin(heading) * 15 / 111000.0;
+            tracker.update(index, latitude, longitude);
+
+            PointQueryResult expected = bruteForce(store, latitude, longitude, 5, 2000);
+            PointQueryResult actual = tracker.current();
+            assertEquals(expected.count(), actual.count());
+            for (int i = 0; i < expected.count(); i++) {
+                assertEquals(expected.distance(i), actual.distance(i), 1e-6);
+            }
+        }
+        assertTrue("most fixes should not need a grid query",
+                tracker.recomputeCount() < tracker.updateCount() / 4);
+    }
+
+    @Test
+    public void update_reportsChangesOnlyWhenTheSetChanges() {
+        PointStore store = new PointStore();
+        store.add("A", 23.2519, 77.4845);
+        store.add("B", 23.2600, 77.4845);
+        PointGridIndex index = new PointGridIndex(store);
+        NearestTracker tracker = new NearestTracker(1, 2000);
+
+        assertTrue(tracker.update(index, 23.2520, 77.4845));
+        assertFalse(tracker.update(index, 23.2521, 77.4845));
+        assertEquals("A", store.roadName(tracker.current().index(0)));
+
+        assertTrue(tracker.update(index, 23.2590, 77.4845));
+        assertEquals("B", store.roadName(tracker.current().index(0)));
+    }
+
+    @Test
+    public void update_recomputesWhenTheIndexIsReplaced() {
+        PointStore store = new PointStore();
+        store.add("A", 23.2519, 77.4845);
+        NearestTracker tracker = new NearestTracker(1, 2000);
+        tracker.update(new PointGridIndex(store), 23.2520, 77.4845);
+
+        PointStore refreshed = new PointStore();
+        refreshed.add("C", 23.2520, 77.4846);
+        assertTrue(tracker.update(new PointGridIndex(refreshed), 23.2520, 77.4845));
+        assertEquals("C", tracker.store().roadName(tracker.current().index(0)));
+        assertEquals(2, tracker.recomputeCount());
+    }
+
+    private static PointQueryResult bruteForce(PointStore store, double latitude, double longitude, int k,
+                                               double radius) {
+        PointQueryResult result = new PointQueryResult();
+        for (int i = 0; i < store.size(); i++) {
+            double distance = DistanceKernel.haversine(latitude, longitude, store.latitude(i), store.longitude(i));
+            if (distance <= radius) {
+                result.offerBounded(i, distance, k);
+            }
+        }
+        result.sortHeapAscending();
+        return result;
+    }
+}
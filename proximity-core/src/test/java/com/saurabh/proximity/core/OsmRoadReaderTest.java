@@ -0,0 +1,46 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class OsmRoadReaderTest {
+    private static final String EXTRACT = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<osm version=\"0.6\">\n"
+            + " <node id=\"1\" lat=\"23.2500\" lon=\"77.4800\"/>\n"
+            + " <node id=\"2\" lat=\"23.2500\" lon=\"77.4850\"/>\n"
+            + " <node id=\"3\" lat=\"23.2500\" lon=\"77.4900\"/>\n"
+            + " <node id=\"4\" lat=\"23.2600\" lon=\"77.4800\"><tag k=\"amenity\" v=\"cafe\"/></node>\n"
+            + " <node id=\"5\" lat=\"23.2700\" lon=\"77.4800\"/>\n"
+            + " <way id=\"10\"><nd ref=\"1\"/><nd ref=\"2\"/><nd ref=\"3\"/>"
+            + "<tag k=\"highway\" v=\"primary\"/><tag k=\"name\" v=\"Raisen Road\"/></way>\n"
+            + " <way id=\"11\"><nd ref=\"4\"/><nd ref=\"5\"/><tag k=\"highway\" v=\"trunk\"/><tag k=\"ref\" v=\"NH46\"/></way>\n"
+            + " <way id=\"12\"><nd ref=\"1\"/><nd ref=\"4\"/><tag k=\"highway\" v=\"service\"/></way>\n"
+            + " <way id=\"13\"><nd ref=\"3\"/><nd ref=\"5\"/><tag k=\"highway\" v=\"proposed\"/>"
+            + "<tag k=\"name\" v=\"Future Road\"/></way>\n"
+            + " <way id=\"14\"><nd ref=\"2\"/><nd ref=\"5\"/><tag k=\"building\" v=\"yes\"/><tag k=\"name\" v=\"Mall\"/></way>\n"
+            + " <way id=\"15\"><nd ref=\"1\"/><nd ref=\"99\"/><nd ref=\"2\"/><nd ref=\"3\"/>"
+            + "<tag k=\"highway\" v=\"residential\"/><tag k=\"name\" v=\"Clipped Lane\"/></way>\n"
+            + "</osm>\n";
+
+    @Test
+    public void read_keepsNamedTravelledHighways() throws IOException {
+        RoadSegmentStore roads = OsmRoadReader.read(new ByteArrayInputStream(EXTRACT.getBytes(StandardCharsets.UTF_8)));
+
+        // Raisen Road: 2 segments, NH46: 1, Clipped Lane: 1 (the missing node 99 splits it)
+        assertEquals(4, roads.size());
+        assertEquals("Raisen Road", roads.roadName(0));
+        assertEquals("Raisen Road", roads.roadName(1));
+        assertEquals("NH46", roads.roadName(2));
+        assertEquals("Clipped Lane", roads.roadName(3));
+        assertEquals(77.485, roads.startLongitude(3), 0);
+        assertEquals(77.49, roads.endLongitude(3), 0);
+
+        RoadMatch match = new RoadSegmentIndex(roads).nearest(23.2651, 77.4801, 50, new RoadMatch());
+        assertEquals("NH46", match.roadName());
+    }
+}
@@ -0,0 +1,90 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PointClusterIndexTest {
+    @Test
+    public void query_everyLevelAccountsForEveryPoint() {
+        PointStore store = randomPoints(20000);
+        PointClusterIndex clusters = new PointClusterIndex(store);
+
+        for (int zoom = 0; zoom <= PointClusterIndex.MAX_ZOOM; zoom++) {
+            int[] total = {0};
+            clusters.query(zoom, -90, -180, 90, 180, Integer.MAX_VALUE, (lat, lon, count, rep) -> total[0] += count);
+            assertEquals(store.size(), total[0]);
+        }
+        assertTrue(clusters.cellCount(8) < clusters.cellCount(14));
+    }
+
+    @Test
+    public void query_onlyVisitsCellsInTheViewport() {
+        PointStore store = randomPoints(20000);
+        PointClusterIndex clusters = new PointClusterIndex(store);
+        double south = 23.2;
+        double north = 23.25;
+        double west = 77.4;
+        double east = 77.46;
+        double cell = PointClusterIndex.cellSize(14);
+
+        int[] total = {0};
+        clusters.query(14, south, west, north, east, Integer.MAX_VALUE, (lat, lon, count, rep) -> total[0] += count);
+
+        int expected = 0;
+        for (int i = 0; i < store.size(); i++) {
+            double row = Math.floor((store.latitude(i) + 90) / cell);
+            double column = Math.floor((store.longitude(i) + 180) / cell);
+            if (row >= Math.floor((south + 90) / cell) && row <= Math.floor((north + 90) / cell)
+                    && column >= Math.floor((west + 180) / cell) && column <= Math.floor((east + 180) / cell)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, total[0]);
+    }
+
+    @Test
+    public void query_singlePointCellsReportThePointItself() {
+        PointStore store = new PointStore();
+        store.add("A", 23.2519, 77.4845);
+        store.add("B", 23.2600, 77.4900);
+        PointClusterIndex clusters = new PointClusterIndex(store);
+
+        int[] singles = {0};
+        clusters.query(18, 23.2, 77.4, 23.3, 77.5, 10, (lat, lon, count, rep) -> {
+            assertEquals(1, count);
+            assertEquals(store.latitude(rep), lat, 1e-12);
+            singles[0]++;
+        });
+        assertEquals(2, singles[0]);
+
+        int[] clustered = {0};
+        clusters.query(5, 23.2, 77.4, 23.3, 77.5, 10, (lat, lon, count, rep) -> clustered[0] = count);
+        assertEquals(2, clustered[0]);
+    }
+
+    @Test
+    public void query_wrapsAcrossTheAntimeridian() {
+        PointStore store = new PointStore();
+        store.add("East", 0.5, 179.95);
+        store.add("West", 0.5, -179.95);
+        PointClusterIndex clusters = new PointClusterIndex(store);
+
+        int[] total = {0};
+        clusters.query(12, 0, 179.9, 1, -179.9, 10, (lat, lon, count, rep) -> total[0] += count);
+
+        assertEquals(2, total[0]);
+    }
+
+    private static PointStore randomPoints(int count) {
+        Random random = new Random(1);
+        PointStore store = new PointStore();
+        for (int i = 0; i < count; i++) {
+            store.add("Road", 23.0 + random.nextDouble() * 0.5, 77.2 + random.nextDouble() * 0.5);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,144 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class PointDatabaseTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queries_matchBruteForce() throws IOException {
+        Random random = new Random(23);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 20000; i++) {
+            // Half spread over the city, half in tight clusters
+            double lat = 23.2 + random.nextDouble() * 0.1;
+            double lon = 77.4 + random.nextDouble() * 0.1;
+            if (i % 2 == 0) {
+                lat = 23.25 + random.nextGaussian() * 0.002;
+                lon = 77.45 + random.nextGaussian() * 0.002;
+            }
+            store.add("Road " + (i % 37), lat, lon);
+        }
+        PointDatabase database = write(store);
+        assertEquals(store.size(), database.size());
+        PointQueryResult out = new PointQueryResult();
+
+        for (int query = 0; query < 300; query++) {
+            double lat = 23.19 + random.nextDouble() * 0.12;
+            double lon = 77.39 + random.nextDouble() * 0.12;
+            double radius = query % 3 == 0 ? 100 : 1500;
+
+            database.query(lat, lon, radius, out);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < database.size(); i++) {
+                if (DistanceKernel.haversine(lat, lon, database.latitude(i), database.longitude(i)) <= radius) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (int i = 0; i < out.count(); i++) {
+                actual.add(out.index(i));
+            }
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+
+            int k = 1 + query % 20;
+            database.nearest(lat, lon, k, radius, out);
+            double[] distances = new double[database.size()];
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = DistanceKernel.haversine(lat, lon, database.latitude(i), database.longitude(i));
+            }
+            Arrays.sort(distances);
+            int within = 0;
+            while (within < distances.length && within < k && distances[within] <= radius) {
+                within++;
+            }
+            assertEquals(within, out.count());
+            for (int i = 0; i < within; i++) {
+                assertEquals(distances[i], out.distance(i), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void records_keepCoordinatesAndRoadNames() throws IOException {
+        PointStore store = new PointStore();
+        store.add("Hoshangabad Road", 23.2156789, 77.4304567);
+        store.add("भोज मार्ग", -33.8688, 151.2093);
+        store.add("Hoshangabad Road", 51.5007, -0.1246);
+        PointDatabase database = write(store);
+
+        assertEquals(2, database.roadCount());
+        PointQueryResult out = database.nearest(-33.8688, 151.2093, 1, 10, new PointQueryResult());
+        assertEquals(1, out.count());
+        int index = out.index(0);
+        assertEquals("भोज मार्ग", database.roadName(index));
+        assertEquals(151.2093, database.longitude(index), 1e-7);
+
+        out = database.nearest(23.2156789, 77.4304567, 1, 10, out);
+        Point point = out.toPoints(database).get(0);
+        assertEquals("Hoshangabad Road", point.roadName);
+        assertEquals(23.2156789, point.latitude, 1e-7);
+        assertEquals(77.4304567, point.longitude, 1e-7);
+    }
+
+    @Test
+    public void nearest_findsPointsAcrossTheAntimeridian() throws IOException {
+        PointStore store = new PointStore();
+        store.add("East", -17.0, 179.9995);
+        store.add("West", -17.0, -179.9995);
+        for (int i = 0; i < 1000; i++) {
+            store.add("Far", -17.0, 170.0 - i * 0.001);
+        }
+        PointDatabase database = write(store);
+
+        PointQueryResult out = database.nearest(-17.0, -179.9999, 2, 1000, new PointQueryResult());
+        assertEquals(2, out.count());
+        assertEquals("West", database.roadName(out.index(0)));
+        assertEquals("East", database.roadName(out.index(1)));
+    }
+
+    @Test
+    public void emptyDatabase_findsNothing() throws IOException {
+        PointDatabase database = write(new PointStore());
+        assertEquals(0, database.size());
+        assertTrue(database.query(23.25, 77.48, 2000, new PointQueryResult()).isEmpty());
+        assertTrue(database.nearest(23.25, 77.48, 5, 2000, new PointQueryResult()).isEmpty());
+    }
+
+    @Test
+    public void open_rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("points.pdb");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[128]);
+        }
+        try {
+            PointDatabase.open(file);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // not a point database
+        }
+    }
+
+    private PointDatabase write(PointStore store) throws IOException {
+        File file = new File(folder.getRoot(), "points.pdb");
+        PointDatabaseWriter.write(store, file);
+        return PointDatabase.open(file);
+    }
+}
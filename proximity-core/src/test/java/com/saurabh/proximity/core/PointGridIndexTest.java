@@ -0,0 +1,218 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PointGridIndexTest {
+    @Test
+    public void query_matchesBruteForce() {
+        Random random = new Random(21);
+        PointStore store = randomStore(random, 5000, 23.0, 77.2, 0.5);
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        for (int q = 0; q < 300; q++) {
+            double latitude = 22.9 + random.nextDouble() * 0.7;
+            double longitude = 77.1 + random.nextDouble() * 0.7;
+            double radius = 100 + random.nextDouble() * 5000;
+
+            index.query(latitude, longitude, radius, out);
+
+            assertSameHits(bruteForceRadius(store, latitude, longitude, radius), out);
+        }
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(22);
+        PointStore store = randomStore(random, 5000, 23.0, 77.2, 0.5);
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        for (int q = 0; q < 300; q++) {
+            double latitude = 22.9 + random.nextDouble() * 0.7;
+            double longitude = 77.1 + random.nextDouble() * 0.7;
+            int k = 1 + random.nextInt(20);
+            double radius = 200 + random.nextDouble() * 10000;
+
+            index.nearest(latitude, longitude, k, radius, out);
+
+            PointQueryResult expected = bruteForceNearest(store, latitude, longitude, k, radius);
+            assertEquals(expected.count(), out.count());
+            for (int i = 0; i < expected.count(); i++) {
+                assertEquals(expected.distance(i), out.distance(i), 1e-6);
+                if (i > 0) assertTrue(out.distance(i - 1) <= out.distance(i));
+            }
+        }
+    }
+
+    @Test
+    public void nearest_returnsEveryPointWhenKExceedsTheCount() {
+        PointStore store = new PointStore();
+        store.add("A", 23.2519, 77.4845);
+        store.add("B", 23.2600, 77.4845);
+        store.add("C", 23.3000, 77.4845); // ~5.3 km away
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        index.nearest(23.2519, 77.4845, 10, 100000, out);
+        assertEquals(3, out.count());
+        assertEquals("A", store.roadName(out.index(0)));
+        assertEquals("C", store.roadName(out.index(2)));
+
+        index.nearest(23.2519, 77.4845, 10, 2000, out);
+        assertEquals(2, out.count());
+
+        index.nearest(23.2519, 77.4845, 0, 2000, out);
+        assertEquals(0, out.count());
+    }
+
+    // Longitude 180 falls in column 0. Measuring its ring bound from +180 made
+    // the bound 0, and the search widened over every cell on the globe (~18000
+    // rings, many seconds) before stopping.
+    @Test(timeout = 2000)
+    public void nearest_atLongitude180StopsOnceTheKthHitIsFound() {
+        PointStore store = new PointStore();
+        store.add("West", 0.0, 179.995);
+        store.add("East", 0.0, -179.995);
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        for (int i = 0; i < 20; i++) {
+            index.nearest(0.0, 180.0, 1, 1000, out);
+        }
+
+        assertEquals(1, out.count());
+        assertEquals(DistanceKernel.haversine(0, 180, 0, 179.995), out.distance(0), 1e-6);
+    }
+
+    @Test
+    public void queries_findNothingInEmptyCellsOrAnEmptyStore() {
+        PointStore store = new PointStore();
+        store.add("A", 23.2519, 77.4845);
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        assertEquals(0, index.query(40.0, -3.7, 5000, out).count());
+        assertEquals(0, index.nearest(40.0, -3.7, 5, 5000, out).count());
+
+        PointGridIndex empty = new PointGridIndex(new PointStore());
+        assertEquals(0, empty.size());
+        assertEquals(0, empty.query(23.2519, 77.4845, 5000, out).count());
+        assertEquals(0, empty.nearest(23.2519, 77.4845, 5, 5000, out).count());
+    }
+
+    @Test
+    public void queries_reachAcrossTheAntimeridian() {
+        Random random = new Random(23);
+        PointStore store = new PointStore();
+        for (int i = 0; i < 2000; i++) {
+            double longitude = 179.9 + random.nextDouble() * 0.2;
+            store.add("Road", -16.6 + random.nextDouble() * 0.2, longitude > 180 ? longitude - 360 : longitude);
+        }
+        PointGridIndex index = new PointGridIndex(store);
+        PointQueryResult out = new PointQueryResult();
+
+        for (double longitude : new double[] {179.999, -179.999, 180.0, -180.0}) {
+            index.query(-16.5, longitude, 5000, out);
+            PointQueryResult expected = bruteForceRadius(store, -16.5, longitude, 5000);
+            assertTrue(expected.count() > 0);
+            assertSameHits(expected, out);
+
+            index.nearest(-16.5, longitude, 8, 5000, out);
+            PointQueryResult nearest = bruteForceNearest(store, -16.5, longitude, 8, 5000);
+            assertEquals(nearest.count(), out.count());
+            for (int i = 0; i < nearest.count(); i++) {
+                assertEquals(nearest.distance(i), out.distance(i), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void pointStore_internsRoadNamesAndGrows() {
+        PointStore store = new PointStore(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, store.add(i % 2 == 0 ? "Raisen Road" : null, i, -i));
+        }
+
+        assertEquals(100, store.size());
+        assertEquals(2, store.roadCount());
+        assertEquals(store.roadId(0), store.roadId("Raisen Road"));
+        assertEquals("", store.roadName(1));
+        assertEquals(store.roadId(1), store.roadId((String) null));
+        assertEquals(-1, store.roadId("Hoshangabad Road"));
+        assertEquals(99.0, store.latitude(99), 0);
+        assertEquals(-99.0, store.longitude(99), 0);
+        assertEquals("Raisen Road", store.toPoint(98, 5.0).roadName);
+    }
+
+    @Test
+    public void pointStore_rejectsInvalidPoints() {
+        PointStore store = new PointStore();
+        try {
+            store.add("A", Double.NaN, 77.4845);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            store.addWithRoadId(3, 23.2519, 77.4845);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, store.size());
+    }
+
+    private static PointStore randomStore(Random random, int count, double south, double west, double span) {
+        PointStore store = new PointStore();
+        for (int i = 0; i < count; i++) {
+            // Clustered along a few "roads" so some cells are dense and others empty
+            double latitude = south + random.nextDouble() * span;
+            double longitude = i % 3 == 0
+                    ? west + random.nextDouble() * span
+                    : west + (i % 7) * span / 7 + random.nextDouble() * 0.002;
+            store.add("Road " + (i % 7), latitude, longitude);
+        }
+        return store;
+    }
+
+    private static PointQueryResult bruteForceRadius(PointStore store, double latitude, double longitude, double radius) {
+        PointQueryResult result = new PointQueryResult();
+        DistanceKernel kernel = new DistanceKernel().setOrigin(latitude, longitude, radius);
+        kernel.filter(store, result);
+        return result;
+    }
+
+    private static PointQueryResult bruteForceNearest(PointStore store, double latitude, double longitude, int k,
+                                                      double radius) {
+        PointQueryResult all = bruteForceRadius(store, latitude, longitude, radius);
+        double[] distances = new double[all.count()];
+        for (int i = 0; i < all.count(); i++) {
+            distances[i] = all.distance(i);
+        }
+        Arrays.sort(distances);
+        PointQueryResult result = new PointQueryResult();
+        for (int i = 0; i < Math.min(k, distances.length); i++) {
+            result.add(-1, distances[i]);
+        }
+        return result;
+    }
+
+    private static void assertSameHits(PointQueryResult expected, PointQueryResult actual) {
+        assertEquals(expected.count(), actual.count());
+        int[] expectedIndices = new int[expected.count()];
+        int[] actualIndices = new int[actual.count()];
+        for (int i = 0; i < expected.count(); i++) {
+            expectedIndices[i] = expected.index(i);
+            actualIndices[i] = actual.index(i);
+        }
+        Arrays.sort(expectedIndices);
+        Arrays.sort(actualIndices);
+        assertTrue(Arrays.equals(expectedIndices, actualIndices));
+    }
+}
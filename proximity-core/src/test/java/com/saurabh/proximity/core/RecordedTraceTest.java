@@ -0,0 +1,82 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class RecordedTraceTest {
+    private static RecordedTrace read(String name, String content) throws IOException {
+        return RecordedTrace.read(name, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void readGpx_readsTrackPointsWithTimesAndSpeeds() throws IOException {
+        RecordedTrace trace = read("drive.gpx",
+                "<?xml version=\"1.0\"?>\n"
+                        + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\""
+                        + " xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v2\">\n"
+                        + "<trk><trkseg>\n"
+                        + "<trkpt lat=\"23.2519\" lon=\"77.4845\"><ele>500</ele><time>2024-05-01T10:00:00Z</time></trkpt>\n"
+                        + "<trkpt lat=\"23.2525\" lon=\"77.4855\"><time>2024-05-01T15:30:02.500+05:30</time>"
+                        + "<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>12.5</gpxtpx:speed>"
+                        + "<gpxtpx:course>45</gpxtpx:course></gpxtpx:TrackPointExtension></extensions></trkpt>\n"
+                        + "</trkseg></trk></gpx>");
+
+        assertEquals(2, trace.size());
+        RecordedTrace.Fix first = trace.fixes().get(0);
+        RecordedTrace.Fix second = trace.fixes().get(1);
+        assertEquals(23.2519, first.latitude, 0);
+        assertEquals(77.4845, first.longitude, 0);
+        assertTrue(Float.isNaN(first.speed));
+        assertEquals(2500, trace.durationMillis());
+        assertEquals(12.5f, second.speed, 0);
+        assertEquals(45f, second.bearing, 0);
+        assertTrue(Float.isNaN(second.accuracy));
+    }
+
+    @Test
+    public void readCsv_usesHeaderColumnsAndFillsMissingTimes() throws IOException {
+        RecordedTrace trace = read("walk.csv",
+                "# recorded on a phone\n"
+                        + "latitude,longitude,speed,note\n"
+                        + "23.2519,77.4845,1.4,start\n"
+                        + "23.2520,77.4846,,\n"
+                        + "23.2521,77.4847,1.5,end\n");
+
+        assertEquals(3, trace.size());
+        assertEquals(0, trace.fixes().get(0).timeMillis);
+        assertEquals(2 * RecordedTrace.DEFAULT_INTERVAL_MILLIS, trace.durationMillis());
+        assertEquals(1.4f, trace.fixes().get(0).speed, 0);
+        assertTrue(Float.isNaN(trace.fixes().get(1).speed));
+        assertTrue(Float.isNaN(trace.fixes().get(2).bearing));
+    }
+
+    @Test
+    public void readCsv_defaultColumnsWithoutHeader() throws IOException {
+        RecordedTrace trace = read("drive.csv",
+                "1714557600000,23.2519,77.4845,12.0,90,5\n"
+                        + "2024-05-01T10:00:01Z,23.2519,77.4847,12.5,91,4\n");
+
+        RecordedTrace.Fix first = trace.fixes().get(0);
+        assertEquals(1714557600000L, first.timeMillis);
+        assertEquals(90f, first.bearing, 0);
+        assertEquals(5f, first.accuracy, 0);
+        assertEquals(1000, trace.durationMillis());
+    }
+
+    @Test
+    public void readCsv_reportsTheBadLine() {
+        try {
+            read("bad.csv", "time,lat,lon\n0,23.25,77.48\n1000,north,77.48\n");
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("bad.csv:3:"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.saurabh.proximity.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RoadSegmentIndexTest {
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(17);
+        RoadSegmentStore store = new RoadSegmentStore();
+        for (int road = 0; road < 400; road++) {
+            // Short random walks, like city streets
+            int vertices = 2 + random.nextInt(12);
+            double[] lats = new double[vertices];
+            double[] lons = new double[vertices];
+            lats[0] = 23.2 + random.nextDouble() * 0.1;
+            lons[0] = 77.4 + random.nextDouble() * 0.1;
+            for (int i = 1; i < vertices; i++) {
+                lats[i] = lats[i - 1] + (random.nextDouble() - 0.5) * 0.002;
+                lons[i] = lons[i - 1] + (random.nextDouble() - 0.5) * 0.002;
+            }
+            store.addPolyline("Road " + road, lats, lons, vertices);
+        }
+        RoadSegmentIndex index = new RoadSegmentIndex(store);
+        RoadMatch match = new RoadMatch();
+
+        for (int query = 0; query < 2000; query++) {
+            double lat = 23.19 + random.nextDouble() * 0.12;
+            double lon = 77.39 + random.nextDouble() * 0.12;
+            double maxDistance = query % 2 == 0 ? 100 : 5000;
+            index.nearest(lat, lon, maxDistance, match);
+
+            double expected = Double.POSITIVE_INFINITY;
+            for (int s = 0; s < store.size(); s++) {
+                expected = Math.min(expected, segmentDistance(store, s, lat, lon));
+            }
+            if (expected > maxDistance) {
+                assertFalse(match.found());
+                continue;
+            }
+            assertTrue(match.found());
+            assertEquals(expected, match.distance(), 1e-6);
+            assertEquals(expected, segmentDistance(store, match.segment(), lat, lon), 1e-6);
+            // The reported point is on the segment, at the reported distance
+            assertEquals(match.distance(),
+                    DistanceKernel.haversine(lat, lon, match.latitude(), match.longitude()), match.distance() * 1e-3 + 1e-3);
+        }
+    }
+
+    @Test
+    public void nearest_projectsOntoTheSegmentInterior() {
+        RoadSegmentStore store = new RoadSegmentStore();
+        store.addSegment("Raisen Road", 23.25, 77.48, 23.25, 77.49);
+        store.addSegment("Side Street", 23.26, 77.48, 23.27, 77.48);
+        RoadSegmentIndex index = new RoadSegmentIndex(store);
+
+        RoadMatch match = index.nearest(23.2502, 77.485, 50, new RoadMatch());
+        assertEquals("Raisen Road", match.roadName());
+        assertEquals(0.0002 * 111195, match.distance(), 0.5);
+        assertEquals(0.5, match.fraction(), 1e-9);
+        assertEquals(23.25, match.latitude(), 1e-12);
+    }
+
+    @Test
+    public void nearest_onEmptyIndexFindsNothing() {
+        RoadSegmentIndex index = new RoadSegmentIndex(new RoadSegmentStore());
+        RoadMatch match = index.nearest(23.25, 77.48, 1000, new RoadMatch());
+        assertFalse(match.found());
+        assertEquals(null, match.roadName());
+    }
+
+    // Same local projection as the index, computed the straightforward way
+    private static double segmentDistance(RoadSegmentStore store, int s, double lat, double lon) {
+        double ky = DistanceKernel.EARTH_RADIUS_METERS * Math.PI / 180.0;
+        double kx = Math.cos(Math.toRadians(lat)) * ky;
+        double ax = (store.startLongitude(s) - lon) * kx;
+        double ay = (store.startLatitude(s) - lat) * ky;
+        double bx = (store.endLongitude(s) - lon) * kx;
+        double by = (store.endLatitude(s) - lat) * ky;
+        double best = Math.min(Math.hypot(ax, ay), Math.hypot(bx, by));
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t = -(ax * dx + ay * dy) / (dx * dx + dy * dy);
+        if (t > 0 && t < 1) {
+            best = Math.min(best, Math.hypot(ax + t * dx, ay + t * dy));
+        }
+        return best;
+    }
+}